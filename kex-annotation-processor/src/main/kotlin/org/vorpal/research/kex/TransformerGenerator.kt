@@ -72,6 +72,52 @@ interface Transformer<T : Transformer<T>> {
     fun transformChainState(ps: ChainState): PredicateState = ps
     fun transformChoiceState(ps: ChoiceState): PredicateState = ps
     """
+
+        private const val fusedTransformer = """
+package org.vorpal.research.kex.state.transformer
+
+import kotlinx.collections.immutable.toPersistentList
+import org.vorpal.research.kex.state.*
+import org.vorpal.research.kex.state.predicate.*
+import org.vorpal.research.kex.state.term.*
+
+/**
+ * Composition of the [LocalTransformer]s that walks the predicate state only once:
+ * the operands of each node are transformed by the whole composition first,
+ * then the node rewritings of the stages are applied to the node in their order
+ */
+class FusedTransformer(
+    private val stages: List<LocalTransformer<*>>
+) : Transformer<FusedTransformer>, IncrementalTransformer {
+    override fun transformTerm(term: Term): Term {
+        var result = term
+        for (stage in stages) {
+            result = stage.transformNode(result)
+        }
+        return result
+    }
+
+    override fun transformPredicate(predicate: Predicate): Predicate {
+        var result = predicate
+        for (stage in stages) {
+            result = stage.transformNode(result)
+        }
+        return result
+    }
+
+    override fun apply(state: IncrementalPredicateState): IncrementalPredicateState {
+        return IncrementalPredicateState(
+            apply(state.state),
+            state.queries.map { query ->
+                PredicateQuery(
+                    apply(query.hardConstraints),
+                    query.softConstraints.map { transform(it) }.toPersistentList()
+                )
+            }
+        )
+    }
+}
+"""
     }
 
     private val infoDirectory: String
@@ -123,7 +169,7 @@ interface Transformer<T : Transformer<T>> {
     private fun afterCall(type: String, base: String) =
         "${SHIFT}fun transform$type$base(${base.lowercase()}: $type$base): $base = ${base.lowercase()}"
 
-    private fun baseCall(base: String) = buildString {
+    private fun baseCall(base: String, checkStub: Boolean = false) = buildString {
         appendLine("${SHIFT}////////////////////////////////////////////////////////////////////")
         appendLine("${SHIFT}// $base")
         appendLine("${SHIFT}////////////////////////////////////////////////////////////////////")
@@ -134,6 +180,23 @@ interface Transformer<T : Transformer<T>> {
         appendLine("${SHIFT}}")
         appendLine("${SHIFT}fun transform$base(${base.lowercase()}: $base): $base = ${base.lowercase()}")
         appendLine()
+        appendLine("${SHIFT}/**")
+        appendLine("${SHIFT} * Applies only the rewritings of the node itself, its operands are not visited")
+        appendLine("${SHIFT} */")
+        when {
+            checkStub -> {
+                appendLine("${SHIFT}fun transformNode(${base.lowercase()}: $base): $base = when (${base.lowercase()}) {")
+                appendLine("${DOUBLE_SHIFT}is Stub -> ${base.lowercase()}")
+                appendLine("${DOUBLE_SHIFT}else -> transform$base(delegateType(${base.lowercase()}))")
+                appendLine("${SHIFT}}")
+            }
+
+            else -> appendLine(
+                "${SHIFT}fun transformNode(${base.lowercase()}: $base): $base = " +
+                        "transform$base(delegateType(${base.lowercase()}))"
+            )
+        }
+        appendLine()
     }
 
     private val InheritanceInfo.baseClass get() = base.split(".").last()
@@ -179,7 +242,7 @@ interface Transformer<T : Transformer<T>> {
                 appendLine(predicateState)
                 appendLine()
 
-                appendLine(baseCall(predicates.baseClass))
+                appendLine(baseCall(predicates.baseClass, checkStub = true))
                 for (subPredicate in predicates.inheritors) {
                     appendLine(beforeCall(subPredicate.name, predicates.baseClass))
                     appendLine(afterCall(subPredicate.name, predicates.baseClass))
@@ -196,6 +259,7 @@ interface Transformer<T : Transformer<T>> {
                 appendLine("}")
             }
         }
+        writeClass(pkg, "FusedTransformer", fusedTransformer)
     }
 
     private fun writeClass(pkg: String, klass: String, body: () -> String) = writeClass(pkg, klass, body())
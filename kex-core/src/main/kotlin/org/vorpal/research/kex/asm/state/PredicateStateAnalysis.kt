@@ -26,11 +26,11 @@ class PredicateStateAnalysis(override val cm: ClassManager) : MethodVisitor {
         return builder
     }
 
-    fun builder(method: Method) = builders.getOrPut(method) { createBuilder(method) }
+    fun builder(method: Method) = synchronized(builders) {
+        builders.getOrPut(method) { createBuilder(method) }
+    }
 
     override fun visit(method: Method) {
-        if (method !in builders) {
-            builders[method] = createBuilder(method)
-        }
+        builder(method)
     }
 }
@@ -45,6 +45,7 @@ class PredicateStateBuilder(val method: Method) {
             }
         }
 
+    @Synchronized
     fun getInstructionState(inst: Instruction): PredicateState? {
         val state = instructionStates[inst]
         if (state != null) return state
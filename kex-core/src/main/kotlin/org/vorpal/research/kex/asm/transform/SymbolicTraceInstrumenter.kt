@@ -1,7 +1,9 @@
 package org.vorpal.research.kex.asm.transform
 
+import org.vorpal.research.kex.config.kexConfig
 import org.vorpal.research.kex.trace.symbolic.InstructionTraceCollector
 import org.vorpal.research.kex.trace.symbolic.TraceCollectorProxy
+import org.vorpal.research.kex.trace.symbolic.TraceIdRegistry
 import org.vorpal.research.kex.util.asmString
 import org.vorpal.research.kex.util.insertAfter
 import org.vorpal.research.kex.util.insertBefore
@@ -46,6 +48,14 @@ import org.vorpal.research.kfg.ir.value.instruction.TableSwitchInst
 import org.vorpal.research.kfg.ir.value.instruction.ThrowInst
 import org.vorpal.research.kfg.ir.value.instruction.UnaryInst
 import org.vorpal.research.kfg.ir.value.instruction.UnaryOpcode
+import org.vorpal.research.kfg.type.BoolType
+import org.vorpal.research.kfg.type.ByteType
+import org.vorpal.research.kfg.type.CharType
+import org.vorpal.research.kfg.type.DoubleType
+import org.vorpal.research.kfg.type.FloatType
+import org.vorpal.research.kfg.type.IntType
+import org.vorpal.research.kfg.type.LongType
+import org.vorpal.research.kfg.type.ShortType
 import org.vorpal.research.kfg.type.Type
 import org.vorpal.research.kfg.type.TypeFactory
 import org.vorpal.research.kfg.type.arrayListType
@@ -54,9 +64,14 @@ import org.vorpal.research.kfg.type.objectType
 import org.vorpal.research.kfg.type.stringType
 import org.vorpal.research.kfg.visitor.MethodVisitor
 
+/**
+ * @param useIntegerIds pass the instructions, methods and types to the collector as their ids in [TraceIdRegistry]
+ * instead of the string names, so the collector does not need to parse them on every executed instruction
+ */
 class SymbolicTraceInstrumenter(
     override val cm: ClassManager,
-    private val ignores: Set<Package> = setOf()
+    private val ignores: Set<Package> = setOf(),
+    private val useIntegerIds: Boolean = kexConfig.getBooleanValue("executor", "integerTraceIds", false)
 ) : MethodVisitor, InstructionBuilder {
     companion object {
         val SYMBOLIC_TRACE_LOCATION = Location(
@@ -69,6 +84,11 @@ class SymbolicTraceInstrumenter(
             .canonicalName
             .asmString
 
+        private val PRIMITIVE_CALLBACKS = setOf(
+            "binaryII", "binaryJJ", "binaryJI", "binaryFF", "binaryDD",
+            "cmpII", "cmpJJ", "cmpFF", "cmpDD"
+        )
+
         private val TRACE_COLLECTOR_PROXY = TraceCollectorProxy::class.java
             .canonicalName
             .asmString
@@ -85,6 +105,7 @@ class SymbolicTraceInstrumenter(
     private val collectorClass = cm[INSTRUCTION_TRACE_COLLECTOR]
     private val collectorProxyClass = cm[TRACE_COLLECTOR_PROXY]
     private val objectType = types.objectType
+    private val intType = types.intType
     private val stringType = types.stringType
     private val listType = types.listType
     private val arrayListType = types.arrayListType
@@ -128,28 +149,30 @@ class SymbolicTraceInstrumenter(
         val methodEntryInstructions: List<Instruction> = buildList {
             traceCollector = getNewCollector()
             add(traceCollector)
-            val entryMethod = collectorClass.getMethod(
-                "methodEnter", types.voidType,
-                stringType, stringType, listType,
-                stringType, objectType, listType
-            )
 
             val arrayListKlass = cm.arrayListClass
             val initMethod = arrayListKlass.getMethod("<init>", types.voidType)
             val addMethod = arrayListKlass.getMethod("add", types.boolType, objectType)
 
-            val argTypesList = arrayListType.new().also { add(it) }
-            add(arrayListKlass.specialCall(initMethod, argTypesList, emptyList()))
+            val argTypesList = when {
+                useIntegerIds -> null
+                else -> arrayListType.new().also {
+                    add(it)
+                    add(arrayListKlass.specialCall(initMethod, it, emptyList()))
+                }
+            }
 
             val argumentList = arrayListType.new().also { add(it) }
             add(arrayListKlass.specialCall(initMethod, argumentList, emptyList()))
 
             for ((index, arg) in method.argTypes.withIndex()) {
-                add(
-                    arrayListKlass.virtualCall(
-                        addMethod, argTypesList, listOf(arg.asmDesc.asValue)
+                if (argTypesList != null) {
+                    add(
+                        arrayListKlass.virtualCall(
+                            addMethod, argTypesList, listOf(arg.asmDesc.asValue)
+                        )
                     )
-                )
+                }
                 val argument = values.getArgument(index, method, arg)
                 add(
                     arrayListKlass.virtualCall(
@@ -162,48 +185,57 @@ class SymbolicTraceInstrumenter(
                 else -> values.getThis(method.klass)
             }
 
-            add(
-                collectorClass.interfaceCall(
-                    entryMethod,
-                    traceCollector,
-                    listOf(
-                        method.klass.fullName.asValue,
-                        method.name.asValue,
-                        argTypesList,
-                        method.returnType.asmDesc.asValue,
-                        instance,
-                        argumentList
+            when (argTypesList) {
+                null -> add(
+                    collectorClass.interfaceCall(
+                        collectorClass.getMethod(
+                            "methodEnter", types.voidType,
+                            intType, objectType, listType
+                        ),
+                        traceCollector,
+                        listOf(
+                            method.id,
+                            instance,
+                            argumentList
+                        )
                     )
                 )
-            )
+
+                else -> add(
+                    collectorClass.interfaceCall(
+                        collectorClass.getMethod(
+                            "methodEnter", types.voidType,
+                            stringType, stringType, listType,
+                            stringType, objectType, listType
+                        ),
+                        traceCollector,
+                        listOf(
+                            method.klass.fullName.asValue,
+                            method.name.asValue,
+                            argTypesList,
+                            method.returnType.asmDesc.asValue,
+                            instance,
+                            argumentList
+                        )
+                    )
+                )
+            }
         }
         super.visit(method)
         method.body.entry.first().insertBefore(methodEntryInstructions.mapLocation())
     }
 
     override fun visitArrayLoadInst(inst: ArrayLoadInst) {
-        val arrayLoadMethod = collectorClass.getMethod(
-            "arrayLoad", types.voidType,
-            stringType, stringType, stringType,
-            objectType, objectType, objectType
-        )
-
         val before = buildList {
             addAll(addNullityConstraint(inst, inst.arrayRef))
             addAll(addArrayIndexConstraints(inst, inst.arrayRef, inst.index))
         }
         val after = buildList {
             add(
-                collectorClass.interfaceCall(
-                    arrayLoadMethod, traceCollector,
-                    listOf(
-                        "$inst".asValue,
-                        "${inst.arrayRef}".asValue,
-                        "${inst.index}".asValue,
-                        inst.wrapped(this),
-                        inst.arrayRef,
-                        inst.index.wrapped(this)
-                    )
+                collectorCall(
+                    "arrayLoad", inst,
+                    listOf(inst.arrayRef, inst.index),
+                    listOf(inst.wrapped(this), inst.arrayRef, inst.index.wrapped(this))
                 )
             )
         }
@@ -212,29 +244,16 @@ class SymbolicTraceInstrumenter(
     }
 
     override fun visitArrayStoreInst(inst: ArrayStoreInst) {
-        val arrayStoreMethod = collectorClass.getMethod(
-            "arrayStore", types.voidType,
-            stringType, stringType, stringType, stringType,
-            objectType, objectType, objectType
-        )
-
         val before = buildList {
             addAll(addNullityConstraint(inst, inst.arrayRef))
             addAll(addArrayIndexConstraints(inst, inst.arrayRef, inst.index))
         }
         val after = buildList {
             add(
-                collectorClass.interfaceCall(
-                    arrayStoreMethod, traceCollector,
-                    listOf(
-                        "$inst".asValue,
-                        "${inst.arrayRef}".asValue,
-                        "${inst.index}".asValue,
-                        "${inst.value}".asValue,
-                        inst.arrayRef,
-                        inst.index.wrapped(this),
-                        inst.value.wrapped(this)
-                    )
+                collectorCall(
+                    "arrayStore", inst,
+                    listOf(inst.arrayRef, inst.index, inst.value),
+                    listOf(inst.arrayRef, inst.index.wrapped(this), inst.value.wrapped(this))
                 )
             )
         }
@@ -243,55 +262,25 @@ class SymbolicTraceInstrumenter(
     }
 
     override fun visitBinaryInst(inst: BinaryInst) {
-        val binaryMethod = collectorClass.getMethod(
-            "binary", types.voidType,
-            stringType, stringType, stringType,
-            objectType, objectType, objectType
-        )
-
         val instrumented = buildList {
             add(
-                collectorClass.interfaceCall(
-                    binaryMethod, traceCollector,
-                    listOf(
-                        "$inst".asValue,
-                        "${inst.lhv}".asValue,
-                        "${inst.rhv}".asValue,
-                        inst.wrapped(this),
-                        inst.lhv.wrapped(this),
-                        inst.rhv.wrapped(this)
+                primitiveCollectorCall("binary", inst, listOf(inst.lhv, inst.rhv), listOf(inst, inst.lhv, inst.rhv))
+                    ?: collectorCall(
+                        "binary", inst,
+                        listOf(inst.lhv, inst.rhv),
+                        listOf(inst.wrapped(this), inst.lhv.wrapped(this), inst.rhv.wrapped(this))
                     )
-                )
             )
         }
         inst.insertAfter(instrumented.mapLocation())
     }
 
     override fun visitBranchInst(inst: BranchInst) {
-        val branchMethod = collectorClass.getMethod(
-            "branch", types.voidType,
-            stringType, stringType
-        )
-
-        val instrumented = collectorClass.interfaceCall(
-            branchMethod, traceCollector,
-            listOf(
-                "$inst".asValue,
-                "${inst.cond}".asValue
-            )
-        )
+        val instrumented = collectorCall("branch", inst, listOf(inst.cond), emptyList())
         inst.insertBefore(instrumented.mapLocation())
     }
 
     override fun visitCallInst(inst: CallInst) {
-        val callMethod = collectorClass.getMethod(
-            "call", types.voidType,
-            stringType,
-            stringType, stringType, listType, stringType,
-            stringType, stringType, listType,
-            listType
-        )
-
         val calledMethod = inst.method
         val klass = calledMethod.klass
 
@@ -307,6 +296,38 @@ class SymbolicTraceInstrumenter(
             val initMethod = arrayListKlass.getMethod("<init>", types.voidType)
             val addMethod = arrayListKlass.getMethod("add", types.boolType, objectType)
 
+            val concreteArgumentsList = arrayListType.new().also { add(it) }
+            add(arrayListKlass.specialCall(initMethod, concreteArgumentsList, emptyList()))
+            for (arg in inst.args) {
+                add(
+                    arrayListKlass.virtualCall(
+                        addMethod, concreteArgumentsList, listOf(arg.wrapped(this))
+                    )
+                )
+            }
+
+            if (useIntegerIds) {
+                val callMethod = collectorClass.getMethod(
+                    "call", types.voidType,
+                    intType, listType
+                )
+                add(
+                    collectorClass.interfaceCall(
+                        callMethod, traceCollector,
+                        listOf(inst.id, concreteArgumentsList)
+                    )
+                )
+                return@buildList
+            }
+
+            val callMethod = collectorClass.getMethod(
+                "call", types.voidType,
+                stringType,
+                stringType, stringType, listType, stringType,
+                stringType, stringType, listType,
+                listType
+            )
+
             val argTypesList = arrayListType.new().also { add(it) }
             add(arrayListKlass.specialCall(initMethod, argTypesList, emptyList()))
             for (arg in calledMethod.argTypes) {
@@ -327,16 +348,6 @@ class SymbolicTraceInstrumenter(
                 )
             }
 
-            val concreteArgumentsList = arrayListType.new().also { add(it) }
-            add(arrayListKlass.specialCall(initMethod, concreteArgumentsList, emptyList()))
-            for (arg in inst.args) {
-                add(
-                    arrayListKlass.virtualCall(
-                        addMethod, concreteArgumentsList, listOf(arg.wrapped(this))
-                    )
-                )
-            }
-
             val returnValue = when {
                 inst.isNameDefined -> "$inst".asValue
                 else -> values.nullConstant
@@ -368,25 +379,16 @@ class SymbolicTraceInstrumenter(
     }
 
     override fun visitCastInst(inst: CastInst) {
-        val castMethod = collectorClass.getMethod(
-            "cast", types.voidType,
-            stringType, stringType,
-            objectType, objectType
-        )
         val before = buildList {
             if (inst.type.isReference) addAll(addNullityConstraint(inst, inst.operand))
             if (inst.type.isReference) addAll(addTypeConstraints(inst, inst.operand, inst.type))
         }
         val after = buildList {
             add(
-                collectorClass.interfaceCall(
-                    castMethod, traceCollector,
-                    listOf(
-                        "$inst".asValue,
-                        "${inst.operand}".asValue,
-                        inst.wrapped(this),
-                        inst.operand.wrapped(this)
-                    )
+                collectorCall(
+                    "cast", inst,
+                    listOf(inst.operand),
+                    listOf(inst.wrapped(this), inst.operand.wrapped(this))
                 )
             )
         }
@@ -395,21 +397,8 @@ class SymbolicTraceInstrumenter(
     }
 
     override fun visitCatchInst(inst: CatchInst) {
-        val catchMethod = collectorClass.getMethod(
-            "catch", types.voidType,
-            stringType, objectType
-        )
-
         val instrumented = buildList {
-            add(
-                collectorClass.interfaceCall(
-                    catchMethod, traceCollector,
-                    listOf(
-                        "$inst".asValue,
-                        inst
-                    )
-                )
-            )
+            add(collectorCall("catch", inst, emptyList(), listOf(inst)))
             // we need to manually handle all the phi insts of a catch block
             for (phi in inst.parent) {
                 when (phi) {
@@ -422,118 +411,86 @@ class SymbolicTraceInstrumenter(
     }
 
     override fun visitCmpInst(inst: CmpInst) {
-        val cmpMethod = collectorClass.getMethod(
-            "cmp", types.voidType,
-            stringType, stringType, stringType,
-            objectType, objectType
-        )
-
         val instrumented = buildList {
             add(
-                collectorClass.interfaceCall(
-                    cmpMethod, traceCollector,
-                    listOf(
-                        "$inst".asValue,
-                        "${inst.lhv}".asValue,
-                        "${inst.rhv}".asValue,
-                        inst.lhv.wrapped(this),
-                        inst.rhv.wrapped(this)
+                primitiveCollectorCall("cmp", inst, listOf(inst.lhv, inst.rhv), listOf(inst.lhv, inst.rhv))
+                    ?: collectorCall(
+                        "cmp", inst,
+                        listOf(inst.lhv, inst.rhv),
+                        listOf(inst.lhv.wrapped(this), inst.rhv.wrapped(this))
                     )
-                )
             )
         }
         inst.insertAfter(instrumented.mapLocation())
     }
 
     override fun visitEnterMonitorInst(inst: EnterMonitorInst) {
-        val enterMonitorMethod = collectorClass.getMethod(
-            "enterMonitor", types.voidType,
-            stringType, stringType, objectType
-        )
-        val instrumented = collectorClass.interfaceCall(
-            enterMonitorMethod, traceCollector,
-            listOf(
-                "$inst".asValue,
-                "${inst.owner}".asValue,
-                inst.owner
-            )
-        )
+        val instrumented = collectorCall("enterMonitor", inst, listOf(inst.owner), listOf(inst.owner))
         inst.insertAfter(instrumented.mapLocation())
     }
 
     override fun visitExitMonitorInst(inst: ExitMonitorInst) {
-        val exitMonitorMethod = collectorClass.getMethod(
-            "exitMonitor", types.voidType,
-            stringType, stringType, objectType
-        )
-        val instrumented = collectorClass.interfaceCall(
-            exitMonitorMethod, traceCollector,
-            listOf(
-                "$inst".asValue,
-                "${inst.owner}".asValue,
-                inst.owner
-            )
-        )
+        val instrumented = collectorCall("exitMonitor", inst, listOf(inst.owner), listOf(inst.owner))
         inst.insertAfter(instrumented.mapLocation())
     }
 
     override fun visitFieldLoadInst(inst: FieldLoadInst) {
-        val fieldLoadMethod = collectorClass.getMethod(
-            "fieldLoad", types.voidType,
-            stringType, stringType, stringType,
-            stringType, stringType,
-            objectType, objectType
-        )
-
         val before = when {
             !inst.isStatic -> addNullityConstraint(inst, inst.owner)
             else -> emptyList()
         }
-        val fieldKlass = inst.field.klass.fullName.asValue
-        val fieldName = inst.field.name.asValue
-        val fieldType = inst.field.type.asmDesc.asValue
         val (owner, concreteOwner) = when {
             inst.isStatic -> values.nullConstant to values.nullConstant
             else -> "${inst.owner}".asValue to inst.owner
         }
 
         val after = buildList {
-            add(
-                collectorClass.interfaceCall(
-                    fieldLoadMethod, traceCollector,
-                    listOf(
-                        "$inst".asValue,
-                        owner,
-                        fieldKlass,
-                        fieldName,
-                        fieldType,
-                        inst.wrapped(this),
-                        concreteOwner.wrapped(this)
+            val concreteValue = inst.wrapped(this)
+            val wrappedOwner = concreteOwner.wrapped(this)
+            when {
+                useIntegerIds -> add(
+                    collectorClass.interfaceCall(
+                        collectorClass.getMethod(
+                            "fieldLoad", types.voidType,
+                            intType, objectType, objectType
+                        ),
+                        traceCollector,
+                        listOf(inst.id, concreteValue, wrappedOwner)
                     )
                 )
-            )
+
+                else -> add(
+                    collectorClass.interfaceCall(
+                        collectorClass.getMethod(
+                            "fieldLoad", types.voidType,
+                            stringType, stringType, stringType,
+                            stringType, stringType,
+                            objectType, objectType
+                        ),
+                        traceCollector,
+                        listOf(
+                            "$inst".asValue,
+                            owner,
+                            inst.field.klass.fullName.asValue,
+                            inst.field.name.asValue,
+                            inst.field.type.asmDesc.asValue,
+                            concreteValue,
+                            wrappedOwner
+                        )
+                    )
+                )
+            }
         }
         inst.insertBefore(before.mapLocation())
         inst.insertAfter(after.mapLocation())
     }
 
     override fun visitFieldStoreInst(inst: FieldStoreInst) {
-        val fieldStoreMethod = collectorClass.getMethod(
-            "fieldStore", types.voidType,
-            stringType,
-            stringType, stringType, stringType,
-            stringType, stringType,
-            objectType, objectType
-        )
-
         val before = when {
             !inst.isStatic -> addNullityConstraint(inst, inst.owner)
             else -> emptyList()
         }
 
-        val fieldKlass = inst.field.klass.fullName.asValue
-        val fieldName = inst.field.name.asValue
-        val fieldType = inst.field.type.asmDesc.asValue
         val (owner, concreteOwner) = when {
             inst.isStatic -> values.nullConstant to values.nullConstant
             else -> "${inst.owner}".asValue to inst.owner
@@ -544,43 +501,54 @@ class SymbolicTraceInstrumenter(
         }
 
         val after = buildList {
-            add(
-                collectorClass.interfaceCall(
-                    fieldStoreMethod, traceCollector,
-                    listOf(
-                        "$inst".asValue,
-                        owner,
-                        fieldKlass,
-                        fieldName,
-                        fieldType,
-                        "${inst.value}".asValue,
-                        inst.value.wrapped(this),
-                        defOwner
+            val concreteValue = inst.value.wrapped(this)
+            when {
+                useIntegerIds -> add(
+                    collectorClass.interfaceCall(
+                        collectorClass.getMethod(
+                            "fieldStore", types.voidType,
+                            intType, objectType, objectType
+                        ),
+                        traceCollector,
+                        listOf(inst.id, concreteValue, defOwner)
                     )
                 )
-            )
+
+                else -> add(
+                    collectorClass.interfaceCall(
+                        collectorClass.getMethod(
+                            "fieldStore", types.voidType,
+                            stringType,
+                            stringType, stringType, stringType,
+                            stringType, stringType,
+                            objectType, objectType
+                        ),
+                        traceCollector,
+                        listOf(
+                            "$inst".asValue,
+                            owner,
+                            inst.field.klass.fullName.asValue,
+                            inst.field.name.asValue,
+                            inst.field.type.asmDesc.asValue,
+                            "${inst.value}".asValue,
+                            concreteValue,
+                            defOwner
+                        )
+                    )
+                )
+            }
         }
         inst.insertBefore(before.mapLocation())
         inst.insertAfter(after.mapLocation())
     }
 
     override fun visitInstanceOfInst(inst: InstanceOfInst) {
-        val instanceOfMethod = collectorClass.getMethod(
-            "instanceOf", types.voidType,
-            stringType, stringType,
-            objectType, objectType
-        )
-
         val instrumented = buildList {
             add(
-                collectorClass.interfaceCall(
-                    instanceOfMethod, traceCollector,
-                    listOf(
-                        "$inst".asValue,
-                        "${inst.operand}".asValue,
-                        inst.wrapped(this),
-                        inst.operand.wrapped(this)
-                    )
+                collectorCall(
+                    "instanceOf", inst,
+                    listOf(inst.operand),
+                    listOf(inst.wrapped(this), inst.operand.wrapped(this))
                 )
             )
         }
@@ -588,24 +556,23 @@ class SymbolicTraceInstrumenter(
     }
 
     override fun visitInvokeDynamicInst(inst: InvokeDynamicInst) {
-        val invokeDynamicMethod = collectorClass.getMethod(
-            "invokeDynamic", types.voidType,
-            stringType, listType,
-            objectType, listType
-        )
-
         val instrumented = buildList {
             val arrayListKlass = cm.arrayListClass
             val initMethod = arrayListKlass.getMethod("<init>", types.voidType)
             val addMethod = arrayListKlass.getMethod("add", types.boolType, objectType)
-            val args = arrayListType.new().also { add(it) }
-            add(arrayListKlass.specialCall(initMethod, args, emptyList()))
-            for (arg in inst.args) {
-                add(
-                    arrayListKlass.virtualCall(
-                        addMethod, args, listOf("$arg".asValue)
-                    )
-                )
+            val args = when {
+                useIntegerIds -> null
+                else -> arrayListType.new().also {
+                    add(it)
+                    add(arrayListKlass.specialCall(initMethod, it, emptyList()))
+                    for (arg in inst.args) {
+                        add(
+                            arrayListKlass.virtualCall(
+                                addMethod, it, listOf("$arg".asValue)
+                            )
+                        )
+                    }
+                }
             }
 
             val concreteArgs = arrayListType.new().also { add(it) }
@@ -619,50 +586,59 @@ class SymbolicTraceInstrumenter(
             }
 
             add(
-                collectorClass.interfaceCall(
-                    invokeDynamicMethod, traceCollector,
-                    listOf(
-                        "$inst".asValue,
-                        args,
-                        inst.wrapped(this),
-                        concreteArgs
+                when (args) {
+                    null -> collectorClass.interfaceCall(
+                        collectorClass.getMethod(
+                            "invokeDynamic", types.voidType,
+                            intType, objectType, listType
+                        ),
+                        traceCollector,
+                        listOf(inst.id, inst.wrapped(this), concreteArgs)
                     )
-                )
+
+                    else -> collectorClass.interfaceCall(
+                        collectorClass.getMethod(
+                            "invokeDynamic", types.voidType,
+                            stringType, listType,
+                            objectType, listType
+                        ),
+                        traceCollector,
+                        listOf(
+                            "$inst".asValue,
+                            args,
+                            inst.wrapped(this),
+                            concreteArgs
+                        )
+                    )
+                }
             )
         }
         inst.insertAfter(instrumented.mapLocation())
     }
 
     override fun visitJumpInst(inst: JumpInst) {
-        val jumpMethod = collectorClass.getMethod(
-            "jump", types.voidType, stringType
-        )
-
-        val instrumented = collectorClass.interfaceCall(
-            jumpMethod, traceCollector, listOf("$inst".asValue)
-        )
+        val instrumented = collectorCall("jump", inst, emptyList(), emptyList())
         inst.insertBefore(instrumented.mapLocation())
     }
 
     override fun visitNewArrayInst(inst: NewArrayInst) {
-        val newArrayMethod = collectorClass.getMethod(
-            "newArray", types.voidType,
-            stringType, listType,
-            objectType, listType
-        )
-
         val instrumented = buildList {
             val arrayListKlass = cm.arrayListClass
             val initMethod = arrayListKlass.getMethod("<init>", types.voidType)
             val addMethod = arrayListKlass.getMethod("add", types.boolType, objectType)
-            val dimensions = arrayListType.new().also { add(it) }
-            add(arrayListKlass.specialCall(initMethod, dimensions, emptyList()))
-            for (dimension in inst.dimensions) {
-                add(
-                    arrayListKlass.virtualCall(
-                        addMethod, dimensions, listOf("$dimension".asValue)
-                    )
-                )
+            val dimensions = when {
+                useIntegerIds -> null
+                else -> arrayListType.new().also {
+                    add(it)
+                    add(arrayListKlass.specialCall(initMethod, it, emptyList()))
+                    for (dimension in inst.dimensions) {
+                        add(
+                            arrayListKlass.virtualCall(
+                                addMethod, it, listOf("$dimension".asValue)
+                            )
+                        )
+                    }
+                }
             }
 
             val concreteDimensions = arrayListType.new().also { add(it) }
@@ -680,28 +656,38 @@ class SymbolicTraceInstrumenter(
             }
 
             add(
-                collectorClass.interfaceCall(
-                    newArrayMethod, traceCollector,
-                    listOf(
-                        "$inst".asValue,
-                        dimensions,
-                        inst,
-                        concreteDimensions
+                when (dimensions) {
+                    null -> collectorClass.interfaceCall(
+                        collectorClass.getMethod(
+                            "newArray", types.voidType,
+                            intType, objectType, listType
+                        ),
+                        traceCollector,
+                        listOf(inst.id, inst, concreteDimensions)
                     )
-                )
+
+                    else -> collectorClass.interfaceCall(
+                        collectorClass.getMethod(
+                            "newArray", types.voidType,
+                            stringType, listType,
+                            objectType, listType
+                        ),
+                        traceCollector,
+                        listOf(
+                            "$inst".asValue,
+                            dimensions,
+                            inst,
+                            concreteDimensions
+                        )
+                    )
+                }
             )
         }
         inst.insertAfter(instrumented.mapLocation())
     }
 
     override fun visitNewInst(inst: NewInst) {
-        val newMethod = collectorClass.getMethod(
-            "new", types.voidType, stringType
-        )
-
-        val instrumented = collectorClass.interfaceCall(
-            newMethod, traceCollector, listOf("$inst".asValue)
-        )
+        val instrumented = collectorCall("new", inst, emptyList(), emptyList())
         inst.insertAfter(instrumented.mapLocation())
     }
 
@@ -712,27 +698,10 @@ class SymbolicTraceInstrumenter(
     }
 
     private fun buildPhi(inst: PhiInst): List<Instruction> = buildList {
-        val phiMethod = collectorClass.getMethod(
-            "phi", types.voidType, stringType, objectType
-        )
-        add(
-            collectorClass.interfaceCall(
-                phiMethod, traceCollector,
-                listOf(
-                    "$inst".asValue,
-                    inst.wrapped(this)
-                )
-            )
-        )
+        add(collectorCall("phi", inst, emptyList(), listOf(inst.wrapped(this))))
     }
 
     override fun visitReturnInst(inst: ReturnInst) {
-        val returnMethod = collectorClass.getMethod(
-            "ret", types.voidType,
-            stringType, stringType, objectType
-        )
-
-
         val (returnValue, concreteValue) = when {
             inst.hasReturnValue -> "${inst.returnValue}".asValue to inst.returnValue
             else -> values.nullConstant to values.nullConstant
@@ -748,101 +717,68 @@ class SymbolicTraceInstrumenter(
             for ((index, type) in currentMethod.argTypes.withIndex()) {
                 addAll(track(values.getArgument(index, currentMethod, type)))
             }
-            add(
-                collectorClass.interfaceCall(
-                    returnMethod, traceCollector,
-                    listOf(
-                        "$inst".asValue,
-                        returnValue,
-                        concreteValue.wrapped(this)
+            when {
+                useIntegerIds -> add(
+                    collectorClass.interfaceCall(
+                        collectorClass.getMethod(
+                            "ret", types.voidType,
+                            intType, objectType
+                        ),
+                        traceCollector,
+                        listOf(inst.id, concreteValue.wrapped(this))
                     )
                 )
-            )
+
+                else -> add(
+                    collectorClass.interfaceCall(
+                        collectorClass.getMethod(
+                            "ret", types.voidType,
+                            stringType, stringType, objectType
+                        ),
+                        traceCollector,
+                        listOf(
+                            "$inst".asValue,
+                            returnValue,
+                            concreteValue.wrapped(this)
+                        )
+                    )
+                )
+            }
             add(resetCollector())
         }
         inst.insertBefore(instrumented.mapLocation())
     }
 
     override fun visitSwitchInst(inst: SwitchInst) {
-        val switchMethod = collectorClass.getMethod(
-            "switch", types.voidType,
-            stringType, stringType, objectType
-        )
-
         val instrumented = buildList {
-            add(
-                collectorClass.interfaceCall(
-                    switchMethod, traceCollector,
-                    listOf(
-                        "$inst".asValue,
-                        "${inst.key}".asValue,
-                        inst.key.wrapped(this)
-                    )
-                )
-            )
+            add(collectorCall("switch", inst, listOf(inst.key), listOf(inst.key.wrapped(this))))
         }
         inst.insertBefore(instrumented.mapLocation())
     }
 
     override fun visitTableSwitchInst(inst: TableSwitchInst) {
-        val tableSwitchMethod = collectorClass.getMethod(
-            "tableSwitch", types.voidType,
-            stringType, stringType, objectType
-        )
-
         val instrumented = buildList {
-            add(
-                collectorClass.interfaceCall(
-                    tableSwitchMethod, traceCollector,
-                    listOf(
-                        "$inst".asValue,
-                        "${inst.index}".asValue,
-                        inst.index.wrapped(this)
-                    )
-                )
-            )
+            add(collectorCall("tableSwitch", inst, listOf(inst.index), listOf(inst.index.wrapped(this))))
         }
         inst.insertBefore(instrumented.mapLocation())
     }
 
     override fun visitThrowInst(inst: ThrowInst) {
-        val throwMethod = collectorClass.getMethod(
-            "throwing", types.voidType,
-            stringType, stringType, objectType
-        )
-
-        val instrumented = collectorClass.interfaceCall(
-            throwMethod, traceCollector,
-            listOf(
-                "$inst".asValue,
-                "${inst.throwable}".asValue,
-                inst.throwable
-            )
-        )
+        val instrumented = collectorCall("throwing", inst, listOf(inst.throwable), listOf(inst.throwable))
         inst.insertBefore(instrumented.mapLocation())
     }
 
     override fun visitUnaryInst(inst: UnaryInst) {
-        val unaryMethod = collectorClass.getMethod(
-            "unary", types.voidType,
-            stringType, stringType,
-            objectType, objectType
-        )
-
         val before = when (inst.opcode) {
             UnaryOpcode.LENGTH -> addNullityConstraint(inst, inst.operand)
             else -> emptyList()
         }
         val after = buildList {
             add(
-                collectorClass.interfaceCall(
-                    unaryMethod, traceCollector,
-                    listOf(
-                        "$inst".asValue,
-                        "${inst.operand}".asValue,
-                        inst.wrapped(this),
-                        inst.operand.wrapped(this)
-                    )
+                collectorCall(
+                    "unary", inst,
+                    listOf(inst.operand),
+                    listOf(inst.wrapped(this), inst.operand.wrapped(this))
                 )
             )
         }
@@ -851,17 +787,21 @@ class SymbolicTraceInstrumenter(
     }
 
     private fun track(value: Value): List<Instruction> = buildList {
-        val trackMethod = collectorClass.getMethod(
-            "track", types.voidType, stringType, objectType
-        )
+        val concreteValue = value.wrapped(this)
         add(
-            collectorClass.interfaceCall(
-                trackMethod, traceCollector,
-                listOf(
-                    "$value".asValue,
-                    value.wrapped(this)
+            when {
+                useIntegerIds -> collectorClass.interfaceCall(
+                    collectorClass.getMethod("track", types.voidType, intType, objectType),
+                    traceCollector,
+                    listOf(value.id, concreteValue)
                 )
-            )
+
+                else -> collectorClass.interfaceCall(
+                    collectorClass.getMethod("track", types.voidType, stringType, objectType),
+                    traceCollector,
+                    listOf("$value".asValue, concreteValue)
+                )
+            }
         )
     }
 
@@ -872,101 +812,154 @@ class SymbolicTraceInstrumenter(
 
     private fun addNullityConstraint(inst: Instruction, value: Value): List<Instruction> = buildList {
         if (inst.parent.method.isConstructor && value is ThisRef) return@buildList
-
-        val addNullityConstraintsMethod = collectorClass.getMethod(
-            "addNullityConstraints", types.voidType,
-            stringType, stringType, objectType
-        )
-
-        add(
-            collectorClass.interfaceCall(
-                addNullityConstraintsMethod, traceCollector,
-                listOf(
-                    "$inst".asValue,
-                    "$value".asValue,
-                    value.wrapped(this)
-                )
-            )
-        )
+        add(constraintCall("addNullityConstraints", inst, listOf(value), listOf(value.wrapped(this))))
     }
 
     private fun addTypeConstraints(inst: Instruction, value: Value): List<Instruction> = buildList {
-        val addTypeConstraintsMethod = collectorClass.getMethod(
-            "addTypeConstraints", types.voidType,
-            stringType, stringType, objectType
-        )
-
-        add(
-            collectorClass.interfaceCall(
-                addTypeConstraintsMethod, traceCollector,
-                listOf(
-                    "$inst".asValue,
-                    "$value".asValue,
-                    value.wrapped(this)
-                )
-            )
-        )
+        add(constraintCall("addTypeConstraints", inst, listOf(value), listOf(value.wrapped(this))))
     }
 
     private fun addTypeConstraints(inst: Instruction, value: Value, type: Type): List<Instruction> = buildList {
-        val addTypeConstraintsMethod = collectorClass.getMethod(
-            "addTypeConstraints", types.voidType,
-            stringType, stringType, stringType, objectType
-        )
-
+        val concreteValue = value.wrapped(this)
         add(
-            collectorClass.interfaceCall(
-                addTypeConstraintsMethod, traceCollector,
-                listOf(
-                    "$inst".asValue,
-                    "$value".asValue,
-                    type.name.asValue,
-                    value.wrapped(this)
+            when {
+                useIntegerIds -> collectorClass.interfaceCall(
+                    collectorClass.getMethod(
+                        "addTypeConstraints", types.voidType,
+                        intType, intType, intType, objectType
+                    ),
+                    traceCollector,
+                    listOf(inst.id, value.id, TraceIdRegistry.idOf(type).asValue, concreteValue)
                 )
-            )
+
+                else -> collectorClass.interfaceCall(
+                    collectorClass.getMethod(
+                        "addTypeConstraints", types.voidType,
+                        stringType, stringType, stringType, objectType
+                    ),
+                    traceCollector,
+                    listOf("$inst".asValue, "$value".asValue, type.name.asValue, concreteValue)
+                )
+            }
         )
     }
 
     private fun addArrayIndexConstraints(inst: Instruction, array: Value, index: Value): List<Instruction> = buildList {
-        val addArrayIndexConstraintsMethod = collectorClass.getMethod(
-            "addArrayIndexConstraints", types.voidType,
-            stringType,
-            stringType, stringType,
-            objectType, objectType
-        )
-
         add(
-            collectorClass.interfaceCall(
-                addArrayIndexConstraintsMethod, traceCollector,
-                listOf(
-                    "$inst".asValue,
-                    "$array".asValue,
-                    "$index".asValue,
-                    array.wrapped(this),
-                    index.wrapped(this)
-                )
+            constraintCall(
+                "addArrayIndexConstraints", inst,
+                listOf(array, index),
+                listOf(array.wrapped(this), index.wrapped(this))
             )
         )
     }
 
     private fun addArrayLengthConstraints(inst: Instruction, length: Value): List<Instruction> = buildList {
-        val addArrayIndexConstraintsMethod = collectorClass.getMethod(
-            "addArrayLengthConstraints", types.voidType,
-            stringType,
-            stringType, objectType
-        )
+        add(constraintCall("addArrayLengthConstraints", inst, listOf(length), listOf(length.wrapped(this))))
+    }
+
+    /**
+     * call of the instruction handling method of the collector: in the integer id mode operands are not passed,
+     * because the collector takes them from the instruction itself
+     */
+    private fun collectorCall(
+        name: String,
+        inst: Instruction,
+        operands: List<Value>,
+        concreteValues: List<Value>
+    ): Instruction = when {
+        useIntegerIds -> collectorClass.interfaceCall(
+            collectorClass.getMethod(
+                name, types.voidType,
+                intType, *Array<Type>(concreteValues.size) { objectType }
+            ),
+            traceCollector,
+            listOf(inst.id) + concreteValues
+        )
+
+        else -> stringCollectorCall(name, inst, operands, concreteValues)
+    }
+
+    /**
+     * call of the constraint method of the collector: in the integer id mode operands are passed as ids
+     */
+    private fun constraintCall(
+        name: String,
+        inst: Instruction,
+        operands: List<Value>,
+        concreteValues: List<Value>
+    ): Instruction = when {
+        useIntegerIds -> collectorClass.interfaceCall(
+            collectorClass.getMethod(
+                name, types.voidType,
+                *Array<Type>(operands.size + 1) { intType }, *Array<Type>(concreteValues.size) { objectType }
+            ),
+            traceCollector,
+            listOf(inst.id) + operands.map { it.id } + concreteValues
+        )
+
+        else -> stringCollectorCall(name, inst, operands, concreteValues)
+    }
+
+    /**
+     * call of the primitive-specialized method of the collector (e.g. `binaryII`), which takes
+     * concrete values without boxing; null if the operands have no such method
+     */
+    private fun primitiveCollectorCall(
+        name: String,
+        inst: Instruction,
+        operands: List<Value>,
+        concreteValues: List<Value>
+    ): Instruction? {
+        if (!useIntegerIds) return null
+
+        val methodName = buildString {
+            append(name)
+            for (operand in operands) {
+                append(operand.type.primitiveTraceType?.asmDesc ?: return null)
+            }
+        }
+        if (methodName !in PRIMITIVE_CALLBACKS) return null
+
+        return collectorClass.interfaceCall(
+            collectorClass.getMethod(
+                methodName, types.voidType,
+                intType, *concreteValues.map { it.type.primitiveTraceType!! }.toTypedArray()
+            ),
+            traceCollector,
+            listOf(inst.id) + concreteValues
+        )
+    }
+
+    // boolean, byte, char and short values are ints on the JVM stack
+    private val Type.primitiveTraceType: Type?
+        get() = when (this) {
+            is BoolType, is ByteType, is CharType, is ShortType, is IntType -> intType
+            is LongType -> types.longType
+            is FloatType -> types.floatType
+            is DoubleType -> types.doubleType
+            else -> null
+        }
 
-        add(
-            collectorClass.interfaceCall(
-                addArrayIndexConstraintsMethod, traceCollector,
-                listOf(
-                    "$inst".asValue,
-                    "$length".asValue,
-                    length.wrapped(this)
-                )
-            )
-        )
-    }
+    private fun stringCollectorCall(
+        name: String,
+        inst: Instruction,
+        operands: List<Value>,
+        concreteValues: List<Value>
+    ): Instruction = collectorClass.interfaceCall(
+        collectorClass.getMethod(
+            name, types.voidType,
+            *Array<Type>(operands.size + 1) { stringType }, *Array<Type>(concreteValues.size) { objectType }
+        ),
+        traceCollector,
+        listOf("$inst".asValue) + operands.map { "$it".asValue } + concreteValues
+    )
+
+    private val Value.id: Value
+        get() = TraceIdRegistry.idOf(this).asValue
+
+    private val Method.id: Value
+        get() = TraceIdRegistry.idOf(this).asValue
 
     private fun getNewCollector(): Instruction {
         val getter = collectorProxyClass.getMethod("currentCollector", cm.type.getRefType(collectorClass))
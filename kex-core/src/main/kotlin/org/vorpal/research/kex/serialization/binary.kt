@@ -0,0 +1,198 @@
+package org.vorpal.research.kex.serialization
+
+import kotlinx.serialization.BinaryFormat
+import kotlinx.serialization.DeserializationStrategy
+import kotlinx.serialization.ExperimentalSerializationApi
+import kotlinx.serialization.PolymorphicSerializer
+import kotlinx.serialization.SerializationException
+import kotlinx.serialization.SerializationStrategy
+import kotlinx.serialization.descriptors.SerialDescriptor
+import kotlinx.serialization.encoding.AbstractDecoder
+import kotlinx.serialization.encoding.AbstractEncoder
+import kotlinx.serialization.encoding.CompositeDecoder
+import kotlinx.serialization.encoding.CompositeEncoder
+import kotlinx.serialization.modules.SerializersModule
+import org.vorpal.research.kex.state.term.Term
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+
+/**
+ * Compact binary representation of kex objects.
+ *
+ * All strings, terms, instructions and methods are interned per message:
+ * the first occurrence of an object is written in full, every subsequent
+ * occurrence is written as an index into the table of already seen objects.
+ * This removes most of the redundancy of the symbolic states, where the
+ * same terms and instructions are referenced by many clauses
+ */
+@ExperimentalSerializationApi
+class KexBinaryFormat(
+    override val serializersModule: SerializersModule
+) : BinaryFormat {
+    override fun <T> encodeToByteArray(serializer: SerializationStrategy<T>, value: T): ByteArray {
+        val output = ByteArrayOutputStream()
+        DataOutputStream(output).use {
+            BinaryKexEncoder(it, serializersModule, BinaryEncodingTables()).encodeSerializableValue(serializer, value)
+        }
+        return output.toByteArray()
+    }
+
+    override fun <T> decodeFromByteArray(deserializer: DeserializationStrategy<T>, bytes: ByteArray): T =
+        DataInputStream(ByteArrayInputStream(bytes)).use {
+            BinaryKexDecoder(it, serializersModule, BinaryDecodingTables()).decodeSerializableValue(deserializer)
+        }
+
+    internal companion object {
+        private const val INSTRUCTION_SERIAL_NAME = "Instruction"
+        private const val METHOD_SERIAL_NAME = "Method"
+        private val TERM_SERIAL_NAME = PolymorphicSerializer(Term::class).descriptor.serialName
+
+        fun isInterned(descriptor: SerialDescriptor) = when (descriptor.serialName) {
+            TERM_SERIAL_NAME, INSTRUCTION_SERIAL_NAME, METHOD_SERIAL_NAME -> true
+            else -> false
+        }
+    }
+}
+
+internal class BinaryEncodingTables {
+    val strings = hashMapOf<String, Int>()
+    val objects = hashMapOf<Any, Int>()
+}
+
+internal class BinaryDecodingTables {
+    val strings = arrayListOf<String>()
+    val objects = arrayListOf<Any?>()
+}
+
+private fun DataOutputStream.writeVarInt(value: Int) {
+    var current = value
+    while (current and 0x7F.inv() != 0) {
+        writeByte((current and 0x7F) or 0x80)
+        current = current ushr 7
+    }
+    writeByte(current)
+}
+
+private fun DataInputStream.readVarInt(): Int {
+    var result = 0
+    var shift = 0
+    while (true) {
+        val byte = readUnsignedByte()
+        result = result or ((byte and 0x7F) shl shift)
+        if (byte and 0x80 == 0) return result
+        shift += 7
+        if (shift > 28) throw SerializationException("Malformed var int")
+    }
+}
+
+@ExperimentalSerializationApi
+private class BinaryKexEncoder(
+    private val output: DataOutputStream,
+    override val serializersModule: SerializersModule,
+    private val tables: BinaryEncodingTables
+) : AbstractEncoder() {
+    override fun encodeBoolean(value: Boolean) = output.writeByte(if (value) 1 else 0)
+    override fun encodeByte(value: Byte) = output.writeByte(value.toInt())
+    override fun encodeShort(value: Short) = output.writeShort(value.toInt())
+    override fun encodeInt(value: Int) = output.writeInt(value)
+    override fun encodeLong(value: Long) = output.writeLong(value)
+    override fun encodeFloat(value: Float) = output.writeFloat(value)
+    override fun encodeDouble(value: Double) = output.writeDouble(value)
+    override fun encodeChar(value: Char) = output.writeChar(value.code)
+    override fun encodeEnum(enumDescriptor: SerialDescriptor, index: Int) = output.writeVarInt(index)
+    override fun encodeNull() = encodeBoolean(false)
+    override fun encodeNotNullMark() = encodeBoolean(true)
+
+    override fun encodeString(value: String) {
+        when (val index = tables.strings[value]) {
+            null -> {
+                output.writeVarInt(0)
+                val bytes = value.toByteArray(Charsets.UTF_8)
+                output.writeVarInt(bytes.size)
+                output.write(bytes)
+                tables.strings[value] = tables.strings.size
+            }
+
+            else -> output.writeVarInt(index + 1)
+        }
+    }
+
+    override fun beginCollection(descriptor: SerialDescriptor, collectionSize: Int): CompositeEncoder {
+        output.writeVarInt(collectionSize)
+        return this
+    }
+
+    override fun <T> encodeSerializableValue(serializer: SerializationStrategy<T>, value: T) {
+        if (value == null || !KexBinaryFormat.isInterned(serializer.descriptor)) {
+            return super.encodeSerializableValue(serializer, value)
+        }
+        when (val index = tables.objects[value]) {
+            null -> {
+                output.writeVarInt(0)
+                super.encodeSerializableValue(serializer, value)
+                tables.objects[value] = tables.objects.size
+            }
+
+            else -> output.writeVarInt(index + 1)
+        }
+    }
+}
+
+@ExperimentalSerializationApi
+private class BinaryKexDecoder(
+    private val input: DataInputStream,
+    override val serializersModule: SerializersModule,
+    private val tables: BinaryDecodingTables,
+    private var elementsCount: Int = 0
+) : AbstractDecoder() {
+    private var elementIndex = 0
+
+    override fun decodeBoolean(): Boolean = input.readByte().toInt() != 0
+    override fun decodeByte(): Byte = input.readByte()
+    override fun decodeShort(): Short = input.readShort()
+    override fun decodeInt(): Int = input.readInt()
+    override fun decodeLong(): Long = input.readLong()
+    override fun decodeFloat(): Float = input.readFloat()
+    override fun decodeDouble(): Double = input.readDouble()
+    override fun decodeChar(): Char = input.readChar()
+    override fun decodeEnum(enumDescriptor: SerialDescriptor): Int = input.readVarInt()
+    override fun decodeNotNullMark(): Boolean = decodeBoolean()
+
+    override fun decodeString(): String = when (val index = input.readVarInt()) {
+        0 -> {
+            val bytes = ByteArray(input.readVarInt())
+            input.readFully(bytes)
+            String(bytes, Charsets.UTF_8).also { tables.strings += it }
+        }
+
+        else -> tables.strings[index - 1]
+    }
+
+    override fun decodeElementIndex(descriptor: SerialDescriptor): Int {
+        if (elementIndex == elementsCount) return CompositeDecoder.DECODE_DONE
+        return elementIndex++
+    }
+
+    override fun beginStructure(descriptor: SerialDescriptor): CompositeDecoder =
+        BinaryKexDecoder(input, serializersModule, tables, descriptor.elementsCount)
+
+    override fun decodeSequentially(): Boolean = true
+
+    override fun decodeCollectionSize(descriptor: SerialDescriptor): Int =
+        input.readVarInt().also { elementsCount = it }
+
+    override fun <T> decodeSerializableValue(deserializer: DeserializationStrategy<T>): T {
+        if (!KexBinaryFormat.isInterned(deserializer.descriptor)) {
+            return super.decodeSerializableValue(deserializer)
+        }
+        return when (val index = input.readVarInt()) {
+            0 -> super.decodeSerializableValue(deserializer).also { tables.objects += it }
+            else -> {
+                @Suppress("UNCHECKED_CAST")
+                tables.objects[index - 1] as T
+            }
+        }
+    }
+}
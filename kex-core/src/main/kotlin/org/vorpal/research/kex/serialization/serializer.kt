@@ -32,6 +32,19 @@ abstract class AbstractSerializer(
     @InternalSerializationApi
     inline fun <reified T : Any> fromJson(str: String): T =
         json.decodeFromString(context.getContextual(T::class) ?: T::class.serializer(), str)
+
+    @ExperimentalSerializationApi
+    val binary by lazy { KexBinaryFormat(context) }
+
+    @ExperimentalSerializationApi
+    @InternalSerializationApi
+    inline fun <reified T : Any> toBinary(t: T): ByteArray =
+        binary.encodeToByteArray(context.getContextual(T::class) ?: T::class.serializer(), t)
+
+    @ExperimentalSerializationApi
+    @InternalSerializationApi
+    inline fun <reified T : Any> fromBinary(bytes: ByteArray): T =
+        binary.decodeFromByteArray(context.getContextual(T::class) ?: T::class.serializer(), bytes)
 }
 
 @ExperimentalSerializationApi
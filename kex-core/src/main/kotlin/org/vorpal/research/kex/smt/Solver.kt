@@ -2,6 +2,7 @@ package org.vorpal.research.kex.smt
 
 import org.vorpal.research.kex.state.PredicateQuery
 import org.vorpal.research.kex.state.PredicateState
+import org.vorpal.research.kex.state.predicate.Predicate
 import java.io.Closeable
 
 sealed class Result {
@@ -15,7 +16,13 @@ sealed class Result {
         override fun match(other: Result) = other is SatResult
     }
 
-    class UnsatResult(val message: String = "unsat") : Result() {
+    /**
+     * @param core path predicates of the checked state that form the unsat core, empty if unknown
+     */
+    class UnsatResult(
+        val message: String = "unsat",
+        val core: List<Predicate> = emptyList()
+    ) : Result() {
         override fun toString() = message
 
         override fun match(other: Result) = other is UnsatResult
@@ -45,6 +52,15 @@ interface AbstractAsyncSMTSolver : Closeable {
     suspend fun isViolatedAsync(state: PredicateState, query: PredicateState): Result
 }
 
+/**
+ * Solver that can be reused for several independent queries,
+ * [reset] should drop all the information about previous query that can affect the next one;
+ * tables that the next query validates before use may be kept
+ */
+interface ReusableSMTSolver {
+    fun reset()
+}
+
 @Suppress("unused")
 @AbstractIncrementalSolver
 interface AbstractIncrementalSMTSolver : AbstractSMTSolver, Closeable {
@@ -71,3 +87,15 @@ interface AbstractAsyncIncrementalSMTSolver : AbstractAsyncSMTSolver, Closeable
         queries: List<PredicateQuery>
     ): List<Result>
 }
+
+/**
+ * Incremental solver that keeps the state of the previous query asserted between the calls.
+ * Only the part of the new state that differs from the previously asserted one is converted and asserted,
+ * so consecutive queries with the common prefix reuse the solver state and learned clauses
+ */
+interface PersistentIncrementalSMTSolver : AbstractAsyncIncrementalSMTSolver {
+    suspend fun isSatisfiablePersistentAsync(
+        state: PredicateState,
+        queries: List<PredicateQuery>
+    ): List<Result>
+}
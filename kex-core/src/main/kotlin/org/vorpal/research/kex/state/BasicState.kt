@@ -1,14 +1,21 @@
 package org.vorpal.research.kex.state
 
+import kotlinx.collections.immutable.persistentListOf
+import kotlinx.collections.immutable.toPersistentList
 import kotlinx.serialization.Required
 import kotlinx.serialization.Serializable
 import org.vorpal.research.kex.InheritorOf
 import org.vorpal.research.kex.state.predicate.Predicate
 
+/**
+ * States that are built by the kex itself keep their predicates in a persistent vector,
+ * so adding a predicate or concatenating two states shares the structure of the original lists
+ * instead of copying them. Transformations that do not change anything return the same state
+ */
 @InheritorOf("State")
 @Serializable
 class BasicState(
-    @Required val predicates: List<Predicate> = listOf()
+    @Required val predicates: List<Predicate> = persistentListOf()
 ) : PredicateState(), Iterable<Predicate> {
 
     override val size: Int
@@ -20,10 +27,23 @@ class BasicState(
         append(")")
     }
 
-    override fun map(transform: (Predicate) -> Predicate) = BasicState(predicates.map(transform))
+    override fun map(transform: (Predicate) -> Predicate): BasicState = mapNotNull(transform)
     override fun fmap(transform: (PredicateState) -> PredicateState) = transform(this)
-    override fun mapNotNull(transform: (Predicate) -> Predicate?) = BasicState(predicates.mapNotNull(transform))
-    override fun filter(predicate: (Predicate) -> Boolean) = BasicState(predicates.filter(predicate))
+
+    override fun mapNotNull(transform: (Predicate) -> Predicate?): BasicState {
+        var result: MutableList<Predicate>? = null
+        for ((index, predicate) in predicates.withIndex()) {
+            val transformed = transform(predicate)
+            if (result == null) {
+                if (transformed === predicate) continue
+                result = predicates.subList(0, index).toMutableList()
+            }
+            if (transformed != null) result += transformed
+        }
+        return result?.let { BasicState(it.toPersistentList()) } ?: this
+    }
+
+    override fun filter(predicate: (Predicate) -> Boolean): BasicState = mapNotNull { if (predicate(it)) it else null }
     override fun reverse(): PredicateState = BasicState(predicates.reversed())
 
     override fun hashCode() = predicates.hashCode()
@@ -34,7 +54,13 @@ class BasicState(
         return this.predicates == other.predicates
     }
 
-    override fun addPredicate(predicate: Predicate) = BasicState(predicates + predicate)
+    override fun addPredicate(predicate: Predicate) = BasicState(predicates.toPersistentList().add(predicate))
+
+    operator fun plus(other: BasicState): BasicState = when {
+        other.predicates.isEmpty() -> this
+        predicates.isEmpty() -> other
+        else -> BasicState(predicates.toPersistentList().addAll(other.predicates))
+    }
 
     override fun sliceOn(state: PredicateState): PredicateState? = when (state) {
         is BasicState -> when (predicates.take(state.size)) {
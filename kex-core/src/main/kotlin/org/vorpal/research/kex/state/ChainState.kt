@@ -16,7 +16,15 @@ class ChainState(val base: PredicateState, val curr: PredicateState) : Predicate
         append(curr.print())
     }
 
-    override fun fmap(transform: (PredicateState) -> PredicateState) = ChainState(transform(base), transform(curr))
+    override fun fmap(transform: (PredicateState) -> PredicateState): PredicateState {
+        val newBase = transform(base)
+        val newCurr = transform(curr)
+        return when {
+            newBase === base && newCurr === curr -> this
+            else -> ChainState(newBase, newCurr)
+        }
+    }
+
     override fun reverse() = ChainState(curr.reverse(), base.reverse())
 
     override fun hashCode() = 31 * base.hashCode() + curr.hashCode()
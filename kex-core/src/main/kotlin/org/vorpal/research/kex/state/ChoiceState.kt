@@ -1,5 +1,6 @@
 package org.vorpal.research.kex.state
 
+import kotlinx.collections.immutable.persistentListOf
 import kotlinx.serialization.Serializable
 import org.vorpal.research.kex.InheritorOf
 import org.vorpal.research.kex.state.predicate.Predicate
@@ -16,8 +17,13 @@ class ChoiceState(val choices: List<PredicateState>) : PredicateState(), Iterabl
         append(" END)")
     }
 
-    override fun fmap(transform: (PredicateState) -> PredicateState): PredicateState =
-        ChoiceState(choices.map { transform(it) })
+    override fun fmap(transform: (PredicateState) -> PredicateState): PredicateState {
+        val newChoices = choices.map { transform(it) }
+        return when {
+            newChoices.indices.all { newChoices[it] === choices[it] } -> this
+            else -> ChoiceState(newChoices)
+        }
+    }
 
     override fun reverse() = ChoiceState(choices.map { it.reverse() })
 
@@ -30,7 +36,7 @@ class ChoiceState(val choices: List<PredicateState>) : PredicateState(), Iterabl
     }
 
     override fun addPredicate(predicate: Predicate) =
-        ChainState(ChoiceState(choices), BasicState(arrayListOf(predicate)))
+        ChainState(ChoiceState(choices), BasicState(persistentListOf(predicate)))
 
     override fun sliceOn(state: PredicateState): PredicateState? {
         if (this == state) return emptyState()
@@ -26,7 +26,7 @@ fun Predicate.wrap() = emptyState() + this
 fun chain(base: PredicateState, curr: PredicateState): PredicateState = when {
     base.isEmpty -> curr
     curr.isEmpty -> base
-    base is BasicState && curr is BasicState -> BasicState(base.predicates + curr.predicates)
+    base is BasicState && curr is BasicState -> base + curr
     else -> ChainState(base, curr)
 }
 
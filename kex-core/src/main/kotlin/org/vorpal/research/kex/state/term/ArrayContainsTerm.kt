@@ -12,7 +12,7 @@ class ArrayContainsTerm(
     val value: Term
 ) : Term() {
     override val type = KexBool
-    override val name = "$value in $array"
+    override val name by lazy { "$value in $array" }
     override val subTerms by lazy { listOf(array, value) }
 
     override fun <T : Transformer<T>> accept(t: Transformer<T>): Term {
@@ -8,7 +8,7 @@ import org.vorpal.research.kex.state.transformer.Transformer
 @InheritorOf("Term")
 @Serializable
 class ArrayIndexTerm(override val type: KexType, val arrayRef: Term, val index: Term) : Term() {
-    override val name = "$arrayRef[$index]"
+    override val name by lazy { "$arrayRef[$index]" }
     override val subTerms by lazy { listOf(arrayRef, index) }
 
     override fun <T : Transformer<T>> accept(t: Transformer<T>): Term {
@@ -9,7 +9,7 @@ import org.vorpal.research.kex.state.transformer.Transformer
 @Serializable
 class ArrayLengthTerm(val arrayRef: Term) : Term() {
     override val type = KexInt
-    override val name = "$arrayRef.length"
+    override val name by lazy { "$arrayRef.length" }
     override val subTerms by lazy { listOf(arrayRef) }
 
     override fun <T : Transformer<T>> accept(t: Transformer<T>): Term =
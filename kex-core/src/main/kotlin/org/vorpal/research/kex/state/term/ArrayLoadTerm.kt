@@ -8,7 +8,7 @@ import org.vorpal.research.kex.state.transformer.Transformer
 @InheritorOf("Term")
 @Serializable
 class ArrayLoadTerm(override val type: KexType, val arrayRef: Term) : Term() {
-    override val name = "*($arrayRef)"
+    override val name by lazy { "*($arrayRef)" }
     override val subTerms by lazy { listOf(arrayRef) }
 
     override fun <T : Transformer<T>> accept(t: Transformer<T>): Term =
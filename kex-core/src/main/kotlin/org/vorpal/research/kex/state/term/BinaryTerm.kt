@@ -15,7 +15,7 @@ class BinaryTerm(
     val lhv: Term,
     val rhv: Term
 ) : Term() {
-    override val name = "$lhv $opcode $rhv"
+    override val name by lazy { "$lhv $opcode $rhv" }
     override val subTerms by lazy { listOf(lhv, rhv) }
 
     override fun <T : Transformer<T>> accept(t: Transformer<T>): Term {
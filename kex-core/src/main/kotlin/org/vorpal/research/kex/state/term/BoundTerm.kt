@@ -8,7 +8,7 @@ import org.vorpal.research.kex.state.transformer.Transformer
 @InheritorOf("Term")
 @Serializable
 class BoundTerm(override val type: KexType, val ptr: Term) : Term() {
-    override val name = "bound($ptr)"
+    override val name by lazy { "bound($ptr)" }
     override val subTerms by lazy { listOf(ptr) }
 
     override fun <T : Transformer<T>> accept(t: Transformer<T>): Term =
@@ -15,7 +15,7 @@ class CallTerm(
     @Contextual val method: Method,
     val arguments: List<Term>
 ) : Term() {
-    override val name = "$owner.${method.name}(${arguments.joinToString()})"
+    override val name by lazy { "$owner.${method.name}(${arguments.joinToString()})" }
     override val subTerms by lazy { listOf(owner) + arguments }
 
     val isStatic: Boolean
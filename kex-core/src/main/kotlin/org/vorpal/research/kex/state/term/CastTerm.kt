@@ -8,7 +8,7 @@ import org.vorpal.research.kex.state.transformer.Transformer
 @InheritorOf("Term")
 @Serializable
 class CastTerm(override val type: KexType, val operand: Term) : Term() {
-    override val name = "($operand as $type)"
+    override val name by lazy { "($operand as $type)" }
     override val subTerms by lazy { listOf(operand) }
 
 
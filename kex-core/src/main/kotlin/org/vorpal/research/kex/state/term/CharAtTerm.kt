@@ -12,7 +12,7 @@ class CharAtTerm(
     val index: Term
 ) : Term() {
     override val type = KexChar
-    override val name = "$string[$index]"
+    override val name by lazy { "$string[$index]" }
     override val subTerms by lazy { listOf(string, index) }
 
     override fun <T : Transformer<T>> accept(t: Transformer<T>): Term {
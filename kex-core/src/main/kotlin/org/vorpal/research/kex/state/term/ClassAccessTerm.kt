@@ -11,7 +11,7 @@ class ClassAccessTerm(
     override val type: KexType,
     val operand: Term
 ) : Term() {
-    override val name = "${operand}.class"
+    override val name by lazy { "${operand}.class" }
     override val subTerms by lazy { listOf(operand) }
 
     override fun <T : Transformer<T>> accept(t: Transformer<T>): Term =
@@ -16,7 +16,7 @@ class CmpTerm(
     val rhv: Term
 ) : Term() {
 
-    override val name = "$lhv $opcode $rhv"
+    override val name by lazy { "$lhv $opcode $rhv" }
     override val subTerms by lazy { listOf(lhv, rhv) }
 
     override fun <T : Transformer<T>> accept(t: Transformer<T>): Term {
@@ -12,7 +12,7 @@ class ConcatTerm(
     val lhv: Term,
     val rhv: Term
 ) : Term() {
-    override val name = "$lhv ++ $rhv"
+    override val name by lazy { "$lhv ++ $rhv" }
     override val subTerms by lazy { listOf(lhv, rhv) }
 
     override fun <T : Transformer<T>> accept(t: Transformer<T>): Term {
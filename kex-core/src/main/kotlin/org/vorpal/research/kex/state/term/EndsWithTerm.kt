@@ -12,7 +12,7 @@ class EndsWithTerm(
     val suffix: Term
 ) : Term() {
     override val type = KexBool
-    override val name = "$string.endsWith($suffix)"
+    override val name by lazy { "$string.endsWith($suffix)" }
     override val subTerms by lazy { listOf(string, suffix) }
 
     override fun <T : Transformer<T>> accept(t: Transformer<T>): Term {
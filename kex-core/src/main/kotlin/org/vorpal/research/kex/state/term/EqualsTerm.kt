@@ -12,7 +12,7 @@ class EqualsTerm(
     val lhv: Term,
     val rhv: Term
 ) : Term() {
-    override val name = "${lhv}.equals($rhv)"
+    override val name by lazy { "${lhv}.equals($rhv)" }
     override val type: KexType = KexBool
     override val subTerms: List<Term> by lazy {
         listOf(lhv, rhv)
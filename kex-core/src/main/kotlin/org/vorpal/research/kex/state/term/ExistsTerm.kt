@@ -13,7 +13,7 @@ class ExistsTerm(
     val body: Term
 ) : Term() {
     override val type = KexBool
-    override val name = "exists($start, $end, $body)"
+    override val name by lazy { "exists($start, $end, $body)" }
     override val subTerms by lazy { listOf(start, end, body) }
 
     override fun <T : Transformer<T>> accept(t: Transformer<T>): Term {
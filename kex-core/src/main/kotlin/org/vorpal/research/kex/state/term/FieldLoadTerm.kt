@@ -11,7 +11,7 @@ import org.vorpal.research.kthelper.logging.log
 @InheritorOf("Term")
 @Serializable
 class FieldLoadTerm(override val type: KexType, val field: Term) : Term() {
-    override val name = "*($field)"
+    override val name by lazy { "*($field)" }
     override val subTerms by lazy { listOf(this.field) }
 
     val isStatic
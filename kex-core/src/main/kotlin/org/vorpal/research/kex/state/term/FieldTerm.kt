@@ -16,7 +16,7 @@ class FieldTerm(override val type: KexType, val owner: Term, val fieldName: Stri
         ktassert(owner.type is KexClass)
     }
 
-    override val name = "$owner.$fieldName"
+    override val name by lazy { "$owner.$fieldName" }
     override val subTerms by lazy { listOf(owner) }
 
     val isStatic: Boolean
@@ -32,4 +32,11 @@ class FieldTerm(override val type: KexType, val owner: Term, val fieldName: Stri
             else -> term { termFactory.getField(type, tOwner, fieldName) }
         }
 
+    override fun hashCode() = 31 * super.hashCode() + fieldName.hashCode()
+
+    override fun equals(other: Any?): Boolean {
+        if (other?.javaClass != this.javaClass) return false
+        other as FieldTerm
+        return super.equals(other) && this.fieldName == other.fieldName
+    }
 }
@@ -13,7 +13,7 @@ class ForAllTerm(
     val body: Term
 ) : Term() {
     override val type = KexBool
-    override val name = "forAll($start, $end, $body)"
+    override val name by lazy { "forAll($start, $end, $body)" }
     override val subTerms by lazy { listOf(start, end, body) }
 
     override fun <T : Transformer<T>> accept(t: Transformer<T>): Term {
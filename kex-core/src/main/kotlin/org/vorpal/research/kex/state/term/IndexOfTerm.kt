@@ -13,7 +13,7 @@ class IndexOfTerm(
     val offset: Term
 ) : Term() {
     override val type = KexInt
-    override val name = "${string}.indexOf($substring, $offset)"
+    override val name by lazy { "${string}.indexOf($substring, $offset)" }
     override val subTerms by lazy { listOf(string, substring, offset) }
 
     override fun <T : Transformer<T>> accept(t: Transformer<T>): Term {
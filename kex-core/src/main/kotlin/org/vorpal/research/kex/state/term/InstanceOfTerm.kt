@@ -9,7 +9,7 @@ import org.vorpal.research.kex.state.transformer.Transformer
 @InheritorOf("Term")
 @Serializable
 class InstanceOfTerm(val checkedType: KexType, val operand: Term) : Term() {
-    override val name = "$operand instanceof $checkedType"
+    override val name by lazy { "$operand instanceof $checkedType" }
     override val type: KexType = KexBool
     override val subTerms by lazy { listOf(operand) }
 
@@ -13,7 +13,7 @@ class IteTerm(
     val trueValue: Term,
     val falseValue: Term
 ) : Term() {
-    override val name = "($cond) ? ($trueValue) : ($falseValue)"
+    override val name by lazy { "($cond) ? ($trueValue) : ($falseValue)" }
     override val subTerms by lazy { listOf(cond, trueValue, falseValue) }
 
     override fun <T : Transformer<T>> accept(t: Transformer<T>): Term {
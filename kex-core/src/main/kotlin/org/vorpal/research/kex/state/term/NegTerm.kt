@@ -8,7 +8,7 @@ import org.vorpal.research.kex.state.transformer.Transformer
 @InheritorOf("Term")
 @Serializable
 class NegTerm(override val type: KexType, val operand: Term) : Term() {
-    override val name = "-$operand"
+    override val name by lazy { "-$operand" }
     override val subTerms by lazy { listOf(operand) }
 
     override fun <T : Transformer<T>> accept(t: Transformer<T>): Term =
@@ -17,4 +17,12 @@ class ReturnValueTerm(
     override val subTerms by lazy { listOf<Term>() }
 
     override fun <T : Transformer<T>> accept(t: Transformer<T>) = this
+
+    override fun hashCode() = 31 * super.hashCode() + method.hashCode()
+    override fun equals(other: Any?): Boolean {
+        if (this === other) return true
+        if (this.javaClass != other?.javaClass) return false
+        other as ReturnValueTerm
+        return this.method == other.method && super.equals(other)
+    }
 }
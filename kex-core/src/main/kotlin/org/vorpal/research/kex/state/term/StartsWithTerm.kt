@@ -12,7 +12,7 @@ class StartsWithTerm(
     val prefix: Term
 ) : Term() {
     override val type = KexBool
-    override val name = "$string.startsWith($prefix)"
+    override val name by lazy { "$string.startsWith($prefix)" }
     override val subTerms by lazy { listOf(string, prefix) }
 
     override fun <T : Transformer<T>> accept(t: Transformer<T>): Term {
@@ -12,7 +12,7 @@ class StringContainsTerm(
     val substring: Term
 ) : Term() {
     override val type = KexBool
-    override val name = "$substring in $string"
+    override val name by lazy { "$substring in $string" }
     override val subTerms by lazy { listOf(string, substring) }
 
     override fun <T : Transformer<T>> accept(t: Transformer<T>): Term {
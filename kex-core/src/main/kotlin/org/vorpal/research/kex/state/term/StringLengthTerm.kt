@@ -11,7 +11,7 @@ class StringLengthTerm(
     val string: Term
 ) : Term() {
     override val type = KexInt
-    override val name = "$string.length"
+    override val name by lazy { "$string.length" }
     override val subTerms by lazy { listOf(string) }
 
     override fun <T : Transformer<T>> accept(t: Transformer<T>): Term =
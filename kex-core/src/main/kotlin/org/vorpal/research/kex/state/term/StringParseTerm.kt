@@ -12,7 +12,7 @@ class StringParseTerm(
     override val type: KexType,
     val string: Term,
 ) : Term() {
-    override val name = "parse${type.toString().kapitalize()}($string)"
+    override val name by lazy { "parse${type.toString().kapitalize()}($string)" }
     override val subTerms by lazy { listOf(string) }
 
     override fun <T : Transformer<T>> accept(t: Transformer<T>): Term =
@@ -13,7 +13,7 @@ class SubstringTerm(
     val offset: Term,
     val length: Term
 ) : Term() {
-    override val name = "${string}.substring($offset, $length)"
+    override val name by lazy { "${string}.substring($offset, $length)" }
     override val subTerms by lazy { listOf(string, offset, length) }
 
     override fun <T : Transformer<T>> accept(t: Transformer<T>): Term {
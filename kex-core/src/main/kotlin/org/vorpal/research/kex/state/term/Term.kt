@@ -1,6 +1,7 @@
 package org.vorpal.research.kex.state.term
 
 import kotlinx.serialization.Serializable
+import kotlinx.serialization.Transient
 import org.vorpal.research.kex.BaseType
 import org.vorpal.research.kex.InheritanceInfo
 import org.vorpal.research.kex.ktype.KexType
@@ -18,7 +19,20 @@ abstract class Term : InheritanceTypeInfo {
     abstract val subTerms: List<Term>
     abstract val type: KexType
 
+    /**
+     * id of the term in the hash-consing table of [TermFactory]. Structurally equal terms created
+     * by the factory are represented by a single instance, so two different interned terms are never equal.
+     * Terms that were created directly (e.g., deserialized ones) have no id and are compared structurally
+     */
+    @Transient
+    var id: Int = NO_ID
+        internal set
+
+    @Transient
+    private var hash = 0
+
     companion object {
+        const val NO_ID = -1
 
         val terms = run {
             val loader = Thread.currentThread().contextClassLoader
@@ -39,18 +53,33 @@ abstract class Term : InheritanceTypeInfo {
 
     override fun toString() = name
 
+    val isInterned get() = id != NO_ID
+
+    // names of the composite terms are built from the names of their subterms, so they
+    // are rendered only for printing, and the terms are identified by their subterms instead
     override fun hashCode(): Int {
-        var result = name.hashCode()
-        result = 31 * result + subTerms.hashCode()
-        result = 31 * result + type.hashCode()
-        return result
+        if (hash == 0) {
+            var result = javaClass.name.hashCode()
+            result = 31 * result + when {
+                subTerms.isEmpty() -> name.hashCode()
+                else -> subTerms.hashCode()
+            }
+            result = 31 * result + type.hashCode()
+            hash = result
+        }
+        return hash
     }
 
     override fun equals(other: Any?): Boolean {
         if (this === other) return true
         if (other?.javaClass != this.javaClass) return false
         other as Term
-        return this.name == other.name && this.type == other.type && this.subTerms == other.subTerms
+        if (this.isInterned && other.isInterned) return false
+        if (this.hashCode() != other.hashCode()) return false
+        return this.type == other.type && when {
+            subTerms.isEmpty() -> other.subTerms.isEmpty() && this.name == other.name
+            else -> this.subTerms == other.subTerms
+        }
     }
 
     override val inheritors get() = terms
@@ -47,7 +47,7 @@ import org.vorpal.research.kthelper.logging.log
 object TermFactory {
     fun getThis(type: KexType) = getValue(type, "this")
     fun getArgument(argument: Argument) = getArgument(argument.type.kexType, argument.index)
-    fun getArgument(type: KexType, index: Int) = ArgumentTerm(type, index)
+    fun getArgument(type: KexType, index: Int) = intern(ArgumentTerm(type, index))
 
     fun getConstant(const: Constant) = when (const) {
         is BoolConstant -> getBool(const)
@@ -76,38 +76,38 @@ object TermFactory {
 
     fun getTrue() = getBool(true)
     fun getFalse() = getBool(false)
-    fun getBool(value: Boolean) = ConstBoolTerm(value)
+    fun getBool(value: Boolean) = intern(ConstBoolTerm(value))
     fun getBool(const: BoolConstant) = getBool(const.value)
-    fun getByte(value: Byte) = ConstByteTerm(value)
+    fun getByte(value: Byte) = intern(ConstByteTerm(value))
     fun getByte(const: ByteConstant) = getByte(const.value)
-    fun getShort(value: Short) = ConstShortTerm(value)
+    fun getShort(value: Short) = intern(ConstShortTerm(value))
     fun getShort(const: ShortConstant) = getShort(const.value)
-    fun getChar(value: Char) = ConstCharTerm(value)
+    fun getChar(value: Char) = intern(ConstCharTerm(value))
     fun getChar(const: CharConstant) = getChar(const.value)
-    fun getInt(value: Int) = ConstIntTerm(value)
+    fun getInt(value: Int) = intern(ConstIntTerm(value))
     fun getInt(const: IntConstant) = getInt(const.value)
-    fun getLong(value: Long) = ConstLongTerm(value)
+    fun getLong(value: Long) = intern(ConstLongTerm(value))
     fun getLong(const: LongConstant) = getLong(const.value)
-    fun getFloat(value: Float) = ConstFloatTerm(value)
+    fun getFloat(value: Float) = intern(ConstFloatTerm(value))
     fun getFloat(const: FloatConstant) = getFloat(const.value)
-    fun getDouble(value: Double) = ConstDoubleTerm(value)
+    fun getDouble(value: Double) = intern(ConstDoubleTerm(value))
     fun getDouble(const: DoubleConstant) = getDouble(const.value)
-    fun getString(type: KexType, value: String) = ConstStringTerm(type, value)
-    fun getString(value: String) = ConstStringTerm(KexString(), value)
+    fun getString(type: KexType, value: String) = intern(ConstStringTerm(type, value))
+    fun getString(value: String) = intern(ConstStringTerm(KexString(), value))
     fun getString(const: StringConstant) = getString(const.value)
-    fun getNull() = NullTerm()
+    fun getNull() = intern(NullTerm())
     fun getClass(klass: Class) = getClass(KexJavaClass(), klass.kexType)
-    fun getClass(type: KexType, constantType: KexType) = ConstClassTerm(type, constantType)
-    fun getClass(const: ClassConstant) = ConstClassTerm(const.type.kexType, const.constantType.kexType)
+    fun getClass(type: KexType, constantType: KexType) = intern(ConstClassTerm(type, constantType))
+    fun getClass(const: ClassConstant) = intern(ConstClassTerm(const.type.kexType, const.constantType.kexType))
     fun getStaticRef(klass: Class) = getStaticRef(klass.kexType)
-    fun getStaticRef(klass: KexClass) = StaticClassRefTerm(klass)
+    fun getStaticRef(klass: KexClass) = intern(StaticClassRefTerm(klass))
 
     fun getUnaryTerm(operand: Term, opcode: UnaryOpcode) = when (opcode) {
         UnaryOpcode.NEG -> getNegTerm(operand)
         UnaryOpcode.LENGTH -> getArrayLength(operand)
     }
 
-    fun getArrayLength(arrayRef: Term) = ArrayLengthTerm(arrayRef)
+    fun getArrayLength(arrayRef: Term) = intern(ArrayLengthTerm(arrayRef))
 
     fun getArrayIndex(arrayRef: Term, index: Term): Term {
         val arrayType = arrayRef.type as? KexArray
@@ -115,10 +115,10 @@ object TermFactory {
         return getArrayIndex(KexReference(arrayType.element), arrayRef, index)
     }
 
-    fun getArrayIndex(type: KexType, arrayRef: Term, index: Term) = ArrayIndexTerm(type, arrayRef, index)
+    fun getArrayIndex(type: KexType, arrayRef: Term, index: Term) = intern(ArrayIndexTerm(type, arrayRef, index))
 
     fun getNegTerm(operand: Term) = getNegTerm(operand.type, operand)
-    fun getNegTerm(type: KexType, operand: Term) = NegTerm(type, operand)
+    fun getNegTerm(type: KexType, operand: Term) = intern(NegTerm(type, operand))
 
     fun getArrayLoad(arrayRef: Term): Term {
         val arrayType = arrayRef.type as? KexReference
@@ -126,31 +126,32 @@ object TermFactory {
         return getArrayLoad(arrayType.reference, arrayRef)
     }
 
-    fun getArrayLoad(type: KexType, arrayRef: Term) = ArrayLoadTerm(type, arrayRef)
+    fun getArrayLoad(type: KexType, arrayRef: Term) = intern(ArrayLoadTerm(type, arrayRef))
 
-    fun getFieldLoad(type: KexType, field: Term) = FieldLoadTerm(type, field)
+    fun getFieldLoad(type: KexType, field: Term) = intern(FieldLoadTerm(type, field))
 
     fun getBinary(tf: TypeFactory, opcode: BinaryOpcode, lhv: Term, rhv: Term): Term {
         val merged = mergeTypes(tf, setOf(lhv.type, rhv.type))
         return getBinary(merged, opcode, lhv, rhv)
     }
 
-    fun getBinary(type: KexType, opcode: BinaryOpcode, lhv: Term, rhv: Term) = BinaryTerm(type, opcode, lhv, rhv)
+    fun getBinary(type: KexType, opcode: BinaryOpcode, lhv: Term, rhv: Term) =
+        intern(BinaryTerm(type, opcode, lhv, rhv))
 
     fun getBound(ptr: Term) = getBound(KexInt, ptr)
-    fun getBound(type: KexType, ptr: Term) = BoundTerm(type, ptr)
+    fun getBound(type: KexType, ptr: Term) = intern(BoundTerm(type, ptr))
 
     fun getCall(method: Method, arguments: List<Term>) = getCall(method.returnType.kexType, method, arguments)
     fun getCall(method: Method, objectRef: Term, arguments: List<Term>) =
         getCall(method.returnType.kexType, objectRef, method, arguments)
 
     fun getCall(type: KexType, method: Method, arguments: List<Term>) =
-        CallTerm(type, getStaticRef(method.klass), method, arguments)
+        intern(CallTerm(type, getStaticRef(method.klass), method, arguments))
 
     fun getCall(type: KexType, objectRef: Term, method: Method, arguments: List<Term>) =
-        CallTerm(type, objectRef, method, arguments)
+        intern(CallTerm(type, objectRef, method, arguments))
 
-    fun getCast(type: KexType, operand: Term) = CastTerm(type, operand)
+    fun getCast(type: KexType, operand: Term) = intern(CastTerm(type, operand))
     fun getCmp(opcode: CmpOpcode, lhv: Term, rhv: Term): Term {
         val resType = when (opcode) {
             CmpOpcode.CMPG -> KexInt
@@ -161,25 +162,25 @@ object TermFactory {
     }
 
     fun getConcat(lhv: Term, rhv: Term): Term = getConcat(KexString(), lhv, rhv)
-    fun getConcat(type: KexType, lhv: Term, rhv: Term): Term = ConcatTerm(type, lhv, rhv)
+    fun getConcat(type: KexType, lhv: Term, rhv: Term): Term = intern(ConcatTerm(type, lhv, rhv))
 
-    fun getArrayContains(arrayRef: Term, value: Term): Term = ArrayContainsTerm(arrayRef, value)
+    fun getArrayContains(arrayRef: Term, value: Term): Term = intern(ArrayContainsTerm(arrayRef, value))
 
     fun getEquals(lhv: Term, rhv: Term): Term {
         ktassert(lhv.type is KexPointer) { log.error("Non-pointer type in equals") }
         ktassert(rhv.type is KexPointer) { log.error("Non-pointer type in equals") }
-        return EqualsTerm(lhv, rhv)
+        return intern(EqualsTerm(lhv, rhv))
     }
 
-    fun getCmp(type: KexType, opcode: CmpOpcode, lhv: Term, rhv: Term) = CmpTerm(type, opcode, lhv, rhv)
+    fun getCmp(type: KexType, opcode: CmpOpcode, lhv: Term, rhv: Term) = intern(CmpTerm(type, opcode, lhv, rhv))
 
-    fun getField(type: KexType, owner: Term, name: String) = FieldTerm(type, owner, name)
-    fun getField(type: KexType, classType: Class, name: String) = FieldTerm(type, getClass(classType), name)
+    fun getField(type: KexType, owner: Term, name: String) = intern(FieldTerm(type, owner, name))
+    fun getField(type: KexType, classType: Class, name: String) = intern(FieldTerm(type, getClass(classType), name))
 
-    fun getInstanceOf(checkedType: KexType, operand: Term) = InstanceOfTerm(checkedType, operand)
+    fun getInstanceOf(checkedType: KexType, operand: Term) = intern(InstanceOfTerm(checkedType, operand))
 
     fun getReturn(method: Method) = getReturn(method.returnType.kexType, method)
-    fun getReturn(type: KexType, method: Method) = ReturnValueTerm(type, method)
+    fun getReturn(type: KexType, method: Method) = intern(ReturnValueTerm(type, method))
 
     fun getValue(value: Value) = when (value) {
         is Argument -> getArgument(value)
@@ -188,47 +189,53 @@ object TermFactory {
         else -> getValue(value.type.kexType, value.toString())
     }
 
-    fun getValue(type: KexType, name: String) = ValueTerm(type, name)
+    fun getValue(type: KexType, name: String) = intern(ValueTerm(type, name))
 
     fun getUndef(type: KexType) = UndefTerm(type)
 
-    fun getStringLength(string: Term) = StringLengthTerm(string)
+    fun getStringLength(string: Term) = intern(StringLengthTerm(string))
     fun getSubstring(string: Term, offset: Term, length: Term) = getSubstring(KexString(), string, offset, length)
     fun getSubstring(type: KexType, string: Term, offset: Term, length: Term) =
-        SubstringTerm(type, string, offset, length)
+        intern(SubstringTerm(type, string, offset, length))
 
-    fun getIndexOf(string: Term, substring: Term, offset: Term) = IndexOfTerm(string, substring, offset)
-    fun getCharAt(string: Term, index: Term) = CharAtTerm(string, index)
-    fun getStringContains(string: Term, substring: Term): Term = StringContainsTerm(string, substring)
-    fun getFromString(string: Term, type: KexType): Term = StringParseTerm(type, string)
+    fun getIndexOf(string: Term, substring: Term, offset: Term) = intern(IndexOfTerm(string, substring, offset))
+    fun getCharAt(string: Term, index: Term) = intern(CharAtTerm(string, index))
+    fun getStringContains(string: Term, substring: Term): Term = intern(StringContainsTerm(string, substring))
+    fun getFromString(string: Term, type: KexType): Term = intern(StringParseTerm(type, string))
     fun getToString(value: Term): Term = getToString(KexString(), value)
-    fun getToString(type: KexType, value: Term): Term = ToStringTerm(type, value)
-    fun getStartsWith(string: Term, prefix: Term): Term = StartsWithTerm(string, prefix)
-    fun getEndsWith(string: Term, suffix: Term): Term = EndsWithTerm(string, suffix)
+    fun getToString(type: KexType, value: Term): Term = intern(ToStringTerm(type, value))
+    fun getStartsWith(string: Term, prefix: Term): Term = intern(StartsWithTerm(string, prefix))
+    fun getEndsWith(string: Term, suffix: Term): Term = intern(EndsWithTerm(string, suffix))
 
-    fun getLambda(type: KexType, params: List<Term>, body: Term) = LambdaTerm(type, params, body)
+    fun getLambda(type: KexType, params: List<Term>, body: Term) = intern(LambdaTerm(type, params, body))
 
     fun getForAll(
         start: Term,
         end: Term,
         body: Term
-    ) = ForAllTerm(start, end, body)
+    ) = intern(ForAllTerm(start, end, body))
 
     fun getExists(
         start: Term,
         end: Term,
         body: Term
-    ) = ExistsTerm(start, end, body)
+    ) = intern(ExistsTerm(start, end, body))
 
     fun getIte(
         type: KexType,
         cond: Term,
         trueValue: Term,
         falseValue: Term
-    ) = IteTerm(type, cond, trueValue, falseValue)
+    ) = intern(IteTerm(type, cond, trueValue, falseValue))
 
     fun getClassAccess(operand: Term) = getClassAccess(KexJavaClass(), operand)
-    fun getClassAccess(type: KexType, operand: Term) = ClassAccessTerm(type, operand)
+    fun getClassAccess(type: KexType, operand: Term) = intern(ClassAccessTerm(type, operand))
+
+    /**
+     * @return the existing instance of a term structurally equal to [term], or [term] itself
+     * if it is the first one. Undefined terms are never interned, as each of them is unique
+     */
+    fun <T : Term> intern(term: T): T = TermTable.intern(term)
 }
 
 @Suppress("FunctionName")
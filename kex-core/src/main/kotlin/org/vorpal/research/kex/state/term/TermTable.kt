@@ -0,0 +1,33 @@
+package org.vorpal.research.kex.state.term
+
+import java.lang.ref.WeakReference
+import java.util.WeakHashMap
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Hash-consing table of the terms created by [TermFactory].
+ *
+ * Table keeps only weak references, so the terms that are not used anymore are collected as usual.
+ * It is split into independently synchronized stripes, because the terms are created
+ * concurrently by the analyses of different methods.
+ * Ids wrap around to zero instead of overflowing into [Term.NO_ID], equality of the terms
+ * does not depend on the uniqueness of the ids
+ */
+internal object TermTable {
+    private const val NUMBER_OF_STRIPES = 64
+
+    private val stripes = Array(NUMBER_OF_STRIPES) { WeakHashMap<Term, WeakReference<Term>>() }
+    private val nextId = AtomicInteger(0)
+
+    @Suppress("UNCHECKED_CAST")
+    fun <T : Term> intern(term: T): T {
+        if (term.isInterned) return term
+        val stripe = stripes[Math.floorMod(term.hashCode(), NUMBER_OF_STRIPES)]
+        synchronized(stripe) {
+            stripe[term]?.get()?.let { return it as T }
+            term.id = nextId.getAndUpdate { if (it == Int.MAX_VALUE) 0 else it + 1 }
+            stripe[term] = WeakReference(term)
+            return term
+        }
+    }
+}
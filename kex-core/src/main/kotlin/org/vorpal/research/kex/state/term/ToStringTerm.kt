@@ -11,7 +11,7 @@ class ToStringTerm(
     override val type: KexType,
     val value: Term
 ) : Term() {
-    override val name = "${value.type}.toString($value)"
+    override val name by lazy { "${value.type}.toString($value)" }
     override val subTerms by lazy { listOf(value) }
 
     override fun <T : Transformer<T>> accept(t: Transformer<T>): Term =
@@ -11,7 +11,7 @@ import org.vorpal.research.kfg.ClassManager
 import org.vorpal.research.kfg.classClass
 import org.vorpal.research.kfg.objectClass
 
-class ClassAdapter(val cm: ClassManager) : Transformer<ClassAdapter>, IncrementalTransformer {
+class ClassAdapter(val cm: ClassManager) : LocalTransformer<ClassAdapter> {
     private val getClassMethod = cm.objectClass.getMethod("getClass", cm.classClass.asType)
 
     override fun transformCallPredicate(predicate: CallPredicate): Predicate {
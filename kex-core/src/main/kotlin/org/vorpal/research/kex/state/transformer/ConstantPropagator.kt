@@ -57,7 +57,7 @@ import org.vorpal.research.kthelper.ushr
 import org.vorpal.research.kthelper.xor
 import kotlin.math.abs
 
-object ConstantPropagator : Transformer<ConstantPropagator>, IncrementalTransformer {
+object ConstantPropagator : LocalTransformer<ConstantPropagator> {
     private const val epsilon = 1e-5
 
     infix fun Double.eq(other: Double) = abs(this - other) < epsilon
@@ -169,7 +169,7 @@ object ConstantPropagator : Transformer<ConstantPropagator>, IncrementalTransfor
         return term { const(lhv + rhv) }
     }
 
-    override fun transformIndexOf(term: IndexOfTerm): Term {
+    override fun transformIndexOfTerm(term: IndexOfTerm): Term {
         val lhv = (term.string as? ConstStringTerm)?.value ?: return term
         val rhv = (term.substring as? ConstStringTerm)?.value ?: return term
         return term { const(lhv.indexOf(rhv)) }
@@ -44,7 +44,7 @@ class Optimizer : Transformer<Optimizer>, IncrementalTransformer {
         return when {
             m != null -> m
             first is BasicState && second is BasicState ->
-                BasicState(first.predicates + second.predicates).also {
+                (first + second).also {
                     cache[key] = it
                 }
 
@@ -49,3 +49,11 @@ interface RecollectingTransformer<T> : Transformer<RecollectingTransformer<T>> {
 interface IncrementalTransformer {
     fun apply(state: IncrementalPredicateState): IncrementalPredicateState
 }
+
+/**
+ * Transformer that only rewrites individual nodes: it overrides only the hooks that are called
+ * after the operands of a node are transformed (e.g. `transformBinaryTerm` or `transformEqualityPredicate`),
+ * does not keep any state between the nodes and uses the default transformations of the states.
+ * Consecutive local transformers are fused into a single [FusedTransformer] pass over the state
+ */
+interface LocalTransformer<T : LocalTransformer<T>> : Transformer<T>, IncrementalTransformer
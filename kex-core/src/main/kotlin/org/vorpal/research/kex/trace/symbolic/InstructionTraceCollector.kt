@@ -216,4 +216,184 @@ interface InstructionTraceCollector {
         length: String,
         concreteLength: Any?
     )
+
+    /**
+     * id-based callbacks: values, methods and types are referenced by their ids in [TraceIdRegistry],
+     * operands of the instructions are taken from the instructions themselves
+     */
+    fun track(value: Int, concreteValue: Any?)
+
+    fun methodEnter(
+        method: Int,
+        instance: Any?,
+        args: List<Any?>
+    )
+
+    fun arrayLoad(
+        value: Int,
+        concreteValue: Any?,
+        concreteRef: Any?,
+        concreteIndex: Any?
+    )
+
+    fun arrayStore(
+        inst: Int,
+        concreteRef: Any?,
+        concreteIndex: Any?,
+        concreteValue: Any?
+    )
+
+    fun binary(
+        value: Int,
+        concreteValue: Any?,
+        concreteLhv: Any?,
+        concreteRhv: Any?
+    )
+
+    fun branch(inst: Int)
+
+    fun call(
+        inst: Int,
+        concreteArguments: List<Any?>
+    )
+
+    fun cast(
+        value: Int,
+        concreteValue: Any?,
+        concreteOperand: Any?
+    )
+
+    fun catch(
+        exception: Int,
+        concreteException: Any?
+    )
+
+    fun cmp(
+        value: Int,
+        concreteLhv: Any?,
+        concreteRhv: Any?
+    )
+
+    fun enterMonitor(
+        inst: Int,
+        concreteOperand: Any?
+    )
+
+    fun exitMonitor(
+        inst: Int,
+        concreteOperand: Any?
+    )
+
+    fun fieldLoad(
+        value: Int,
+        concreteValue: Any?,
+        concreteOwner: Any?
+    )
+
+    fun fieldStore(
+        inst: Int,
+        concreteValue: Any?,
+        concreteOwner: Any?
+    )
+
+    fun instanceOf(
+        value: Int,
+        concreteValue: Any?,
+        concreteOperand: Any?
+    )
+
+    fun invokeDynamic(
+        value: Int,
+        concreteValue: Any?,
+        concreteOperands: List<Any?>
+    )
+
+    fun jump(inst: Int)
+
+    fun newArray(
+        value: Int,
+        concreteValue: Any?,
+        concreteDimensions: List<Any?>
+    )
+
+    fun new(value: Int)
+
+    fun phi(
+        value: Int,
+        concreteValue: Any?
+    )
+
+    fun ret(
+        inst: Int,
+        concreteValue: Any?
+    )
+
+    fun switch(
+        inst: Int,
+        concreteValue: Any?
+    )
+
+    fun tableSwitch(
+        inst: Int,
+        concreteValue: Any?
+    )
+
+    fun throwing(
+        inst: Int,
+        concreteException: Any?
+    )
+
+    fun unary(
+        value: Int,
+        concreteValue: Any?,
+        concreteOperand: Any?
+    )
+
+    fun addNullityConstraints(
+        inst: Int,
+        value: Int,
+        concreteValue: Any?
+    )
+
+    fun addTypeConstraints(
+        inst: Int,
+        value: Int,
+        concreteValue: Any?
+    )
+
+    fun addTypeConstraints(
+        inst: Int,
+        value: Int,
+        type: Int,
+        concreteValue: Any?
+    )
+
+    fun addArrayIndexConstraints(
+        inst: Int,
+        array: Int,
+        index: Int,
+        concreteArray: Any?,
+        concreteIndex: Any?
+    )
+
+    fun addArrayLengthConstraints(
+        inst: Int,
+        length: Int,
+        concreteLength: Any?
+    )
+
+    /**
+     * primitive-specialized id-based callbacks: concrete values are passed without boxing,
+     * suffix of the name is the JVM descriptor of the operand types (boolean, byte, char and short are passed as ints)
+     */
+    fun binaryII(value: Int, concreteValue: Int, concreteLhv: Int, concreteRhv: Int)
+    fun binaryJJ(value: Int, concreteValue: Long, concreteLhv: Long, concreteRhv: Long)
+    fun binaryJI(value: Int, concreteValue: Long, concreteLhv: Long, concreteRhv: Int)
+    fun binaryFF(value: Int, concreteValue: Float, concreteLhv: Float, concreteRhv: Float)
+    fun binaryDD(value: Int, concreteValue: Double, concreteLhv: Double, concreteRhv: Double)
+
+    fun cmpII(value: Int, concreteLhv: Int, concreteRhv: Int)
+    fun cmpJJ(value: Int, concreteLhv: Long, concreteRhv: Long)
+    fun cmpFF(value: Int, concreteLhv: Float, concreteRhv: Float)
+    fun cmpDD(value: Int, concreteLhv: Double, concreteRhv: Double)
 }
@@ -6,6 +6,7 @@ import org.vorpal.research.kex.ExecutionContext
 import org.vorpal.research.kex.asm.manager.MethodManager
 import org.vorpal.research.kex.asm.state.asTermExpr
 import org.vorpal.research.kex.asm.transform.SymbolicTraceInstrumenter
+import org.vorpal.research.kex.config.kexConfig
 import org.vorpal.research.kex.descriptor.ConstantDescriptor
 import org.vorpal.research.kex.descriptor.Descriptor
 import org.vorpal.research.kex.descriptor.Object2DescriptorConverter
@@ -28,12 +29,14 @@ import org.vorpal.research.kex.parameters.Parameters
 import org.vorpal.research.kex.state.predicate.Predicate
 import org.vorpal.research.kex.state.predicate.path
 import org.vorpal.research.kex.state.predicate.state
+import org.vorpal.research.kex.state.term.ArgumentTerm
 import org.vorpal.research.kex.state.term.ConstClassTerm
 import org.vorpal.research.kex.state.term.ConstStringTerm
 import org.vorpal.research.kex.state.term.NullTerm
 import org.vorpal.research.kex.state.term.StaticClassRefTerm
 import org.vorpal.research.kex.state.term.Term
 import org.vorpal.research.kex.state.term.term
+import org.vorpal.research.kex.state.transformer.TermCollector
 import org.vorpal.research.kex.state.transformer.TermRenamer
 import org.vorpal.research.kex.util.cmp
 import org.vorpal.research.kex.util.isOuterThis
@@ -44,6 +47,7 @@ import org.vorpal.research.kex.util.parseValueOrNull
 import org.vorpal.research.kfg.ir.BasicBlock
 import org.vorpal.research.kfg.ir.Class
 import org.vorpal.research.kfg.ir.ConcreteClass
+import org.vorpal.research.kfg.ir.Field
 import org.vorpal.research.kfg.ir.Method
 import org.vorpal.research.kfg.ir.MethodDescriptor
 import org.vorpal.research.kfg.ir.value.Argument
@@ -60,6 +64,7 @@ import org.vorpal.research.kfg.ir.value.instruction.CallInst
 import org.vorpal.research.kfg.ir.value.instruction.CastInst
 import org.vorpal.research.kfg.ir.value.instruction.CatchInst
 import org.vorpal.research.kfg.ir.value.instruction.CmpInst
+import org.vorpal.research.kfg.ir.value.instruction.CmpOpcode
 import org.vorpal.research.kfg.ir.value.instruction.EnterMonitorInst
 import org.vorpal.research.kfg.ir.value.instruction.ExitMonitorInst
 import org.vorpal.research.kfg.ir.value.instruction.FieldLoadInst
@@ -95,10 +100,16 @@ class SymbolicTraceException(message: String, cause: Throwable) : KtException(me
 
 /**
  * Class that collects the symbolic state of the program during the execution
+ *
+ * @param lazyConcreteValues do not convert the tracked objects into descriptors during the execution,
+ * keep the references to them instead and convert only the values that are referenced by the path condition
+ * or describe the parameters of the method when the state is requested. Objects are converted in their
+ * final state, not in the state at the moment of tracking
  */
 class SymbolicTraceBuilder(
     val ctx: ExecutionContext,
-    private val nameMapperContext: NameMapperContext
+    private val nameMapperContext: NameMapperContext,
+    private val lazyConcreteValues: Boolean = kexConfig.getBooleanValue("executor", "lazyConcreteValues", false)
 ) : SymbolicState(), InstructionTraceCollector {
     companion object {
         private const val MAX_ARRAY_LENGTH = 10000
@@ -114,7 +125,10 @@ class SymbolicTraceBuilder(
     override val concreteTypes: Map<Term, KexType>
         get() = concreteTypeMap.toMap()
     override val concreteValues: Map<Term, Descriptor>
-        get() = concreteValueMap.toMap()
+        get() {
+            materializePendingValues()
+            return concreteValueMap.toMap()
+        }
     override val termMap: Map<Term, WrappedValue>
         get() = terms.toMap()
 
@@ -143,6 +157,7 @@ class SymbolicTraceBuilder(
     private val pathBuilder = arrayListOf<PathClause>()
     private val concreteTypeMap = mutableMapOf<Term, KexType>()
     private val concreteValueMap = mutableMapOf<Term, Descriptor>()
+    private val pendingValueMap = mutableMapOf<Term, Any?>()
     private val terms = mutableMapOf<Term, WrappedValue>()
 
     private val nullChecked = mutableSetOf<Term>()
@@ -262,9 +277,14 @@ class SymbolicTraceBuilder(
     }
 
     private fun preCheck(name: String) {
+        if (callStack.isEmpty()) return
+        preCheck(parseValueOrNull(name))
+    }
+
+    private fun preCheck(value: Value?) {
         if (callStack.isEmpty()) return
         val (currentCall, expectedNext) = callStack.peek()
-        when (val currentInst = parseValueOrNull(name)) {
+        when (val currentInst = value) {
             currentCall -> addToCallTrace(currentCall)
             expectedNext -> popFromCallTrace()
             is ReturnInst -> {
@@ -423,12 +443,55 @@ class SymbolicTraceBuilder(
     }
 
     override fun track(value: String, concreteValue: Any?) {
-        val kfgValue = parseValue(value)
+        track(parseValue(value), concreteValue)
+    }
+
+    override fun track(value: Int, concreteValue: Any?) {
+        track(TraceIdRegistry.value(value), concreteValue)
+    }
+
+    private fun track(kfgValue: Value, concreteValue: Any?) {
         val termValue = mkValue(kfgValue)
+        if (lazyConcreteValues) {
+            concreteValueMap.remove(termValue)
+            pendingValueMap[termValue] = concreteValue
+            return
+        }
         val descriptor = concreteValue.getAsDescriptor(termValue.type)
         concreteValueMap[termValue] = descriptor
     }
 
+    private fun concreteValueOf(term: Term): Descriptor? {
+        if (term in pendingValueMap) {
+            concreteValueMap[term] = pendingValueMap.remove(term).getAsDescriptor(term.type)
+        }
+        return concreteValueMap[term]
+    }
+
+    /**
+     * converts the pending values that may be used later: the values of the terms of the path condition,
+     * and the instance, arguments and return value of the top-level method.
+     * Pending values are converted with the same [converter] as the eagerly converted ones,
+     * so the aliasing between the objects is preserved
+     */
+    private fun materializePendingValues() {
+        if (pendingValueMap.isEmpty()) return
+
+        val pathTerms = pathBuilder.flatMapTo(mutableSetOf()) { TermCollector.getFullTermSet(it.predicate) }
+        val iterator = pendingValueMap.iterator()
+        while (iterator.hasNext()) {
+            val (term, concreteValue) = iterator.next()
+            val isRequired = term in pathTerms
+                    || term is ArgumentTerm
+                    || term.name == "this"
+                    || terms[term]?.depth == 0
+            if (!isRequired) continue
+
+            concreteValueMap[term] = concreteValue.getAsDescriptor(term.type)
+            iterator.remove()
+        }
+    }
+
     override fun methodEnter(
         className: String,
         methodName: String,
@@ -437,13 +500,24 @@ class SymbolicTraceBuilder(
         instance: Any?,
         args: List<Any?>
     ) = safeCall {
-        val method = parseMethod(className, methodName, argTypes, retType)
+        methodEnter(parseMethod(className, methodName, argTypes, retType), args)
+    }
+
+    override fun methodEnter(
+        method: Int,
+        instance: Any?,
+        args: List<Any?>
+    ) = safeCall {
+        methodEnter(TraceIdRegistry.method(method), args)
+    }
+
+    private fun methodEnter(method: Method, args: List<Any?>) {
         frames.push(Frame(method, mutableMapOf(), lastCall?.receiver))
         if (lastCall != null) {
             val call = lastCall!!
             if (!(method overrides call.method)) {
                 checkCall()
-                return@safeCall
+                return
             }
             popFromCallTrace()
 
@@ -453,7 +527,7 @@ class SymbolicTraceBuilder(
             stateBuilder += StateClause(call.call, state { true equality true })
             lastCall = null
         } else {
-            if (!traceCollectingEnabled) return@safeCall
+            if (!traceCollectingEnabled) return
 
             for ((index, argType) in method.argTypes.withIndex()) {
                 val argValue = cm.value.getArgument(index, method, argType)
@@ -551,11 +625,34 @@ class SymbolicTraceBuilder(
         preCheck(value)
         if (!traceCollectingEnabled) return@safeCall
 
-        val kfgValue = parseValue(value) as ArrayLoadInst
-        preProcess(kfgValue)
+        arrayLoad(
+            parseValue(value) as ArrayLoadInst, parseValue(arrayRef), parseValue(index),
+            concreteValue, concreteRef, concreteIndex
+        )
+    }
 
-        val kfgRef = parseValue(arrayRef)
-        val kfgIndex = parseValue(index)
+    override fun arrayLoad(
+        value: Int,
+        concreteValue: Any?,
+        concreteRef: Any?,
+        concreteIndex: Any?
+    ) = safeCall {
+        val kfgValue = TraceIdRegistry.value(value) as ArrayLoadInst
+        preCheck(kfgValue)
+        if (!traceCollectingEnabled) return@safeCall
+
+        arrayLoad(kfgValue, kfgValue.arrayRef, kfgValue.index, concreteValue, concreteRef, concreteIndex)
+    }
+
+    private fun arrayLoad(
+        kfgValue: ArrayLoadInst,
+        kfgRef: Value,
+        kfgIndex: Value,
+        concreteValue: Any?,
+        concreteRef: Any?,
+        concreteIndex: Any?
+    ) {
+        preProcess(kfgValue)
 
         val termValue = mkNewValue(kfgValue)
         val termRef = mkValue(kfgRef)
@@ -586,12 +683,38 @@ class SymbolicTraceBuilder(
         preCheck(inst)
         if (!traceCollectingEnabled) return@safeCall
 
-        val instruction = parseValue(inst) as ArrayStoreInst
-        preProcess(instruction)
+        arrayStore(
+            parseValue(inst) as ArrayStoreInst, parseValue(arrayRef), parseValue(index), parseValue(value),
+            concreteRef, concreteIndex, concreteValue
+        )
+    }
 
-        val kfgRef = parseValue(arrayRef)
-        val kfgIndex = parseValue(index)
-        val kfgValue = parseValue(value)
+    override fun arrayStore(
+        inst: Int,
+        concreteRef: Any?,
+        concreteIndex: Any?,
+        concreteValue: Any?
+    ) = safeCall {
+        val instruction = TraceIdRegistry.value(inst) as ArrayStoreInst
+        preCheck(instruction)
+        if (!traceCollectingEnabled) return@safeCall
+
+        arrayStore(
+            instruction, instruction.arrayRef, instruction.index, instruction.value,
+            concreteRef, concreteIndex, concreteValue
+        )
+    }
+
+    private fun arrayStore(
+        instruction: ArrayStoreInst,
+        kfgRef: Value,
+        kfgIndex: Value,
+        kfgValue: Value,
+        concreteRef: Any?,
+        concreteIndex: Any?,
+        concreteValue: Any?
+    ) {
+        preProcess(instruction)
 
         val termRef = mkValue(kfgRef)
         val termIndex = mkValue(kfgIndex)
@@ -619,11 +742,34 @@ class SymbolicTraceBuilder(
         preCheck(value)
         if (!traceCollectingEnabled) return@safeCall
 
-        val kfgValue = parseValue(value) as BinaryInst
-        preProcess(kfgValue)
+        binary(
+            parseValue(value) as BinaryInst, parseValue(lhv), parseValue(rhv),
+            concreteValue, concreteLhv, concreteRhv
+        )
+    }
+
+    override fun binary(
+        value: Int,
+        concreteValue: Any?,
+        concreteLhv: Any?,
+        concreteRhv: Any?
+    ) = safeCall {
+        val kfgValue = TraceIdRegistry.value(value) as BinaryInst
+        preCheck(kfgValue)
+        if (!traceCollectingEnabled) return@safeCall
 
-        val kfgLhv = parseValue(lhv)
-        val kfgRhv = parseValue(rhv)
+        binary(kfgValue, kfgValue.lhv, kfgValue.rhv, concreteValue, concreteLhv, concreteRhv)
+    }
+
+    private fun binary(
+        kfgValue: BinaryInst,
+        kfgLhv: Value,
+        kfgRhv: Value,
+        concreteValue: Any?,
+        concreteLhv: Any?,
+        concreteRhv: Any?
+    ) {
+        preProcess(kfgValue)
 
         val termValue = mkNewValue(kfgValue)
         val termLhv = mkValue(kfgLhv)
@@ -642,6 +788,48 @@ class SymbolicTraceBuilder(
         postProcess(kfgValue, predicate)
     }
 
+    override fun binaryII(value: Int, concreteValue: Int, concreteLhv: Int, concreteRhv: Int) = primitiveBinary(value)
+
+    override fun binaryJJ(value: Int, concreteValue: Long, concreteLhv: Long, concreteRhv: Long) =
+        primitiveBinary(value)
+
+    override fun binaryJI(value: Int, concreteValue: Long, concreteLhv: Long, concreteRhv: Int) =
+        primitiveBinary(value)
+
+    override fun binaryFF(value: Int, concreteValue: Float, concreteLhv: Float, concreteRhv: Float) =
+        primitiveBinary(value)
+
+    override fun binaryDD(value: Int, concreteValue: Double, concreteLhv: Double, concreteRhv: Double) =
+        primitiveBinary(value)
+
+    /**
+     * concrete type of a primitive value is the type of its term, so the concrete values
+     * of primitive binary instructions do not need to be converted
+     */
+    private fun primitiveBinary(value: Int) = safeCall {
+        val kfgValue = TraceIdRegistry.value(value) as BinaryInst
+        preCheck(kfgValue)
+        if (!traceCollectingEnabled) return@safeCall
+
+        preProcess(kfgValue)
+
+        val termValue = mkNewValue(kfgValue)
+        val termLhv = mkValue(kfgValue.lhv)
+        val termRhv = mkValue(kfgValue.rhv)
+
+        terms[termValue] = kfgValue.wrapped()
+        concreteTypeMap[termValue] = termValue.type
+
+        termLhv.updateInfo(kfgValue.lhv, termLhv.type)
+        termRhv.updateInfo(kfgValue.rhv, termRhv.type)
+
+        val predicate = state(kfgValue.location) {
+            termValue equality termLhv.apply(cm.type, kfgValue.opcode, termRhv)
+        }
+
+        postProcess(kfgValue, predicate)
+    }
+
     override fun branch(
         inst: String,
         condition: String
@@ -649,12 +837,22 @@ class SymbolicTraceBuilder(
         preCheck(inst)
         if (!traceCollectingEnabled) return@safeCall
 
-        val instruction = parseValue(inst) as BranchInst
+        branch(parseValue(inst) as BranchInst, parseValue(condition))
+    }
+
+    override fun branch(inst: Int) = safeCall {
+        val instruction = TraceIdRegistry.value(inst) as BranchInst
+        preCheck(instruction)
+        if (!traceCollectingEnabled) return@safeCall
+
+        branch(instruction, instruction.cond)
+    }
+
+    private fun branch(instruction: BranchInst, kfgCondition: Value) {
         preProcess(instruction)
 
-        val kfgCondition = parseValue(condition)
         val termCondition = mkValue(kfgCondition)
-        val booleanValue = (concreteValueMap[termCondition] as? ConstantDescriptor.Bool)?.value
+        val booleanValue = (concreteValueOf(termCondition) as? ConstantDescriptor.Bool)?.value
             ?: unreachable { log.error("Unknown boolean value in branch") }
 
         val predicate = path(instruction.location) {
@@ -679,15 +877,45 @@ class SymbolicTraceBuilder(
         preCheck(inst)
         if (!traceCollectingEnabled) return@safeCall
 
-        val instruction = parseValue(inst) as CallInst
+        call(
+            parseValue(inst) as CallInst,
+            parseMethod(className, methodName, argTypes, retType),
+            returnValue?.let { parseValue(it) },
+            callee?.let { parseValue(it) },
+            arguments.map { parseValue(it) },
+            concreteArguments
+        )
+    }
+
+    override fun call(
+        inst: Int,
+        concreteArguments: List<Any?>
+    ) = safeCall {
+        val instruction = TraceIdRegistry.value(inst) as CallInst
+        preCheck(instruction)
+        if (!traceCollectingEnabled) return@safeCall
+
+        call(
+            instruction,
+            instruction.method,
+            instruction.takeIf { it.isNameDefined },
+            instruction.takeUnless { it.isStatic }?.callee,
+            instruction.args,
+            concreteArguments
+        )
+    }
+
+    private fun call(
+        instruction: CallInst,
+        calledMethod: Method,
+        kfgReturn: Value?,
+        kfgCallee: Value?,
+        kfgArguments: List<Value>,
+        concreteArguments: List<Any?>
+    ) {
         preProcess(instruction)
         addToCallTrace(instruction)
 
-        val calledMethod = parseMethod(className, methodName, argTypes, retType)
-        val kfgReturn = returnValue?.let { parseValue(it) }
-        val kfgCallee = callee?.let { parseValue(it) }
-        val kfgArguments = arguments.map { parseValue(it) }
-
         val termReturn = kfgReturn?.let { mkNewValue(it) }
         val termCallee = kfgCallee?.let { mkValue(it) }
         val termArguments = kfgArguments.map { mkValue(it) }
@@ -734,10 +962,29 @@ class SymbolicTraceBuilder(
         preCheck(value)
         if (!traceCollectingEnabled) return@safeCall
 
-        val kfgValue = parseValue(value) as CastInst
+        cast(parseValue(value) as CastInst, parseValue(operand), concreteValue, concreteOperand)
+    }
+
+    override fun cast(
+        value: Int,
+        concreteValue: Any?,
+        concreteOperand: Any?
+    ) = safeCall {
+        val kfgValue = TraceIdRegistry.value(value) as CastInst
+        preCheck(kfgValue)
+        if (!traceCollectingEnabled) return@safeCall
+
+        cast(kfgValue, kfgValue.operand, concreteValue, concreteOperand)
+    }
+
+    private fun cast(
+        kfgValue: CastInst,
+        kfgOperand: Value,
+        concreteValue: Any?,
+        concreteOperand: Any?
+    ) {
         preProcess(kfgValue)
 
-        val kfgOperand = parseValue(operand)
         val termValue = mkNewValue(kfgValue)
         val termOperand = mkValue(kfgOperand)
 
@@ -765,7 +1012,25 @@ class SymbolicTraceBuilder(
 //        preCheck(exception)
         if (!traceCollectingEnabled) return@safeCall
 
-        val kfgException = parseValue(exception) as CatchInst
+        catch(parseValue(exception) as CatchInst, exceptionDescriptor)
+    }
+
+    override fun catch(
+        exception: Int,
+        concreteException: Any?
+    ) = safeCall {
+        val exceptionDescriptor = converter.convert(concreteException)
+        restoreCatchFrame(exceptionDescriptor.type.getKfgType(ctx.types))
+
+        if (!traceCollectingEnabled) return@safeCall
+
+        catch(TraceIdRegistry.value(exception) as CatchInst, exceptionDescriptor)
+    }
+
+    private fun catch(
+        kfgException: CatchInst,
+        exceptionDescriptor: Descriptor
+    ) {
         preProcess(kfgException)
 
         val termException = thrownException ?: mkNewValue(kfgException)
@@ -792,11 +1057,29 @@ class SymbolicTraceBuilder(
         preCheck(value)
         if (!traceCollectingEnabled) return@safeCall
 
-        val kfgValue = parseValue(value) as CmpInst
-        preProcess(kfgValue)
+        cmp(parseValue(value) as CmpInst, parseValue(lhv), parseValue(rhv), concreteLhv, concreteRhv)
+    }
+
+    override fun cmp(
+        value: Int,
+        concreteLhv: Any?,
+        concreteRhv: Any?
+    ) = safeCall {
+        val kfgValue = TraceIdRegistry.value(value) as CmpInst
+        preCheck(kfgValue)
+        if (!traceCollectingEnabled) return@safeCall
 
-        val kfgLhv = parseValue(lhv)
-        val kfgRhv = parseValue(rhv)
+        cmp(kfgValue, kfgValue.lhv, kfgValue.rhv, concreteLhv, concreteRhv)
+    }
+
+    private fun cmp(
+        kfgValue: CmpInst,
+        kfgLhv: Value,
+        kfgRhv: Value,
+        concreteLhv: Any?,
+        concreteRhv: Any?
+    ) {
+        preProcess(kfgValue)
 
         val termValue = mkNewValue(kfgValue)
         val termLhv = mkValue(kfgLhv)
@@ -816,6 +1099,81 @@ class SymbolicTraceBuilder(
         postProcess(kfgValue, predicate)
     }
 
+    override fun cmpII(value: Int, concreteLhv: Int, concreteRhv: Int) = safeCall {
+        primitiveCmp(value) { it.compare(concreteLhv.toLong(), concreteRhv.toLong()) }
+    }
+
+    override fun cmpJJ(value: Int, concreteLhv: Long, concreteRhv: Long) = safeCall {
+        primitiveCmp(value) { it.compare(concreteLhv, concreteRhv) }
+    }
+
+    override fun cmpFF(value: Int, concreteLhv: Float, concreteRhv: Float) = safeCall {
+        primitiveCmp(value) { it.compare(concreteLhv.toDouble(), concreteRhv.toDouble()) }
+    }
+
+    override fun cmpDD(value: Int, concreteLhv: Double, concreteRhv: Double) = safeCall {
+        primitiveCmp(value) { it.compare(concreteLhv, concreteRhv) }
+    }
+
+    /**
+     * @param compare computes the result of the comparison as an int: 1 or 0 for the boolean opcodes
+     * and the result of JVM `cmp` instruction otherwise
+     */
+    private inline fun primitiveCmp(value: Int, compare: (CmpOpcode) -> Int) {
+        val kfgValue = TraceIdRegistry.value(value) as CmpInst
+        preCheck(kfgValue)
+        if (!traceCollectingEnabled) return
+
+        preProcess(kfgValue)
+
+        val termValue = mkNewValue(kfgValue)
+        val termLhv = mkValue(kfgValue.lhv)
+        val termRhv = mkValue(kfgValue.rhv)
+
+        val result = compare(kfgValue.opcode)
+        terms[termValue] = kfgValue.wrapped()
+        concreteValueMap[termValue] = when (termValue.type) {
+            is KexBool -> descriptor { const(result != 0) }
+            else -> descriptor { const(result) }
+        }
+        concreteTypeMap[termValue] = termValue.type
+
+        termLhv.updateInfo(kfgValue.lhv, termLhv.type)
+        termRhv.updateInfo(kfgValue.rhv, termRhv.type)
+
+        val predicate = state(kfgValue.location) {
+            termValue equality termLhv.apply(kfgValue.opcode, termRhv)
+        }
+
+        postProcess(kfgValue, predicate)
+    }
+
+    private fun CmpOpcode.compare(lhv: Long, rhv: Long): Int = when (this) {
+        CmpOpcode.EQ -> if (lhv == rhv) 1 else 0
+        CmpOpcode.NEQ -> if (lhv != rhv) 1 else 0
+        CmpOpcode.LT -> if (lhv < rhv) 1 else 0
+        CmpOpcode.GT -> if (lhv > rhv) 1 else 0
+        CmpOpcode.LE -> if (lhv <= rhv) 1 else 0
+        CmpOpcode.GE -> if (lhv >= rhv) 1 else 0
+        CmpOpcode.CMP, CmpOpcode.CMPG, CmpOpcode.CMPL -> lhv.compareTo(rhv)
+    }
+
+    private fun CmpOpcode.compare(lhv: Double, rhv: Double): Int = when (this) {
+        CmpOpcode.EQ -> if (lhv == rhv) 1 else 0
+        CmpOpcode.NEQ -> if (lhv != rhv) 1 else 0
+        CmpOpcode.LT -> if (lhv < rhv) 1 else 0
+        CmpOpcode.GT -> if (lhv > rhv) 1 else 0
+        CmpOpcode.LE -> if (lhv <= rhv) 1 else 0
+        CmpOpcode.GE -> if (lhv >= rhv) 1 else 0
+        CmpOpcode.CMP, CmpOpcode.CMPG, CmpOpcode.CMPL -> when {
+            lhv < rhv -> -1
+            lhv > rhv -> 1
+            lhv == rhv -> 0
+            this == CmpOpcode.CMPL -> -1
+            else -> 1
+        }
+    }
+
     override fun enterMonitor(
         inst: String,
         operand: String,
@@ -824,10 +1182,27 @@ class SymbolicTraceBuilder(
         preCheck(inst)
         if (!traceCollectingEnabled) return@safeCall
 
-        val instruction = parseValue(inst) as EnterMonitorInst
+        enterMonitor(parseValue(inst) as EnterMonitorInst, parseValue(operand), concreteOperand)
+    }
+
+    override fun enterMonitor(
+        inst: Int,
+        concreteOperand: Any?
+    ) = safeCall {
+        val instruction = TraceIdRegistry.value(inst) as EnterMonitorInst
+        preCheck(instruction)
+        if (!traceCollectingEnabled) return@safeCall
+
+        enterMonitor(instruction, instruction.owner, concreteOperand)
+    }
+
+    private fun enterMonitor(
+        instruction: EnterMonitorInst,
+        kfgMonitor: Value,
+        concreteOperand: Any?
+    ) {
         preProcess(instruction)
 
-        val kfgMonitor = parseValue(operand)
         val termMonitor = mkValue(kfgMonitor)
         termMonitor.updateInfo(kfgMonitor, concreteOperand.getConcreteType(termMonitor.type))
 
@@ -846,10 +1221,27 @@ class SymbolicTraceBuilder(
         preCheck(inst)
         if (!traceCollectingEnabled) return@safeCall
 
-        val instruction = parseValue(inst) as ExitMonitorInst
+        exitMonitor(parseValue(inst) as ExitMonitorInst, parseValue(operand), concreteOperand)
+    }
+
+    override fun exitMonitor(
+        inst: Int,
+        concreteOperand: Any?
+    ) = safeCall {
+        val instruction = TraceIdRegistry.value(inst) as ExitMonitorInst
+        preCheck(instruction)
+        if (!traceCollectingEnabled) return@safeCall
+
+        exitMonitor(instruction, instruction.owner, concreteOperand)
+    }
+
+    private fun exitMonitor(
+        instruction: ExitMonitorInst,
+        kfgMonitor: Value,
+        concreteOperand: Any?
+    ) {
         preProcess(instruction)
 
-        val kfgMonitor = parseValue(operand)
         val termMonitor = mkValue(kfgMonitor)
         termMonitor.updateInfo(kfgMonitor, concreteOperand.getConcreteType(termMonitor.type))
 
@@ -872,11 +1264,41 @@ class SymbolicTraceBuilder(
         preCheck(value)
         if (!traceCollectingEnabled) return@safeCall
 
-        val kfgValue = parseValue(value) as FieldLoadInst
-        preProcess(kfgValue)
+        fieldLoad(
+            parseValue(value) as FieldLoadInst,
+            owner?.let { parseValue(it) },
+            cm[klass].getField(field, parseDescOrNull(cm.type, type)!!),
+            concreteValue,
+            concreteOwner
+        )
+    }
+
+    override fun fieldLoad(
+        value: Int,
+        concreteValue: Any?,
+        concreteOwner: Any?
+    ) = safeCall {
+        val kfgValue = TraceIdRegistry.value(value) as FieldLoadInst
+        preCheck(kfgValue)
+        if (!traceCollectingEnabled) return@safeCall
 
-        val kfgOwner = owner?.let { parseValue(it) }
-        val kfgField = cm[klass].getField(field, parseDescOrNull(cm.type, type)!!)
+        fieldLoad(
+            kfgValue,
+            kfgValue.takeUnless { it.isStatic }?.owner,
+            kfgValue.field,
+            concreteValue,
+            concreteOwner
+        )
+    }
+
+    private fun fieldLoad(
+        kfgValue: FieldLoadInst,
+        kfgOwner: Value?,
+        kfgField: Field,
+        concreteValue: Any?,
+        concreteOwner: Any?
+    ) {
+        preProcess(kfgValue)
 
         val termValue = mkNewValue(kfgValue)
         val termOwner = kfgOwner?.let { mkValue(it) }
@@ -910,12 +1332,44 @@ class SymbolicTraceBuilder(
         preCheck(inst)
         if (!traceCollectingEnabled) return@safeCall
 
-        val instruction = parseValue(inst) as FieldStoreInst
-        preProcess(instruction)
+        fieldStore(
+            parseValue(inst) as FieldStoreInst,
+            owner?.let { parseValue(it) },
+            cm[klass].getField(field, parseDescOrNull(cm.type, type)!!),
+            parseValue(value),
+            concreteValue,
+            concreteOwner
+        )
+    }
 
-        val kfgOwner = owner?.let { parseValue(it) }
-        val kfgField = cm[klass].getField(field, parseDescOrNull(cm.type, type)!!)
-        val kfgValue = parseValue(value)
+    override fun fieldStore(
+        inst: Int,
+        concreteValue: Any?,
+        concreteOwner: Any?
+    ) = safeCall {
+        val instruction = TraceIdRegistry.value(inst) as FieldStoreInst
+        preCheck(instruction)
+        if (!traceCollectingEnabled) return@safeCall
+
+        fieldStore(
+            instruction,
+            instruction.takeUnless { it.isStatic }?.owner,
+            instruction.field,
+            instruction.value,
+            concreteValue,
+            concreteOwner
+        )
+    }
+
+    private fun fieldStore(
+        instruction: FieldStoreInst,
+        kfgOwner: Value?,
+        kfgField: Field,
+        kfgValue: Value,
+        concreteValue: Any?,
+        concreteOwner: Any?
+    ) {
+        preProcess(instruction)
 
         val termOwner = kfgOwner?.let { mkValue(it) }
         val termValue = mkValue(kfgValue)
@@ -940,10 +1394,28 @@ class SymbolicTraceBuilder(
         preCheck(value)
         if (!traceCollectingEnabled) return@safeCall
 
-        val kfgValue = parseValue(value) as InstanceOfInst
-        preProcess(kfgValue)
+        instanceOf(parseValue(value) as InstanceOfInst, parseValue(operand), concreteValue, concreteOperand)
+    }
 
-        val kfgOperand = parseValue(operand)
+    override fun instanceOf(
+        value: Int,
+        concreteValue: Any?,
+        concreteOperand: Any?
+    ) = safeCall {
+        val kfgValue = TraceIdRegistry.value(value) as InstanceOfInst
+        preCheck(kfgValue)
+        if (!traceCollectingEnabled) return@safeCall
+
+        instanceOf(kfgValue, kfgValue.operand, concreteValue, concreteOperand)
+    }
+
+    private fun instanceOf(
+        kfgValue: InstanceOfInst,
+        kfgOperand: Value,
+        concreteValue: Any?,
+        concreteOperand: Any?
+    ) {
+        preProcess(kfgValue)
 
         val termValue = mkNewValue(kfgValue)
         val termOperand = mkValue(kfgOperand)
@@ -969,10 +1441,31 @@ class SymbolicTraceBuilder(
         preCheck(value)
         if (!traceCollectingEnabled) return@safeCall
 
-        val kfgValue = parseValue(value) as InvokeDynamicInst
-        preProcess(kfgValue)
+        invokeDynamic(
+            parseValue(value) as InvokeDynamicInst, operands.map { parseValue(it) },
+            concreteValue, concreteOperands
+        )
+    }
+
+    override fun invokeDynamic(
+        value: Int,
+        concreteValue: Any?,
+        concreteOperands: List<Any?>
+    ) = safeCall {
+        val kfgValue = TraceIdRegistry.value(value) as InvokeDynamicInst
+        preCheck(kfgValue)
+        if (!traceCollectingEnabled) return@safeCall
+
+        invokeDynamic(kfgValue, kfgValue.args, concreteValue, concreteOperands)
+    }
 
-        val kfgOperands = operands.map { parseValue(it) }
+    private fun invokeDynamic(
+        kfgValue: InvokeDynamicInst,
+        kfgOperands: List<Value>,
+        concreteValue: Any?,
+        concreteOperands: List<Any?>
+    ) {
+        preProcess(kfgValue)
 
         val termValue = mkNewValue(kfgValue)
         val termOperands = kfgOperands.map { mkValue(it) }
@@ -995,7 +1488,7 @@ class SymbolicTraceBuilder(
                     }
 
                     val expr = lambdaBase.method.asTermExpr()
-                        ?: return@safeCall log.error("Could not process ${kfgValue.print()}")
+                        ?: return log.error("Could not process ${kfgValue.print()}")
 
                     termValue equality lambda(kfgValue.type.kexType, lambdaParameters) {
                         TermRenamer(".labmda.${lambdaBase.method.name}", argParameters.zip(lambdaParameters).toMap())
@@ -1015,7 +1508,18 @@ class SymbolicTraceBuilder(
         preCheck(inst)
         if (!traceCollectingEnabled) return@safeCall
 
-        val instruction = parseValue(inst) as JumpInst
+        jump(parseValue(inst) as JumpInst)
+    }
+
+    override fun jump(inst: Int) = safeCall {
+        val instruction = TraceIdRegistry.value(inst) as JumpInst
+        preCheck(instruction)
+        if (!traceCollectingEnabled) return@safeCall
+
+        jump(instruction)
+    }
+
+    private fun jump(instruction: JumpInst) {
         preProcess(instruction)
 
         /**
@@ -1037,10 +1541,31 @@ class SymbolicTraceBuilder(
         preCheck(value)
         if (!traceCollectingEnabled) return@safeCall
 
-        val kfgValue = parseValue(value) as NewArrayInst
-        preProcess(kfgValue)
+        newArray(
+            parseValue(value) as NewArrayInst, dimensions.map { parseValue(it) },
+            concreteValue, concreteDimensions
+        )
+    }
 
-        val kfgDimensions = dimensions.map { parseValue(it) }
+    override fun newArray(
+        value: Int,
+        concreteValue: Any?,
+        concreteDimensions: List<Any?>
+    ) = safeCall {
+        val kfgValue = TraceIdRegistry.value(value) as NewArrayInst
+        preCheck(kfgValue)
+        if (!traceCollectingEnabled) return@safeCall
+
+        newArray(kfgValue, kfgValue.dimensions, concreteValue, concreteDimensions)
+    }
+
+    private fun newArray(
+        kfgValue: NewArrayInst,
+        kfgDimensions: List<Value>,
+        concreteValue: Any?,
+        concreteDimensions: List<Any?>
+    ) {
+        preProcess(kfgValue)
 
         val termValue = mkNewValue(kfgValue)
         val termDimensions = kfgDimensions.map { mkValue(it) }
@@ -1067,7 +1592,18 @@ class SymbolicTraceBuilder(
         preCheck(value)
         if (!traceCollectingEnabled) return@safeCall
 
-        val kfgValue = parseValue(value) as NewInst
+        new(parseValue(value) as NewInst)
+    }
+
+    override fun new(value: Int) = safeCall {
+        val kfgValue = TraceIdRegistry.value(value) as NewInst
+        preCheck(kfgValue)
+        if (!traceCollectingEnabled) return@safeCall
+
+        new(kfgValue)
+    }
+
+    private fun new(kfgValue: NewInst) {
         preProcess(kfgValue)
 
         val termValue = mkNewValue(kfgValue)
@@ -1089,7 +1625,21 @@ class SymbolicTraceBuilder(
         preCheck(value)
         if (!traceCollectingEnabled) return@safeCall
 
-        val kfgValue = parseValue(value) as PhiInst
+        phi(parseValue(value) as PhiInst, concreteValue)
+    }
+
+    override fun phi(
+        value: Int,
+        concreteValue: Any?
+    ) = safeCall {
+        val kfgValue = TraceIdRegistry.value(value) as PhiInst
+        preCheck(kfgValue)
+        if (!traceCollectingEnabled) return@safeCall
+
+        phi(kfgValue, concreteValue)
+    }
+
+    private fun phi(kfgValue: PhiInst, concreteValue: Any?) {
         preProcess(kfgValue)
 
         val kfgIncoming = kfgValue.incomings[previousBlock]!!
@@ -1117,10 +1667,27 @@ class SymbolicTraceBuilder(
         preCheck(inst)
         if (!traceCollectingEnabled) return@safeCall
 
-        val instruction = parseValue(inst) as ReturnInst
+        ret(parseValue(inst) as ReturnInst, returnValue?.let { parseValue(it) }, concreteValue)
+    }
+
+    override fun ret(
+        inst: Int,
+        concreteValue: Any?
+    ) = safeCall {
+        val instruction = TraceIdRegistry.value(inst) as ReturnInst
+        preCheck(instruction)
+        if (!traceCollectingEnabled) return@safeCall
+
+        ret(instruction, instruction.takeIf { it.hasReturnValue }?.returnValue, concreteValue)
+    }
+
+    private fun ret(
+        instruction: ReturnInst,
+        kfgReturn: Value?,
+        concreteValue: Any?
+    ) {
         preProcess(instruction)
 
-        val kfgReturn = returnValue?.let { parseValue(it) }
         val termReturn = kfgReturn?.let { mkValue(it) }
 
         val stack = frames.pop()
@@ -1160,10 +1727,27 @@ class SymbolicTraceBuilder(
         preCheck(inst)
         if (!traceCollectingEnabled) return@safeCall
 
-        val instruction = parseValue(inst) as SwitchInst
+        switch(parseValue(inst) as SwitchInst, parseValue(value), concreteValue)
+    }
+
+    override fun switch(
+        inst: Int,
+        concreteValue: Any?
+    ) = safeCall {
+        val instruction = TraceIdRegistry.value(inst) as SwitchInst
+        preCheck(instruction)
+        if (!traceCollectingEnabled) return@safeCall
+
+        switch(instruction, instruction.key, concreteValue)
+    }
+
+    private fun switch(
+        instruction: SwitchInst,
+        kfgValue: Value,
+        concreteValue: Any?
+    ) {
         preProcess(instruction)
 
-        val kfgValue = parseValue(value)
         val termValue = mkValue(kfgValue)
 
         val intValue = numericValue(concreteValue).toInt()
@@ -1187,10 +1771,27 @@ class SymbolicTraceBuilder(
         preCheck(inst)
         if (!traceCollectingEnabled) return@safeCall
 
-        val instruction = parseValue(inst) as TableSwitchInst
+        tableSwitch(parseValue(inst) as TableSwitchInst, parseValue(value), concreteValue)
+    }
+
+    override fun tableSwitch(
+        inst: Int,
+        concreteValue: Any?
+    ) = safeCall {
+        val instruction = TraceIdRegistry.value(inst) as TableSwitchInst
+        preCheck(instruction)
+        if (!traceCollectingEnabled) return@safeCall
+
+        tableSwitch(instruction, instruction.index, concreteValue)
+    }
+
+    private fun tableSwitch(
+        instruction: TableSwitchInst,
+        kfgValue: Value,
+        concreteValue: Any?
+    ) {
         preProcess(instruction)
 
-        val kfgValue = parseValue(value)
         val termValue = mkValue(kfgValue)
 
         val intValue = numericValue(concreteValue).toInt()
@@ -1212,10 +1813,27 @@ class SymbolicTraceBuilder(
         preCheck(inst)
         if (!traceCollectingEnabled) return@safeCall
 
-        val instruction = parseValue(inst) as ThrowInst
+        throwing(parseValue(inst) as ThrowInst, parseValue(exception), concreteException)
+    }
+
+    override fun throwing(
+        inst: Int,
+        concreteException: Any?
+    ) = safeCall {
+        val instruction = TraceIdRegistry.value(inst) as ThrowInst
+        preCheck(instruction)
+        if (!traceCollectingEnabled) return@safeCall
+
+        throwing(instruction, instruction.throwable, concreteException)
+    }
+
+    private fun throwing(
+        instruction: ThrowInst,
+        kfgException: Value,
+        concreteException: Any?
+    ) {
         preProcess(instruction)
 
-        val kfgException = parseValue(exception)
         val termException = mkValue(kfgException)
 
         termException.updateInfo(kfgException, concreteException.getConcreteType(termException.type))
@@ -1238,10 +1856,28 @@ class SymbolicTraceBuilder(
         preCheck(value)
         if (!traceCollectingEnabled) return@safeCall
 
-        val kfgValue = parseValue(value) as UnaryInst
-        preProcess(kfgValue)
+        unary(parseValue(value) as UnaryInst, parseValue(operand), concreteValue, concreteOperand)
+    }
+
+    override fun unary(
+        value: Int,
+        concreteValue: Any?,
+        concreteOperand: Any?
+    ) = safeCall {
+        val kfgValue = TraceIdRegistry.value(value) as UnaryInst
+        preCheck(kfgValue)
+        if (!traceCollectingEnabled) return@safeCall
+
+        unary(kfgValue, kfgValue.operand, concreteValue, concreteOperand)
+    }
 
-        val kfgOperand = parseValue(operand)
+    private fun unary(
+        kfgValue: UnaryInst,
+        kfgOperand: Value,
+        concreteValue: Any?,
+        concreteOperand: Any?
+    ) {
+        preProcess(kfgValue)
 
         val termValue = mkNewValue(kfgValue)
         val termOperand = mkValue(kfgOperand)
@@ -1262,17 +1898,26 @@ class SymbolicTraceBuilder(
         preCheck(inst)
         if (!traceCollectingEnabled) return@safeCall
 
-        val instruction = parseValue(inst) as Instruction
+        addNullityConstraints(parseValue(inst) as Instruction, parseValue(value), concreteValue)
+    }
+
+    override fun addNullityConstraints(inst: Int, value: Int, concreteValue: Any?) = safeCall {
+        val instruction = TraceIdRegistry.value(inst) as Instruction
+        preCheck(instruction)
+        if (!traceCollectingEnabled) return@safeCall
 
-        val kfgValue = parseValue(value)
+        addNullityConstraints(instruction, TraceIdRegistry.value(value), concreteValue)
+    }
+
+    private fun addNullityConstraints(instruction: Instruction, kfgValue: Value, concreteValue: Any?) {
         val termValue = mkValue(kfgValue)
 
-        if (kfgValue is ThisRef) return@safeCall
-        else if (termValue in nullChecked) return@safeCall
-        else if (termValue is NullTerm) return@safeCall
-        else if (termValue is ConstStringTerm) return@safeCall
-        else if (termValue is ConstClassTerm) return@safeCall
-        else if (termValue is StaticClassRefTerm) return@safeCall
+        if (kfgValue is ThisRef) return
+        else if (termValue in nullChecked) return
+        else if (termValue is NullTerm) return
+        else if (termValue is ConstStringTerm) return
+        else if (termValue is ConstClassTerm) return
+        else if (termValue is StaticClassRefTerm) return
         nullChecked += termValue
 
         val checkName = term { value(KexBool, "${termValue}NullCheck") }
@@ -1298,15 +1943,26 @@ class SymbolicTraceBuilder(
 
         if (concreteValue == null) return@safeCall
 
-        val instruction = parseValue(inst) as Instruction
+        addTypeConstraints(parseValue(inst) as Instruction, parseValue(value), concreteValue)
+    }
+
+    override fun addTypeConstraints(inst: Int, value: Int, concreteValue: Any?) = safeCall {
+        val instruction = TraceIdRegistry.value(inst) as Instruction
+        preCheck(instruction)
+        if (!traceCollectingEnabled) return@safeCall
+
+        if (concreteValue == null) return@safeCall
+
+        addTypeConstraints(instruction, TraceIdRegistry.value(value), concreteValue)
+    }
 
-        val kfgValue = parseValue(value)
+    private fun addTypeConstraints(instruction: Instruction, kfgValue: Value, concreteValue: Any) {
         val termValue = mkValue(kfgValue)
         val concreteType = concreteValue.getConcreteType(termValue.type)
         val kfgType = concreteType.getKfgType(ctx.types)
         if (termValue in typeChecked) {
             val checkedType = typeChecked.getValue(termValue)
-            if (checkedType.isSubtypeOfCached(kfgType))  return@safeCall
+            if (checkedType.isSubtypeOfCached(kfgType))  return
         }
         typeChecked[termValue] = kfgType
 
@@ -1322,11 +1978,26 @@ class SymbolicTraceBuilder(
         preCheck(inst)
         if (!traceCollectingEnabled) return@safeCall
 
-        val instruction = parseValue(inst) as Instruction
+        addTypeConstraints(
+            parseValue(inst) as Instruction, parseValue(value), parseStringToType(cm.type, type), concreteValue
+        )
+    }
+
+    override fun addTypeConstraints(inst: Int, value: Int, type: Int, concreteValue: Any?) = safeCall {
+        val instruction = TraceIdRegistry.value(inst) as Instruction
+        preCheck(instruction)
+        if (!traceCollectingEnabled) return@safeCall
 
-        val kfgValue = parseValue(value)
+        addTypeConstraints(instruction, TraceIdRegistry.value(value), TraceIdRegistry.type(type), concreteValue)
+    }
+
+    private fun addTypeConstraints(
+        instruction: Instruction,
+        kfgValue: Value,
+        expectedKfgType: Type,
+        concreteValue: Any?
+    ) {
         val termValue = mkValue(kfgValue)
-        val expectedKfgType = parseStringToType(cm.type, type)
         val comparisonResult = when (concreteValue) {
             null -> false
             else -> {
@@ -1334,10 +2005,10 @@ class SymbolicTraceBuilder(
                 actualKfgType.isSubtypeOfCached(expectedKfgType)
             }
         }
-        if (kfgValue is NullConstant) return@safeCall
+        if (kfgValue is NullConstant) return
         if (termValue in typeChecked) {
             val checkedType = typeChecked.getValue(termValue)
-            if (checkedType.isSubtypeOfCached(expectedKfgType)) return@safeCall
+            if (checkedType.isSubtypeOfCached(expectedKfgType)) return
         }
         typeChecked[termValue] = expectedKfgType
 
@@ -1361,19 +2032,47 @@ class SymbolicTraceBuilder(
 
         if (concreteArray == null) return@safeCall
 
-        val instruction = parseValue(inst) as Instruction
+        addArrayIndexConstraints(
+            parseValue(inst) as Instruction, parseValue(array), parseValue(index),
+            concreteArray, concreteIndex
+        )
+    }
+
+    override fun addArrayIndexConstraints(
+        inst: Int,
+        array: Int,
+        index: Int,
+        concreteArray: Any?,
+        concreteIndex: Any?
+    ) = safeCall {
+        val instruction = TraceIdRegistry.value(inst) as Instruction
+        preCheck(instruction)
+        if (!traceCollectingEnabled) return@safeCall
+
+        if (concreteArray == null) return@safeCall
+
+        addArrayIndexConstraints(
+            instruction, TraceIdRegistry.value(array), TraceIdRegistry.value(index),
+            concreteArray, concreteIndex
+        )
+    }
 
-        val kfgArray = parseValue(array)
-        val kfgIndex = parseValue(index)
+    private fun addArrayIndexConstraints(
+        instruction: Instruction,
+        kfgArray: Value,
+        kfgIndex: Value,
+        concreteArray: Any,
+        concreteIndex: Any?
+    ) {
 
         val termArray = mkValue(kfgArray)
         val termIndex = mkValue(kfgIndex)
 
-        if (termIndex in indexChecked.getOrPut(termArray, ::mutableSetOf)) return@safeCall
+        if (termIndex in indexChecked.getOrPut(termArray, ::mutableSetOf)) return
         indexChecked[termArray]!!.add(termIndex)
 
         val actualLength = concreteArray.arraySize
-        val actualIndex = (concreteIndex as? Int) ?: return@safeCall
+        val actualIndex = (concreteIndex as? Int) ?: return
 
         val checkTerm = term { value(KexBool, "${termArray}IndexCheck${termIndex}") }
         val checkPredicate = state {
@@ -1398,16 +2097,33 @@ class SymbolicTraceBuilder(
         preCheck(inst)
         if (!traceCollectingEnabled) return@safeCall
 
-        val instruction = parseValue(inst) as Instruction
+        addArrayLengthConstraints(parseValue(inst) as Instruction, parseValue(length), concreteLength)
+    }
 
-        val kfgLength = parseValue(length)
-        if (kfgLength is Constant) return@safeCall
+    override fun addArrayLengthConstraints(
+        inst: Int,
+        length: Int,
+        concreteLength: Any?
+    ) = safeCall {
+        val instruction = TraceIdRegistry.value(inst) as Instruction
+        preCheck(instruction)
+        if (!traceCollectingEnabled) return@safeCall
+
+        addArrayLengthConstraints(instruction, TraceIdRegistry.value(length), concreteLength)
+    }
+
+    private fun addArrayLengthConstraints(
+        instruction: Instruction,
+        kfgLength: Value,
+        concreteLength: Any?
+    ) {
+        if (kfgLength is Constant) return
 
         val termLength = mkValue(kfgLength)
 
-        if (termLength in lengthChecked) return@safeCall
+        if (termLength in lengthChecked) return
 
-        val actualLength = (concreteLength as? Int) ?: return@safeCall
+        val actualLength = (concreteLength as? Int) ?: return
 
         val positiveCheckTerm = term { value(KexBool, "${termLength}PositiveLengthCheck") }
         val positiveCheckPredicate = state {
@@ -180,6 +180,91 @@ private class EmptyTraceCollector : InstructionTraceCollector {
     }
 
     override fun addArrayLengthConstraints(inst: String, length: String, concreteLength: Any?) {}
+
+    override fun track(value: Int, concreteValue: Any?) {}
+
+    override fun methodEnter(method: Int, instance: Any?, args: List<Any?>) {}
+
+    override fun arrayLoad(value: Int, concreteValue: Any?, concreteRef: Any?, concreteIndex: Any?) {}
+
+    override fun arrayStore(inst: Int, concreteRef: Any?, concreteIndex: Any?, concreteValue: Any?) {}
+
+    override fun binary(value: Int, concreteValue: Any?, concreteLhv: Any?, concreteRhv: Any?) {}
+
+    override fun branch(inst: Int) {}
+
+    override fun call(inst: Int, concreteArguments: List<Any?>) {}
+
+    override fun cast(value: Int, concreteValue: Any?, concreteOperand: Any?) {}
+
+    override fun catch(exception: Int, concreteException: Any?) {}
+
+    override fun cmp(value: Int, concreteLhv: Any?, concreteRhv: Any?) {}
+
+    override fun binaryII(value: Int, concreteValue: Int, concreteLhv: Int, concreteRhv: Int) {}
+
+    override fun binaryJJ(value: Int, concreteValue: Long, concreteLhv: Long, concreteRhv: Long) {}
+
+    override fun binaryJI(value: Int, concreteValue: Long, concreteLhv: Long, concreteRhv: Int) {}
+
+    override fun binaryFF(value: Int, concreteValue: Float, concreteLhv: Float, concreteRhv: Float) {}
+
+    override fun binaryDD(value: Int, concreteValue: Double, concreteLhv: Double, concreteRhv: Double) {}
+
+    override fun cmpII(value: Int, concreteLhv: Int, concreteRhv: Int) {}
+
+    override fun cmpJJ(value: Int, concreteLhv: Long, concreteRhv: Long) {}
+
+    override fun cmpFF(value: Int, concreteLhv: Float, concreteRhv: Float) {}
+
+    override fun cmpDD(value: Int, concreteLhv: Double, concreteRhv: Double) {}
+
+    override fun enterMonitor(inst: Int, concreteOperand: Any?) {}
+
+    override fun exitMonitor(inst: Int, concreteOperand: Any?) {}
+
+    override fun fieldLoad(value: Int, concreteValue: Any?, concreteOwner: Any?) {}
+
+    override fun fieldStore(inst: Int, concreteValue: Any?, concreteOwner: Any?) {}
+
+    override fun instanceOf(value: Int, concreteValue: Any?, concreteOperand: Any?) {}
+
+    override fun invokeDynamic(value: Int, concreteValue: Any?, concreteOperands: List<Any?>) {}
+
+    override fun jump(inst: Int) {}
+
+    override fun newArray(value: Int, concreteValue: Any?, concreteDimensions: List<Any?>) {}
+
+    override fun new(value: Int) {}
+
+    override fun phi(value: Int, concreteValue: Any?) {}
+
+    override fun ret(inst: Int, concreteValue: Any?) {}
+
+    override fun switch(inst: Int, concreteValue: Any?) {}
+
+    override fun tableSwitch(inst: Int, concreteValue: Any?) {}
+
+    override fun throwing(inst: Int, concreteException: Any?) {}
+
+    override fun unary(value: Int, concreteValue: Any?, concreteOperand: Any?) {}
+
+    override fun addNullityConstraints(inst: Int, value: Int, concreteValue: Any?) {}
+
+    override fun addTypeConstraints(inst: Int, value: Int, concreteValue: Any?) {}
+
+    override fun addTypeConstraints(inst: Int, value: Int, type: Int, concreteValue: Any?) {}
+
+    override fun addArrayIndexConstraints(
+        inst: Int,
+        array: Int,
+        index: Int,
+        concreteArray: Any?,
+        concreteIndex: Any?
+    ) {
+    }
+
+    override fun addArrayLengthConstraints(inst: Int, length: Int, concreteLength: Any?) {}
 }
 
 @Suppress("unused")
@@ -0,0 +1,61 @@
+package org.vorpal.research.kex.trace.symbolic
+
+import org.vorpal.research.kfg.ir.Method
+import org.vorpal.research.kfg.ir.value.Value
+import org.vorpal.research.kfg.type.Type
+import java.util.concurrent.atomic.AtomicReferenceArray
+
+/**
+ * Process-wide registry of dense integer ids of the values, methods and types that are
+ * referenced by the instrumented code. Ids are assigned by
+ * [org.vorpal.research.kex.asm.transform.SymbolicTraceInstrumenter] during the instrumentation
+ * and are resolved by [SymbolicTraceBuilder] with an array lookup instead of parsing the names
+ */
+object TraceIdRegistry {
+    private const val INITIAL_CAPACITY = 1024
+
+    private class IdTable<T : Any> {
+        private val ids = hashMapOf<T, Int>()
+
+        // elements are registered under the lock and published with the volatile writes
+        // of the array elements, so the lookups of the registered ids do not need the lock.
+        // A lookup that races with the growth may still see the old array, it falls back to the locked read
+        @Volatile
+        private var elements = AtomicReferenceArray<Any>(INITIAL_CAPACITY)
+        private var size = 0
+
+        @Synchronized
+        fun idOf(element: T): Int = ids.getOrPut(element) {
+            if (size == elements.length()) {
+                val grown = AtomicReferenceArray<Any>(size * 2)
+                for (index in 0 until size) {
+                    grown[index] = elements[index]
+                }
+                elements = grown
+            }
+            elements[size] = element
+            size++
+        }
+
+        @Suppress("UNCHECKED_CAST")
+        operator fun get(id: Int): T {
+            val current = elements
+            if (id < current.length()) {
+                current[id]?.let { return it as T }
+            }
+            return synchronized(this) { elements[id] as T }
+        }
+    }
+
+    private val values = IdTable<Value>()
+    private val methods = IdTable<Method>()
+    private val types = IdTable<Type>()
+
+    fun idOf(value: Value): Int = values.idOf(value)
+    fun idOf(method: Method): Int = methods.idOf(method)
+    fun idOf(type: Type): Int = types.idOf(type)
+
+    fun value(id: Int): Value = values[id]
+    fun method(id: Int): Method = methods[id]
+    fun type(id: Int): Type = types[id]
+}
@@ -4,8 +4,15 @@ import io.ktor.network.selector.*
 import io.ktor.network.sockets.*
 import io.ktor.util.network.*
 import io.ktor.utils.io.*
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.channels.ClosedReceiveChannelException
+import kotlinx.coroutines.launch
 import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
 import kotlinx.coroutines.withTimeoutOrNull
 import kotlinx.serialization.ExperimentalSerializationApi
 import kotlinx.serialization.InternalSerializationApi
@@ -14,6 +21,8 @@ import org.vorpal.research.kex.config.kexConfig
 import org.vorpal.research.kex.serialization.KexSerializer
 import org.vorpal.research.kfg.ClassManager
 import org.vorpal.research.kthelper.logging.log
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
 import kotlin.time.Duration.Companion.seconds
 
 interface ControllerProtocolHandler : AutoCloseable {
@@ -35,22 +44,30 @@ interface MasterProtocolHandler : AutoCloseable {
 }
 
 
+/**
+ * Message of a multiplexed client connection, tagged with the id of the request it belongs to
+ */
+class TaggedFrame(val id: Int, val payload: ByteArray)
+
 interface Master2ClientConnection : AutoCloseable {
     suspend fun ready(): Boolean
-    suspend fun receive(): String?
-    suspend fun send(result: String): Boolean
+    suspend fun receive(): TaggedFrame?
+    suspend fun send(result: TaggedFrame): Boolean
 }
 
 interface Master2WorkerConnection : AutoCloseable {
     suspend fun ready(): Boolean
-    suspend fun send(request: String): Boolean
-    suspend fun receive(): String?
+    suspend fun send(request: ByteArray): Boolean
+    suspend fun receive(): ByteArray?
 }
 
+/**
+ * Long-lived client connection to the master. Requests are tagged with ids,
+ * so multiple requests can be executed concurrently over a single connection
+ */
 interface Client2MasterConnection : AutoCloseable {
-    suspend fun ready(): Boolean
-    suspend fun send(request: TestExecutionRequest): Boolean
-    suspend fun receive(): ExecutionResult?
+    val isActive: Boolean
+    suspend fun execute(request: TestExecutionRequest): ExecutionResult?
 }
 
 interface Worker2MasterConnection : AutoCloseable {
@@ -60,6 +77,105 @@ interface Worker2MasterConnection : AutoCloseable {
     suspend fun send(result: ExecutionResult): Boolean
 }
 
+/**
+ * Wire format of the messages between executor client, master and workers:
+ * - JSON --- every message is a single newline-terminated JSON line
+ * - BINARY --- every message is a length-prefixed frame encoded by [org.vorpal.research.kex.serialization.KexBinaryFormat]
+ *
+ * Master never decodes the messages, it only forwards the frames between clients and workers
+ */
+enum class ExecutorProtocol {
+    JSON, BINARY
+}
+
+val executorProtocol: ExecutorProtocol
+    get() = kexConfig.getEnumValue("executor", "protocol", ignoreCase = true, default = ExecutorProtocol.JSON)
+
+@ExperimentalSerializationApi
+@InternalSerializationApi
+inline fun <reified T : Any> KexSerializer.encodeMessage(protocol: ExecutorProtocol, value: T): ByteArray =
+    when (protocol) {
+        ExecutorProtocol.JSON -> toJson(value).toByteArray(Charsets.UTF_8)
+        ExecutorProtocol.BINARY -> toBinary(value)
+    }
+
+@ExperimentalSerializationApi
+@InternalSerializationApi
+inline fun <reified T : Any> KexSerializer.decodeMessage(protocol: ExecutorProtocol, message: ByteArray): T =
+    when (protocol) {
+        ExecutorProtocol.JSON -> fromJson<T>(message.toString(Charsets.UTF_8))
+        ExecutorProtocol.BINARY -> fromBinary<T>(message)
+    }
+
+private val maxFrameSize = kexConfig.getIntValue("executor", "maxFrameSize", 256 * 1024 * 1024)
+
+/**
+ * @return received frame, or null if the channel is closed or the frame has invalid length;
+ * in the latter case the rest of the stream can not be framed anymore, so the connection should be closed
+ */
+suspend fun ByteReadChannel.readFrame(protocol: ExecutorProtocol): ByteArray? = when (protocol) {
+    ExecutorProtocol.JSON -> readUTF8Line()?.toByteArray(Charsets.UTF_8)
+    ExecutorProtocol.BINARY -> try {
+        when (val size = readInt()) {
+            !in 0..maxFrameSize -> {
+                log.error("Received frame of invalid size $size, maximum frame size is $maxFrameSize")
+                null
+            }
+
+            else -> ByteArray(size).also { readFully(it, 0, size) }
+        }
+    } catch (e: ClosedReceiveChannelException) {
+        null
+    }
+}
+
+suspend fun ByteReadChannel.readTaggedFrame(protocol: ExecutorProtocol): TaggedFrame? = when (protocol) {
+    ExecutorProtocol.JSON -> readUTF8Line()?.let { line ->
+        when (val id = line.substringBefore(' ', missingDelimiterValue = "").toIntOrNull()) {
+            null -> {
+                log.error("Protocol error: received frame without a valid request tag: ${line.take(100)}")
+                null
+            }
+
+            else -> TaggedFrame(id, line.substringAfter(' ').toByteArray(Charsets.UTF_8))
+        }
+    }
+
+    ExecutorProtocol.BINARY -> try {
+        val id = readInt()
+        readFrame(protocol)?.let { TaggedFrame(id, it) }
+    } catch (e: ClosedReceiveChannelException) {
+        null
+    }
+}
+
+suspend fun ByteWriteChannel.writeTaggedFrame(protocol: ExecutorProtocol, frame: TaggedFrame) {
+    when (protocol) {
+        ExecutorProtocol.JSON -> {
+            val tag = "${frame.id} ".toByteArray(Charsets.UTF_8)
+            writeFully(tag, 0, tag.size)
+        }
+
+        ExecutorProtocol.BINARY -> writeInt(frame.id)
+    }
+    writeFrame(protocol, frame.payload)
+}
+
+suspend fun ByteWriteChannel.writeFrame(protocol: ExecutorProtocol, frame: ByteArray) {
+    when (protocol) {
+        ExecutorProtocol.JSON -> {
+            writeFully(frame, 0, frame.size)
+            writeByte('\n'.code.toByte())
+        }
+
+        ExecutorProtocol.BINARY -> {
+            writeInt(frame.size)
+            writeFully(frame, 0, frame.size)
+        }
+    }
+    flush()
+}
+
 // Impl
 
 private val connectionTimeout = kexConfig.getIntValue("executor", "connectionTimeout", 100).seconds
@@ -67,7 +183,10 @@ private val communicationTimeout = kexConfig.getIntValue("executor", "communicat
 
 @ExperimentalSerializationApi
 @InternalSerializationApi
-class ControllerProtocolSocketHandler(val ctx: ExecutionContext) : ControllerProtocolHandler {
+class ControllerProtocolSocketHandler(
+    val ctx: ExecutionContext,
+    private val protocol: ExecutorProtocol = executorProtocol
+) : ControllerProtocolHandler {
     private val selectorManager = SelectorManager(Dispatchers.IO)
     private val controllerSocket = aSocket(selectorManager).tcp().bind()
     private val serializers = mutableMapOf<ClassManager, KexSerializer>()
@@ -102,7 +221,7 @@ class ControllerProtocolSocketHandler(val ctx: ExecutionContext) : ControllerPro
             }
             val socket = aSocket(selectorManager).tcp().connect("localhost", masterPort)
             log.debug("Client {} connected to master {}", socket.localAddress, socket.remoteAddress)
-            Client2MasterSocketConnection(serializer, socket)
+            Client2MasterSocketConnection(serializer, socket, protocol)
         }
 
     override fun close() {
@@ -114,7 +233,8 @@ class ControllerProtocolSocketHandler(val ctx: ExecutionContext) : ControllerPro
 
 
 class MasterProtocolSocketHandler(
-    override val controllerPort: Int
+    override val controllerPort: Int,
+    private val protocol: ExecutorProtocol = executorProtocol
 ) : MasterProtocolHandler {
     private val selectorManager = SelectorManager(Dispatchers.IO)
     private val clientListener = aSocket(selectorManager).tcp().bind()
@@ -138,12 +258,12 @@ class MasterProtocolSocketHandler(
     override suspend fun receiveClientConnection(): Master2ClientConnection? = withTimeoutOrNull(connectionTimeout) {
         val socket = clientListener.accept()
         log.debug("Client {} connected to master {}", socket.remoteAddress, socket.localAddress)
-        Master2ClientSocketConnection(socket)
+        Master2ClientSocketConnection(socket, protocol)
     }
 
     override suspend fun receiveWorkerConnection(): Master2WorkerConnection? = withTimeoutOrNull(connectionTimeout) {
         val socket = workerListener.accept()
-        Master2WorkerSocketConnection(socket)
+        Master2WorkerSocketConnection(socket, protocol)
     }
 
     override fun close() {
@@ -153,25 +273,35 @@ class MasterProtocolSocketHandler(
     }
 }
 
-class Master2ClientSocketConnection(private val socket: Socket) : Master2ClientConnection {
-    private val writer = socket.openWriteChannel(autoFlush = true)
+class Master2ClientSocketConnection(
+    private val socket: Socket,
+    private val protocol: ExecutorProtocol
+) : Master2ClientConnection {
+    private val writer = socket.openWriteChannel()
     private val reader = socket.openReadChannel()
+    private val writerLock = Mutex()
 
     override suspend fun ready(): Boolean {
         return reader.availableForRead > 0
     }
 
-    override suspend fun receive(): String? = withTimeoutOrNull(communicationTimeout) {
+    /**
+     * client connections are persistent and can stay idle for a long time,
+     * so we do not use any timeouts here and wait until the client closes the connection
+     */
+    override suspend fun receive(): TaggedFrame? {
         log.debug("Receiving a message from {} to {}", socket.remoteAddress, socket.localAddress)
-        reader.readUTF8Line().also {
-            log.debug("Master received a request $it")
+        return reader.readTaggedFrame(protocol).also {
+            log.debug("Master received a request {} of size {}", it?.id, it?.payload?.size)
         }
     }
 
-    override suspend fun send(result: String): Boolean = withTimeoutOrNull(communicationTimeout) {
-        log.debug("Master sends a response of size ${result.length}")
+    override suspend fun send(result: TaggedFrame): Boolean = withTimeoutOrNull(communicationTimeout) {
+        log.debug("Master sends a response {} of size {}", result.id, result.payload.size)
         try {
-            writer.writeStringUtf8(result + "\n")
+            writerLock.withLock {
+                writer.writeTaggedFrame(protocol, result)
+            }
         } catch (e: Throwable) {
             log.error("Master received exception $e")
         }
@@ -185,12 +315,15 @@ class Master2ClientSocketConnection(private val socket: Socket) : Master2ClientC
     }
 }
 
-class Master2WorkerSocketConnection(private val socket: Socket) : Master2WorkerConnection {
-    private val writer = socket.openWriteChannel(autoFlush = true)
+class Master2WorkerSocketConnection(
+    private val socket: Socket,
+    private val protocol: ExecutorProtocol
+) : Master2WorkerConnection {
+    private val writer = socket.openWriteChannel()
     private val reader = socket.openReadChannel()
 
-    override suspend fun send(request: String): Boolean = withTimeoutOrNull(communicationTimeout) {
-        writer.writeStringUtf8(request + "\n")
+    override suspend fun send(request: ByteArray): Boolean = withTimeoutOrNull(communicationTimeout) {
+        writer.writeFrame(protocol, request)
         true
     } ?: false
 
@@ -198,8 +331,8 @@ class Master2WorkerSocketConnection(private val socket: Socket) : Master2WorkerC
         return reader.availableForRead > 0
     }
 
-    override suspend fun receive(): String? = withTimeoutOrNull(communicationTimeout) {
-        reader.readUTF8Line()
+    override suspend fun receive(): ByteArray? = withTimeoutOrNull(communicationTimeout) {
+        reader.readFrame(protocol)
     }
 
     override fun close() {
@@ -212,30 +345,76 @@ class Master2WorkerSocketConnection(private val socket: Socket) : Master2WorkerC
 @InternalSerializationApi
 class Client2MasterSocketConnection(
     val serializer: KexSerializer,
-    private val socket: Socket
+    private val socket: Socket,
+    private val protocol: ExecutorProtocol = executorProtocol
 ) : Client2MasterConnection {
-    private val writer = socket.openWriteChannel(autoFlush = true)
+    private val writer = socket.openWriteChannel()
     private val reader = socket.openReadChannel()
+    private val writerLock = Mutex()
+    private val requestIds = AtomicInteger()
+    private val pendingRequests = ConcurrentHashMap<Int, CompletableDeferred<ExecutionResult?>>()
+    private val readerScope = CoroutineScope(Dispatchers.IO)
 
-    override suspend fun send(request: TestExecutionRequest): Boolean = withTimeoutOrNull(communicationTimeout) {
-        log.debug("Client sending a request: {} from {} to {}", request, socket.localAddress, socket.remoteAddress)
-        val json = serializer.toJson(request)
-        writer.writeStringUtf8(json + "\n")
-        log.debug("Request is sent")
-        true
-    } ?: false
+    @Volatile
+    override var isActive: Boolean = true
+        private set
 
-    override suspend fun ready(): Boolean {
-        return reader.availableForRead > 0
+    init {
+        readerScope.launch {
+            try {
+                while (true) {
+                    val frame = reader.readTaggedFrame(protocol) ?: break
+                    log.debug("Client received an answer {} of size {}", frame.id, frame.payload.size)
+                    val result = try {
+                        serializer.decodeMessage<ExecutionResult>(protocol, frame.payload)
+                    } catch (e: Throwable) {
+                        log.error("Client could not decode an answer ${frame.id}: ", e)
+                        null
+                    }
+                    pendingRequests.remove(frame.id)?.complete(result)
+                }
+            } catch (e: Throwable) {
+                log.debug("Client connection failed: $e")
+            } finally {
+                shutdown()
+            }
+        }
     }
 
-    override suspend fun receive(): ExecutionResult? = withTimeoutOrNull(communicationTimeout) {
-        val json = reader.readUTF8Line() ?: return@withTimeoutOrNull null
-        log.debug("Client received an answer")
-        serializer.fromJson(json)
+    override suspend fun execute(request: TestExecutionRequest): ExecutionResult? {
+        if (!isActive) return null
+        val id = requestIds.getAndIncrement()
+        val response = CompletableDeferred<ExecutionResult?>()
+        pendingRequests[id] = response
+        log.debug("Client sending a request {}: {} from {} to {}", id, request, socket.localAddress, socket.remoteAddress)
+        val message = TaggedFrame(id, serializer.encodeMessage(protocol, request))
+        val isSent = withTimeoutOrNull(communicationTimeout) {
+            writerLock.withLock {
+                writer.writeTaggedFrame(protocol, message)
+            }
+            true
+        } ?: false
+        if (!isSent) {
+            log.debug("Client could not send a request {}, closing the connection", id)
+            close()
+            return null
+        }
+        log.debug("Request {} is sent", id)
+        return withTimeoutOrNull(communicationTimeout) { response.await() }.also {
+            pendingRequests.remove(id)
+        }
+    }
+
+    private fun shutdown() {
+        isActive = false
+        for (id in pendingRequests.keys.toList()) {
+            pendingRequests.remove(id)?.complete(null)
+        }
     }
 
     override fun close() {
+        shutdown()
+        readerScope.cancel()
         writer.close()
         socket.close()
         log.debug("Client closed its connection")
@@ -247,7 +426,8 @@ class Client2MasterSocketConnection(
 @InternalSerializationApi
 class Worker2MasterSocketConnection(
     val serializer: KexSerializer,
-    private val port: Int
+    private val port: Int,
+    private val protocol: ExecutorProtocol = executorProtocol
 ) : Worker2MasterConnection {
     private lateinit var socket: Socket
     private lateinit var writer: ByteWriteChannel
@@ -257,7 +437,7 @@ class Worker2MasterSocketConnection(
         log.debug("Trying to connect to master at port $port")
         socket = aSocket(SelectorManager(Dispatchers.IO)).tcp()
             .connect("localhost", port)
-        writer = socket.openWriteChannel(autoFlush = true)
+        writer = socket.openWriteChannel()
         reader = socket.openReadChannel()
         log.debug("Connected to master")
         true
@@ -268,15 +448,16 @@ class Worker2MasterSocketConnection(
     }
 
     override suspend fun receive(): TestExecutionRequest? = withTimeoutOrNull(communicationTimeout) {
-        val json = reader.readUTF8Line() ?: return@withTimeoutOrNull null
-        log.debug("Received request: $json")
-        serializer.fromJson(json)
+        val message = reader.readFrame(protocol) ?: return@withTimeoutOrNull null
+        serializer.decodeMessage<TestExecutionRequest>(protocol, message).also {
+            log.debug("Received request: $it")
+        }
     }
 
     override suspend fun send(result: ExecutionResult): Boolean = withTimeoutOrNull(communicationTimeout) {
-        val json = serializer.toJson(result)
-        log.debug("Sending a response")
-        writer.writeStringUtf8(json + "\n")
+        val message = serializer.encodeMessage(protocol, result)
+        log.debug("Sending a response of size ${message.size}")
+        writer.writeFrame(protocol, message)
         true
     } ?: false
 
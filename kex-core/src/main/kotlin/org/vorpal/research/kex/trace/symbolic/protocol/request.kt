@@ -3,9 +3,17 @@ package org.vorpal.research.kex.trace.symbolic.protocol
 import kotlinx.serialization.Serializable
 
 
+/**
+ * @property classes bytecode of the test classes compiled in memory, empty if the test classes
+ * should be loaded from the compiled code directory
+ */
 @Serializable
 data class TestExecutionRequest(
     val klass: String,
     val testMethod: String,
-    val setupMethod: String?
-)
+    val setupMethod: String?,
+    val classes: Map<String, ByteArray> = emptyMap()
+) {
+    override fun toString(): String =
+        "TestExecutionRequest(klass=$klass, testMethod=$testMethod, setupMethod=$setupMethod, classes=${classes.keys})"
+}
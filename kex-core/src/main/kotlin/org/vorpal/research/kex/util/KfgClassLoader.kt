@@ -82,6 +82,15 @@ class KfgClassLoader(
         else -> loadClassFromClassPath(name)
     }
 
+    fun defineClasses(classes: Map<String, ByteArray>) {
+        for ((name, bytes) in classes) {
+            @Suppress("NAME_SHADOWING") val name = name.javaString
+            synchronized(this.getClassLoadingLock(name)) {
+                if (name !in cache) defineClass(name, bytes)
+            }
+        }
+    }
+
     override fun loadClass(name: String): Class<*> {
         @Suppress("NAME_SHADOWING") val name = name.javaString
         val asmName = name.asmString
@@ -142,6 +142,38 @@ class KexSerializerTest : KexTest("kex-serializer") {
         }
     }
 
+    @Test
+    fun binarySerializationTest() {
+        val basicClass = cm["${`package`.concretePackage}/BasicTests"]
+
+        for (method in basicClass.allMethods) {
+            val psa = getPSA(method)
+            val state = psa.builder(method).methodState ?: continue
+
+            val serializedState = serializer.toBinary(state)
+            val deserializedState = serializer.fromBinary<PredicateState>(serializedState)
+
+            assertEquals(state, deserializedState)
+        }
+
+        val argTerm = term { arg(KexInt, 0) }
+        val cmpTerm = term { argTerm gt 0 }
+        val pathTerm = term { value(KexBool, "path") }
+        val assignPredicate = state { pathTerm equality cmpTerm }
+        val serializedAssign = serializer.toBinary<Predicate>(assignPredicate)
+        val deserializedAssign = serializer.fromBinary<Predicate>(serializedAssign)
+        assertEquals(assignPredicate, deserializedAssign)
+
+        with(DescriptorBuilder()) {
+            val instance = `object`(KexClass("org/vorpal/research/kex/test/SerializerTest"))
+            instance["self" to instance.type] = instance
+            instance["string" to cm.stringClass.kexType] = convertToDescriptor("test")
+            val instanceBinary = serializer.toBinary<Descriptor>(instance)
+            val instanceFromBinary = serializer.fromBinary<Descriptor>(instanceBinary)
+            assertTrue { instance eq instanceFromBinary }
+        }
+    }
+
     @Test
     fun descriptorSerializationTest() = with(DescriptorBuilder()) {
         val const = const(1242)
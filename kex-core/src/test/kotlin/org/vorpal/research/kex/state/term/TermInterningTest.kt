@@ -0,0 +1,86 @@
+package org.vorpal.research.kex.state.term
+
+import kotlinx.serialization.ExperimentalSerializationApi
+import kotlinx.serialization.InternalSerializationApi
+import org.junit.Test
+import org.vorpal.research.kex.KexTest
+import org.vorpal.research.kex.ktype.KexArray
+import org.vorpal.research.kex.ktype.KexClass
+import org.vorpal.research.kex.ktype.KexDouble
+import org.vorpal.research.kex.ktype.KexInt
+import org.vorpal.research.kex.serialization.KexSerializer
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertNotEquals
+import kotlin.test.assertNotSame
+import kotlin.test.assertSame
+import kotlin.test.assertTrue
+
+@ExperimentalSerializationApi
+@InternalSerializationApi
+class TermInterningTest : KexTest("term-interning") {
+    private val serializer = KexSerializer(cm)
+    private val klassType = KexClass("org/vorpal/research/kex/Test")
+
+    @Test
+    fun internIdentityTest() {
+        val first = term { value(klassType, "obj").field(KexArray(KexDouble), "arr").load() }
+        val second = term { value(klassType, "obj").field(KexArray(KexDouble), "arr").load() }
+        assertSame(first, second)
+        assertTrue(first.isInterned)
+
+        val otherField = term { value(klassType, "obj").field(KexArray(KexDouble), "arr2").load() }
+        assertNotSame(first, otherField)
+        assertNotEquals(first, otherField)
+
+        assertSame(term { const(42) }, term { const(42) })
+        assertNotEquals(term { const(42) }, term { const(42L) })
+        assertSame(term { arg(KexInt, 0) }, term { arg(KexInt, 0) })
+        assertNotEquals(term { arg(KexInt, 0) }, term { arg(KexInt, 1) })
+    }
+
+    @Test
+    fun nonInternedEqualityTest() {
+        val interned = term { value(klassType, "obj") }
+        val direct = ValueTerm(klassType, "obj")
+        assertFalse(direct.isInterned)
+        assertEquals(interned, direct)
+        assertEquals(direct, interned)
+        assertEquals(interned.hashCode(), direct.hashCode())
+        assertSame(interned, TermFactory.intern(direct))
+
+        val directLoad = FieldLoadTerm(KexDouble, FieldTerm(KexDouble, direct, "value"))
+        assertEquals(term { interned.field(KexDouble, "value").load() }, directLoad)
+        assertNotEquals(term { interned.field(KexDouble, "other").load() }, directLoad)
+    }
+
+    @Test
+    fun returnValueTermTest() {
+        val basicClass = cm["${`package`.concretePackage}/BasicTests"]
+        val (firstMethod, secondMethod) = basicClass.allMethods.take(2)
+
+        val firstReturn = term { termFactory.getReturn(KexInt, firstMethod) }
+        val secondReturn = term { termFactory.getReturn(KexInt, secondMethod) }
+        assertNotSame(firstReturn, secondReturn)
+        assertNotEquals(firstReturn, secondReturn)
+        assertSame(firstMethod, (firstReturn as ReturnValueTerm).method)
+        assertSame(secondMethod, (secondReturn as ReturnValueTerm).method)
+        assertSame(firstReturn, term { termFactory.getReturn(KexInt, firstMethod) })
+        assertNotEquals(firstReturn, ReturnValueTerm(KexInt, secondMethod))
+    }
+
+    @Test
+    fun serializationRoundTripTest() {
+        val fieldLoad = term { value(klassType, "obj").field(KexArray(KexDouble), "arr").load() }
+        val array = term { fieldLoad[const(3)].load() }
+
+        for (original in listOf(fieldLoad, array)) {
+            val deserialized = serializer.fromJson<Term>(serializer.toJson(original))
+            assertFalse(deserialized.isInterned)
+            assertEquals(original, deserialized)
+            assertEquals(original.hashCode(), deserialized.hashCode())
+            assertEquals(original.name, deserialized.name)
+            assertSame(original, TermFactory.intern(deserialized))
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package org.vorpal.research.kex.trace.symbolic
+
+import org.junit.Test
+import org.vorpal.research.kex.ExecutionContext
+import org.vorpal.research.kex.KexTest
+import org.vorpal.research.kex.asm.transform.SymbolicTraceInstrumenter
+import org.vorpal.research.kex.random.easyrandom.EasyRandomDriver
+import org.vorpal.research.kex.util.KfgClassLoader
+import org.vorpal.research.kex.util.getIntrinsics
+import org.vorpal.research.kex.util.getRuntime
+import org.vorpal.research.kfg.ClassManager
+import org.vorpal.research.kfg.KfgConfig
+import org.vorpal.research.kfg.ir.value.NameMapperContext
+import org.vorpal.research.kfg.util.Flags
+import java.nio.file.Paths
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+/**
+ * Checks that the code instrumented with the integer ids produces the same symbolic states
+ * as the code instrumented with the string names
+ */
+class IntegerTraceIdsTest : KexTest("integer-trace-ids") {
+    private val arguments = listOf(-1, 0, 1)
+
+    private fun collectStates(useIntegerIds: Boolean): List<SymbolicState> {
+        val instrumentedCm = ClassManager(KfgConfig(flags = Flags.readAll, failOnError = false, verifyIR = false))
+        instrumentedCm.initialize(*listOfNotNull(jar, getRuntime(), getIntrinsics()).toTypedArray())
+        val instrumentedLoader = KfgClassLoader(
+            instrumentedCm, listOfNotNull(Paths.get(jarPath), getIntrinsics()?.path)
+        ) { kfgClass ->
+            val instrumenter = SymbolicTraceInstrumenter(instrumentedCm, useIntegerIds = useIntegerIds)
+            for (method in kfgClass.allMethods) {
+                instrumenter.visit(method)
+            }
+        }
+        val ctx = ExecutionContext(instrumentedCm, instrumentedLoader, EasyRandomDriver(), listOf(Paths.get(jarPath)))
+
+        val javaClass = instrumentedLoader.loadClass("$packageName.concolic.PrimitiveConcolicTests")
+        val instance = javaClass.getConstructor().newInstance()
+        val method = javaClass.getMethod("testInt", Int::class.javaPrimitiveType)
+        return arguments.map { argument ->
+            val collector = TraceCollectorProxy.enableCollector(ctx, NameMapperContext())
+            try {
+                method.invoke(instance, argument)
+            } finally {
+                TraceCollectorProxy.disableCollector()
+            }
+            collector.symbolicState
+        }
+    }
+
+    @Test
+    fun integerIdsTest() {
+        val stringStates = collectStates(useIntegerIds = false)
+        val integerStates = collectStates(useIntegerIds = true)
+
+        for ((argument, states) in arguments.zip(stringStates.zip(integerStates))) {
+            val (expected, actual) = states
+            assertTrue(expected.path.path.isNotEmpty(), "No path collected for $argument")
+            assertEquals(expected.clauses.map { "${it.predicate}" }, actual.clauses.map { "${it.predicate}" })
+            assertEquals(expected.path.map { "${it.predicate}" }, actual.path.map { "${it.predicate}" })
+            assertEquals(expected.concreteTypes.mapKeys { "${it.key}" }, actual.concreteTypes.mapKeys { "${it.key}" })
+
+            val actualValues = actual.concreteValues.mapKeys { "${it.key}" }
+            assertEquals(expected.concreteValues.keys.mapTo(mutableSetOf()) { "$it" }, actualValues.keys)
+            for ((term, descriptor) in expected.concreteValues) {
+                assertTrue(descriptor eq actualValues.getValue("$term"), "Different values of $term for $argument")
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package org.vorpal.research.kex.trace.symbolic
+
+import org.junit.Test
+import org.vorpal.research.kex.ExecutionContext
+import org.vorpal.research.kex.KexTest
+import org.vorpal.research.kex.descriptor.Descriptor
+import org.vorpal.research.kex.random.easyrandom.EasyRandomDriver
+import org.vorpal.research.kex.state.term.ArgumentTerm
+import org.vorpal.research.kfg.ir.value.NameMapperContext
+import java.nio.file.Paths
+import kotlin.test.assertEquals
+import kotlin.test.assertSame
+import kotlin.test.assertTrue
+
+class SymbolicTraceBuilderTest : KexTest("symbolic-trace-builder") {
+    private val ctx = ExecutionContext(cm, loader, EasyRandomDriver(), listOf(Paths.get(jarPath)))
+
+    /**
+     * tracks the same point as both arguments of `checkPoint`, requesting the state in between,
+     * so that in lazy mode the arguments are converted by the different materializations
+     */
+    private fun collectArguments(lazyConcreteValues: Boolean): List<Descriptor> {
+        val klass = cm["${`package`.concretePackage}/generation/BasicJavaObjectGeneration"]
+        val method = klass.allMethods.first { it.name == "checkPoint" }
+        val point = loader.loadClass("$packageName.generation.BasicJavaObjectGeneration\$Point")
+            .getConstructor(Int::class.java, Int::class.java)
+            .newInstance(1, 2)
+
+        val builder = SymbolicTraceBuilder(ctx, NameMapperContext(), lazyConcreteValues)
+        builder.methodEnter(TraceIdRegistry.idOf(method), null, listOf(point, point))
+        for ((index, type) in method.argTypes.withIndex()) {
+            builder.track(TraceIdRegistry.idOf(ctx.values.getArgument(index, method, type)), point)
+            builder.symbolicState
+        }
+        return builder.symbolicState.concreteValues
+            .filterKeys { it is ArgumentTerm }
+            .entries.sortedBy { (it.key as ArgumentTerm).index }
+            .map { it.value }
+    }
+
+    @Test
+    fun lazyAliasingTest() {
+        val eager = collectArguments(lazyConcreteValues = false)
+        val lazy = collectArguments(lazyConcreteValues = true)
+        assertEquals(2, eager.size)
+        assertEquals(2, lazy.size)
+
+        assertSame(eager[0], eager[1])
+        assertSame(lazy[0], lazy[1])
+        for ((eagerValue, lazyValue) in eager.zip(lazy)) {
+            assertTrue(eagerValue eq lazyValue, "Different descriptors in eager and lazy modes")
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package org.vorpal.research.kex.trace.symbolic.protocol
+
+import io.ktor.utils.io.*
+import kotlinx.coroutines.runBlocking
+import java.nio.ByteBuffer
+import kotlin.test.Test
+import kotlin.test.assertContentEquals
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+
+class FrameTest {
+    private fun frame(size: Int, payload: ByteArray = ByteArray(0)): ByteReadChannel =
+        ByteReadChannel(ByteBuffer.allocate(Int.SIZE_BYTES + payload.size).putInt(size).put(payload).array())
+
+    @Test
+    fun validFrameTest() = runBlocking {
+        val payload = byteArrayOf(1, 2, 3, 4, 5)
+        assertContentEquals(payload, frame(payload.size, payload).readFrame(ExecutorProtocol.BINARY))
+        assertContentEquals(ByteArray(0), frame(0).readFrame(ExecutorProtocol.BINARY))
+    }
+
+    @Test
+    fun invalidFrameSizeTest() = runBlocking {
+        assertNull(frame(-1).readFrame(ExecutorProtocol.BINARY))
+        assertNull(frame(Int.MIN_VALUE).readFrame(ExecutorProtocol.BINARY))
+        assertNull(frame(Int.MAX_VALUE).readFrame(ExecutorProtocol.BINARY))
+    }
+
+    @Test
+    fun closedChannelTest() = runBlocking {
+        assertNull(ByteReadChannel(ByteArray(0)).readFrame(ExecutorProtocol.BINARY))
+    }
+
+    @Test
+    fun jsonTaggedFrameTest() = runBlocking {
+        val frame = ByteReadChannel("42 {\"a\": 1}\n".toByteArray()).readTaggedFrame(ExecutorProtocol.JSON)
+        assertEquals(42, frame?.id)
+        assertContentEquals("{\"a\": 1}".toByteArray(), frame?.payload)
+
+        assertNull(ByteReadChannel("{\"a\":1}\n".toByteArray()).readTaggedFrame(ExecutorProtocol.JSON))
+        assertNull(ByteReadChannel("tag {}\n".toByteArray()).readTaggedFrame(ExecutorProtocol.JSON))
+    }
+}
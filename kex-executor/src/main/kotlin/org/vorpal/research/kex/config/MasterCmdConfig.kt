@@ -25,6 +25,10 @@ class MasterCmdConfig(args: Array<String>) : AbstractCmdConfig("kex-executor-mas
     workers.isRequired = false
     options += workers
 
+    val protocol = Option(null, "protocol", true, "wire protocol for executor messages: json or binary")
+    protocol.isRequired = false
+    options += protocol
+
     options += Option(null, "config", true, "configuration file").also { it.isRequired = false }
 
     options
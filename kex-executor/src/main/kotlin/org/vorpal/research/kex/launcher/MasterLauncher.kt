@@ -6,7 +6,9 @@ import org.vorpal.research.kex.config.FileConfig
 import org.vorpal.research.kex.config.MasterCmdConfig
 import org.vorpal.research.kex.config.RuntimeConfig
 import org.vorpal.research.kex.config.kexConfig
+import org.vorpal.research.kex.trace.symbolic.protocol.ExecutorProtocol
 import org.vorpal.research.kex.trace.symbolic.protocol.MasterProtocolSocketHandler
+import org.vorpal.research.kex.trace.symbolic.protocol.executorProtocol
 import org.vorpal.research.kex.util.getPathSeparator
 import org.vorpal.research.kex.worker.ExecutorMaster
 import java.nio.file.Files
@@ -49,11 +51,15 @@ class MasterLauncher(args: Array<String>) {
     }
 
     fun main() {
+        val protocol = cmd.getCmdValue("protocol")
+            ?.let { ExecutorProtocol.valueOf(it.uppercase()) }
+            ?: executorProtocol
         val master = ExecutorMaster(
-            MasterProtocolSocketHandler(port),
+            MasterProtocolSocketHandler(port, protocol),
             kfgClassPath,
             workerClassPath,
-            numberOfWorkers
+            numberOfWorkers,
+            protocol
         )
 
         Runtime.getRuntime().addShutdownHook(thread(start = false) {
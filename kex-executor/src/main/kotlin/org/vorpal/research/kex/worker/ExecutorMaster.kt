@@ -1,21 +1,31 @@
 package org.vorpal.research.kex.worker
 
 import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.channels.Channel.Factory.CONFLATED
 import kotlinx.coroutines.channels.Channel.Factory.UNLIMITED
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.delay
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
 import kotlinx.serialization.ExperimentalSerializationApi
 import kotlinx.serialization.InternalSerializationApi
 import kotlinx.serialization.json.Json
-import kotlinx.serialization.serializer
+import kotlinx.serialization.modules.EmptySerializersModule
 import org.vorpal.research.kex.config.kexConfig
+import org.vorpal.research.kex.serialization.KexBinaryFormat
 import org.vorpal.research.kex.trace.symbolic.protocol.ExecutionFailedResult
+import org.vorpal.research.kex.trace.symbolic.protocol.ExecutionResult
 import org.vorpal.research.kex.trace.symbolic.protocol.ExecutionTimedOutResult
+import org.vorpal.research.kex.trace.symbolic.protocol.ExecutorProtocol
 import org.vorpal.research.kex.trace.symbolic.protocol.Master2ClientConnection
 import org.vorpal.research.kex.trace.symbolic.protocol.Master2WorkerConnection
 import org.vorpal.research.kex.trace.symbolic.protocol.MasterProtocolHandler
+import org.vorpal.research.kex.trace.symbolic.protocol.TaggedFrame
 import org.vorpal.research.kex.util.getJavaPath
 import org.vorpal.research.kex.util.getJvmModuleParams
+import org.vorpal.research.kex.util.getJvmVersion
 import org.vorpal.research.kex.util.getPathSeparator
 import org.vorpal.research.kex.util.kexHome
 import org.vorpal.research.kex.util.newFixedThreadPoolContextWithMDC
@@ -25,20 +35,61 @@ import org.vorpal.research.kthelper.logging.log
 import org.vorpal.research.kthelper.nullFile
 import org.vorpal.research.kthelper.terminate
 import org.vorpal.research.kthelper.terminateOrKill
+import java.io.IOException
 import java.nio.file.Path
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.io.path.exists
+import kotlin.time.Duration
 import kotlin.time.Duration.Companion.milliseconds
+import kotlin.time.TimeMark
+import kotlin.time.TimeSource
 
+/**
+ * Master of the executor worker processes.
+ *
+ * Size of the worker pool is adjusted between `[executor] minWorkers` and `[executor] maxWorkers`:
+ * the pool grows while the client requests wait for the workers longer than it takes to execute them,
+ * and shrinks when the workers stay idle for longer than `[executor] workerIdleTimeout`.
+ * Additionally, `[executor] spareWorkers` processes are kept started and connected, so that
+ * a crashed worker or a new worker of the pool does not need to wait for the JVM startup.
+ * If `[executor] workerClassDataSharing` is enabled, the workers also share an AppCDS archive
+ * of the worker classpath, which cuts the class loading time of the newly started processes
+ */
 @ExperimentalSerializationApi
 @InternalSerializationApi
 class ExecutorMaster(
     val connection: MasterProtocolHandler,
     val kfgClassPath: List<Path>,
     val workerClassPath: List<Path>,
-    private val numberOfWorkers: Int
+    numberOfWorkers: Int,
+    private val protocol: ExecutorProtocol
 ) : Runnable {
-    @Suppress("JoinDeclarationAndAssignment")
-    private val workers: List<WorkerWrapper>
+    private val minWorkers = maxOf(1, kexConfig.getIntValue("executor", "minWorkers", numberOfWorkers))
+    private val maxWorkers = maxOf(minWorkers, kexConfig.getIntValue("executor", "maxWorkers", numberOfWorkers))
+    private val spareWorkers = maxOf(0, kexConfig.getIntValue("executor", "spareWorkers", 0))
+    private val poolUpdateInterval = kexConfig.getLongValue("executor", "poolUpdateInterval", 1000L).milliseconds
+    private val workerIdleTimeout = kexConfig.getLongValue("executor", "workerIdleTimeout", 10000L).milliseconds
+    private val spawnAttempts = maxOf(1, kexConfig.getIntValue("executor", "workerSpawnAttempts", 5))
+    private val spawnRetryDelay = kexConfig.getLongValue("executor", "workerSpawnRetryDelay", 500L).milliseconds
+
+    private val workers: MutableSet<WorkerWrapper> = ConcurrentHashMap.newKeySet()
     private val workerQueue = Channel<WorkerWrapper>(UNLIMITED)
+    private val spares = Channel<WorkerProcess>(UNLIMITED)
+    private val numberOfSpares = AtomicInteger(0)
+    private val sparesDemand = Channel<Unit>(CONFLATED)
+
+    // worker connections are accepted in the order of the connection attempts,
+    // so the processes are started one at a time to match them with their connections
+    private val spawnMutex = Mutex()
+    private val nextWorkerId = AtomicInteger(0)
+    private val nextProcessId = AtomicInteger(0)
+
+    private val waitingRequests = AtomicInteger(0)
+    private val waitLatency = AverageLatency()
+    private val executionLatency = AverageLatency()
+
     private val outputDir = kexConfig.outputDirectory
     private val workerJvmParams = kexConfig.getMultipleStringValue(
         "executor", "workerJvmParams", ","
@@ -51,6 +102,21 @@ class ExecutorMaster(
         kexConfig.kexHome.resolve("kex.ini")
     }.toAbsolutePath()
 
+    // dynamic AppCDS archives are supported since JDK 13, archive is specific to the JVM and the classpath,
+    // so it is named after both of them and is reused by the later runs with the same configuration
+    private val classDataSharingArchive: Path? = when {
+        !kexConfig.getBooleanValue("executor", "workerClassDataSharing", false) -> null
+        getJvmVersion() < 13 -> null
+        else -> {
+            val configurationHash = "${getJavaPath()}|${workerClassPath.joinToString(getPathSeparator())}"
+                .hashCode().toUInt().toString(16)
+            kexConfig.getPathValue("executor", "workerClassDataSharingDir") {
+                kexConfig.kexHome.resolve("kex-executor/target")
+            }.resolve("kex-worker-$configurationHash.jsa").toAbsolutePath()
+        }
+    }
+    private val classDataSharingDumpStarted = AtomicBoolean(false)
+
     private val json = Json {
         encodeDefaults = false
         ignoreUnknownKeys = false
@@ -59,120 +125,308 @@ class ExecutorMaster(
         classDiscriminator = "className"
         allowStructuredMapKeys = true
     }
+    private val binary = KexBinaryFormat(EmptySerializersModule())
+
+    companion object {
+        private const val LATENCY_SMOOTHING = 0.1
+    }
+
+    private fun encodeResult(result: ExecutionResult): ByteArray = when (protocol) {
+        ExecutorProtocol.JSON -> json.encodeToString(ExecutionResult.serializer(), result).toByteArray(Charsets.UTF_8)
+        ExecutorProtocol.BINARY -> binary.encodeToByteArray(ExecutionResult.serializer(), result)
+    }
 
-    init {
-        workers = List(numberOfWorkers) { WorkerWrapper(it) }
+    /**
+     * exponential moving average of the latencies in milliseconds
+     */
+    private class AverageLatency {
+        private var average = 0.0
+
+        val value: Double
+            @Synchronized get() = average
+
+        @Synchronized
+        fun add(latency: Duration) {
+            val sample = latency.inWholeMicroseconds / 1000.0
+            average = when (average) {
+                0.0 -> sample
+                else -> average + LATENCY_SMOOTHING * (sample - average)
+            }
+        }
     }
 
-    inner class WorkerWrapper(val id: Int) {
-        private lateinit var process: Process
-        private lateinit var workerConnection: Master2WorkerConnection
+    /**
+     * Started worker JVM together with its connection
+     */
+    inner class WorkerProcess(
+        val id: Int,
+        private val process: Process,
+        val workerConnection: Master2WorkerConnection
+    ) {
+        val isAlive get() = process.isAlive
 
-        init {
-            reInit()
+        fun terminate() {
+            process.terminate(attempts = 10U)
+            if (process.isAlive) {
+                process.destroyForcibly()
+            }
         }
 
-        private fun reInit() = runBlocking {
-            process = createProcess()
-            if (this@WorkerWrapper::workerConnection.isInitialized)
-                workerConnection.close()
-            workerConnection = when (val tempConnection = connection.receiveWorkerConnection()) {
-                null -> {
-                    log.debug("Worker $id connection timeout")
-                    process.terminateOrKill(attempts = 10U, waitTime = 500.milliseconds)
-                    return@runBlocking
-                }
+        fun destroy() {
+            workerConnection.close()
+            log.debug("Terminating worker process $id")
+            process.terminateOrKill(attempts = 10U, waitTime = 500.milliseconds)
+            log.debug("Worker process $id terminated: ${process.isAlive}")
+        }
+    }
+
+    private suspend fun spawnProcess(): WorkerProcess? = spawnMutex.withLock {
+        val id = nextProcessId.getAndIncrement()
+        val process = createProcess(id)
+        when (val workerConnection = connection.receiveWorkerConnection()) {
+            null -> {
+                log.debug("Worker process $id connection timeout")
+                process.terminateOrKill(attempts = 10U, waitTime = 500.milliseconds)
+                null
+            }
 
-                else -> tempConnection
+            else -> {
+                log.debug("Worker process $id connected")
+                WorkerProcess(id, process, workerConnection)
             }
-            log.debug("Worker $id connected")
         }
+    }
+
+    /**
+     * tries to start a process `[executor] workerSpawnAttempts` times, the delay between the attempts
+     * starts from `[executor] workerSpawnRetryDelay` and doubles after each failure
+     *
+     * @return started process or null if all the attempts failed
+     */
+    private suspend fun spawnProcessWithRetries(): WorkerProcess? {
+        var retryDelay = spawnRetryDelay
+        for (attempt in 1..spawnAttempts) {
+            val process = try {
+                spawnProcess()
+            } catch (e: IOException) {
+                log.warn("Failed to start a worker process: ", e)
+                null
+            }
+            if (process != null) return process
+            if (attempt < spawnAttempts) {
+                log.debug("Worker process start attempt $attempt failed, retrying in $retryDelay")
+                delay(retryDelay)
+                retryDelay *= 2
+            }
+        }
+        log.error("Could not start a worker process in $spawnAttempts attempts")
+        return null
+    }
+
+    /**
+     * @return one of the warm spare processes if there is any, or a newly started process otherwise;
+     * null if a new process could not be started
+     */
+    private suspend fun acquireProcess(): WorkerProcess? {
+        while (true) {
+            val spare = spares.tryReceive().getOrNull() ?: break
+            numberOfSpares.decrementAndGet()
+            sparesDemand.trySend(Unit)
+            if (spare.isAlive) return spare
+            spare.destroy()
+        }
+        return spawnProcessWithRetries()
+    }
+
+    /**
+     * workers use the existing archive; if there is no archive yet, the first started worker
+     * records its loaded classes and dumps them into the archive on exit.
+     *
+     * There is no separate warm-up step: the archive is written only if the recording worker exits
+     * through the normal JVM shutdown. If it crashes or is killed forcibly (e.g. by [WorkerProcess.destroy]
+     * after the termination attempts run out), no archive is written and the workers of the current run
+     * start without it; the next run makes another recording attempt
+     */
+    private fun getClassDataSharingParams(): List<String> {
+        val archive = classDataSharingArchive ?: return emptyList()
+        return when {
+            archive.exists() -> listOf("-XX:SharedArchiveFile=$archive")
+            classDataSharingDumpStarted.compareAndSet(false, true) -> {
+                archive.parent?.toFile()?.mkdirs()
+                listOf("-XX:ArchiveClassesAtExit=$archive")
+            }
 
-        private fun createProcess(): Process = buildProcess(
-            getJavaPath().toString(),
-            *workerJvmParams,
-            "-Djava.security.manager",
-            "-Djava.security.policy==${executorPolicyPath}",
-            "-Dlogback.statusListenerClass=ch.qos.logback.core.status.NopStatusListener",
-            *getJvmModuleParams().toTypedArray(),
-            "-classpath", workerClassPath.joinToString(getPathSeparator()),
-            executorKlass,
-            "--output", "${outputDir.toAbsolutePath()}",
-            "--config", executorConfigPath.toString(),
-            "--option", "kex:log:${outputDir.resolve("kex-executor-worker$id.log").toAbsolutePath()}",
-            "--classpath", kfgClassPath.joinToString(getPathSeparator()),
-            "--port", "${connection.workerPort}"
-        ) {
-            redirectInput(nullFile())
-            redirectOutput(nullFile())
-            log.debug("Starting worker process with command: '${command().joinToString(" ")}'")
+            else -> emptyList()
         }
+    }
 
-        suspend fun processTask(clientConnection: Master2ClientConnection): Boolean {
+    private fun createProcess(id: Int): Process = buildProcess(
+        getJavaPath().toString(),
+        *workerJvmParams,
+        *getClassDataSharingParams().toTypedArray(),
+        "-Djava.security.manager",
+        "-Djava.security.policy==${executorPolicyPath}",
+        "-Dlogback.statusListenerClass=ch.qos.logback.core.status.NopStatusListener",
+        *getJvmModuleParams().toTypedArray(),
+        "-classpath", workerClassPath.joinToString(getPathSeparator()),
+        executorKlass,
+        "--output", "${outputDir.toAbsolutePath()}",
+        "--config", executorConfigPath.toString(),
+        "--option", "kex:log:${outputDir.resolve("kex-executor-worker$id.log").toAbsolutePath()}",
+        "--option", "executor:protocol:${protocol.name.lowercase()}",
+        "--classpath", kfgClassPath.joinToString(getPathSeparator()),
+        "--port", "${connection.workerPort}"
+    ) {
+        redirectInput(nullFile())
+        redirectOutput(nullFile())
+        log.debug("Starting worker process with command: '${command().joinToString(" ")}'")
+    }
+
+    inner class WorkerWrapper(val id: Int, private var process: WorkerProcess) {
+        @Volatile
+        var lastUsed: TimeMark = TimeSource.Monotonic.markNow()
+            private set
+
+        suspend fun processTask(clientConnection: Master2ClientConnection, request: TaggedFrame): Boolean {
             log.debug("Worker {} started work", id)
-            while (!process.isAlive)
-                reInit()
+            while (!process.isAlive) {
+                process.destroy()
+                process = acquireProcess() ?: return clientConnection.send(
+                    TaggedFrame(request.id, encodeResult(ExecutionFailedResult("Could not start a worker process")))
+                )
+                log.debug("Worker {} switched to process {}", id, process.id)
+            }
 
-            val request = clientConnection.receive() ?: return false
-            log.debug("Worker {} received request {}", id, request)
+            log.debug("Worker {} received request {} of size {}", id, request.id, request.payload.size)
 
+            val workerConnection = process.workerConnection
             val result = try {
                 when {
-                    !workerConnection.send(request) -> json.encodeToString(
-                        ExecutionTimedOutResult::class.serializer(),
-                        ExecutionTimedOutResult("timeout")
-                    )
+                    !workerConnection.send(request.payload) -> encodeResult(ExecutionTimedOutResult("timeout"))
 
                     else -> when (val result = workerConnection.receive()) {
-                        null -> json.encodeToString(
-                            ExecutionTimedOutResult::class.serializer(),
-                            ExecutionTimedOutResult("timeout")
-                        )
+                        null -> encodeResult(ExecutionTimedOutResult("timeout"))
 
                         else -> result
                     }
                 }
             } catch (e: Throwable) {
-                process.terminate(attempts = 10U)
-                if (process.isAlive) {
-                    process.destroyForcibly()
-                }
+                process.terminate()
                 log.debug("Worker failed with an error", e)
-                json.encodeToString(ExecutionFailedResult::class.serializer(), ExecutionFailedResult(e.message ?: ""))
+                encodeResult(ExecutionFailedResult(e.message ?: ""))
             }
+            lastUsed = TimeSource.Monotonic.markNow()
             log.debug("Worker $id processed result")
-            return clientConnection.send(result)
+            return clientConnection.send(TaggedFrame(request.id, result))
         }
 
         fun destroy() {
-            workerConnection.close()
-            log.debug("Terminating worker process $id")
-            process.terminateOrKill(attempts = 10U, waitTime = 500.milliseconds)
-            log.debug("Worker process $id terminated: ${process.isAlive}")
+            process.destroy()
+        }
+    }
+
+    private suspend fun addWorker(): Boolean {
+        val process = acquireProcess() ?: return false
+        val worker = WorkerWrapper(nextWorkerId.getAndIncrement(), process)
+        workers += worker
+        workerQueue.send(worker)
+        log.debug("Added worker ${worker.id}, pool size is ${workers.size}")
+        return true
+    }
+
+    /**
+     * if a spare process cannot be started, spares are not replenished until the next demand
+     */
+    private suspend fun replenishSpares() {
+        while (numberOfSpares.get() < spareWorkers) {
+            val spare = spawnProcessWithRetries() ?: return
+            numberOfSpares.incrementAndGet()
+            spares.send(spare)
+        }
+    }
+
+    private suspend fun updatePool() {
+        val waiting = waitingRequests.get()
+        when {
+            waiting > 0 && workers.size < maxWorkers -> {
+                val saturated = waiting >= workers.size || waitLatency.value > executionLatency.value / 2
+                if (saturated) {
+                    repeat(minOf(waiting, maxWorkers - workers.size)) {
+                        if (!addWorker()) return
+                    }
+                }
+            }
+
+            waiting == 0 && workers.size > minWorkers -> {
+                val idleWorkers = generateSequence { workerQueue.tryReceive().getOrNull() }.toList()
+                for (worker in idleWorkers) {
+                    if (workers.size > minWorkers && worker.lastUsed.elapsedNow() > workerIdleTimeout) {
+                        workers -= worker
+                        worker.destroy()
+                        log.debug("Removed idle worker ${worker.id}, pool size is ${workers.size}")
+                    } else {
+                        workerQueue.send(worker)
+                    }
+                }
+            }
         }
     }
 
     private suspend fun handleClient(clientConnection: Master2ClientConnection) = try {
-        val worker = workerQueue.receive()
-        log.debug("Selected a worker ${worker.id}")
-        if (!worker.processTask(clientConnection)) {
-            log.debug("Worker {} failed to handle client request", worker.id)
-            worker.destroy()
+        coroutineScope {
+            while (true) {
+                val request = clientConnection.receive() ?: break
+                launch { handleRequest(clientConnection, request) }
+            }
         }
-        workerQueue.send(worker)
     } catch (e: Throwable) {
         log.error("Error while working with client: ", e)
     } finally {
         clientConnection.close()
     }
 
+    private suspend fun handleRequest(clientConnection: Master2ClientConnection, request: TaggedFrame) = try {
+        val requestStart = TimeSource.Monotonic.markNow()
+        waitingRequests.incrementAndGet()
+        val worker = try {
+            workerQueue.receive()
+        } finally {
+            waitingRequests.decrementAndGet()
+        }
+        waitLatency.add(requestStart.elapsedNow())
+        log.debug("Selected a worker ${worker.id} for request ${request.id}")
+
+        val executionStart = TimeSource.Monotonic.markNow()
+        if (!worker.processTask(clientConnection, request)) {
+            log.debug("Worker {} failed to handle client request", worker.id)
+            worker.destroy()
+        }
+        executionLatency.add(executionStart.elapsedNow())
+        workerQueue.send(worker)
+    } catch (e: Throwable) {
+        log.error("Error while handling client request: ", e)
+    }
+
     override fun run() {
-        runBlocking(newFixedThreadPoolContextWithMDC(maxOf(1, numberOfWorkers / 2), "master")) {
-            for (worker in workers) {
-                workerQueue.send(worker)
+        runBlocking(newFixedThreadPoolContextWithMDC(maxOf(1, maxWorkers / 2), "master")) {
+            repeat(minWorkers) { addWorker() }
+            check(workers.isNotEmpty()) { "Could not start any worker process" }
+
+            launch {
+                while (true) {
+                    replenishSpares()
+                    sparesDemand.receive()
+                }
+            }
+
+            launch {
+                while (true) {
+                    delay(poolUpdateInterval)
+                    updatePool()
+                }
             }
 
-            val clientChannel = Channel<Master2ClientConnection>(numberOfWorkers)
+            val clientChannel = Channel<Master2ClientConnection>(maxWorkers)
 
             launch {
                 while (true) {
@@ -197,5 +451,9 @@ class ExecutorMaster(
             log.debug("Destroying worker ${worker.id}")
             worker.destroy()
         }
+        while (true) {
+            val spare = spares.tryReceive().getOrNull() ?: break
+            spare.destroy()
+        }
     }
 }
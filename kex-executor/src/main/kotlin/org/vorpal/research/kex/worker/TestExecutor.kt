@@ -4,6 +4,7 @@ import org.vorpal.research.kex.ExecutionContext
 import org.vorpal.research.kex.descriptor.convertToDescriptor
 import org.vorpal.research.kex.trace.symbolic.TraceCollectorProxy
 import org.vorpal.research.kex.trace.symbolic.protocol.*
+import org.vorpal.research.kex.util.KfgClassLoader
 import org.vorpal.research.kfg.ir.value.NameMapperContext
 import org.vorpal.research.kthelper.logging.log
 
@@ -12,6 +13,10 @@ class TestExecutor(
 ) {
 
     fun executeTest(request: TestExecutionRequest): ExecutionResult {
+        if (request.classes.isNotEmpty()) {
+            (ctx.loader as KfgClassLoader).defineClasses(request.classes)
+            log.debug("Defined classes {}", request.classes.keys)
+        }
         val javaClass = ctx.loader.loadClass(request.klass)
         val instance = javaClass.getConstructor().newInstance()
         log.debug("Loaded a test class and created an instance")
@@ -41,12 +41,17 @@ import org.vorpal.research.kex.smt.AsyncIncrementalSolver
 import org.vorpal.research.kex.smt.AsyncSolver
 import org.vorpal.research.kex.smt.IncrementalSolver
 import org.vorpal.research.kex.smt.MemoryShape
+import org.vorpal.research.kex.smt.PersistentIncrementalSMTSolver
 import org.vorpal.research.kex.smt.Result
+import org.vorpal.research.kex.smt.ReusableSMTSolver
 import org.vorpal.research.kex.smt.SMTModel
 import org.vorpal.research.kex.smt.Solver
 import org.vorpal.research.kex.smt.ksmt.KSMTEngine.asExpr
+import org.vorpal.research.kex.state.BasicState
+import org.vorpal.research.kex.state.ChainState
 import org.vorpal.research.kex.state.PredicateQuery
 import org.vorpal.research.kex.state.PredicateState
+import org.vorpal.research.kex.state.predicate.Predicate
 import org.vorpal.research.kex.state.term.ArrayIndexTerm
 import org.vorpal.research.kex.state.term.ArrayLoadTerm
 import org.vorpal.research.kex.state.term.ClassAccessTerm
@@ -64,6 +69,7 @@ import org.vorpal.research.kex.state.transformer.getConstStringMap
 import org.vorpal.research.kex.state.transformer.memspace
 import org.vorpal.research.kex.util.kapitalize
 import org.vorpal.research.kex.util.with
+import org.vorpal.research.kfg.type.Type
 import org.vorpal.research.kthelper.assert.ktassert
 import org.vorpal.research.kthelper.assert.unreachable
 import org.vorpal.research.kthelper.logging.debug
@@ -85,6 +91,8 @@ private val maxArrayLength = kexConfig.getIntValue("smt", "maxArrayLength", 1000
 private val ksmtRunners = kexConfig.getIntValue("ksmt", "runners", 4)
 private val ksmtSolvers = kexConfig.getMultipleStringValue("ksmt", "solver")
 private val ksmtSeed = kexConfig.getIntValue("ksmt", "seed", 42)
+private val reuseNativeSolver = kexConfig.getBooleanValue("ksmt", "reuseNativeSolver", false)
+private val maxSessionScopes = kexConfig.getIntValue("ksmt", "maxSessionScopes", 64)
 
 @Suppress("UNCHECKED_CAST")
 @AsyncSolver("ksmt")
@@ -93,7 +101,8 @@ private val ksmtSeed = kexConfig.getIntValue("ksmt", "seed", 42)
 @IncrementalSolver("ksmt")
 class KSMTSolver(
     private val executionContext: ExecutionContext
-) : AbstractSMTSolver, AbstractAsyncSMTSolver, AbstractIncrementalSMTSolver, AbstractAsyncIncrementalSMTSolver {
+) : AbstractSMTSolver, AbstractAsyncSMTSolver, AbstractIncrementalSMTSolver, AbstractAsyncIncrementalSMTSolver,
+    PersistentIncrementalSMTSolver, ReusableSMTSolver {
     companion object {
         private val portfolioSolverManager: KPortfolioSolverManager by lazy {
             KPortfolioSolverManager(
@@ -108,8 +117,32 @@ class KSMTSolver(
         }
     }
 
+    /**
+     * Scope of the persistent session: first [size] segments of the asserted state,
+     * their converted expression and the converter context after them
+     */
+    private class StateScope(val size: Int, val expr: Bool_, val ctx: KSMTContext)
+
+    /**
+     * Query of the persistent session, path predicates of its hard constraints are kept in [tracked]
+     * to be asserted separately, so the unsat core can be mapped back to them
+     */
+    private class SessionQuery(
+        val hard: Bool_,
+        val soft: List<Bool_>,
+        val tracked: List<Pair<Predicate, Bool_>>,
+        val ctx: KSMTContext
+    )
+
     private val ef = KSMTExprFactory()
+    private var nativeSolver: KPortfolioSolver? = null
 
+    private var sessionSolver: KPortfolioSolver? = null
+    private var sessionCtx: KSMTContext? = null
+    private var sessionTypes = setOf<Type>()
+    private val sessionStrings = mutableMapOf<String, Term>()
+    private var sessionSegments = listOf<PredicateState>()
+    private val sessionScopes = mutableListOf<StateScope>()
 
     override fun isReachable(state: PredicateState): Result = runBlocking {
         isReachableAsync(state)
@@ -142,21 +175,22 @@ class KSMTSolver(
             }
         }
 
+        closeSession()
         val types = collectTypes(executionContext, state).filter { it !is KexNull }
             .mapTo(mutableSetOf()) { it.getKfgType(executionContext.types) }
-        ef.initTypes(types)
-        ef.initStrings(getConstStringMap(state))
+        ef.initQuery(types, getConstStringMap(state))
 
         val ctx = KSMTContext(ef)
         val converter = KSMTConverter(executionContext)
-        val ksmtState = converter.convert(state, ef, ctx)
+        val trackedPath = mutableListOf<Pair<Predicate, Bool_>>()
+        val ksmtState = converter.convertTracked(state, ef, ctx, trackedPath)
         val ksmtQuery = converter.convert(query, ef, ctx)
 
         log.debug("Check started")
-        val result = check(ksmtState, queryBuilder(ksmtQuery))
+        val result = check(ksmtState, queryBuilder(ksmtQuery), trackedPath)
         log.debug("Check finished")
         when (result.first) {
-            KSolverStatus.UNSAT -> Result.UnsatResult()
+            KSolverStatus.UNSAT -> Result.UnsatResult(core = result.second as List<Predicate>)
             KSolverStatus.UNKNOWN -> Result.UnknownResult(result.second as String)
             KSolverStatus.SAT -> Result.SatResult(collectModel(ctx, result.second as KModel, state))
         }
@@ -288,7 +322,14 @@ class KSMTSolver(
             z3SolverInternal.toString()
         }
 
-    private suspend fun check(state: Bool_, query: Bool_): Pair<KSolverStatus, Any> = runSolver { solver ->
+    /**
+     * @param tracked predicates that are asserted separately, so they can be mapped back from the unsat core
+     */
+    private suspend fun check(
+        state: Bool_,
+        query: Bool_,
+        tracked: List<Pair<Predicate, Bool_>> = emptyList()
+    ): Pair<KSolverStatus, Any> = runSolver { solver ->
         if (logFormulae) {
             log.run {
                 debug("State: {}", state)
@@ -305,6 +346,12 @@ class KSMTSolver(
         solver.assertAsync(ef.buildConstClassAxioms().asAxiom() as KExpr<KBoolSort>)
         solver.assertAsync(query.axiom as KExpr<KBoolSort>)
         solver.assertAsync(query.expr as KExpr<KBoolSort>)
+        val trackedAxioms = tracked.associate { (predicate, expr) ->
+            (expr.asAxiom() as KExpr<KBoolSort>) to predicate
+        }
+        for (axiom in trackedAxioms.keys) {
+            solver.assertAndTrackAsync(axiom)
+        }
         log.debug("Running KSMT solver")
         val result = solver.checkAsync(timeout.seconds)
         log.debug("Solver finished")
@@ -319,9 +366,9 @@ class KSMTSolver(
             }
 
             KSolverStatus.UNSAT -> {
-                val core = tryOrNull { solver.unsatCoreAsync() } ?: "Solver executor is not alive"
-                log.debug("Unsat core: {}", core)
-                result to core
+                val core = tryOrNull { solver.unsatCoreAsync() }
+                log.debug("Unsat core: {}", core ?: "Solver executor is not alive")
+                result to core.orEmpty().mapNotNull { trackedAxioms[it] }
             }
 
             KSolverStatus.UNKNOWN -> {
@@ -332,14 +379,35 @@ class KSMTSolver(
         }
     }
 
-    private suspend fun <R> runSolver(body: suspend (KPortfolioSolver) -> R): R {
-        if (!currentCoroutineContext().isActive) yield()
-        return portfolioSolverManager.createPortfolioSolver(ef.ctx).use {
+    private suspend fun createNativeSolver(): KPortfolioSolver =
+        portfolioSolverManager.createPortfolioSolver(ef.ctx).also {
             it.configureAsync {
                 setIntParameter("random_seed", ksmtSeed)
                 setIntParameter("seed", ksmtSeed)
             }
-            body(it)
+        }
+
+    /**
+     * If [reuseNativeSolver] is enabled, the native solver is kept alive between the queries,
+     * each query is executed in a separate solver scope. Native solver is dropped
+     * after any failure, because its state is unknown
+     */
+    private suspend fun <R> runSolver(body: suspend (KPortfolioSolver) -> R): R {
+        if (!currentCoroutineContext().isActive) yield()
+        if (!reuseNativeSolver) {
+            return createNativeSolver().use { body(it) }
+        }
+
+        val solver = nativeSolver ?: createNativeSolver().also { nativeSolver = it }
+        return try {
+            solver.pushAsync()
+            body(solver).also {
+                solver.popAsync(1u)
+            }
+        } catch (e: Throwable) {
+            nativeSolver = null
+            tryOrNull { solver.close() }
+            throw e
         }
     }
 
@@ -671,7 +739,10 @@ class KSMTSolver(
         isSatisfiableAsync(state, queries)
     }
 
-    override suspend fun isSatisfiableAsync(state: PredicateState, queries: List<PredicateQuery>): List<Result> = try {
+    override suspend fun isSatisfiableAsync(
+        state: PredicateState,
+        queries: List<PredicateQuery>
+    ): List<Result> = handleIncrementalErrors(queries) {
         if (logQuery) {
             log.run {
                 debug("KSMT solver check")
@@ -680,23 +751,8 @@ class KSMTSolver(
             }
         }
 
-        val allTypes = buildSet {
-            addAll(collectTypes(executionContext, state))
-            for (query in queries) {
-                addAll(collectTypes(executionContext, query.hardConstraints))
-                for (softConstraint in query.softConstraints) {
-                    addAll(collectTypes(executionContext, query.hardConstraints))
-                }
-            }
-        }.filter { it !is KexNull }.mapTo(mutableSetOf()) { it.getKfgType(executionContext.types) }
-        val allConstStrings = buildMap {
-            putAll(getConstStringMap(state))
-            for (query in queries) {
-                putAll(getConstStringMap(query.hardConstraints))
-            }
-        }
-        ef.initTypes(allTypes)
-        ef.initStrings(allConstStrings)
+        closeSession()
+        ef.initQuery(collectAllTypes(state, queries), collectAllStrings(state, queries))
 
         val ctx = KSMTContext(ef)
         val converter = KSMTConverter(executionContext)
@@ -709,19 +765,58 @@ class KSMTSolver(
         log.debug("Check started")
         val results = checkIncremental(ksmtState, ksmtQueries)
         log.debug("Check finished")
-        results.mapIndexed { index, (status, any, ctx) ->
-            when (status) {
-                KSolverStatus.UNSAT -> Result.UnsatResult()
-                KSolverStatus.UNKNOWN -> Result.UnknownResult(any as String)
-                KSolverStatus.SAT -> Result.SatResult(
-                    collectModel(
-                        ctx,
-                        any as KModel,
-                        state + queries[index].hardConstraints
-                    )
-                )
+        results.toResults(state, queries)
+    }
+
+    /**
+     * Checks the queries in the persistent session: the scopes of the previously asserted state
+     * that match the prefix of the [state] are kept, only the rest of the [state] is converted and asserted.
+     * Session is restarted if the new state requires types or strings that were not known at the session start,
+     * because their encoding can not be changed for the already asserted expressions
+     */
+    override suspend fun isSatisfiablePersistentAsync(
+        state: PredicateState,
+        queries: List<PredicateQuery>
+    ): List<Result> = handleIncrementalErrors(queries) {
+        if (logQuery) {
+            log.run {
+                debug("KSMT persistent solver check")
+                debug("State: {}", state)
+                debug("Queries: {}", queries.joinToString("\n"))
+            }
+        }
+        if (!currentCoroutineContext().isActive) yield()
+
+        val solver = acquireSession(collectAllTypes(state, queries), collectAllStrings(state, queries))
+        try {
+            val converter = KSMTConverter(executionContext)
+            val ctx = assertState(solver, converter, state.segments())
+            val ksmtQueries = queries.map { (hard, soft) ->
+                val ctxCopy = KSMTContext(ctx)
+                val trackedPath = mutableListOf<Pair<Predicate, Bool_>>()
+                val hardExpr = converter.convertTracked(hard, ef, ctx, trackedPath)
+                SessionQuery(hardExpr, soft.map { converter.convert(it, ef, ctx) }, trackedPath, ctxCopy)
+            }
+            val ksmtState = ef.makeAnd(sessionScopes.map { it.expr })
+            val classAxioms = ef.buildConstClassAxioms()
+
+            log.debug("Check started")
+            val results = ksmtQueries.map { query ->
+                solver.checkQuery(ksmtState, classAxioms and query.hard, query.soft, query.tracked).with(query.ctx)
             }
+            log.debug("Check finished")
+            results.toResults(state, queries)
+        } catch (e: Throwable) {
+            closeSession()
+            throw e
         }
+    }
+
+    private inline fun handleIncrementalErrors(
+        queries: List<PredicateQuery>,
+        body: () -> List<Result>
+    ): List<Result> = try {
+        body()
     } catch (e: KSolverException) {
         when (e.cause) {
             is TimeoutCancellationException ->
@@ -742,6 +837,104 @@ class KSMTSolver(
         queries.map { Result.UnknownResult(e.message ?: "Exception in KSMT") }
     }
 
+    private fun collectAllTypes(state: PredicateState, queries: List<PredicateQuery>): Set<Type> = buildSet {
+        addAll(collectTypes(executionContext, state))
+        for (query in queries) {
+            addAll(collectTypes(executionContext, query.hardConstraints))
+        }
+    }.filter { it !is KexNull }.mapTo(mutableSetOf()) { it.getKfgType(executionContext.types) }
+
+    private fun collectAllStrings(state: PredicateState, queries: List<PredicateQuery>): Map<String, Term> = buildMap {
+        putAll(getConstStringMap(state))
+        for (query in queries) {
+            putAll(getConstStringMap(query.hardConstraints))
+        }
+    }
+
+    private fun List<Triple<KSolverStatus, Any, KSMTContext>>.toResults(
+        state: PredicateState,
+        queries: List<PredicateQuery>
+    ): List<Result> = mapIndexed { index, (status, any, ctx) ->
+        when (status) {
+            KSolverStatus.UNSAT -> Result.UnsatResult(core = any as List<Predicate>)
+            KSolverStatus.UNKNOWN -> Result.UnknownResult(any as String)
+            KSolverStatus.SAT -> Result.SatResult(
+                collectModel(
+                    ctx,
+                    any as KModel,
+                    state + queries[index].hardConstraints
+                )
+            )
+        }
+    }
+
+    /**
+     * Top-level predicates and choices of the state in the order of their conversion
+     */
+    private fun PredicateState.segments(): List<PredicateState> = when (this) {
+        is BasicState -> predicates.map { BasicState(listOf(it)) }
+        is ChainState -> base.segments() + curr.segments()
+        else -> listOf(this)
+    }
+
+    private suspend fun acquireSession(types: Set<Type>, strings: Map<String, Term>): KPortfolioSolver {
+        val current = sessionSolver
+        if (current != null
+            && sessionScopes.size < maxSessionScopes
+            && sessionTypes.containsAll(types)
+            && strings.all { (name, term) -> sessionStrings[name] == term }
+        ) return current
+
+        closeSession()
+        ef.initQuery(types, strings)
+        sessionTypes = types
+        sessionStrings.putAll(strings)
+        sessionCtx = KSMTContext(ef)
+        return createNativeSolver().also { sessionSolver = it }
+    }
+
+    /**
+     * Pops the scopes that do not match the new state and asserts the rest of the state in a new scope
+     * @return converter context after the whole state
+     */
+    private suspend fun assertState(
+        solver: KPortfolioSolver,
+        converter: KSMTConverter,
+        segments: List<PredicateState>
+    ): KSMTContext {
+        val commonSize = minOf(sessionSegments.size, segments.size)
+        var common = 0
+        while (common < commonSize && sessionSegments[common] == segments[common]) ++common
+
+        while (sessionScopes.isNotEmpty() && sessionScopes.last().size > common) {
+            solver.popAsync(1u)
+            sessionScopes.removeLast()
+        }
+        sessionSegments = segments
+
+        val asserted = sessionScopes.lastOrNull()?.size ?: 0
+        val ctx = (sessionScopes.lastOrNull()?.ctx ?: sessionCtx!!).snapshot()
+        if (asserted < segments.size) {
+            val expr = ef.makeAnd(segments.subList(asserted, segments.size).map { converter.convert(it, ef, ctx) })
+            solver.pushAsync()
+            solver.assertAndTrackAsync(expr.asAxiom() as KExpr<KBoolSort>)
+            sessionScopes += StateScope(segments.size, expr, ctx.snapshot())
+        }
+        log.debug("Reused {} of {} state segments", asserted, segments.size)
+        return ctx
+    }
+
+    private fun closeSession() {
+        val solver = sessionSolver ?: return
+        tryOrNull { solver.close() }
+        sessionSolver = null
+        sessionCtx = null
+        sessionTypes = setOf()
+        sessionStrings.clear()
+        sessionSegments = listOf()
+        sessionScopes.clear()
+    }
+
     private suspend fun checkIncremental(
         state: Bool_,
         queries: List<Triple<Bool_, List<Bool_>, KSMTContext>>
@@ -752,58 +945,76 @@ class KSMTSolver(
         solver.assertAndTrackAsync(
             ef.buildConstClassAxioms().asAxiom() as KExpr<KBoolSort>
         )
-        solver.pushAsync()
 
         return@runSolver queries.map { (hardConstraints, softConstraints, ctx) ->
-            solver.assertAndTrackAsync(
-                hardConstraints.asAxiom() as KExpr<KBoolSort>
-            )
-            val softConstraintsSet = when {
-                softConstraints.isNotEmpty() -> {
-                    solver.pushAsync()
-                    softConstraints.mapTo(mutableSetOf()) { softConstraint ->
-                        (softConstraint.asAxiom() as KExpr<KBoolSort>).also {
-                            solver.assertAndTrackAsync(it)
-                        }
+            solver.checkQuery(state, hardConstraints, softConstraints).with(ctx)
+        }
+    }
+
+    /**
+     * Checks the query in a separate scope, solver is returned to its initial state after the check
+     * @param tracked predicates that are asserted separately, so they can be mapped back from the unsat core
+     */
+    private suspend fun KPortfolioSolver.checkQuery(
+        state: Bool_,
+        hardConstraints: Bool_,
+        softConstraints: List<Bool_>,
+        tracked: List<Pair<Predicate, Bool_>> = emptyList()
+    ): Pair<KSolverStatus, Any> {
+        pushAsync()
+        assertAndTrackAsync(
+            hardConstraints.asAxiom() as KExpr<KBoolSort>
+        )
+        val trackedAxioms = tracked.associate { (predicate, expr) ->
+            (expr.asAxiom() as KExpr<KBoolSort>) to predicate
+        }
+        for (axiom in trackedAxioms.keys) {
+            assertAndTrackAsync(axiom)
+        }
+        val softConstraintsSet = when {
+            softConstraints.isNotEmpty() -> {
+                pushAsync()
+                softConstraints.mapTo(mutableSetOf()) { softConstraint ->
+                    (softConstraint.asAxiom() as KExpr<KBoolSort>).also {
+                        assertAndTrackAsync(it)
                     }
                 }
-
-                else -> emptySet()
             }
 
-            log.debug("Running KSMT solver")
-            if (printSMTLib) {
-                log.debug("SMTLib formula:")
-                log.debug(stringify(state, hardConstraints, softConstraints))
-            }
+            else -> emptySet()
+        }
 
-            when (val result = solver.checkAndMinimize(softConstraintsSet)) {
-                KSolverStatus.SAT -> `try`<Pair<KSolverStatus, Any>> {
-                    val model = solver.modelAsync()
-                    if (logFormulae) log.debug(model)
-                    result to model
-                }.getOrElse {
-                    KSolverStatus.UNKNOWN to (it.message ?: "Exception during model acquisition")
-                }
+        log.debug("Running KSMT solver")
+        if (printSMTLib) {
+            log.debug("SMTLib formula:")
+            log.debug(stringify(state, hardConstraints, softConstraints))
+        }
 
-                KSolverStatus.UNSAT -> {
-                    val core = tryOrNull { solver.unsatCoreAsync() } ?: "Solver executor is not alive"
-                    log.debug("Unsat core: {}", core)
-                    result to core
-                }
+        return when (val result = checkAndMinimize(softConstraintsSet)) {
+            KSolverStatus.SAT -> `try`<Pair<KSolverStatus, Any>> {
+                val model = modelAsync()
+                if (logFormulae) log.debug(model)
+                result to model
+            }.getOrElse {
+                KSolverStatus.UNKNOWN to (it.message ?: "Exception during model acquisition")
+            }
 
-                KSolverStatus.UNKNOWN -> {
-                    val reason = tryOrNull { solver.reasonOfUnknownAsync() } ?: "unknown"
-                    log.debug(reason)
-                    result to reason
-                }
-            }.also {
-                solver.popAsync(1u)
-                if (softConstraints.isNotEmpty()) {
-                    solver.popAsync(1u)
-                }
-                solver.pushAsync()
-            }.with(ctx)
+            KSolverStatus.UNSAT -> {
+                val core = tryOrNull { unsatCoreAsync() }
+                log.debug("Unsat core: {}", core ?: "Solver executor is not alive")
+                result to core.orEmpty().mapNotNull { trackedAxioms[it] }
+            }
+
+            KSolverStatus.UNKNOWN -> {
+                val reason = tryOrNull { reasonOfUnknownAsync() } ?: "unknown"
+                log.debug(reason)
+                result to reason
+            }
+        }.also {
+            if (softConstraints.isNotEmpty()) {
+                popAsync(1u)
+            }
+            popAsync(1u)
         }
     }
 
@@ -836,7 +1047,20 @@ class KSMTSolver(
         }
     }
 
+    /**
+     * Type and string tables of the expression factory are kept, the next query rebuilds them only if it needs
+     * different types or strings
+     */
+    override fun reset() {
+        closeSession()
+    }
+
     override fun close() {
+        closeSession()
+        nativeSolver?.let {
+            tryOrNull { it.close() }
+        }
+        nativeSolver = null
         ef.ctx.close()
     }
 }
@@ -1,6 +1,7 @@
 package org.vorpal.research.kex.smt.ksmt
 
 import kotlinx.collections.immutable.persistentListOf
+import kotlinx.coroutines.runBlocking
 import org.junit.AfterClass
 import org.junit.BeforeClass
 import io.ksmt.KContext
@@ -16,7 +17,9 @@ import org.vorpal.research.kex.ktype.KexString
 import org.vorpal.research.kex.random.StubRandomizer
 import org.vorpal.research.kex.smt.Result
 import org.vorpal.research.kex.smt.ksmt.KSMTEngine.asExpr
+import org.vorpal.research.kex.state.BasicState
 import org.vorpal.research.kex.state.PredicateQuery
+import org.vorpal.research.kex.state.PredicateState
 import org.vorpal.research.kex.state.basic
 import org.vorpal.research.kex.state.predicate.path
 import org.vorpal.research.kex.state.term.term
@@ -344,5 +347,77 @@ class KSMTSolverTest : KexTest("ksmt-solver") {
             assertIs<Result.UnsatResult>(results[3])
         }
     }
-}
 
+    @Test
+    fun testPersistentSession() {
+        val x = term { generate(KexInt) }
+        val y = term { generate(KexInt) }
+        val z = term { generate(KexInt) }
+        val w = term { generate(KexInt) }
+        val base = basic {
+            state { x equality (y + z) }
+            state { y equality (2 * z) }
+        }
+        val extended = base + basic {
+            state { w equality (1 + x) }
+        }
+        val other = basic {
+            state { x equality (y - z) }
+            state { y equality (2 * z) }
+        }
+        val baseQueries = listOf(
+            PredicateQuery(basic { path { (x eq (3 * z)) equality true } }),
+            PredicateQuery(basic { path { (x neq (3 * z)) equality true } }),
+            PredicateQuery(basic { path { (x gt 0) equality true } }),
+        )
+        val extendedQueries = baseQueries + listOf(
+            PredicateQuery(basic { path { (w eq (1 + (3 * z))) equality true } }),
+            PredicateQuery(basic { path { (w eq x) equality true } }),
+        )
+        val otherQueries = listOf(
+            PredicateQuery(basic { path { (x eq z) equality true } }),
+            PredicateQuery(basic { path { (x neq z) equality true } }),
+        )
+        val checks = listOf<Pair<PredicateState, List<PredicateQuery>>>(
+            base to baseQueries,
+            extended to extendedQueries,
+            base to baseQueries,
+            other to otherQueries,
+            extended to extendedQueries,
+        )
+
+        val persistent = KSMTSolver(newExecutionContext())
+        try {
+            for ((state, queries) in checks) {
+                val persistentResults = runBlocking { persistent.isSatisfiablePersistentAsync(state, queries) }
+                val fresh = KSMTSolver(newExecutionContext())
+                val freshResults = try {
+                    fresh.isSatisfiable(state, queries)
+                } finally {
+                    fresh.close()
+                }
+
+                for ((index, query) in queries.withIndex()) {
+                    val persistentResult = persistentResults[index]
+                    assertEquals(
+                        freshResults[index].javaClass,
+                        persistentResult.javaClass,
+                        "Different results of $query"
+                    )
+                    if (persistentResult is Result.UnsatResult) {
+                        assertEquals((query.hardConstraints as BasicState).predicates, persistentResult.core)
+                    }
+                }
+            }
+        } finally {
+            persistent.close()
+        }
+    }
+
+    private fun newExecutionContext() = ExecutionContext(
+        ClassManager(),
+        this.javaClass.classLoader,
+        StubRandomizer(),
+        emptyList()
+    )
+}
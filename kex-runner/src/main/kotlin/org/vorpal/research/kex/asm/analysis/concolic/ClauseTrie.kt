@@ -0,0 +1,109 @@
+package org.vorpal.research.kex.asm.analysis.concolic
+
+import kotlinx.collections.immutable.PersistentMap
+import kotlinx.collections.immutable.persistentListOf
+import org.vorpal.research.kex.descriptor.Descriptor
+import org.vorpal.research.kex.ktype.KexType
+import org.vorpal.research.kex.state.term.Term
+import org.vorpal.research.kex.trace.symbolic.Clause
+import org.vorpal.research.kex.trace.symbolic.PathClause
+import org.vorpal.research.kex.trace.symbolic.PersistentClauseList
+import org.vorpal.research.kex.trace.symbolic.PersistentPathCondition
+import org.vorpal.research.kex.trace.symbolic.PersistentSymbolicState
+import org.vorpal.research.kex.trace.symbolic.WrappedValue
+
+/**
+ * Hash-consed prefix trie of clauses.
+ *
+ * Traces of one method share most of their prefixes, so instead of keeping the full clause lists
+ * of every trace, the selectors keep the trie nodes of their last clauses. Each distinct prefix is stored
+ * once and is identified by its node, so prefixes can be compared by identity.
+ * Full states are reconstructed only when they are actually needed
+ */
+class ClauseTrie {
+    class Node internal constructor(
+        val id: Int,
+        val parent: Node?,
+        private val nodeClause: Clause?,
+        val size: Int
+    ) {
+        val clause: Clause get() = nodeClause ?: throw NoSuchElementException("Root node has no clause")
+
+        override fun toString() = "Node($id, $nodeClause)"
+    }
+
+    /**
+     * concrete information of a trace, it is shared between all the states referencing this trace
+     */
+    class TraceValues(
+        val concreteTypes: PersistentMap<Term, KexType>,
+        val concreteValues: PersistentMap<Term, Descriptor>,
+        val termMap: PersistentMap<Term, WrappedValue>
+    ) {
+        constructor(state: PersistentSymbolicState) : this(state.concreteTypes, state.concreteValues, state.termMap)
+    }
+
+    inner class State(val node: Node, val values: TraceValues) {
+        val lastClause: Clause get() = node.clause
+
+        fun toSymbolicState(): PersistentSymbolicState = PersistentSymbolicState(
+            clauses(node),
+            path(node),
+            values.concreteTypes,
+            values.concreteValues,
+            values.termMap
+        )
+
+        override fun equals(other: Any?): Boolean {
+            if (this === other) return true
+            if (other !is State) return false
+            return node === other.node
+        }
+
+        override fun hashCode(): Int = node.id
+    }
+
+    private class NodeKey(val parent: Int, val clause: Clause) {
+        private val hash = 31 * parent + clause.hashCode()
+
+        override fun hashCode(): Int = hash
+        override fun equals(other: Any?): Boolean {
+            if (this === other) return true
+            if (other !is NodeKey) return false
+            return parent == other.parent && clause == other.clause
+        }
+    }
+
+    private val nodes = arrayListOf<Node>()
+    private val children = hashMapOf<NodeKey, Node>()
+
+    val root: Node = Node(0, null, null, 0).also { nodes += it }
+
+    val size get() = nodes.size
+
+    operator fun get(id: Int): Node = nodes[id]
+
+    fun child(parent: Node, clause: Clause): Node = children.getOrPut(NodeKey(parent.id, clause)) {
+        Node(nodes.size, parent, clause, parent.size + 1).also { nodes += it }
+    }
+
+    fun insert(clauses: Iterable<Clause>): Node = clauses.fold(root) { node, clause -> child(node, clause) }
+
+    fun clauses(node: Node): PersistentClauseList =
+        PersistentClauseList(persistentListOf<Clause>().addAll(collect(node).asReversed()))
+
+    fun path(node: Node): PersistentPathCondition = PersistentPathCondition(
+        persistentListOf<PathClause>().addAll(collect(node).filterIsInstance<PathClause>().asReversed())
+    )
+
+    private fun collect(node: Node): List<Clause> {
+        val result = ArrayList<Clause>(node.size)
+        var current = node
+        while (true) {
+            val parent = current.parent ?: break
+            result += current.clause
+            current = parent
+        }
+        return result
+    }
+}
@@ -24,4 +24,14 @@ interface ConcolicPathSelector : SuspendableIterator<Pair<Method, PersistentSymb
     )
 
     fun reverse(pathClause: PathClause): PathClause?
+
+    /**
+     * Unsat cores of the checked candidates of this selector
+     */
+    val unsatCores: UnsatCoreStore
+
+    /**
+     * Candidate that contains a known unsat core is infeasible and can be rejected without solving
+     */
+    fun isInfeasible(state: PersistentSymbolicState): Boolean = unsatCores.isSubsumed(state)
 }
@@ -1,14 +1,23 @@
 package org.vorpal.research.kex.asm.analysis.concolic
 
 
+import kotlinx.coroutines.CoroutineExceptionHandler
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.DelicateCoroutinesApi
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.NonCancellable
+import kotlinx.coroutines.SupervisorJob
 import kotlinx.coroutines.TimeoutCancellationException
 import kotlinx.coroutines.async
 import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.job
+import kotlinx.coroutines.joinAll
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import kotlinx.coroutines.withContext
 import kotlinx.coroutines.withTimeoutOrNull
 import kotlinx.coroutines.yield
 import kotlinx.serialization.ExperimentalSerializationApi
@@ -20,6 +29,7 @@ import org.vorpal.research.kex.asm.analysis.concolic.coverage.CoverageGuidedSele
 import org.vorpal.research.kex.asm.analysis.concolic.weighted.WeightedPathSelectorManager
 import org.vorpal.research.kex.asm.analysis.util.analyzeOrTimeout
 import org.vorpal.research.kex.asm.analysis.util.checkAsync
+import org.vorpal.research.kex.asm.analysis.util.checkAsyncIncremental
 import org.vorpal.research.kex.compile.CompilationException
 import org.vorpal.research.kex.compile.CompilerHelper
 import org.vorpal.research.kex.config.kexConfig
@@ -31,9 +41,14 @@ import org.vorpal.research.kex.parameters.extractFinalParameters
 import org.vorpal.research.kex.reanimator.UnsafeGenerator
 import org.vorpal.research.kex.reanimator.codegen.ExecutorTestCasePrinter
 import org.vorpal.research.kex.reanimator.codegen.klassName
+import org.vorpal.research.kex.smt.AbstractAsyncIncrementalSMTSolver
+import org.vorpal.research.kex.smt.AsyncIncrementalSMTProxySolver
+import org.vorpal.research.kex.smt.PreparedStateCache
+import org.vorpal.research.kex.smt.SMTQueryCache
 import org.vorpal.research.kex.trace.runner.SymbolicExternalTracingRunner
 import org.vorpal.research.kex.trace.runner.generateDefaultParameters
 import org.vorpal.research.kex.trace.runner.generateParameters
+import org.vorpal.research.kex.trace.symbolic.PersistentSymbolicState
 import org.vorpal.research.kex.trace.symbolic.SymbolicState
 import org.vorpal.research.kex.trace.symbolic.persistentSymbolicState
 import org.vorpal.research.kex.trace.symbolic.protocol.ExecutionCompletedResult
@@ -78,6 +93,22 @@ class InstructionConcolicChecker(
         get() = ctx.cm
 
     private val compilerHelper = CompilerHelper(ctx)
+    private val incrementalSolving = kexConfig.getBooleanValue("concolic", "incrementalSolving", false)
+    private var solverSession: AbstractAsyncIncrementalSMTSolver? = null
+    private val candidatesPerMethod = maxOf(1, kexConfig.getIntValue("concolic", "candidatesPerMethod", 1))
+
+    // path selectors are not thread-safe, so the traces of the concurrently checked candidates
+    // are added one at a time; the same goes for the queries to the incremental solver session
+    private val selectorMutex = Mutex()
+    private val solverMutex = Mutex()
+
+    // tests are saved in the background, they are not cancelled together with the analysis
+    // when the time limit is reached, but the analysis of the method waits for all of them
+    private val savingScope = CoroutineScope(
+        SupervisorJob() + Dispatchers.Default + CoroutineExceptionHandler { _, e ->
+            log.warn("Failed to save a test:", e)
+        }
+    )
 
     companion object {
 
@@ -99,8 +130,9 @@ class InstructionConcolicChecker(
             val executors = kexConfig.getIntValue("concolic", "numberOfExecutors", 8)
             val timeLimit = kexConfig.getIntValue("concolic", "timeLimit", 100)
             val searchStrategy = kexConfig.getStringValue("concolic", "searchStrategy", "bfs")
+            val candidatesPerMethod = maxOf(1, kexConfig.getIntValue("concolic", "candidatesPerMethod", 1))
 
-            val actualNumberOfExecutors = maxOf(1, minOf(executors, targets.size))
+            val actualNumberOfExecutors = maxOf(1, minOf(executors, targets.size * candidatesPerMethod))
             val coroutineContext = newFixedThreadPoolContextWithMDC(actualNumberOfExecutors, "concolic-dispatcher")
 
             val selectorManager = buildSelectorManager(context, targets, searchStrategy)
@@ -119,12 +151,29 @@ class InstructionConcolicChecker(
                     }.awaitAll()
                 }
             }
+            if (SMTQueryCache.isEnabled) {
+                log.info(
+                    "SMT query cache: ${SMTQueryCache.hits} hits, ${SMTQueryCache.misses} misses, " +
+                            "hit rate ${"%.2f".format(SMTQueryCache.hitRate)}"
+                )
+            }
+            if (PreparedStateCache.isEnabled) {
+                log.info(
+                    "Prepared state cache: ${PreparedStateCache.hits} hits, ${PreparedStateCache.misses} misses"
+                )
+            }
         }
     }
 
     suspend fun start(method: Method) {
-        method.analyzeOrTimeout(ctx.accessLevel) {
-            processMethod(it)
+        try {
+            method.analyzeOrTimeout(ctx.accessLevel) {
+                processMethod(it)
+            }
+        } finally {
+            withContext(NonCancellable) {
+                savingScope.coroutineContext.job.children.toList().joinAll()
+            }
         }
     }
 
@@ -150,6 +199,14 @@ class InstructionConcolicChecker(
     private suspend fun collectTrace(method: Method, parameters: Parameters<Descriptor>): ExecutionResult? = tryOrNull {
         val generator = UnsafeGenerator(ctx, method, testNameGenerator.generateName(method, parameters))
         generator.generate(parameters)
+        if (compilerHelper.directBytecode) {
+            generator.emitBytecode()?.let { classes ->
+                return@tryOrNull collectTraceFromBytecode(method, parameters, generator, classes)
+            }
+        }
+        if (compilerHelper.inMemory) {
+            return@tryOrNull collectTraceInMemory(method, parameters, generator)
+        }
         val testFile = generator.emit()
 
         try {
@@ -160,7 +217,7 @@ class InstructionConcolicChecker(
         }
         val result = collectTrace(generator.testKlassName)
         if (kexConfig.getBooleanValue("testGen", "generateAssertions", false)) {
-            CoroutineScope(Dispatchers.Default).launch {
+            savingScope.launch {
                 var testWithAssertions: Path? = null
                 try {
                     if (result is ExecutionCompletedResult) {
@@ -191,13 +248,115 @@ class InstructionConcolicChecker(
         result
     }
 
-    private suspend fun collectTrace(klassName: String): ExecutionResult {
+    /**
+     * Compiles the test in memory and sends its bytecode directly to the executor,
+     * files are written only for the tests that are kept in the final test suite
+     */
+    private suspend fun collectTraceInMemory(
+        method: Method,
+        parameters: Parameters<Descriptor>,
+        generator: UnsafeGenerator
+    ): ExecutionResult {
+        val source = generator.emitSource()
+        val classes = compilerHelper.compileSource(source)
+        val result = collectTrace(generator.testKlassName, classes)
+        keepTest(method, parameters, result) {
+            compilerHelper.persist(source, generator.targetFile, classes)
+        }
+        return result
+    }
+
+    /**
+     * Executes the test compiled directly to bytecode, source code is printed
+     * only for the tests that are kept in the final test suite. Kept tests are saved together
+     * with the executed bytecode, so javac runs only for the tests with generated assertions
+     */
+    private suspend fun collectTraceFromBytecode(
+        method: Method,
+        parameters: Parameters<Descriptor>,
+        generator: UnsafeGenerator,
+        classes: Map<String, ByteArray>
+    ): ExecutionResult {
+        compilerHelper.compileHelpers()
+        val result = collectTrace(generator.testKlassName, classes)
+        keepTest(method, parameters, result) {
+            tryOrNull { compilerHelper.persist(generator.emitSource(), generator.targetFile, classes) }
+        }
+        return result
+    }
+
+    private fun keepTest(
+        method: Method,
+        parameters: Parameters<Descriptor>,
+        result: ExecutionResult,
+        saveOriginal: suspend () -> Unit
+    ) {
+        savingScope.launch {
+            if (!kexConfig.getBooleanValue("testGen", "generateAssertions", false)
+                || result !is ExecutionCompletedResult
+            ) {
+                saveOriginal()
+                return@launch
+            }
+
+            try {
+                val testWithAssertionsGenerator = UnsafeGenerator(
+                    ctx, method, testNameGenerator.generateName(method, parameters)
+                )
+
+                val finalInfoDescriptors = extractFinalParameters(result, method)
+                    ?.filterMocks()
+                testWithAssertionsGenerator.generate(parameters, finalInfoDescriptors)
+                saveTest(testWithAssertionsGenerator)
+            } catch (e: Throwable) {
+                log.debug("Tests with assertion generation failed with exception:", e)
+                // keep the original test, if there were errors with assertions
+                saveOriginal()
+            }
+        }
+    }
+
+    private suspend fun saveTest(generator: UnsafeGenerator) {
+        if (compilerHelper.inMemory) {
+            val source = generator.emitSource()
+            compilerHelper.persist(source, generator.targetFile, compilerHelper.compileSource(source))
+        } else {
+            val testFile = generator.emit()
+            try {
+                compilerHelper.compileFile(testFile)
+            } catch (e: CompilationException) {
+                testFile.deleteIfExists()
+                throw e
+            }
+        }
+    }
+
+    private suspend fun collectTrace(
+        klassName: String,
+        classes: Map<String, ByteArray> = emptyMap()
+    ): ExecutionResult {
         val runner = SymbolicExternalTracingRunner(ctx)
-        return runner.run(klassName, ExecutorTestCasePrinter.SETUP_METHOD, ExecutorTestCasePrinter.TEST_METHOD)
+        return runner.run(
+            klassName,
+            ExecutorTestCasePrinter.SETUP_METHOD,
+            ExecutorTestCasePrinter.TEST_METHOD,
+            classes
+        )
     }
 
     private suspend fun check(method: Method, state: SymbolicState): ExecutionResult? = try {
-        method.checkAsync(ctx, state, enableInlining = true)?.let { collectTrace(method, it) }
+        when (val session = solverSession) {
+            null -> method.checkAsync(ctx, state, enableInlining = true, unsatCores = pathSelector.unsatCores)
+            else -> solverMutex.withLock {
+                method.checkAsyncIncremental(
+                    ctx,
+                    state,
+                    session,
+                    enableInlining = true,
+                    unsatCores = pathSelector.unsatCores
+                )
+            }
+        }?.let { collectTrace(method, it) }
     } catch (e: Throwable) {
         if (e !is TimeoutCancellationException) {
             log.error("Exception during asyncCheck:", e)
@@ -225,25 +384,68 @@ class InstructionConcolicChecker(
     }
 
     private suspend fun processMethod(startingMethod: Method) {
+        if (incrementalSolving) {
+            solverSession = AsyncIncrementalSMTProxySolver.getSolver(ctx)
+        }
+        try {
+            explore(startingMethod)
+        } finally {
+            solverSession?.close()
+            solverSession = null
+        }
+    }
+
+    private suspend fun explore(startingMethod: Method) {
         initializeExecutionGraph(startingMethod, pathSelector)
         yield()
 
         while (pathSelector.hasNext()) {
+            val candidates = nextCandidates()
+            when (candidates.size) {
+                0 -> {}
+                1 -> processCandidate(candidates.first().first, candidates.first().second)
+                else -> coroutineScope {
+                    candidates.map { (method, state) ->
+                        async { processCandidate(method, state) }
+                    }.awaitAll()
+                }
+            }
+            yield()
+        }
+    }
+
+    /**
+     * takes up to [candidatesPerMethod] feasible candidates from the path selector,
+     * so that they could be solved and executed concurrently
+     */
+    private suspend fun nextCandidates(): List<Pair<Method, PersistentSymbolicState>> {
+        val candidates = mutableListOf<Pair<Method, PersistentSymbolicState>>()
+        while (candidates.size < candidatesPerMethod && pathSelector.hasNext()) {
             val (method, state) = pathSelector.next()
             log.debug { "Checking state: $state" }
             log.debug { "Path:\n${state.path.asState()}" }
             yield()
 
-            val newState = check(method, state) ?: continue
-            when (newState) {
-                is ExecutionCompletedResult -> when {
-                    newState.trace.isEmpty() -> log.warn { "Collected empty state from $state" }
-                    else -> pathSelector.addExecutionTrace(method, state, newState)
-                }
+            if (pathSelector.isInfeasible(state)) {
+                log.debug { "State is subsumed by a known unsat core" }
+                continue
+            }
+            candidates += method to state
+        }
+        return candidates
+    }
 
-                else -> log.warn("Failure during execution: $newState")
+    private suspend fun processCandidate(method: Method, state: PersistentSymbolicState) {
+        val newState = check(method, state) ?: return
+        when (newState) {
+            is ExecutionCompletedResult -> when {
+                newState.trace.isEmpty() -> log.warn { "Collected empty state from $state" }
+                else -> selectorMutex.withLock {
+                    pathSelector.addExecutionTrace(method, state, newState)
+                }
             }
-            yield()
+
+            else -> log.warn("Failure during execution: $newState")
         }
     }
 
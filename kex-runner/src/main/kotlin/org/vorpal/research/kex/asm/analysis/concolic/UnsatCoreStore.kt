@@ -0,0 +1,126 @@
+package org.vorpal.research.kex.asm.analysis.concolic
+
+import org.vorpal.research.kex.ktype.KexInteger
+import org.vorpal.research.kex.ktype.KexReal
+import org.vorpal.research.kex.state.predicate.EqualityPredicate
+import org.vorpal.research.kex.state.predicate.Predicate
+import org.vorpal.research.kex.state.predicate.receiver
+import org.vorpal.research.kex.state.term.ArgumentTerm
+import org.vorpal.research.kex.state.term.BinaryTerm
+import org.vorpal.research.kex.state.term.CmpTerm
+import org.vorpal.research.kex.state.term.ConstBoolTerm
+import org.vorpal.research.kex.state.term.ConstByteTerm
+import org.vorpal.research.kex.state.term.ConstCharTerm
+import org.vorpal.research.kex.state.term.ConstDoubleTerm
+import org.vorpal.research.kex.state.term.ConstFloatTerm
+import org.vorpal.research.kex.state.term.ConstIntTerm
+import org.vorpal.research.kex.state.term.ConstLongTerm
+import org.vorpal.research.kex.state.term.ConstShortTerm
+import org.vorpal.research.kex.state.term.NegTerm
+import org.vorpal.research.kex.state.term.Term
+import org.vorpal.research.kex.state.term.ValueTerm
+import org.vorpal.research.kex.state.transformer.TermCollector
+import org.vorpal.research.kex.trace.symbolic.PathClause
+import org.vorpal.research.kex.trace.symbolic.StateClause
+import org.vorpal.research.kex.trace.symbolic.SymbolicState
+import org.vorpal.research.kthelper.logging.debug
+import org.vorpal.research.kthelper.logging.log
+
+/**
+ * Per-method store of the unsat cores of the checked paths.
+ *
+ * Core consists of the path clauses reported by the solver and the state clauses that define
+ * the values used by them. Any path that contains all the clauses of a known core is infeasible,
+ * so it can be rejected without running the transformers and the solver.
+ * Only the cores over the local primitive values are stored: if any of the values depends on the memory,
+ * on the method calls, or on the type and memory axioms of references and casts, it can not be separated
+ * from the rest of the state and the core is dropped.
+ * Store is shared by the concurrently checked candidates of the method, so its operations are synchronized
+ */
+class UnsatCoreStore {
+    private class UnsatCore(
+        val path: Set<PathClause>,
+        val state: Set<StateClause>
+    )
+
+    private val cores = hashMapOf<PathClause, MutableList<UnsatCore>>()
+
+    @Volatile
+    var size = 0
+        private set
+
+    @Synchronized
+    fun addCore(state: SymbolicState, core: Collection<Predicate>) {
+        if (core.isEmpty()) return
+
+        val pathClauses = mutableSetOf<PathClause>()
+        for (predicate in core) {
+            val matching = state.path.filter { it.predicate == predicate }
+            if (matching.isEmpty()) return
+            pathClauses += matching
+        }
+        val stateClauses = collectDefinitions(state, pathClauses) ?: return
+
+        val key = state.path.last { it in pathClauses }
+        cores.getOrPut(key, ::mutableListOf) += UnsatCore(pathClauses, stateClauses)
+        ++size
+        log.debug { "Recorded unsat core of ${pathClauses.size} path clauses and ${stateClauses.size} state clauses" }
+    }
+
+    @Synchronized
+    fun isSubsumed(state: SymbolicState): Boolean {
+        if (cores.isEmpty()) return false
+
+        val path by lazy(LazyThreadSafetyMode.NONE) { state.path.toSet() }
+        val clauses by lazy(LazyThreadSafetyMode.NONE) { state.clauses.toSet() }
+        return state.path.any { clause ->
+            cores[clause]?.any { core ->
+                path.containsAll(core.path) && clauses.containsAll(core.state)
+            } ?: false
+        }
+    }
+
+    /**
+     * @return state clauses that transitively define the values of [pathClauses],
+     * or null if some of the values can not be defined independently of the rest of the state
+     */
+    private fun collectDefinitions(state: SymbolicState, pathClauses: Set<PathClause>): Set<StateClause>? {
+        val definitions = hashMapOf<Term, StateClause?>()
+        for (clause in state.clauses) {
+            if (clause !is StateClause) continue
+            val predicate = clause.predicate
+            val receiver = predicate.receiver ?: continue
+            definitions[receiver] = when (predicate) {
+                is EqualityPredicate -> clause
+                else -> null
+            }
+        }
+
+        val result = mutableSetOf<StateClause>()
+        val visited = mutableSetOf<Term>()
+        val queue = ArrayDeque<Term>()
+        for (clause in pathClauses) {
+            queue += TermCollector.getFullTermSet(clause.predicate)
+        }
+        while (queue.isNotEmpty()) {
+            val term = queue.removeFirst()
+            if (!visited.add(term)) continue
+            if (!term.isLocal) return null
+            if (term !in definitions) continue
+
+            val definition = definitions[term] ?: return null
+            result += definition
+            queue += TermCollector.getFullTermSet((definition.predicate as EqualityPredicate).rhv)
+        }
+        return result
+    }
+
+    private val Term.isLocal: Boolean
+        get() = (type is KexInteger || type is KexReal) && when (this) {
+            is ValueTerm, is ArgumentTerm -> true
+            is BinaryTerm, is CmpTerm, is NegTerm -> true
+            is ConstBoolTerm, is ConstByteTerm, is ConstCharTerm, is ConstShortTerm -> true
+            is ConstIntTerm, is ConstLongTerm, is ConstFloatTerm, is ConstDoubleTerm -> true
+            else -> false
+        }
+}
@@ -3,6 +3,7 @@ package org.vorpal.research.kex.asm.analysis.concolic.bfs
 import org.vorpal.research.kex.ExecutionContext
 import org.vorpal.research.kex.asm.analysis.concolic.ConcolicPathSelector
 import org.vorpal.research.kex.asm.analysis.concolic.ConcolicPathSelectorManager
+import org.vorpal.research.kex.asm.analysis.concolic.UnsatCoreStore
 import org.vorpal.research.kex.state.predicate.DefaultSwitchPredicate
 import org.vorpal.research.kex.state.predicate.EqualityPredicate
 import org.vorpal.research.kex.state.predicate.InequalityPredicate
@@ -41,6 +42,7 @@ class BfsPathSelectorImpl(
     private val coveredPaths = mutableSetOf<PersistentPathCondition>()
     private val candidates = mutableSetOf<PersistentPathCondition>()
     private val deque = dequeOf<PersistentSymbolicState>()
+    override val unsatCores = UnsatCoreStore()
 
     override suspend fun isEmpty(): Boolean = deque.isEmpty()
     override suspend fun hasNext(): Boolean = deque.isNotEmpty()
@@ -4,6 +4,7 @@ import kotlinx.coroutines.yield
 import org.vorpal.research.kex.ExecutionContext
 import org.vorpal.research.kex.asm.analysis.concolic.ConcolicPathSelector
 import org.vorpal.research.kex.asm.analysis.concolic.ConcolicPathSelectorManager
+import org.vorpal.research.kex.asm.analysis.concolic.UnsatCoreStore
 import org.vorpal.research.kex.asm.manager.NoConcreteInstanceException
 import org.vorpal.research.kex.asm.manager.instantiationManager
 import org.vorpal.research.kex.ktype.kexType
@@ -57,6 +58,7 @@ class ContextGuidedSelector(
     private var branchIterator: Iterator<PathVertex> = listOf<PathVertex>().iterator()
     private val visitedContexts = mutableSetOf<Context>()
     private var states = dequeOf<State>()
+    override val unsatCores = UnsatCoreStore()
 
     private class State(
         val context: Context,
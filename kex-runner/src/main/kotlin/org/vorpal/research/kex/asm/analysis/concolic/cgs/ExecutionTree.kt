@@ -3,6 +3,7 @@ package org.vorpal.research.kex.asm.analysis.concolic.cgs
 import kotlinx.collections.immutable.PersistentList
 import kotlinx.collections.immutable.toPersistentList
 import org.vorpal.research.kex.ExecutionContext
+import org.vorpal.research.kex.asm.analysis.concolic.ClauseTrie
 import org.vorpal.research.kex.asm.manager.instantiationManager
 import org.vorpal.research.kex.state.predicate.PredicateType
 import org.vorpal.research.kex.state.predicate.state
@@ -18,9 +19,6 @@ import org.vorpal.research.kfg.ir.value.instruction.Instruction
 import org.vorpal.research.kfg.ir.value.instruction.SwitchInst
 import org.vorpal.research.kfg.ir.value.instruction.TableSwitchInst
 import org.vorpal.research.kfg.type.ClassType
-import org.vorpal.research.kthelper.collection.queueOf
-import org.vorpal.research.kthelper.graph.DominatorTree
-import org.vorpal.research.kthelper.graph.DominatorTreeBuilder
 import org.vorpal.research.kthelper.graph.GraphView
 import org.vorpal.research.kthelper.graph.PredecessorGraph
 import org.vorpal.research.kthelper.graph.Viewable
@@ -28,7 +26,7 @@ import org.vorpal.research.kthelper.graph.Viewable
 sealed class Vertex(val clause: Clause) : PredecessorGraph.PredecessorVertex<Vertex> {
     private val upEdges = mutableSetOf<Vertex>()
     val downEdges = mutableSetOf<Vertex>()
-    val states = mutableMapOf<PersistentPathCondition, PersistentSymbolicState>()
+    val states = mutableMapOf<ClauseTrie.Node, ClauseTrie.State>()
 
     override val predecessors: Set<Vertex>
         get() = upEdges
@@ -36,7 +34,7 @@ sealed class Vertex(val clause: Clause) : PredecessorGraph.PredecessorVertex<Ver
     override val successors: Set<Vertex>
         get() = downEdges
 
-    operator fun set(path: PersistentPathCondition, state: PersistentSymbolicState) {
+    operator fun set(path: ClauseTrie.Node, state: ClauseTrie.State) {
         states[path] = state
     }
 
@@ -91,8 +89,12 @@ class ExecutionTree(val ctx: ExecutionContext) : PredecessorGraph<Vertex>, Viewa
             state { const(true) equality true })
     )
     private val _nodes = mutableMapOf(root.clause to root)
-    private var dominators: DominatorTree<Vertex>? = null
+    private val dominators = IncrementalDominators(root)
+    private val pathDepths = mutableMapOf(root to 1)
+    private val branchesByDepth = mutableMapOf<Int, MutableSet<PathVertex>>()
     private val edges = mutableMapOf<Clause, PathVertex>()
+    private val clauseTrie = ClauseTrie()
+    private val pathTrie = ClauseTrie()
     private val exhaustiveness = mutableMapOf<Branch, MutableSet<PathVertex>>()
 
     override val entry get() = root
@@ -127,11 +129,13 @@ class ExecutionTree(val ctx: ExecutionContext) : PredecessorGraph<Vertex>, Viewa
         }
     }
 
-    fun getBranches(depth: Int): Set<PathVertex> = getBranchDepths().filter { it.value == depth }.keys
+    fun getBranches(depth: Int): Set<PathVertex> = branchesByDepth[depth]?.toSet() ?: emptySet()
 
     fun addTrace(symbolicState: PersistentSymbolicState) {
         var prevVertex = root
-        var pathClauses = 1
+        var clauseNode = clauseTrie.root
+        var pathNode = pathTrie.root
+        val pathVertices = mutableListOf<Pair<PathVertex, ClauseTrie.Node>>()
         for (current in symbolicState.clauses) {
             val currentVertex = _nodes.getOrPut(current) {
                 when (current) {
@@ -142,13 +146,17 @@ class ExecutionTree(val ctx: ExecutionContext) : PredecessorGraph<Vertex>, Viewa
                     else -> ClauseVertex(current)
                 }
             }
+            clauseNode = clauseTrie.child(clauseNode, current)
             if (currentVertex is PathVertex) {
-                currentVertex[symbolicState.path.subPath(0, pathClauses++)] = symbolicState
+                pathNode = pathTrie.child(pathNode, current)
+                pathVertices += currentVertex to pathNode
             }
 
-            prevVertex.let { prev ->
-                prev.addDownEdge(currentVertex)
-                currentVertex.addUpEdge(prev)
+            if (currentVertex !in prevVertex.downEdges) {
+                prevVertex.addDownEdge(currentVertex)
+                currentVertex.addUpEdge(prevVertex)
+                dominators.addEdge(prevVertex, currentVertex)
+                updatePathDepths(prevVertex, currentVertex)
             }
 
             if (currentVertex is PathVertex) {
@@ -160,18 +168,21 @@ class ExecutionTree(val ctx: ExecutionContext) : PredecessorGraph<Vertex>, Viewa
             prevVertex = currentVertex
         }
 
+        val traceState = clauseTrie.State(clauseNode, ClauseTrie.TraceValues(symbolicState))
+        for ((vertex, path) in pathVertices) {
+            vertex[path] = traceState
+        }
+
         val currentDepth = symbolicState.clauses.count { it.predicate.type is PredicateType.Path }
         if (currentDepth > depth)
             depth = currentDepth
-        dominators = DominatorTreeBuilder(this).build()
     }
 
-    private fun Vertex.dominates(other: Vertex) = dominators?.let { tree ->
-        tree[this]?.dominates(other)
-    } ?: false
+    private fun Vertex.dominates(other: Vertex) = dominators.strictlyDominates(this, other)
 
     fun contexts(pathVertex: PathVertex, k: Int): Set<Context> =
-        pathVertex.states.mapTo(mutableSetOf()) { (path, state) ->
+        pathVertex.states.mapTo(mutableSetOf()) { (pathNode, traceState) ->
+            val path = pathTrie.path(pathNode)
             Context(
                 path.builder()
                     .map { edges[it]!! }
@@ -179,31 +190,43 @@ class ExecutionTree(val ctx: ExecutionContext) : PredecessorGraph<Vertex>, Viewa
                     .takeLast(k)
                     .toPersistentList(),
                 path,
-                state
+                traceState.toSymbolicState()
             )
         }
 
-    private fun getBranchDepths(): Map<PathVertex, Int> {
-        val search = mutableMapOf<PathVertex, Int>()
-        val visited = mutableSetOf<Vertex>()
-        val queue = queueOf<Pair<Vertex, Int>>()
-        queue.add(entry to 1)
+    /**
+     * maintains the number of path vertices on the shortest path from the root to each vertex
+     * after adding the edge [from] -> [to]: paths only become shorter, so the decreased depths
+     * are propagated to the successors
+     */
+    private fun updatePathDepths(from: Vertex, to: Vertex) {
+        val queue = ArrayDeque<Pair<Vertex, Vertex>>()
+        queue.add(from to to)
         while (queue.isNotEmpty()) {
-            val (top, depth) = queue.poll()
-            if (top !in visited) {
-                visited += top
-                for (vertex in top.downEdges.filterIsInstance<PathVertex>()) {
-                    search.merge(vertex, depth, ::minOf)
-                }
-                top.downEdges.filter { it !in visited }.forEach {
-                    val newDepth = if (it is PathVertex) depth + 1 else depth
-                    queue.add(it to newDepth)
+            val (prev, current) = queue.removeFirst()
+            val newDepth = pathDepths.getValue(prev) + if (current is PathVertex) 1 else 0
+            val oldDepth = pathDepths[current]
+            if (oldDepth != null && oldDepth <= newDepth) continue
+
+            pathDepths[current] = newDepth
+            if (current is PathVertex) {
+                // branch depth of a path vertex is the path depth of its predecessor
+                if (oldDepth != null) branchesByDepth[oldDepth - 1]?.remove(current)
+                branchesByDepth.getOrPut(newDepth - 1, ::mutableSetOf) += current
+            }
+            for (next in current.downEdges) {
+                when (next) {
+                    is PathVertex -> queue.addLast(current to next)
+                    else -> queue.addFirst(current to next)
                 }
             }
         }
-        return search
     }
 
+    private fun getBranchDepths(): Map<PathVertex, Int> = branchesByDepth.entries
+        .flatMap { (depth, vertices) -> vertices.map { it to depth } }
+        .toMap()
+
     override val graphView: List<GraphView>
         get() {
             val graphNodes = mutableMapOf<Vertex, GraphView>()
@@ -0,0 +1,104 @@
+package org.vorpal.research.kex.asm.analysis.concolic.cgs
+
+import org.vorpal.research.kthelper.graph.PredecessorGraph
+import java.util.PriorityQueue
+
+/**
+ * Dominator tree of a growing graph, that is updated after each edge insertion
+ * instead of being rebuilt from scratch.
+ *
+ * When an edge `x -> y` is inserted, the only vertices that change their immediate dominator are
+ * the vertices `w` with `depth(nca(x, y)) + 1 < depth(w)` that are reachable from `y` through
+ * the vertices of depth not less than `depth(w)`; their new immediate dominator is `nca(x, y)`
+ * (Georgiadis et al., "An Experimental Study of Dynamic Dominators")
+ */
+class IncrementalDominators<T : PredecessorGraph.PredecessorVertex<T>>(root: T) {
+    private val idoms = mutableMapOf<T, T>()
+    private val depths = mutableMapOf(root to 0)
+    private val children = mutableMapOf<T, MutableSet<T>>()
+
+    operator fun contains(vertex: T) = vertex in depths
+
+    fun addEdge(from: T, to: T) {
+        val fromDepth = depths[from] ?: return
+        if (to !in depths) {
+            setIdom(to, from)
+            depths[to] = fromDepth + 1
+            return
+        }
+
+        val nca = nca(from, to)
+        val threshold = depths.getValue(nca) + 1
+        if (threshold >= depths.getValue(to)) return
+
+        // search of the paths from `to` maximizing the minimal depth of their vertices
+        val widths = mutableMapOf(to to depths.getValue(to))
+        val queue = PriorityQueue<Pair<T, Int>>(compareByDescending { it.second })
+        queue += to to depths.getValue(to)
+        val affected = mutableListOf<T>()
+        while (queue.isNotEmpty()) {
+            val (vertex, width) = queue.poll()
+            if (width < widths.getValue(vertex)) continue
+            if (width == depths.getValue(vertex)) affected += vertex
+
+            for (successor in vertex.successors) {
+                val successorDepth = depths[successor] ?: continue
+                if (successorDepth <= threshold) continue
+
+                val successorWidth = minOf(width, successorDepth)
+                if (successorWidth > widths.getOrDefault(successor, Int.MIN_VALUE)) {
+                    widths[successor] = successorWidth
+                    queue += successor to successorWidth
+                }
+            }
+        }
+
+        for (vertex in affected) {
+            setIdom(vertex, nca)
+        }
+        val subtrees = ArrayDeque(affected)
+        while (subtrees.isNotEmpty()) {
+            val vertex = subtrees.removeFirst()
+            depths[vertex] = depths.getValue(idoms.getValue(vertex)) + 1
+            subtrees.addAll(children[vertex].orEmpty())
+        }
+    }
+
+    fun strictlyDominates(dominator: T, vertex: T): Boolean {
+        if (dominator == vertex) return false
+        val dominatorDepth = depths[dominator] ?: return false
+        var current = vertex
+        var currentDepth = depths[current] ?: return false
+        while (currentDepth > dominatorDepth) {
+            current = idoms.getValue(current)
+            --currentDepth
+        }
+        return current == dominator
+    }
+
+    private fun setIdom(vertex: T, idom: T) {
+        idoms[vertex]?.let { children[it]?.remove(vertex) }
+        idoms[vertex] = idom
+        children.getOrPut(idom, ::mutableSetOf) += vertex
+    }
+
+    private fun nca(first: T, second: T): T {
+        var lhv = first
+        var rhv = second
+        var lhvDepth = depths.getValue(lhv)
+        var rhvDepth = depths.getValue(rhv)
+        while (lhvDepth > rhvDepth) {
+            lhv = idoms.getValue(lhv)
+            --lhvDepth
+        }
+        while (rhvDepth > lhvDepth) {
+            rhv = idoms.getValue(rhv)
+            --rhvDepth
+        }
+        while (lhv != rhv) {
+            lhv = idoms.getValue(lhv)
+            rhv = idoms.getValue(rhv)
+        }
+        return lhv
+    }
+}
@@ -3,6 +3,7 @@ package org.vorpal.research.kex.asm.analysis.concolic.coverage
 import org.vorpal.research.kex.ExecutionContext
 import org.vorpal.research.kex.asm.analysis.concolic.ConcolicPathSelector
 import org.vorpal.research.kex.asm.analysis.concolic.ConcolicPathSelectorManager
+import org.vorpal.research.kex.asm.analysis.concolic.UnsatCoreStore
 import org.vorpal.research.kex.trace.symbolic.PathClause
 import org.vorpal.research.kex.trace.symbolic.PersistentSymbolicState
 import org.vorpal.research.kex.trace.symbolic.protocol.ExecutionCompletedResult
@@ -36,6 +37,7 @@ class CoverageGuidedSelector(
         get() = manager.ctx
     private val executionGraph get() = manager.executionGraph
     private val candidates = mutableMapOf<PersistentSymbolicState, CandidateState>()
+    override val unsatCores = UnsatCoreStore()
 
     override suspend fun isEmpty(): Boolean = manager.isCovered() || executionGraph.candidates.isEmpty()
 
@@ -43,8 +45,9 @@ class CoverageGuidedSelector(
 
     override suspend fun next(): Pair<Method, PersistentSymbolicState> {
         val candidate = executionGraph.candidates.nextCandidate()
-        candidates[candidate.state] = candidate
-        return candidate.method to candidate.state
+        val state = candidate.buildState()
+        candidates[state] = candidate
+        return candidate.method to state
     }
 
     override suspend fun addExecutionTrace(
@@ -3,6 +3,7 @@ package org.vorpal.research.kex.asm.analysis.concolic.coverage
 import kotlinx.collections.immutable.PersistentList
 import kotlinx.collections.immutable.toPersistentList
 import org.vorpal.research.kex.ExecutionContext
+import org.vorpal.research.kex.asm.analysis.concolic.ClauseTrie
 import org.vorpal.research.kex.asm.manager.NoConcreteInstanceException
 import org.vorpal.research.kex.asm.manager.instantiationManager
 import org.vorpal.research.kex.config.kexConfig
@@ -21,11 +22,10 @@ import org.vorpal.research.kex.state.term.numericValue
 import org.vorpal.research.kex.state.transformer.TermCollector
 import org.vorpal.research.kex.trace.symbolic.PathClause
 import org.vorpal.research.kex.trace.symbolic.PathClauseType
-import org.vorpal.research.kex.trace.symbolic.PersistentClauseList
 import org.vorpal.research.kex.trace.symbolic.PersistentSymbolicState
-import org.vorpal.research.kex.trace.symbolic.persistentSymbolicState
 import org.vorpal.research.kex.trace.symbolic.protocol.ExecutionCompletedResult
 import org.vorpal.research.kex.trace.symbolic.toPersistentState
+import org.vorpal.research.kex.util.WeightedSampler
 import org.vorpal.research.kex.util.isSubtypeOfCached
 import org.vorpal.research.kex.util.next
 import org.vorpal.research.kfg.arrayIndexOOBClass
@@ -66,7 +66,7 @@ fun Predicate.reverseBoolCond() = when (this) {
 }
 
 fun Predicate.reverseSwitchCond(
-    predecessors: Set<PersistentSymbolicState>,
+    predecessors: Set<Predicate>,
     branches: Map<Value, BasicBlock>
 ): List<Predicate> = when (this) {
     is DefaultSwitchPredicate -> branches.keys
@@ -90,7 +90,6 @@ fun Predicate.reverseSwitchCond(
         }
 
         val visitedCandidates = predecessors
-            .map { it.path.last().predicate }
             .filterIsInstance<EqualityPredicate>()
             .mapTo(mutableSetOf()) { it.rhv.numericValue }
 
@@ -148,18 +147,20 @@ class PathVertex(
     pathType: PathClauseType,
     instruction: Instruction
 ) : Vertex(pathType.name, instruction) {
-    private val states = hashMapOf<PersistentClauseList, MutableSet<PersistentSymbolicState>>()
-    private val visitedPrefixes = hashSetOf<PersistentClauseList>()
+    private val states = hashMapOf<ClauseTrie.Node, MutableSet<ClauseTrie.Node>>()
+    private val visitedPrefixes = hashSetOf<ClauseTrie.Node>()
 
     fun addStateAndProduceCandidates(
         ctx: ExecutionContext,
-        state: PersistentSymbolicState
-    ): List<PersistentSymbolicState> {
-        val prefix = state.clauses.dropLast(1)
-        val condition = state.path.last()
+        trie: ClauseTrie,
+        state: ClauseTrie.State
+    ): List<ClauseTrie.State> {
+        val prefix = state.node.parent!!
+        val condition = state.lastClause as PathClause
         val prefixStates = states.getOrPut(prefix, ::hashSetOf).also {
-            it += state
+            it += state.node
         }
+        val prefixConditions by lazy { prefixStates.mapTo(mutableSetOf()) { it.clause.predicate } }
         return when (prefix) {
             in visitedPrefixes -> emptyList()
             else -> {
@@ -170,7 +171,7 @@ class PathVertex(
                     PathClauseType.BOUNDS_CHECK -> listOf(condition.copy(predicate = condition.predicate.reverseBoolCond()))
                     PathClauseType.CONDITION_CHECK -> when (val inst = condition.instruction) {
                         is BranchInst -> listOf(condition.copy(predicate = condition.predicate.reverseBoolCond()))
-                        is SwitchInst -> condition.predicate.reverseSwitchCond(prefixStates, inst.branches).map {
+                        is SwitchInst -> condition.predicate.reverseSwitchCond(prefixConditions, inst.branches).map {
                             condition.copy(predicate = it)
                         }
 
@@ -179,7 +180,7 @@ class PathVertex(
                                 range.associateWith { inst.branches[it - range.first] }
                                     .mapKeys { ctx.values.getInt(it.key) }
                             }
-                            condition.predicate.reverseSwitchCond(prefixStates, branches).map {
+                            condition.predicate.reverseSwitchCond(prefixConditions, branches).map {
                                 condition.copy(predicate = it)
                             }
                         }
@@ -188,9 +189,8 @@ class PathVertex(
                     }
 
                     PathClauseType.OVERLOAD_CHECK -> {
-                        val excludeClasses = prefixStates
+                        val excludeClasses = prefixConditions
                             .asSequence()
-                            .map { it.path.last().predicate }
                             .flatMap { TermCollector.getFullTermSet(it).filterIsInstance<InstanceOfTerm>() }
                             .map { it.checkedType.getKfgType(ctx.types) }
                             .filterIsInstance<ClassType>()
@@ -214,24 +214,18 @@ class PathVertex(
                     }
                 }
                 reversedConditions.map {
-                    persistentSymbolicState(
-                        prefix,
-                        state.path.dropLast(1) + it,
-                        state.concreteTypes,
-                        state.concreteValues,
-                        state.termMap
-                    )
+                    trie.State(trie.child(prefix, it), state.values)
                 }
             }
         }
     }
 }
 
-private fun PersistentSymbolicState.findExceptionHandlerInst(
+private fun PathClause.findExceptionHandlerInst(
     type: Type,
     stateStackTrace: PersistentList<Pair<Instruction?, Method>>
 ): Instruction? {
-    val currentClause = path.last()
+    val currentClause = this
     val stackTrace = stateStackTrace.mapNotNullTo(mutableListOf()) { it.first }
     stackTrace.add(currentClause.instruction)
     var result: Instruction? = null
@@ -248,31 +242,35 @@ private fun PersistentSymbolicState.findExceptionHandlerInst(
 
 class CandidateState(
     val method: Method,
-    val state: PersistentSymbolicState,
+    val stateReference: ClauseTrie.State,
     val stackTrace: PersistentList<Pair<Instruction?, Method>>
 ) {
     val nextInstruction: Instruction?
     var score: Long = 0L
 
-    private val hashCode = state.hashCode()
+    /**
+     * reconstructs the full state from the trie, it takes time and memory linear in the length of the trace,
+     * so the result is not kept in the candidate: the selector builds it once, when the candidate is chosen
+     */
+    fun buildState(): PersistentSymbolicState = stateReference.toSymbolicState()
 
     init {
         val cm = method.cm
-        val currentClause = state.path.last()
+        val currentClause = stateReference.lastClause as PathClause
         nextInstruction = when (currentClause.type) {
             PathClauseType.NULL_CHECK -> when (currentClause.predicate.operands[1].boolValue) {
-                true -> state.findExceptionHandlerInst(cm.nullptrClass.asType, stackTrace)
+                true -> currentClause.findExceptionHandlerInst(cm.nullptrClass.asType, stackTrace)
                 false -> currentClause.instruction.next
             }
 
             PathClauseType.TYPE_CHECK -> when (currentClause.predicate.operands[1].boolValue) {
                 true -> currentClause.instruction.next
-                false -> state.findExceptionHandlerInst(cm.classCastClass.asType, stackTrace)
+                false -> currentClause.findExceptionHandlerInst(cm.classCastClass.asType, stackTrace)
             }
 
             PathClauseType.BOUNDS_CHECK -> when (currentClause.predicate.operands[1].boolValue) {
                 true -> currentClause.instruction.next
-                false -> state.findExceptionHandlerInst(cm.arrayIndexOOBClass.asType, stackTrace)
+                false -> currentClause.findExceptionHandlerInst(cm.arrayIndexOOBClass.asType, stackTrace)
             }
 
             PathClauseType.OVERLOAD_CHECK -> {
@@ -341,11 +339,11 @@ class CandidateState(
 
         other as CandidateState
 
-        return state == other.state
+        return stateReference == other.stateReference
     }
 
     override fun hashCode(): Int {
-        return hashCode
+        return stateReference.hashCode()
     }
 }
 
@@ -366,6 +364,7 @@ class ExecutionGraph(
         it["STATE" to root.instruction] = root
     }
     private val instructionGraph = InstructionGraph(targets)
+    private val trie = ClauseTrie()
     private val maximalCandidateCapacity = kexConfig.getLongValue("concolic", "maximalCandidateCapacity", 50_000L)
 
     val candidates = CandidateSet(ctx)
@@ -378,8 +377,7 @@ class ExecutionGraph(
 
     inner class CandidateSet(val ctx: ExecutionContext) : Iterable<CandidateState> {
         private var isValid = false
-        private var totalScore: Long = 0L
-        private val candidates = hashSetOf<CandidateState>()
+        private val candidates = WeightedSampler<CandidateState>()
 
         val size get() = candidates.size
 
@@ -388,13 +386,10 @@ class ExecutionGraph(
         fun isEmpty() = candidates.isEmpty()
 
         fun addAll(newCandidates: Collection<CandidateState>) {
-            candidates.addAll(newCandidates)
-            newCandidates.forEach { totalScore += it.score }
-        }
-
-        private fun remove(candidateState: CandidateState) {
-            if (candidates.remove(candidateState)) {
-                totalScore -= candidateState.score
+            for (candidate in newCandidates) {
+                if (candidate !in candidates) {
+                    candidates.add(candidate, candidate.score)
+                }
             }
         }
 
@@ -403,37 +398,21 @@ class ExecutionGraph(
         }
 
         private fun recomputeScores() {
-            totalScore = 0L
-            candidates.forEach {
+            candidates.updateAll {
                 it.recomputeScore()
-                totalScore += it.score
+                it.score
             }
             isValid = true
         }
 
         fun nextCandidate(): CandidateState {
             if (!isValid) recomputeScores()
-            if (totalScore == 0L) {
-                return candidates.first().also { remove(it) }
-            }
-
-            val random = ctx.random.nextLong(totalScore)
-            var current = 0L
-            for (state in candidates) {
-                current += state.score
-                if (random < current) {
-                    remove(state)
-                    return state
-                }
-            }
-            return unreachable { log.error("Unexpected error") }
+            return candidates.sample(ctx.random).also { candidates.remove(it) }
         }
 
         fun cleanUnreachables(): Boolean {
             if (!isValid) recomputeScores()
-            return candidates.removeAll { it.score <= 1 }.also {
-                totalScore = candidates.sumOf { it.score }
-            }
+            return candidates.removeAll { it.score <= 1 }
         }
     }
 
@@ -447,10 +426,8 @@ class ExecutionGraph(
                 (normalizedDistance * DEFAULT_SCORE).toLong()
             }
 
-            val (targetDistance, _) = instructionGraph.getVertex(nextInstruction)
-                .distanceToUncovered(targets, stackTrace)
+            val targetDistance = instructionGraph.distanceToTargets(nextInstruction)
             newScore += scaleDistance(targetDistance)
-//            newScore += scaleDistance(uncoveredDistance) / 10L
         }
         score = newScore
     }
@@ -459,9 +436,9 @@ class ExecutionGraph(
     fun addTrace(method: Method, candidate: CandidateState?, executionResult: ExecutionCompletedResult) {
         instructionGraph.addTrace(executionResult.trace)
         var prevVertex = root
-        var clauseIndex = 0
-        var pathIndex = 0
+        var clauseNode = trie.root
         val symbolicState = executionResult.symbolicState.toPersistentState()
+        val traceValues = ClauseTrie.TraceValues(symbolicState)
 
         var previousInstruction: Instruction? = null
         val stackTrace = mutableListOf<Pair<Instruction?, Method>>()
@@ -486,7 +463,7 @@ class ExecutionGraph(
             }
 
             // candidate states calculation part
-            ++clauseIndex
+            clauseNode = trie.child(clauseNode, clause)
 
             // limit maximum number of states in candidate set
             if (candidates.size > maximalCandidateCapacity) {
@@ -494,8 +471,6 @@ class ExecutionGraph(
                 if (!cleanupSuccessful) break
             }
 
-            if (clause is PathClause) ++pathIndex
-
             val type = when (clause) {
                 is PathClause -> clause.type.toString()
                 else -> Vertex.STATE
@@ -514,13 +489,7 @@ class ExecutionGraph(
 
                 candidates.addAll(
                     currentVertex.addStateAndProduceCandidates(
-                        ctx, persistentSymbolicState(
-                            symbolicState.clauses.subState(clauseIndex),
-                            symbolicState.path.subPath(pathIndex),
-                            symbolicState.concreteTypes,
-                            symbolicState.concreteValues,
-                            symbolicState.termMap
-                        )
+                        ctx, trie, trie.State(clauseNode, traceValues)
                     ).mapTo(mutableSetOf()) { CandidateState(method, it, currentStackTrace) }
                 )
             }
@@ -1,7 +1,6 @@
 package org.vorpal.research.kex.asm.analysis.concolic.coverage
 
 import info.leadinglight.jdot.enums.Color
-import kotlinx.collections.immutable.PersistentList
 import org.vorpal.research.kex.asm.manager.instantiationManager
 import org.vorpal.research.kex.asm.util.AccessModifier
 import org.vorpal.research.kex.ktype.KexRtManager.isKexRt
@@ -25,6 +24,7 @@ import org.vorpal.research.kthelper.collection.queueOf
 import org.vorpal.research.kthelper.graph.GraphView
 import org.vorpal.research.kthelper.graph.Viewable
 import org.vorpal.research.kthelper.tryOrNull
+import java.util.PriorityQueue
 
 
 @Suppress("MemberVisibilityCanBePrivate")
@@ -32,6 +32,7 @@ class InstructionGraph(
     val targets: Set<Method>
 ) : Viewable {
     private val nodes = mutableMapOf<Instruction, Vertex>()
+    private val distanceIndex = TargetDistanceIndex()
 
     var covered = 0
 
@@ -40,6 +41,10 @@ class InstructionGraph(
         val upEdges = mutableSetOf<Vertex>()
         val downEdges = mutableSetOf<Vertex>()
 
+        init {
+            distanceIndex.markDirty(this)
+        }
+
         override fun toString(): String = instruction.print()
 
         override fun equals(other: Any?): Boolean {
@@ -56,71 +61,10 @@ class InstructionGraph(
         }
 
         fun linkDown(other: Vertex) {
-            downEdges += other
-            other.upEdges += this
-        }
-
-        fun distanceToUncovered(
-            targets: Set<Method>,
-            initialStackTrace: PersistentList<Pair<Instruction?, Method>>
-        ): Pair<Int, Int> {
-            var minTargetDistance = Int.MAX_VALUE
-            var minUncoveredDistance = Int.MAX_VALUE
-
-            val distances = mutableMapOf<Vertex, Int>()
-            distances[this] = 0
-            val queue = queueOf(this to initialStackTrace)
-            while (queue.isNotEmpty()) {
-                val (current, stackTrace) = queue.poll()
-                val currentDistance = distances[current]!!
-
-                if (!current.covered) {
-                    if (currentDistance < minUncoveredDistance) {
-                        minUncoveredDistance = currentDistance
-                    }
-                    if (current.instruction.parent.method in targets && currentDistance < minTargetDistance) {
-                        minTargetDistance = currentDistance
-                    }
-                    continue
-                }
-
-                val edges = when (current.instruction) {
-                    is ReturnInst -> {
-                        val newStackTrace = stackTrace.removeAt(stackTrace.size - 1)
-                        if (newStackTrace.isEmpty()) continue
-                        current.downEdges.filter { it.instruction.parent.method == newStackTrace.last().second }
-                            .map { it to newStackTrace }
-                    }
-
-                    is CallInst -> {
-                        current.downEdges.map {
-                            if (it.instruction.parent.method != current.instruction.parent.method) {
-                                it to stackTrace.add(it.instruction to it.instruction.parent.method)
-                            } else {
-                                it to stackTrace
-                            }
-                        }
-                    }
-
-                    else -> current.downEdges.map { it to stackTrace }
-                }
-
-                for ((edge, edgeStackTrace) in edges) {
-                    val distance = distances.getOrDefault(edge, Int.MAX_VALUE)
-                    val stepValue = when (current.instruction) {
-                        is CallInst -> 2
-                        is FieldLoadInst, is FieldStoreInst -> 1
-                        is ArrayLoadInst, is ArrayStoreInst -> 1
-                        is BranchInst -> 1
-                        else -> 0
-                    }
-                    if (distance > (currentDistance + stepValue)) {
-                        distances[edge] = currentDistance + stepValue
-                        queue += edge to edgeStackTrace
-                    }
-                }
+            if (downEdges.add(other)) {
+                distanceIndex.markDirty(this)
             }
-            return minTargetDistance to minUncoveredDistance
+            other.upEdges += this
         }
     }
 
@@ -211,7 +155,10 @@ class InstructionGraph(
         var prev: Vertex? = null
         for (inst in trace) {
             val current = getVertex(inst)
-            if (!current.covered) ++covered
+            if (!current.covered) {
+                ++covered
+                distanceIndex.markDirty(current)
+            }
 
             current.covered = true
             prev?.linkDown(current)
@@ -219,6 +166,103 @@ class InstructionGraph(
         }
     }
 
+    /**
+     * @return distance from the [instruction] to the nearest uncovered instruction of the target methods
+     */
+    fun distanceToTargets(instruction: Instruction): Int = distanceIndex.distance(getVertex(instruction))
+
+    /**
+     * Index of the distances from the vertices to the nearest uncovered instruction of the target methods.
+     *
+     * Distances are computed with the reverse multi-source search from the uncovered target instructions
+     * and are updated incrementally: only the vertices that were added, linked or covered since the last
+     * lookup and the vertices whose nearest target got covered are recomputed.
+     * The search does not track the call stack, return instructions lead to all the callers of the method,
+     * so the distance is a lower bound of the distance along a feasible call stack
+     */
+    private inner class TargetDistanceIndex {
+        private val distances = hashMapOf<Vertex, Int>()
+        private val sources = hashMapOf<Vertex, Vertex>()
+        private val dirty = mutableSetOf<Vertex>()
+
+        private val Vertex.isTarget get() = instruction.parent.method in targets
+
+        private val Vertex.stepValue
+            get() = when (instruction) {
+                is CallInst -> 2
+                is FieldLoadInst, is FieldStoreInst -> 1
+                is ArrayLoadInst, is ArrayStoreInst -> 1
+                is BranchInst -> 1
+                else -> 0
+            }
+
+        fun markDirty(vertex: Vertex) {
+            dirty += vertex
+        }
+
+        fun distance(vertex: Vertex): Int {
+            if (dirty.isNotEmpty()) update()
+            return distances.getOrDefault(vertex, Int.MAX_VALUE)
+        }
+
+        private fun update() {
+            val coveredSources = dirty.filterTo(mutableSetOf()) { it.covered && sources[it] == it }
+            if (coveredSources.isNotEmpty()) {
+                sources.entries.filter { it.value in coveredSources }.mapTo(dirty) { it.key }
+            }
+            for (vertex in dirty) {
+                distances.remove(vertex)
+                sources.remove(vertex)
+            }
+
+            val queue = PriorityQueue<Pair<Vertex, Int>>(compareBy { it.second })
+            for (vertex in dirty) {
+                when {
+                    !vertex.covered -> if (vertex.isTarget) {
+                        distances[vertex] = 0
+                        sources[vertex] = vertex
+                        queue += vertex to 0
+                    }
+
+                    else -> {
+                        var minDistance = Int.MAX_VALUE
+                        var source: Vertex? = null
+                        for (next in vertex.downEdges) {
+                            val nextDistance = distances[next] ?: continue
+                            if (nextDistance + vertex.stepValue < minDistance) {
+                                minDistance = nextDistance + vertex.stepValue
+                                source = sources[next]
+                            }
+                        }
+                        if (source != null) {
+                            distances[vertex] = minDistance
+                            sources[vertex] = source
+                            queue += vertex to minDistance
+                        }
+                    }
+                }
+            }
+            dirty.clear()
+
+            while (queue.isNotEmpty()) {
+                val (vertex, distance) = queue.poll()
+                if (distance > distances.getValue(vertex)) continue
+
+                val source = sources.getValue(vertex)
+                for (prev in vertex.upEdges) {
+                    if (!prev.covered) continue
+
+                    val newDistance = distance + prev.stepValue
+                    if (newDistance < distances.getOrDefault(prev, Int.MAX_VALUE)) {
+                        distances[prev] = newDistance
+                        sources[prev] = source
+                        queue += prev to newDistance
+                    }
+                }
+            }
+        }
+    }
+
     override val graphView: List<GraphView>
         get() {
             val graphNodes = mutableMapOf<Vertex, GraphView>()
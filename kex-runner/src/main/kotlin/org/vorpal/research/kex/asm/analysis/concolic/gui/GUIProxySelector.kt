@@ -20,6 +20,7 @@ import java.net.ServerSocket
 class GUIProxySelector(private val concolicPathSelector: ConcolicPathSelector) : ConcolicPathSelector {
 
     override val ctx = concolicPathSelector.ctx
+    override val unsatCores get() = concolicPathSelector.unsatCores
 
     private companion object {
         val server = ServerSocket(kexConfig.getIntValue("gui", "serverPort", 8080)).apply {
@@ -4,6 +4,7 @@ import kotlinx.collections.immutable.*
 import org.vorpal.research.kex.ExecutionContext
 import org.vorpal.research.kex.asm.analysis.concolic.ConcolicPathSelector
 import org.vorpal.research.kex.asm.analysis.concolic.ConcolicPathSelectorManager
+import org.vorpal.research.kex.asm.analysis.concolic.UnsatCoreStore
 import org.vorpal.research.kex.asm.analysis.symbolic.*
 import org.vorpal.research.kex.asm.analysis.util.checkAsync
 import org.vorpal.research.kex.ktype.KexPointer
@@ -72,6 +73,7 @@ class WeightedPathSelector(
 
     override val ctx: ExecutionContext
         get() = manager.ctx
+    override val unsatCores = UnsatCoreStore()
 
     override suspend fun isEmpty(): Boolean = manager.isCovered()
 
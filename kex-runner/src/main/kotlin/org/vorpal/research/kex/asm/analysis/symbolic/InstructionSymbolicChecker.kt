@@ -26,8 +26,8 @@ class InstructionSymbolicChecker(
         val n = kexConfig.getIntValue("symbolic", "n", 2)
         pathSelector = when (pathSelectorName) {
             "bfs" -> BFS()
-            "sgs" -> SGS(n)
-            "priority-bfs" -> PriorityBFS(n)
+            "sgs" -> SGS(n, ctx.random)
+            "priority-bfs" -> PriorityBFS(n, ctx.random)
             else -> throw IllegalArgumentException("PathSelector '$pathSelectorName' doesn't exist. " +
                     "Check InstructionSymbolicChecker to see available path selectors")
         }
@@ -0,0 +1,83 @@
+package org.vorpal.research.kex.asm.analysis.symbolic
+
+import org.vorpal.research.kex.ExecutionContext
+import org.vorpal.research.kex.smt.AbstractAsyncIncrementalSMTSolver
+import org.vorpal.research.kex.smt.AsyncIncrementalSMTProxySolver
+import org.vorpal.research.kfg.ir.BasicBlock
+import org.vorpal.research.kthelper.tryOrNull
+import java.io.Closeable
+import java.util.IdentityHashMap
+
+/**
+ * Bounded set of live solver sessions that follow the exploration tree of a [SymbolicTraverser].
+ *
+ * Each session keeps asserted the state of the last check made in it, i.e. it is a checkpoint of some
+ * position in the exploration tree. States that are added to the path selector while a block is traversed
+ * remember the checkpoint of that block. When such state is selected and the checkpoint has not moved since,
+ * the checks of the state just push the new clauses on top of the parent state. Otherwise, the state
+ * forks a new session while there are less than [maxCheckpoints] of them, or continues in the old one,
+ * which pops its scopes down to the common prefix of the states
+ */
+class SolverCheckpoints(
+    private val ctx: ExecutionContext,
+    private val maxCheckpoints: Int
+) : Closeable {
+    private class Checkpoint(val session: AbstractAsyncIncrementalSMTSolver) {
+        var position = 0
+    }
+
+    private class Mark(val checkpoint: Checkpoint, val position: Int)
+
+    private val checkpoints = mutableListOf<Checkpoint>()
+    private val marks = IdentityHashMap<TraverserState, Mark>()
+    private var current: Checkpoint? = null
+
+    /**
+     * session of the currently traversed state, all the checks of the state should go through it
+     */
+    val session: AbstractAsyncIncrementalSMTSolver
+        get() = (current ?: fork()).session
+
+    /**
+     * @return selector that marks the added states with the current checkpoint
+     * and restores the checkpoint of the selected state
+     */
+    fun track(selector: SymbolicPathSelector): SymbolicPathSelector = object : SymbolicPathSelector {
+        override suspend fun add(state: TraverserState, block: BasicBlock) {
+            current?.let { marks[state] = Mark(it, it.position) }
+            selector.add(state, block)
+        }
+
+        override suspend fun hasNext(): Boolean = selector.hasNext()
+
+        override suspend fun next(): Pair<TraverserState, BasicBlock> = selector.next().also { (state, _) ->
+            enter(marks.remove(state))
+        }
+    }
+
+    private fun enter(mark: Mark?) {
+        val checkpoint = when {
+            mark == null -> null
+            mark.checkpoint.position == mark.position -> mark.checkpoint
+            checkpoints.size < maxCheckpoints -> fork()
+            else -> mark.checkpoint
+        }
+        current = checkpoint?.also { ++it.position }
+    }
+
+    private fun fork(): Checkpoint = when {
+        checkpoints.size < maxCheckpoints -> Checkpoint(AsyncIncrementalSMTProxySolver.getSolver(ctx))
+            .also { checkpoints += it }
+
+        else -> checkpoints.minBy { it.position }
+    }.also { current = it }
+
+    override fun close() {
+        for (checkpoint in checkpoints) {
+            tryOrNull { checkpoint.session.close() }
+        }
+        checkpoints.clear()
+        marks.clear()
+        current = null
+    }
+}
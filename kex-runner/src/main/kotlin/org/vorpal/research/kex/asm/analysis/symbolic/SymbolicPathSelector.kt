@@ -1,8 +1,11 @@
 package org.vorpal.research.kex.asm.analysis.symbolic
 
 import org.vorpal.research.kex.asm.analysis.util.SuspendableIterator
+import org.vorpal.research.kex.util.WeightedSampler
 import org.vorpal.research.kfg.ir.BasicBlock
 import org.vorpal.research.kthelper.collection.queueOf
+import java.util.TreeMap
+import kotlin.random.Random
 
 interface SymbolicPathSelector : SuspendableIterator<Pair<TraverserState, BasicBlock>> {
     suspend fun add(state: TraverserState, block: BasicBlock)
@@ -28,80 +31,81 @@ class BFS : SymbolicPathSelector {
 /**
  * Implements n-subPath algorithm, which makes path decisions based on the frequency of visits to paths of length n
  */
-class SGS(private val n: Int = 2) : SymbolicPathSelector {
-    private val eSVector = mutableSetOf<ExecutionState>()
-    private val pathVisits = mutableMapOf<List<BasicBlock>, Int>()
+class SGS(n: Int = 2, random: Random = Random.Default) : SymbolicPathSelector {
+    private val queue = SubPathQueue(n, random) { it.visits.toLong() }
 
-    override suspend fun add(state: TraverserState, block: BasicBlock) {
-        val newState = ExecutionState(state to block, n)
-        eSVector.add(newState)
-        if (pathVisits[newState.path] == null) {
-            pathVisits[newState.path] = 0
-        }
-    }
+    override suspend fun add(state: TraverserState, block: BasicBlock) = queue.add(state, block)
 
-    override suspend fun hasNext(): Boolean = eSVector.isNotEmpty()
+    override suspend fun hasNext(): Boolean = queue.isNotEmpty()
 
-    override suspend fun next(): Pair<TraverserState, BasicBlock> {
-        val minPath = eSVector.minOf { pathVisits[it.path]!! }
+    override suspend fun next(): Pair<TraverserState, BasicBlock> = queue.poll()
+}
 
-        val selectSet = mutableSetOf<ExecutionState>()
+/**
+ * Implements bfs algorithm, which takes into account frequency of visits to paths of length n from n-subPath
+ */
+class PriorityBFS(n: Int = 2, random: Random = Random.Default) : SymbolicPathSelector {
+    private val queue = SubPathQueue(n, random) { (it.length.toLong() shl Int.SIZE_BITS) or it.visits.toLong() }
 
-        for (elem in eSVector) {
-            if (pathVisits[elem.path] == minPath) {
-                selectSet.add(elem)
-            }
-        }
+    override suspend fun add(state: TraverserState, block: BasicBlock) = queue.add(state, block)
 
-        val result =  selectSet.random()
-        pathVisits[result.path] = pathVisits[result.path]!! + 1
-        eSVector.remove(result)
-        return result.node
-    }
+    override suspend fun hasNext(): Boolean = queue.isNotEmpty()
 
-    class ExecutionState(
-        val node: Pair<TraverserState, BasicBlock>,
-        pathLength: Int
-    ) {
-        val path: List<BasicBlock> = node.first.blockPath.takeLast(pathLength)
-    }
+    override suspend fun next(): Pair<TraverserState, BasicBlock> = queue.poll()
 }
 
 /**
- * Implements bfs algorithm, which takes into account frequency of visits to paths of length n from n-subPath
+ * Frontier of the n-subPath selectors.
+ *
+ * Last n blocks of the path of a state are interned into a [SubPath] once, when the state is added,
+ * so the visit counters are updated without hashing the block lists. Sub-paths with pending states are kept
+ * in buckets ordered by [priority], lower priority is selected first. Inside a bucket a sub-path is sampled
+ * with the weight equal to the number of its pending states, so each pending state of the best bucket
+ * is selected with equal probability. Both insertion and selection take O(log n)
  */
-class PriorityBFS(private val n: Int = 2) : SymbolicPathSelector {
-    private val eSVector = mutableSetOf<ExecutionState>()
-    private val p = mutableMapOf<List<BasicBlock>, Int>()
-
-    override suspend fun add(state: TraverserState, block: BasicBlock) {
-        val newState = ExecutionState(state to block, n)
-        eSVector.add(newState)
-        if (p[newState.path] == null) {
-            p[newState.path] = 0
-        }
+private class SubPathQueue(
+    private val n: Int,
+    private val random: Random,
+    private val priority: (SubPath) -> Long
+) {
+    class SubPath(val length: Int) {
+        var visits = 0
+        var bucket = 0L
+        val states = arrayListOf<Pair<TraverserState, BasicBlock>>()
     }
 
-    override suspend fun hasNext(): Boolean = eSVector.isNotEmpty()
-
-    override suspend fun next(): Pair<TraverserState, BasicBlock> {
-        val minLen = eSVector.minOf { it.path.size }
-        val filteredESVector = eSVector.filter { it.path.size == minLen }
+    private val subPaths = hashMapOf<List<BasicBlock>, SubPath>()
+    private val buckets = TreeMap<Long, WeightedSampler<SubPath>>()
+    private var size = 0
 
-        val minPath = filteredESVector.minOf { p[it.path]!! }
-        val filteredESVector2 = filteredESVector.filter { p[it.path] == minPath }
+    fun isNotEmpty() = size > 0
 
-        val result =  filteredESVector2.random()
-
-        p[result.path] = p[result.path]!! + 1
-        eSVector.remove(result)
-        return result.node
+    fun add(state: TraverserState, block: BasicBlock) {
+        val path = state.blockPath.takeLast(n)
+        val subPath = subPaths.getOrPut(path) { SubPath(path.size).also { it.bucket = priority(it) } }
+        subPath.states += state to block
+        buckets.getOrPut(subPath.bucket) { WeightedSampler() }.add(subPath, subPath.states.size.toLong())
+        ++size
     }
 
-    class ExecutionState(
-        val node: Pair<TraverserState, BasicBlock>,
-        pathLength: Int
-    ) {
-        val path: List<BasicBlock> = node.first.blockPath.takeLast(pathLength)
+    fun poll(): Pair<TraverserState, BasicBlock> {
+        val (bucket, sampler) = buckets.firstEntry() ?: throw NoSuchElementException("Empty path selector")
+        val subPath = sampler.sample(random)
+        sampler.remove(subPath)
+        if (sampler.isEmpty()) buckets.remove(bucket)
+
+        val states = subPath.states
+        val index = random.nextInt(states.size)
+        val result = states[index]
+        states[index] = states.last()
+        states.removeAt(states.lastIndex)
+        --size
+
+        ++subPath.visits
+        subPath.bucket = priority(subPath)
+        if (states.isNotEmpty()) {
+            buckets.getOrPut(subPath.bucket) { WeightedSampler() }.add(subPath, states.size.toLong())
+        }
+        return result
     }
 }
@@ -16,6 +16,7 @@ import org.vorpal.research.kex.asm.analysis.util.checkAsync
 import org.vorpal.research.kex.asm.analysis.util.checkAsyncIncremental
 import org.vorpal.research.kex.compile.CompilationException
 import org.vorpal.research.kex.compile.CompilerHelper
+import org.vorpal.research.kex.config.kexConfig
 import org.vorpal.research.kex.descriptor.Descriptor
 import org.vorpal.research.kex.descriptor.DescriptorContext
 import org.vorpal.research.kex.descriptor.FullDescriptorContext
@@ -156,6 +157,20 @@ abstract class SymbolicTraverser(
     abstract val callResolver: SymbolicCallResolver
     abstract val invokeDynamicResolver: SymbolicInvokeDynamicResolver
 
+    private val solverCheckpoints = when {
+        kexConfig.getBooleanValue("symbolic", "incrementalSolving", false) -> SolverCheckpoints(
+            ctx,
+            maxOf(1, kexConfig.getIntValue("symbolic", "maxSolverContexts", 4))
+        )
+
+        else -> null
+    }
+
+    // path selector is initialized by the subclasses, so it can't be wrapped in the constructor
+    private val frontier: SymbolicPathSelector by lazy {
+        solverCheckpoints?.track(pathSelector) ?: pathSelector
+    }
+
     protected var testIndex = AtomicInteger(0)
     protected val compilerHelper = CompilerHelper(ctx)
 
@@ -167,7 +182,11 @@ abstract class SymbolicTraverser(
     protected val Type.symbolicType: KexType get() = kexType.rtMapped
     protected val org.vorpal.research.kfg.ir.Class.symbolicClass: KexType get() = kexType.rtMapped
     suspend fun analyze() = rootMethod.analyzeOrTimeout(ctx.accessLevel) {
-        processMethod(it)
+        try {
+            processMethod(it)
+        } finally {
+            solverCheckpoints?.close()
+        }
     }
 
     protected open suspend fun processMethod(method: Method) {
@@ -219,10 +238,10 @@ abstract class SymbolicTraverser(
         }
 
         withContext(currentCoroutineContext()) {
-            pathSelector += initialState to method.body.entry
+            frontier += initialState to method.body.entry
 
-            while (pathSelector.hasNext()) {
-                val (currentState, currentBlock) = pathSelector.next()
+            while (frontier.hasNext()) {
+                val (currentState, currentBlock) = frontier.next()
                 traverseBlock(currentState, currentBlock)
                 yield()
             }
@@ -360,12 +379,12 @@ abstract class SymbolicTraverser(
             ConditionCheckQuery(
                 UpdateOnlyQuery(trueConstraints) { state ->
                     val newState = state + inst.parent
-                    pathSelector += newState to inst.trueSuccessor
+                    frontier += newState to inst.trueSuccessor
                     newState
                 },
                 UpdateOnlyQuery(falseConstraints) { state ->
                     val newState = state + inst.parent
-                    pathSelector += newState to inst.falseSuccessor
+                    frontier += newState to inst.falseSuccessor
                     newState
                 },
             )
@@ -633,7 +652,7 @@ abstract class SymbolicTraverser(
                     stackTrace = state.stackTrace.add(
                         SymbolicStackTraceElement(inst.parent.method, inst, state.valueMap)
                     )
-                ).also { pathSelector += it to candidate.body.entry }
+                ).also { frontier += it to candidate.body.entry }
             }
 
             else -> typeCheckInc(traverserState, inst, callee, candidate.klass.symbolicClass).withHandler { state ->
@@ -660,7 +679,7 @@ abstract class SymbolicTraverser(
                     stackTrace = state.stackTrace.add(
                         SymbolicStackTraceElement(inst.parent.method, inst, state.valueMap)
                     )
-                ).also { pathSelector += it to candidate.body.entry }
+                ).also { frontier += it to candidate.body.entry }
             }
         }
         checkReachabilityIncremental(traverserState, checks)
@@ -741,7 +760,7 @@ abstract class SymbolicTraverser(
             traverserState,
             ConditionCheckQuery(
                 UpdateOnlyQuery(persistentSymbolicState()) { state ->
-                    pathSelector += (state + inst.parent) to inst.successor
+                    frontier += (state + inst.parent) to inst.successor
                     state
                 }
             )
@@ -800,7 +819,7 @@ abstract class SymbolicTraverser(
                     val pathState = persistentSymbolicState() + path
                     add(UpdateOnlyQuery(pathState) { state ->
                         val newState = state + inst.parent
-                        pathSelector += newState to branch
+                        frontier += newState to branch
                         newState
                     })
                 }
@@ -812,7 +831,7 @@ abstract class SymbolicTraverser(
                 val defaultState = persistentSymbolicState() + defaultPath
                 add(UpdateOnlyQuery(defaultState) { state ->
                     val newState = state + inst.parent
-                    pathSelector += newState to inst.default
+                    frontier += newState to inst.default
                     newState
                 })
             })
@@ -838,7 +857,7 @@ abstract class SymbolicTraverser(
                     val pathState = persistentSymbolicState() + path
                     add(UpdateOnlyQuery(pathState) { state ->
                         val newState = state + inst.parent
-                        pathSelector += newState to branch
+                        frontier += newState to branch
                         newState
                     })
                 }
@@ -850,7 +869,7 @@ abstract class SymbolicTraverser(
                 val defaultState = persistentSymbolicState() + defaultPath
                 add(UpdateOnlyQuery(defaultState) { state ->
                     val newState = state + inst.parent
-                    pathSelector += newState to inst.default
+                    frontier += newState to inst.default
                     newState
                 })
             })
@@ -1245,7 +1264,7 @@ abstract class SymbolicTraverser(
             catchFrame != null -> {
                 val (catchBlock, catchValueMap) = catchFrame
                 val catchInst = catchBlock.instructions.first { it is CatchInst } as CatchInst
-                pathSelector += state.copy(
+                frontier += state.copy(
                     valueMap = catchValueMap.put(catchInst, throwable),
                     blockPath = state.blockPath.add(inst.parent),
                     stackTrace = state.stackTrace.builder().also {
@@ -1319,7 +1338,7 @@ abstract class SymbolicTraverser(
         state: SymbolicState,
         queries: List<SymbolicState>
     ): List<FullDescriptorContext?> =
-        method.checkAsyncIncremental(ctx, state, queries)
+        method.checkAsyncIncremental(ctx, state, queries, session = solverCheckpoints?.session)
 
     @Suppress("NOTHING_TO_INLINE")
     protected inline fun PathClause.inverse(): PathClause = this.copy(
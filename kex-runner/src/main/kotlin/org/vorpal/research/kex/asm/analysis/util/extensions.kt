@@ -1,8 +1,10 @@
 package org.vorpal.research.kex.asm.analysis.util
 
+import kotlinx.collections.immutable.persistentListOf
 import kotlinx.collections.immutable.toPersistentList
 import kotlinx.coroutines.TimeoutCancellationException
 import org.vorpal.research.kex.ExecutionContext
+import org.vorpal.research.kex.asm.analysis.concolic.UnsatCoreStore
 import org.vorpal.research.kex.asm.analysis.crash.precondition.ConstraintExceptionPrecondition
 import org.vorpal.research.kex.asm.manager.MethodManager
 import org.vorpal.research.kex.asm.util.AccessModifier
@@ -15,11 +17,14 @@ import org.vorpal.research.kex.ktype.kexType
 import org.vorpal.research.kex.mocking.performMocking
 import org.vorpal.research.kex.mocking.withoutMocksOrNull
 import org.vorpal.research.kex.parameters.*
+import org.vorpal.research.kex.smt.AbstractAsyncIncrementalSMTSolver
 import org.vorpal.research.kex.smt.AsyncChecker
 import org.vorpal.research.kex.smt.AsyncIncrementalChecker
 import org.vorpal.research.kex.smt.Result
+import org.vorpal.research.kex.smt.SMTModel
 import org.vorpal.research.kex.state.IncrementalPredicateState
 import org.vorpal.research.kex.state.PredicateQuery
+import org.vorpal.research.kex.state.PredicateState
 import org.vorpal.research.kex.state.term.term
 import org.vorpal.research.kex.state.transformer.SymbolicStateForwardSlicer
 import org.vorpal.research.kex.state.transformer.collectArguments
@@ -53,10 +58,14 @@ suspend fun Method.analyzeOrTimeout(
 }
 
 
+/**
+ * @param unsatCores store that receives the unsat core of the [state], if the state is infeasible
+ */
 suspend fun Method.checkAsync(
     ctx: ExecutionContext,
     state: SymbolicState,
-    enableInlining: Boolean = false
+    enableInlining: Boolean = false,
+    unsatCores: UnsatCoreStore? = null
 ): Parameters<Descriptor>? {
     val checker = AsyncChecker(this, ctx)
     val clauses = state.clauses.asState()
@@ -66,12 +75,62 @@ suspend fun Method.checkAsync(
         .mapValues { it.value.rtMapped }
         .toTypeMap()
     val result = checker.prepareAndCheck(this, clauses + query, concreteTypeInfo, enableInlining)
+    if (result is Result.UnsatResult) {
+        unsatCores?.addCore(state, result.core)
+    }
     if (result !is Result.SatResult) {
         return null
     }
 
+    return generateParameters(ctx, state, result.model, checker.state)
+}
+
+
+/**
+ * Incremental version of [checkAsync]: state clauses are checked as the state of the incremental query
+ * and the path is checked as a single query. If the [session] is persistent, it keeps the clauses asserted
+ * between the calls, so the consecutive checks of the paths from the same trace reuse the common prefix
+ * @param unsatCores store that receives the unsat core of the [state], if the state is infeasible
+ */
+suspend fun Method.checkAsyncIncremental(
+    ctx: ExecutionContext,
+    state: SymbolicState,
+    session: AbstractAsyncIncrementalSMTSolver,
+    enableInlining: Boolean = false,
+    unsatCores: UnsatCoreStore? = null
+): Parameters<Descriptor>? {
+    val checker = AsyncIncrementalChecker(this, ctx, session)
+    val clauses = state.clauses.asState()
+    val query = state.path.asState()
+    val concreteTypeInfo = state.concreteTypes
+        .filterValues { it.isJavaRt }
+        .mapValues { it.value.rtMapped }
+        .toTypeMap()
+    val result = checker.prepareAndCheck(
+        this,
+        IncrementalPredicateState(clauses, persistentListOf(PredicateQuery(query))),
+        concreteTypeInfo,
+        enableInlining
+    ).single()
+    if (result is Result.UnsatResult) {
+        unsatCores?.addCore(state, result.core)
+    }
+    if (result !is Result.SatResult) {
+        return null
+    }
+
+    return generateParameters(ctx, state, result.model, checker.state + checker.queries.single().hardConstraints)
+}
+
+
+private suspend fun Method.generateParameters(
+    ctx: ExecutionContext,
+    state: SymbolicState,
+    model: SMTModel,
+    checkedState: PredicateState
+): Parameters<Descriptor>? {
     return try {
-        generateInitialDescriptors(this, ctx, result.model, checker.state)
+        generateInitialDescriptors(this, ctx, model, checkedState)
             .performMocking(ctx, state, this)
             .parameters
             .filterStaticFinals(ctx.cm)
@@ -143,13 +202,18 @@ suspend fun Method.checkAsyncAndSlice(
 }
 
 
+/**
+ * @param session solver that is kept alive between the calls, if it is persistent,
+ * the common prefix of the [state] with the previously checked one is not asserted again
+ */
 suspend fun Method.checkAsyncIncremental(
     ctx: ExecutionContext,
     state: SymbolicState,
     queries: List<SymbolicState>,
-    enableInlining: Boolean = false
+    enableInlining: Boolean = false,
+    session: AbstractAsyncIncrementalSMTSolver? = null
 ): List<FullDescriptorContext?> {
-    val checker = AsyncIncrementalChecker(this, ctx)
+    val checker = AsyncIncrementalChecker(this, ctx, session)
     val clauses = state.clauses.asState()
     val query = state.path.asState()
     val concreteTypeInfo = state.concreteTypes
@@ -0,0 +1,97 @@
+package org.vorpal.research.kex.compile
+
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.yield
+import org.vorpal.research.kthelper.logging.log
+import java.io.Closeable
+import kotlin.time.Duration
+import kotlin.time.TimeSource
+
+/**
+ * Collects the sources submitted by all the concurrent checkers and compiles them
+ * in a single compilation task of [driver]. The batch is compiled as soon as it has [maxBatchSize] sources
+ * or no other source is pending; [window] limits the time of collecting a batch while the sources keep coming.
+ * If the batch fails to compile, each source is recompiled separately, so
+ * one broken test fails only its own request.
+ * Compiler has to be closed after use, otherwise its consumer coroutine keeps running
+ */
+class BatchingCompiler(
+    private val driver: InMemoryCompilerDriver,
+    private val window: Duration,
+    private val maxBatchSize: Int
+) : Closeable {
+    private class CompilationTask(
+        val source: InMemoryJavaSource,
+        val result: CompletableDeferred<Map<String, ByteArray>> = CompletableDeferred()
+    )
+
+    private val tasks = Channel<CompilationTask>(Channel.UNLIMITED)
+    private val scope = CoroutineScope(Dispatchers.IO)
+
+    init {
+        scope.launch {
+            for (first in tasks) {
+                compile(collectBatch(first))
+            }
+        }
+    }
+
+    private suspend fun collectBatch(first: CompilationTask): List<CompilationTask> {
+        val batch = mutableListOf(first)
+        val deadline = TimeSource.Monotonic.markNow() + window
+        while (batch.size < maxBatchSize && !deadline.hasPassedNow()) {
+            batch += tasks.tryReceive().getOrNull() ?: run {
+                // give the concurrently running checkers a chance to submit their sources
+                yield()
+                tasks.tryReceive().getOrNull()
+            } ?: break
+        }
+        return batch
+    }
+
+    suspend fun compile(source: InMemoryJavaSource): Map<String, ByteArray> {
+        val task = CompilationTask(source)
+        tasks.send(task)
+        return task.result.await()
+    }
+
+    private fun compile(batch: List<CompilationTask>) {
+        if (batch.size > 1) {
+            val results = try {
+                driver.compileBatch(batch.map { it.source })
+            } catch (e: Throwable) {
+                log.debug("Batch of ${batch.size} sources failed to compile, compiling them separately")
+                null
+            }
+            if (results != null) {
+                for (task in batch) {
+                    task.result.complete(results[task.source].orEmpty())
+                }
+                return
+            }
+        }
+
+        for (task in batch) {
+            try {
+                task.result.complete(driver.compileSources(listOf(task.source)))
+            } catch (e: Throwable) {
+                task.result.completeExceptionally(e)
+            }
+        }
+    }
+
+    override fun close() {
+        tasks.close()
+        scope.cancel()
+        while (true) {
+            val task = tasks.tryReceive().getOrNull() ?: break
+            task.result.completeExceptionally(CompilationException("Compiler is closed"))
+        }
+        driver.close()
+    }
+}
@@ -2,26 +2,102 @@ package org.vorpal.research.kex.compile
 
 import org.vorpal.research.kex.ExecutionContext
 import org.vorpal.research.kex.config.kexConfig
+import org.vorpal.research.kex.reanimator.codegen.javagen.ReflectionUtilsPrinter
+import org.vorpal.research.kex.util.asmString
 import org.vorpal.research.kex.util.compiledCodeDirectory
 import org.vorpal.research.kex.util.getJunit
 import org.vorpal.research.kex.util.getMockito
 import org.vorpal.research.kex.util.testcaseDirectory
 import org.vorpal.research.kthelper.collection.mapToArray
 import java.nio.file.Path
+import java.util.concurrent.ConcurrentHashMap
+import kotlin.io.path.writeBytes
+import kotlin.io.path.writeText
+import kotlin.time.Duration.Companion.milliseconds
 
 class CompilerHelper(val ctx: ExecutionContext) {
     private val enabled: Boolean = kexConfig.getBooleanValue("compile", "enabled", true)
+    val inMemory: Boolean = enabled && kexConfig.getBooleanValue("compile", "inMemory", false)
+    val directBytecode: Boolean = enabled && kexConfig.getBooleanValue("compile", "directBytecode", false)
     private val compileDir: Path = kexConfig.compiledCodeDirectory.also {
         it.toFile().mkdirs()
     }
     private val testDirectory = kexConfig.testcaseDirectory
+    private val batchWindow = kexConfig.getLongValue("compile", "batchWindow", 50L).milliseconds
+    private val maxBatchSize = kexConfig.getIntValue("compile", "maxBatchSize", 32)
+    private val classPath: List<Path>
+        get() = listOfNotNull(
+            *ctx.classPath.toTypedArray(),
+            *getJunit().mapToArray { it.path },
+            getMockito()?.path,
+            testDirectory
+        )
+
+    companion object {
+        private val sessions = ConcurrentHashMap<Pair<List<Path>, Path>, BatchingCompiler>()
+        private val compiledHelpers = mutableSetOf<Path>()
+
+        /**
+         * Closes the shared compiler sessions and releases their file managers and compiled classes,
+         * should be called after the analysis is finished
+         */
+        fun clear() {
+            for (session in sessions.values) {
+                session.close()
+            }
+            sessions.clear()
+        }
+    }
 
     fun compileFile(file: Path) {
         if (!enabled) return
 
-        val compilerDriver = JavaCompilerDriver(
-            listOfNotNull(*ctx.classPath.toTypedArray(), *getJunit().mapToArray { it.path }, getMockito()?.path, testDirectory), compileDir
-        )
+        val compilerDriver = JavaCompilerDriver(classPath, compileDir)
         compilerDriver.compile(listOf(file))
     }
+
+    /**
+     * Compiles helper classes used by the tests that are compiled directly to bytecode
+     */
+    fun compileHelpers() {
+        if (!enabled) return
+
+        synchronized(compiledHelpers) {
+            val helpers = ReflectionUtilsPrinter.reflectionUtilsClasses() - compiledHelpers
+            if (helpers.isEmpty()) return
+
+            val compilerDriver = JavaCompilerDriver(classPath, compileDir)
+            compilerDriver.compile(helpers.toList())
+            compiledHelpers += helpers
+        }
+    }
+
+    /**
+     * Compiles the source in the shared in-memory compiler session,
+     * sources submitted concurrently by different checkers are compiled together.
+     * @return bytecode of all the classes declared in the [source]
+     */
+    suspend fun compileSource(source: InMemoryJavaSource): Map<String, ByteArray> {
+        if (!enabled) return emptyMap()
+
+        val currentClassPath = classPath
+        val session = sessions.getOrPut(currentClassPath to compileDir) {
+            BatchingCompiler(InMemoryCompilerDriver(currentClassPath, compileDir), batchWindow, maxBatchSize)
+        }
+        return session.compile(source)
+    }
+
+    /**
+     * Saves the test compiled in memory into the test case and compiled code directories
+     */
+    fun persist(source: InMemoryJavaSource, sourceFile: Path, classes: Map<String, ByteArray>) {
+        sourceFile.parent?.toFile()?.mkdirs()
+        sourceFile.writeText(source.code)
+        for ((name, bytes) in classes) {
+            compileDir.resolve("${name.asmString}.class").also {
+                it.parent?.toFile()?.mkdirs()
+                it.writeBytes(bytes)
+            }
+        }
+    }
 }
@@ -0,0 +1,199 @@
+package org.vorpal.research.kex.compile
+
+import org.vorpal.research.kex.util.asmString
+import org.vorpal.research.kthelper.logging.log
+import org.vorpal.research.kthelper.`try`
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.Closeable
+import java.io.InputStream
+import java.io.OutputStream
+import java.net.URI
+import java.nio.file.Path
+import javax.tools.FileObject
+import javax.tools.ForwardingJavaFileManager
+import javax.tools.JavaFileManager
+import javax.tools.JavaFileObject
+import javax.tools.SimpleJavaFileObject
+import javax.tools.StandardJavaFileManager
+import javax.tools.StandardLocation
+import javax.tools.ToolProvider
+import kotlin.io.path.readText
+import kotlin.io.path.writeBytes
+
+class InMemoryJavaSource(
+    val className: String,
+    val code: String
+) : SimpleJavaFileObject(
+    URI.create("string:///${className.asmString}${JavaFileObject.Kind.SOURCE.extension}"),
+    JavaFileObject.Kind.SOURCE
+) {
+    override fun getCharContent(ignoreEncodingErrors: Boolean): CharSequence = code
+}
+
+private class InMemoryClassFile(
+    val className: String
+) : SimpleJavaFileObject(
+    URI.create("bytes:///${className.asmString}${JavaFileObject.Kind.CLASS.extension}"),
+    JavaFileObject.Kind.CLASS
+) {
+    private val output = ByteArrayOutputStream()
+    private var lastModified = System.currentTimeMillis()
+
+    val packageName get() = className.substringBeforeLast('.', "")
+    val bytes: ByteArray get() = output.toByteArray()
+
+    override fun openOutputStream(): OutputStream {
+        lastModified = System.currentTimeMillis()
+        output.reset()
+        return output
+    }
+
+    override fun openInputStream(): InputStream = ByteArrayInputStream(bytes)
+
+    override fun getLastModified(): Long = lastModified
+}
+
+/**
+ * File manager that keeps all the compiler output in memory. Classes that were compiled
+ * implicitly (i.e. helper classes like `ReflectionUtils`) are kept for the whole session
+ * and are provided to the subsequent compilation tasks through the class path
+ */
+private class InMemoryFileManager(
+    delegate: StandardJavaFileManager
+) : ForwardingJavaFileManager<StandardJavaFileManager>(delegate) {
+    val sessionClasses = linkedMapOf<String, InMemoryClassFile>()
+    val taskOutputs = mutableListOf<Pair<InMemoryClassFile, FileObject?>>()
+
+    override fun getJavaFileForOutput(
+        location: JavaFileManager.Location,
+        className: String,
+        kind: JavaFileObject.Kind,
+        sibling: FileObject?
+    ): JavaFileObject {
+        if (location != StandardLocation.CLASS_OUTPUT || kind != JavaFileObject.Kind.CLASS) {
+            return super.getJavaFileForOutput(location, className, kind, sibling)
+        }
+        return InMemoryClassFile(className).also {
+            taskOutputs += it to sibling
+        }
+    }
+
+    override fun list(
+        location: JavaFileManager.Location,
+        packageName: String,
+        kinds: MutableSet<JavaFileObject.Kind>,
+        recurse: Boolean
+    ): MutableIterable<JavaFileObject> {
+        val files = super.list(location, packageName, kinds, recurse)
+        if (location != StandardLocation.CLASS_PATH || JavaFileObject.Kind.CLASS !in kinds) return files
+        val inMemoryFiles = sessionClasses.values.filter {
+            it.packageName == packageName || (recurse && it.packageName.startsWith("$packageName."))
+        }
+        return when {
+            inMemoryFiles.isEmpty() -> files
+            else -> (inMemoryFiles + files).toMutableList()
+        }
+    }
+
+    override fun inferBinaryName(location: JavaFileManager.Location, file: JavaFileObject): String? = when (file) {
+        is InMemoryClassFile -> file.className
+        else -> super.inferBinaryName(location, file)
+    }
+}
+
+/**
+ * Reusable compiler session: the compiler, the file manager and its class path index
+ * are created once and are shared by all the compilation tasks.
+ * Classes of the compiled sources are returned as byte arrays and are never written on disk,
+ * only implicitly compiled helper classes are saved into [outputDir].
+ * Closing the driver releases the file manager together with the classes kept in the session
+ */
+class InMemoryCompilerDriver(
+    classPath: List<Path>,
+    outputDir: Path
+) : CompilerDriver(classPath, outputDir), Closeable {
+    private val compiler = ToolProvider.getSystemJavaCompiler()
+    private val fileManager = InMemoryFileManager(
+        compiler.getStandardFileManager(null, null, null).also {
+            it.setLocation(StandardLocation.CLASS_PATH, classPath.map { path -> path.toFile() })
+        }
+    )
+
+    override fun compile(sources: List<Path>): List<Path> {
+        val classes = compileSources(sources.map { InMemoryJavaSource(it.className, it.readText()) })
+        return classes.map { (name, bytes) ->
+            outputDir.resolve("${name.asmString}.class").also {
+                it.parent?.toFile()?.mkdirs()
+                it.writeBytes(bytes)
+            }
+        }
+    }
+
+    fun compileSources(sources: List<InMemoryJavaSource>): Map<String, ByteArray> =
+        compileBatch(sources).values.fold(mutableMapOf<String, ByteArray>()) { acc, classes -> acc.also { it.putAll(classes) } }
+
+    /**
+     * Compiles all the sources in a single compilation task
+     * @return bytecode of the classes declared in each of the [sources]
+     */
+    fun compileBatch(
+        sources: List<InMemoryJavaSource>
+    ): Map<InMemoryJavaSource, Map<String, ByteArray>> = synchronized(this) {
+        fileManager.taskOutputs.clear()
+        val compilerOutput = ByteArrayOutputStream()
+        val task = compiler.getTask(
+            compilerOutput.writer(),
+            fileManager,
+            null,
+            listOf("-Xlint:none", "-Xlint:unchecked"),
+            null,
+            sources
+        )
+        val compileSuccess = `try` { task.call() }.getOrElse { false }
+        if (!compileSuccess) {
+            fileManager.taskOutputs.clear()
+            log.error("Task $task failed")
+            log.error("Sources: ${sources.joinToString("\n", prefix = "\n") { it.className }}")
+            log.error(compilerOutput.toString())
+            throw CompilationException()
+        }
+
+        val result = sources.associateWithTo(mutableMapOf()) { mutableMapOf<String, ByteArray>() }
+        for ((file, sibling) in fileManager.taskOutputs) {
+            when {
+                sibling is InMemoryJavaSource && sibling in result -> result[sibling]!![file.className] = file.bytes
+                else -> {
+                    fileManager.sessionClasses[file.className] = file
+                    outputDir.resolve("${file.className.asmString}.class").also {
+                        it.parent?.toFile()?.mkdirs()
+                        it.writeBytes(file.bytes)
+                    }
+                }
+            }
+        }
+        fileManager.taskOutputs.clear()
+        result
+    }
+
+    private val Path.className: String
+        get() {
+            val packageName = readText().lineSequence()
+                .map { it.trim() }
+                .firstOrNull { it.startsWith("package ") }
+                ?.removePrefix("package ")
+                ?.removeSuffix(";")
+                ?.trim()
+            val simpleName = fileName.toString().removeSuffix(JavaFileObject.Kind.SOURCE.extension)
+            return when (packageName) {
+                null -> simpleName
+                else -> "$packageName.$simpleName"
+            }
+        }
+
+    override fun close() = synchronized(this) {
+        fileManager.sessionClasses.clear()
+        fileManager.taskOutputs.clear()
+        fileManager.close()
+    }
+}
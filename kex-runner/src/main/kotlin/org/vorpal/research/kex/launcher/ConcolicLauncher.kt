@@ -5,7 +5,10 @@ import kotlinx.serialization.ExperimentalSerializationApi
 import kotlinx.serialization.InternalSerializationApi
 import org.vorpal.research.kex.ExecutionContext
 import org.vorpal.research.kex.asm.analysis.concolic.InstructionConcolicChecker
+import org.vorpal.research.kex.compile.CompilerHelper
 import org.vorpal.research.kex.jacoco.reportCoverage
+import org.vorpal.research.kex.smt.AsyncChecker
+import org.vorpal.research.kex.smt.AsyncSolverPool
 import org.vorpal.research.kex.trace.runner.ExecutorMasterController
 import org.vorpal.research.kfg.ir.Method
 import org.vorpal.research.kfg.visitor.Pipeline
@@ -29,8 +32,14 @@ class ConcolicLauncher(classPaths: List<String>, targetName: String) : KexAnalys
         ExecutorMasterController.use {
             it.start(context)
 
-            for (setOfTargets in batchedTargets) {
-                InstructionConcolicChecker.run(context, setOfTargets)
+            try {
+                for (setOfTargets in batchedTargets) {
+                    InstructionConcolicChecker.run(context, setOfTargets)
+                }
+            } finally {
+                AsyncSolverPool.clear()
+                AsyncChecker.clear()
+                CompilerHelper.clear()
             }
         }
 
@@ -7,8 +7,11 @@ import org.vorpal.research.kex.asm.analysis.crash.StackTrace
 import org.vorpal.research.kex.asm.manager.ClassInstantiationDetector
 import org.vorpal.research.kex.asm.util.AccessModifier
 import org.vorpal.research.kex.asm.util.Visibility
+import org.vorpal.research.kex.compile.CompilerHelper
 import org.vorpal.research.kex.config.kexConfig
 import org.vorpal.research.kex.random.easyrandom.EasyRandomDriver
+import org.vorpal.research.kex.smt.AsyncChecker
+import org.vorpal.research.kex.smt.AsyncSolverPool
 import org.vorpal.research.kex.util.PathClassLoader
 import org.vorpal.research.kex.util.getIntrinsics
 import org.vorpal.research.kex.util.getKexRuntime
@@ -98,7 +101,13 @@ class CrashReproductionLauncher(
         executePackagePipeline(context.cm, Package.defaultPackage) {
             +ClassInstantiationDetector(context, context.accessLevel)
         }
-        val testCases = CrashReproductionChecker.runWithDescriptorPreconditions(context, stackTrace)
+        val testCases = try {
+            CrashReproductionChecker.runWithDescriptorPreconditions(context, stackTrace)
+        } finally {
+            AsyncSolverPool.clear()
+            AsyncChecker.clear()
+            CompilerHelper.clear()
+        }
         if (testCases.isNotEmpty()) {
             log.info("Reproducing test cases:\n${testCases.joinToString("\n")}")
         }
@@ -5,7 +5,10 @@ import kotlinx.serialization.ExperimentalSerializationApi
 import kotlinx.serialization.InternalSerializationApi
 import org.vorpal.research.kex.ExecutionContext
 import org.vorpal.research.kex.asm.analysis.symbolic.InstructionSymbolicChecker
+import org.vorpal.research.kex.compile.CompilerHelper
 import org.vorpal.research.kex.jacoco.reportCoverage
+import org.vorpal.research.kex.smt.AsyncChecker
+import org.vorpal.research.kex.smt.AsyncSolverPool
 import org.vorpal.research.kfg.ir.Method
 import org.vorpal.research.kfg.visitor.Pipeline
 import kotlin.time.ExperimentalTime
@@ -26,8 +29,14 @@ class SymbolicLauncher(classPaths: List<String>, targetName: String) : KexAnalys
         }
 
     override fun launch() {
-        for (setOfTargets in batchedTargets) {
-            InstructionSymbolicChecker.run(context, setOfTargets)
+        try {
+            for (setOfTargets in batchedTargets) {
+                InstructionSymbolicChecker.run(context, setOfTargets)
+            }
+        } finally {
+            AsyncSolverPool.clear()
+            AsyncChecker.clear()
+            CompilerHelper.clear()
         }
 
         reportCoverage(context.cm, containers, analysisLevel, "symbolic")
@@ -2,6 +2,7 @@ package org.vorpal.research.kex.reanimator
 
 import org.vorpal.research.kex.ExecutionContext
 import org.vorpal.research.kex.asm.state.PredicateStateAnalysis
+import org.vorpal.research.kex.compile.InMemoryJavaSource
 import org.vorpal.research.kex.descriptor.Descriptor
 import org.vorpal.research.kex.parameters.FinalParameters
 import org.vorpal.research.kex.parameters.Parameters
@@ -10,6 +11,7 @@ import org.vorpal.research.kex.random.GenerationException
 import org.vorpal.research.kex.reanimator.actionsequence.ActionSequence
 import org.vorpal.research.kex.reanimator.actionsequence.generator.ConcolicSequenceGenerator
 import org.vorpal.research.kex.reanimator.codegen.ExecutorTestCasePrinter
+import org.vorpal.research.kex.reanimator.codegen.bytecodegen.ExecutorAS2BytecodeCompiler
 import org.vorpal.research.kex.reanimator.codegen.packageName
 import org.vorpal.research.kex.smt.SMTModel
 import org.vorpal.research.kex.state.PredicateState
@@ -28,11 +30,21 @@ class UnsafeGenerator(
     private val asGenerator = ConcolicSequenceGenerator(ctx, PredicateStateAnalysis(ctx.cm))
     private val printer = ExecutorTestCasePrinter(ctx, method.packageName, testName)
     val testKlassName = printer.fullKlassName
+    val targetFile: Path get() = printer.targetFile.toPath()
 
+    private var sequences: Parameters<ActionSequence>? = null
+    private var finalInfoSequences: FinalParameters<ActionSequence>? = null
+    private var isPrinted = true
+
+    /**
+     * Generates action sequences of the test, source code of the test is printed lazily,
+     * so tests that are compiled directly to bytecode are never printed
+     */
     fun generate(parameters: Parameters<Descriptor>, finalParameters: FinalParameters<Descriptor>? = null) = try {
-        val sequences = parameters.actionSequences
-        val finalInfoSequences = finalParameters?.actionSequences
-        printer.print(method, sequences.rtUnmapped, finalInfoSequences?.rtUnmapped)
+        printIfNeeded()
+        sequences = parameters.actionSequences.rtUnmapped
+        finalInfoSequences = finalParameters?.actionSequences?.rtUnmapped
+        isPrinted = false
     } catch (e: GenerationException) {
         log.warn("Generation error when generating action sequences:", e)
         throw e
@@ -77,11 +89,46 @@ class UnsafeGenerator(
     }
 
 
+    private fun printIfNeeded() {
+        if (isPrinted) return
+        try {
+            printer.print(method, sequences!!, finalInfoSequences)
+        } catch (e: Exception) {
+            log.warn("Exception when printing action sequences:", e)
+            throw GenerationException(e)
+        }
+        isPrinted = true
+    }
+
     override fun emit(): Path {
+        printIfNeeded()
         printer.emit()
         return printer.targetFile.toPath()
     }
 
+    fun emitSource(): InMemoryJavaSource {
+        printIfNeeded()
+        return InMemoryJavaSource(testKlassName, printer.printer.emit())
+    }
+
+    /**
+     * Compiles the execution-only test directly to bytecode
+     * @return compiled test class or null, if the test can't be compiled without printing
+     */
+    fun emitBytecode(): Map<String, ByteArray>? {
+        if (finalInfoSequences != null) return null
+        val parameters = sequences ?: return null
+        val compiler = ExecutorAS2BytecodeCompiler(
+            ctx,
+            method.packageName.replace("/", "."),
+            printer.klassName,
+            ExecutorTestCasePrinter.SETUP_METHOD,
+            ExecutorTestCasePrinter.TEST_METHOD
+        )
+        val bytecode = compiler.compile(method, parameters) ?: return null
+        return mapOf(testKlassName to bytecode)
+    }
+
     val Descriptor.actionSequence: ActionSequence
         get() = asGenerator.generate(this)
 
@@ -0,0 +1,814 @@
+package org.vorpal.research.kex.reanimator.codegen.bytecodegen
+
+import org.objectweb.asm.ClassWriter
+import org.objectweb.asm.Label
+import org.objectweb.asm.MethodVisitor
+import org.objectweb.asm.Opcodes
+import org.vorpal.research.kex.ExecutionContext
+import org.vorpal.research.kex.config.kexConfig
+import org.vorpal.research.kex.parameters.Parameters
+import org.vorpal.research.kex.reanimator.actionsequence.ActionList
+import org.vorpal.research.kex.reanimator.actionsequence.ActionSequence
+import org.vorpal.research.kex.reanimator.actionsequence.ArrayClassConstantGetter
+import org.vorpal.research.kex.reanimator.actionsequence.ArrayWrite
+import org.vorpal.research.kex.reanimator.actionsequence.ClassConstantGetter
+import org.vorpal.research.kex.reanimator.actionsequence.CodeAction
+import org.vorpal.research.kex.reanimator.actionsequence.ConstructorCall
+import org.vorpal.research.kex.reanimator.actionsequence.DefaultConstructorCall
+import org.vorpal.research.kex.reanimator.actionsequence.EnumValueCreation
+import org.vorpal.research.kex.reanimator.actionsequence.ExternalConstructorCall
+import org.vorpal.research.kex.reanimator.actionsequence.ExternalMethodCall
+import org.vorpal.research.kex.reanimator.actionsequence.FieldSetter
+import org.vorpal.research.kex.reanimator.actionsequence.InnerClassConstructorCall
+import org.vorpal.research.kex.reanimator.actionsequence.MethodCall
+import org.vorpal.research.kex.reanimator.actionsequence.MockList
+import org.vorpal.research.kex.reanimator.actionsequence.NewArray
+import org.vorpal.research.kex.reanimator.actionsequence.NewArrayWithInitializer
+import org.vorpal.research.kex.reanimator.actionsequence.PrimaryValue
+import org.vorpal.research.kex.reanimator.actionsequence.ReflectionArrayWrite
+import org.vorpal.research.kex.reanimator.actionsequence.ReflectionCall
+import org.vorpal.research.kex.reanimator.actionsequence.ReflectionGetField
+import org.vorpal.research.kex.reanimator.actionsequence.ReflectionGetStaticField
+import org.vorpal.research.kex.reanimator.actionsequence.ReflectionList
+import org.vorpal.research.kex.reanimator.actionsequence.ReflectionNewArray
+import org.vorpal.research.kex.reanimator.actionsequence.ReflectionNewInstance
+import org.vorpal.research.kex.reanimator.actionsequence.ReflectionSetField
+import org.vorpal.research.kex.reanimator.actionsequence.ReflectionSetStaticField
+import org.vorpal.research.kex.reanimator.actionsequence.StaticFieldGetter
+import org.vorpal.research.kex.reanimator.actionsequence.StaticFieldSetter
+import org.vorpal.research.kex.reanimator.actionsequence.StaticMethodCall
+import org.vorpal.research.kex.reanimator.actionsequence.StringValue
+import org.vorpal.research.kex.reanimator.actionsequence.TestCall
+import org.vorpal.research.kex.reanimator.actionsequence.UnknownSequence
+import org.vorpal.research.kex.reanimator.codegen.javagen.ReflectionUtilsPrinter
+import org.vorpal.research.kex.util.asmString
+import org.vorpal.research.kfg.ir.Method
+import org.vorpal.research.kfg.type.ArrayType
+import org.vorpal.research.kfg.type.ClassType
+import org.vorpal.research.kfg.type.Type
+import org.vorpal.research.kthelper.logging.debug
+import org.vorpal.research.kthelper.logging.log
+import org.objectweb.asm.Type as AsmType
+
+private class UnsupportedActionException(message: String) : Exception(message)
+
+/**
+ * Compiles action sequences of an execution-only test directly into a class file.
+ * Generated class has the same shape as the one printed by `ExecutorAS2JavaPrinter`
+ * (public fields for test parameters, `setup` and `test` methods), but it skips
+ * Java source printing and javac completely. All the values are kept as `Object`
+ * and are cast at the use site, just like in the printed code.
+ *
+ * Mocks and unknown sequences are not supported, [compile] returns null for them
+ * and the caller should fall back to source printing. Generated code uses
+ * `ReflectionUtils` class, it should be compiled before the test is executed
+ */
+class ExecutorAS2BytecodeCompiler(
+    val ctx: ExecutionContext,
+    val packageName: String,
+    val klassName: String,
+    private val setupName: String,
+    private val testName: String
+) {
+    private val surroundInTryCatch = kexConfig.getBooleanValue("testGen", "surroundInTryCatch", true)
+    private val internalName = "${packageName.asmString}/$klassName"
+    private val reflectionUtils = "${packageName.asmString}/${ReflectionUtilsPrinter.REFLECTION_UTILS_CLASS}"
+
+    private class Local(val index: Int, val type: AsmType)
+
+    private lateinit var mv: MethodVisitor
+    private val testParams = mutableSetOf<String>()
+    private val locals = mutableMapOf<String, Local>()
+    private val printedStacks = mutableSetOf<String>()
+    private val printedDeclarations = mutableSetOf<String>()
+    private val printedInsides = mutableSetOf<String>()
+    private var nextLocal = 1
+
+    fun compile(method: Method, parameters: Parameters<ActionSequence>): ByteArray? = try {
+        ReflectionUtilsPrinter.reflectionUtils(packageName)
+        generate(method, parameters)
+    } catch (e: UnsupportedActionException) {
+        log.debug("Could not compile test $klassName to bytecode: ${e.message}")
+        null
+    } finally {
+        testParams.clear()
+        locals.clear()
+        printedStacks.clear()
+        printedDeclarations.clear()
+        printedInsides.clear()
+        nextLocal = 1
+    }
+
+    private fun generate(method: Method, parameters: Parameters<ActionSequence>): ByteArray {
+        val writer = object : ClassWriter(COMPUTE_FRAMES) {
+            override fun getCommonSuperClass(type1: String, type2: String): String = commonSuperClass(type1, type2)
+        }
+        writer.visit(
+            Opcodes.V1_8, Opcodes.ACC_PUBLIC or Opcodes.ACC_SUPER, internalName, null, OBJECT.internalName, null
+        )
+
+        if (!method.isConstructor) {
+            parameters.instance?.let { if (!it.isConstantValue) testParams += it.name }
+        }
+        for (argument in parameters.arguments) {
+            if (!argument.isConstantValue) testParams += argument.name
+        }
+        for (param in testParams) {
+            writer.visitField(Opcodes.ACC_PUBLIC, param, OBJECT.descriptor, null, null).visitEnd()
+        }
+
+        writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null).apply {
+            visitCode()
+            visitVarInsn(Opcodes.ALOAD, 0)
+            visitMethodInsn(Opcodes.INVOKESPECIAL, OBJECT.internalName, "<init>", "()V", false)
+            visitInsn(Opcodes.RETURN)
+            visitMaxs(0, 0)
+            visitEnd()
+        }
+
+        mv = writer.visitMethod(Opcodes.ACC_PUBLIC, setupName, "()V", null, arrayOf(THROWABLE.internalName))
+        mv.visitCode()
+        val tryStart = Label()
+        val tryEnd = Label()
+        val handler = Label()
+        if (surroundInTryCatch) {
+            mv.visitTryCatchBlock(tryStart, tryEnd, handler, THROWABLE.internalName)
+        }
+        mv.visitLabel(tryStart)
+        mv.visitInsn(Opcodes.NOP)
+        if (!method.isConstructor) {
+            parameters.instance?.materialize()
+        }
+        for (sequence in parameters.asList) {
+            sequence.materialize()
+        }
+        mv.visitLabel(tryEnd)
+        mv.visitInsn(Opcodes.RETURN)
+        if (surroundInTryCatch) {
+            mv.visitLabel(handler)
+            mv.visitInsn(Opcodes.POP)
+            mv.visitInsn(Opcodes.RETURN)
+        }
+        mv.visitMaxs(0, 0)
+        mv.visitEnd()
+
+        mv = writer.visitMethod(Opcodes.ACC_PUBLIC, testName, "()V", null, arrayOf(THROWABLE.internalName))
+        mv.visitCode()
+        generateTestCall(method, parameters)
+        mv.visitInsn(Opcodes.RETURN)
+        mv.visitMaxs(0, 0)
+        mv.visitEnd()
+
+        writer.visitEnd()
+        return writer.toByteArray()
+    }
+
+    /**
+     * common superclass for the frame computation, it is resolved through kfg instead of loading
+     * the classes with the class loader, like [ClassWriter] does by default. Interfaces and unknown
+     * classes are merged into `Object`, just like the verifier treats them
+     */
+    private fun commonSuperClass(type1: String, type2: String): String {
+        if (type1 == type2) return type1
+        val first = ctx.cm[type1]
+        val second = ctx.cm[type2]
+        if (first.isInterface || second.isInterface) return OBJECT.internalName
+
+        var current: org.vorpal.research.kfg.ir.Class? = first
+        while (current != null) {
+            if (current == second || second.isInheritorOf(current)) return current.fullName
+            current = current.superClass
+        }
+        return OBJECT.internalName
+    }
+
+    private fun generateTestCall(method: Method, parameters: Parameters<ActionSequence>) {
+        pushClass(method.klass.asType)
+        mv.visitVarInsn(Opcodes.ASTORE, 1)
+
+        pushInt(method.argTypes.size)
+        mv.visitTypeInsn(Opcodes.ANEWARRAY, CLASS.internalName)
+        for ((index, type) in method.argTypes.withIndex()) {
+            mv.visitInsn(Opcodes.DUP)
+            pushInt(index)
+            pushClass(type)
+            mv.visitInsn(Opcodes.AASTORE)
+        }
+        mv.visitVarInsn(Opcodes.ASTORE, 2)
+
+        pushInt(method.argTypes.size)
+        mv.visitTypeInsn(Opcodes.ANEWARRAY, OBJECT.internalName)
+        for ((index, arg) in parameters.arguments.withIndex()) {
+            mv.visitInsn(Opcodes.DUP)
+            pushInt(index)
+            pushTestParam(arg)
+            mv.visitInsn(Opcodes.AASTORE)
+        }
+        mv.visitVarInsn(Opcodes.ASTORE, 3)
+
+        mv.visitVarInsn(Opcodes.ALOAD, 1)
+        when {
+            method.isConstructor -> {
+                mv.visitVarInsn(Opcodes.ALOAD, 2)
+                mv.visitVarInsn(Opcodes.ALOAD, 3)
+                invokeReflectionUtils("callConstructor", OBJECT, CLASS, CLASS_ARRAY, OBJECT_ARRAY)
+            }
+
+            else -> {
+                mv.visitLdcInsn(method.name)
+                mv.visitVarInsn(Opcodes.ALOAD, 2)
+                when (val instance = parameters.instance) {
+                    null -> mv.visitInsn(Opcodes.ACONST_NULL)
+                    else -> pushTestParam(instance)
+                }
+                mv.visitVarInsn(Opcodes.ALOAD, 3)
+                invokeReflectionUtils("callMethod", OBJECT, CLASS, STRING, CLASS_ARRAY, OBJECT, OBJECT_ARRAY)
+            }
+        }
+        mv.visitInsn(Opcodes.POP)
+    }
+
+    private fun pushTestParam(sequence: ActionSequence) = when (sequence.name) {
+        in testParams -> {
+            mv.visitVarInsn(Opcodes.ALOAD, 0)
+            mv.visitFieldInsn(Opcodes.GETFIELD, internalName, sequence.name, OBJECT.descriptor)
+        }
+
+        else -> push(sequence, OBJECT)
+    }
+
+    private fun ActionSequence.materialize() {
+        if (name in printedStacks) return
+        printedStacks += name
+        when (this) {
+            is PrimaryValue<*> -> {}
+            is StringValue -> {}
+            is ActionList -> for (call in this) {
+                generateCodeAction(this, call)
+            }
+
+            is ReflectionList -> {
+                generateDeclarations(this)
+                generateInsides(this)
+            }
+
+            is MockList -> throw UnsupportedActionException("mocks are not supported")
+            is UnknownSequence -> throw UnsupportedActionException("unknown sequence $name")
+            is TestCall -> throw UnsupportedActionException("test calls are not supported")
+        }
+    }
+
+    private fun generateDeclarations(owner: ActionSequence) {
+        if (owner !is ReflectionList) return owner.materialize()
+        if (owner.name in printedDeclarations) return
+        printedDeclarations += owner.name
+
+        for (call in owner) {
+            when (call) {
+                is ReflectionNewInstance, is ReflectionNewArray,
+                is ReflectionGetField, is ReflectionGetStaticField -> generateReflectionCall(owner, call)
+
+                is ReflectionSetField -> generateDeclarations(call.value)
+                is ReflectionSetStaticField -> generateDeclarations(call.value)
+                is ReflectionArrayWrite -> generateDeclarations(call.value)
+            }
+        }
+    }
+
+    private fun generateInsides(owner: ActionSequence) {
+        if (owner !is ReflectionList) return owner.materialize()
+        if (owner.name in printedInsides) return
+        printedInsides += owner.name
+
+        for (call in owner) {
+            when (call) {
+                is ReflectionSetField -> generateInsides(call.value)
+                is ReflectionSetStaticField -> generateInsides(call.value)
+                is ReflectionArrayWrite -> generateInsides(call.value)
+                else -> continue
+            }
+            generateReflectionCall(owner, call)
+        }
+    }
+
+    private fun generateCodeAction(owner: ActionSequence, call: CodeAction) {
+        call.parameters.forEach { it.materialize() }
+        when (call) {
+            is DefaultConstructorCall -> {
+                val type = call.klass.fullName
+                mv.visitTypeInsn(Opcodes.NEW, type)
+                mv.visitInsn(Opcodes.DUP)
+                mv.visitMethodInsn(Opcodes.INVOKESPECIAL, type, "<init>", "()V", false)
+                store(owner, OBJECT)
+            }
+
+            is ConstructorCall -> {
+                val constructor = call.constructor
+                mv.visitTypeInsn(Opcodes.NEW, constructor.klass.fullName)
+                mv.visitInsn(Opcodes.DUP)
+                pushArguments(constructor, call.args)
+                invoke(Opcodes.INVOKESPECIAL, constructor)
+                store(owner, OBJECT)
+            }
+
+            is InnerClassConstructorCall -> {
+                val constructor = call.constructor
+                mv.visitTypeInsn(Opcodes.NEW, constructor.klass.fullName)
+                mv.visitInsn(Opcodes.DUP)
+                pushArguments(constructor, listOf(call.outerObject) + call.args)
+                invoke(Opcodes.INVOKESPECIAL, constructor)
+                store(owner, OBJECT)
+            }
+
+            is ExternalConstructorCall -> {
+                pushArguments(call.constructor, call.args)
+                invoke(Opcodes.INVOKESTATIC, call.constructor)
+                store(owner, call.constructor.returnType.asm)
+            }
+
+            is ExternalMethodCall -> {
+                call.instance.materialize()
+                push(call.instance, call.method.klass.asType.asm)
+                pushArguments(call.method, call.args)
+                invokeVirtual(call.method)
+                store(owner, call.method.returnType.asm)
+            }
+
+            is MethodCall -> {
+                push(owner, call.method.klass.asType.asm)
+                pushArguments(call.method, call.args)
+                invokeVirtual(call.method)
+                pop(call.method.returnType.asm)
+            }
+
+            is StaticMethodCall -> {
+                pushArguments(call.method, call.args)
+                invoke(Opcodes.INVOKESTATIC, call.method)
+                pop(call.method.returnType.asm)
+            }
+
+            is NewArray -> {
+                push(call.length, AsmType.INT_TYPE)
+                newArray(call.asArray.component)
+                store(owner, OBJECT)
+            }
+
+            is NewArrayWithInitializer -> {
+                val component = call.asArray.component
+                pushInt(call.elements.size)
+                newArray(component)
+                for ((index, element) in call.elements.withIndex()) {
+                    mv.visitInsn(Opcodes.DUP)
+                    pushInt(index)
+                    push(element, component.asm)
+                    mv.visitInsn(component.asm.getOpcode(Opcodes.IASTORE))
+                }
+                store(owner, OBJECT)
+            }
+
+            is ArrayWrite -> {
+                call.index.materialize()
+                val arrayType = locals[owner.name]?.let { owner.arrayType }
+                    ?: throw UnsupportedActionException("unknown array type of ${owner.name}")
+                push(owner, arrayType.asm)
+                push(call.index, AsmType.INT_TYPE)
+                push(call.value, arrayType.component.asm)
+                mv.visitInsn(arrayType.component.asm.getOpcode(Opcodes.IASTORE))
+            }
+
+            is FieldSetter -> {
+                push(owner, call.field.klass.asType.asm)
+                push(call.value, call.field.type.asm)
+                mv.visitFieldInsn(Opcodes.PUTFIELD, call.field.klass.fullName, call.field.name, call.field.type.asmDesc)
+            }
+
+            is StaticFieldSetter -> {
+                push(call.value, call.field.type.asm)
+                mv.visitFieldInsn(Opcodes.PUTSTATIC, call.field.klass.fullName, call.field.name, call.field.type.asmDesc)
+            }
+
+            is EnumValueCreation -> {
+                mv.visitFieldInsn(Opcodes.GETSTATIC, call.klass.fullName, call.name, call.klass.asType.asmDesc)
+                store(owner, OBJECT)
+            }
+
+            is StaticFieldGetter -> {
+                mv.visitFieldInsn(Opcodes.GETSTATIC, call.field.klass.fullName, call.field.name, call.field.type.asmDesc)
+                store(owner, call.field.type.asm)
+            }
+
+            is ClassConstantGetter -> {
+                pushClassLiteral(call.type)
+                store(owner, OBJECT)
+            }
+
+            is ArrayClassConstantGetter -> {
+                push(call.elementType, CLASS)
+                pushInt(0)
+                mv.visitMethodInsn(
+                    Opcodes.INVOKESTATIC, ARRAY.internalName, "newInstance",
+                    AsmType.getMethodDescriptor(OBJECT, CLASS, AsmType.INT_TYPE), false
+                )
+                mv.visitMethodInsn(
+                    Opcodes.INVOKEVIRTUAL, OBJECT.internalName, "getClass",
+                    AsmType.getMethodDescriptor(CLASS), false
+                )
+                store(owner, OBJECT)
+            }
+        }
+    }
+
+    private fun generateReflectionCall(owner: ActionSequence, call: ReflectionCall) {
+        when (call) {
+            is ReflectionNewInstance -> {
+                val klass = (call.type as? ClassType)?.klass
+                    ?: throw UnsupportedActionException("unexpected type of new instance ${call.type}")
+                mv.visitLdcInsn(klass.canonicalDesc)
+                classForName()
+                invokeReflectionUtils("newInstance", OBJECT, CLASS)
+                store(owner, OBJECT)
+            }
+
+            is ReflectionNewArray -> {
+                call.length.materialize()
+                val elementType = call.asArray.component
+                when {
+                    elementType.isPrimitive -> {
+                        push(call.length, AsmType.INT_TYPE)
+                        val name = elementType.asm.className.replaceFirstChar { it.uppercaseChar() }
+                        invokeReflectionUtils("new${name}Array", OBJECT, AsmType.INT_TYPE)
+                    }
+
+                    elementType is ClassType || elementType.baseType.isPrimitive -> {
+                        mv.visitLdcInsn(
+                            when (elementType) {
+                                is ClassType -> elementType.klass.canonicalDesc
+                                else -> elementType.canonicalDesc
+                            }
+                        )
+                        push(call.length, AsmType.INT_TYPE)
+                        invokeReflectionUtils("newArray", OBJECT, STRING, AsmType.INT_TYPE)
+                    }
+
+                    else -> {
+                        pushClass(elementType)
+                        push(call.length, AsmType.INT_TYPE)
+                        invokeReflectionUtils("newObjectArray", OBJECT, CLASS, AsmType.INT_TYPE)
+                    }
+                }
+                store(owner, OBJECT)
+            }
+
+            is ReflectionSetField -> {
+                push(owner, OBJECT)
+                push(owner, OBJECT)
+                mv.visitMethodInsn(
+                    Opcodes.INVOKEVIRTUAL, OBJECT.internalName, "getClass",
+                    AsmType.getMethodDescriptor(CLASS), false
+                )
+                mv.visitLdcInsn(call.field.name)
+                val valueType = call.field.type.reflectionType
+                push(call.value, valueType)
+                invokeReflectionUtils(
+                    "set${valueType.reflectionSuffix}Field", AsmType.VOID_TYPE, OBJECT, CLASS, STRING, valueType
+                )
+            }
+
+            is ReflectionSetStaticField -> {
+                mv.visitInsn(Opcodes.ACONST_NULL)
+                mv.visitLdcInsn(call.field.klass.canonicalDesc)
+                classForName()
+                mv.visitLdcInsn(call.field.name)
+                val valueType = call.field.type.reflectionType
+                push(call.value, valueType)
+                invokeReflectionUtils(
+                    "set${valueType.reflectionSuffix}Field", AsmType.VOID_TYPE, OBJECT, CLASS, STRING, valueType
+                )
+            }
+
+            is ReflectionGetField -> {
+                call.owner.materialize()
+                push(call.owner, OBJECT)
+                pushClass(call.field.klass.asType)
+                mv.visitLdcInsn(call.field.name)
+                val valueType = call.field.type.reflectionType
+                invokeReflectionUtils("get${valueType.reflectionSuffix}Field", valueType, OBJECT, CLASS, STRING)
+                store(owner, valueType)
+            }
+
+            is ReflectionGetStaticField -> {
+                mv.visitInsn(Opcodes.ACONST_NULL)
+                pushClass(call.field.klass.asType)
+                mv.visitLdcInsn(call.field.name)
+                val valueType = call.field.type.reflectionType
+                invokeReflectionUtils("get${valueType.reflectionSuffix}Field", valueType, OBJECT, CLASS, STRING)
+                store(owner, valueType)
+            }
+
+            is ReflectionArrayWrite -> {
+                call.index.materialize()
+                push(owner, OBJECT)
+                push(call.index, AsmType.INT_TYPE)
+                val valueType = call.elementType.reflectionType
+                push(call.value, valueType)
+                invokeReflectionUtils(
+                    "set${valueType.reflectionSuffix}Element", AsmType.VOID_TYPE, OBJECT, AsmType.INT_TYPE, valueType
+                )
+            }
+        }
+    }
+
+    private val ActionSequence.arrayType: ArrayType?
+        get() = (this as? ActionList)?.firstNotNullOfOrNull {
+            when (it) {
+                is NewArray -> it.asArray
+                is NewArrayWithInitializer -> it.asArray
+                else -> null
+            }
+        }
+
+    private val Type.baseType: Type
+        get() {
+            var current = this
+            while (current is ArrayType) current = current.component
+            return current
+        }
+
+    private val Type.asm: AsmType get() = AsmType.getType(asmDesc)
+
+    private val Type.reflectionType: AsmType
+        get() = when {
+            isPrimitive -> asm
+            else -> OBJECT
+        }
+
+    private val AsmType.reflectionSuffix: String
+        get() = when (sort) {
+            AsmType.OBJECT, AsmType.ARRAY -> ""
+            else -> className.replaceFirstChar { it.uppercaseChar() }
+        }
+
+    private fun store(owner: ActionSequence, type: AsmType) {
+        val local = Local(nextLocal, type)
+        nextLocal += type.size
+        locals[owner.name] = local
+        mv.visitVarInsn(type.getOpcode(Opcodes.ISTORE), local.index)
+
+        if (owner.name in testParams) {
+            mv.visitVarInsn(Opcodes.ALOAD, 0)
+            mv.visitVarInsn(type.getOpcode(Opcodes.ILOAD), local.index)
+            coerce(type, OBJECT)
+            mv.visitFieldInsn(Opcodes.PUTFIELD, internalName, owner.name, OBJECT.descriptor)
+        }
+    }
+
+    private fun push(sequence: ActionSequence, target: AsmType) {
+        when (sequence) {
+            is PrimaryValue<*> -> when (val value = sequence.value) {
+                null -> mv.visitInsn(Opcodes.ACONST_NULL)
+                is Boolean -> {
+                    pushInt(if (value) 1 else 0)
+                    coerce(AsmType.BOOLEAN_TYPE, target)
+                }
+
+                is Byte -> {
+                    pushInt(value.toInt())
+                    coerce(AsmType.BYTE_TYPE, target)
+                }
+
+                is Char -> {
+                    pushInt(value.code)
+                    coerce(AsmType.CHAR_TYPE, target)
+                }
+
+                is Short -> {
+                    pushInt(value.toInt())
+                    coerce(AsmType.SHORT_TYPE, target)
+                }
+
+                is Int -> {
+                    pushInt(value)
+                    coerce(AsmType.INT_TYPE, target)
+                }
+
+                is Long -> {
+                    mv.visitLdcInsn(value)
+                    coerce(AsmType.LONG_TYPE, target)
+                }
+
+                is Float -> {
+                    mv.visitLdcInsn(value)
+                    coerce(AsmType.FLOAT_TYPE, target)
+                }
+
+                is Double -> {
+                    mv.visitLdcInsn(value)
+                    coerce(AsmType.DOUBLE_TYPE, target)
+                }
+
+                else -> throw UnsupportedActionException("unknown primary value $value")
+            }
+
+            is StringValue -> {
+                mv.visitLdcInsn(sequence.value)
+                coerce(STRING, target)
+            }
+
+            else -> {
+                val local = locals[sequence.name]
+                    ?: throw UnsupportedActionException("value of ${sequence.name} is not defined")
+                mv.visitVarInsn(local.type.getOpcode(Opcodes.ILOAD), local.index)
+                coerce(local.type, target)
+            }
+        }
+    }
+
+    private fun pushArguments(method: Method, args: List<ActionSequence>) {
+        if (method.argTypes.size != args.size) {
+            throw UnsupportedActionException("inconsistent arguments of $method")
+        }
+        for ((type, arg) in method.argTypes.zip(args)) {
+            push(arg, type.asm)
+        }
+    }
+
+    private fun coerce(from: AsmType, to: AsmType) {
+        if (from == to) return
+        val isFromPrimitive = from.sort < AsmType.ARRAY
+        val isToPrimitive = to.sort < AsmType.ARRAY
+        when {
+            isFromPrimitive && isToPrimitive -> castPrimitive(from, to)
+            isFromPrimitive -> {
+                val wrapper = from.wrapper
+                mv.visitMethodInsn(
+                    Opcodes.INVOKESTATIC, wrapper.internalName, "valueOf",
+                    AsmType.getMethodDescriptor(wrapper, from), false
+                )
+                if (to != OBJECT) mv.visitTypeInsn(Opcodes.CHECKCAST, to.internalName)
+            }
+
+            isToPrimitive -> {
+                val owner = when (to.sort) {
+                    AsmType.BOOLEAN, AsmType.CHAR -> to.wrapper
+                    else -> NUMBER
+                }
+                mv.visitTypeInsn(Opcodes.CHECKCAST, owner.internalName)
+                mv.visitMethodInsn(
+                    Opcodes.INVOKEVIRTUAL, owner.internalName, "${to.className}Value",
+                    AsmType.getMethodDescriptor(to), false
+                )
+            }
+
+            to != OBJECT -> mv.visitTypeInsn(Opcodes.CHECKCAST, to.internalName)
+        }
+    }
+
+    private fun castPrimitive(from: AsmType, to: AsmType) {
+        val source = when (from.sort) {
+            AsmType.BOOLEAN, AsmType.BYTE, AsmType.CHAR, AsmType.SHORT -> AsmType.INT_TYPE
+            else -> from
+        }
+        val target = when (to.sort) {
+            AsmType.BOOLEAN, AsmType.BYTE, AsmType.CHAR, AsmType.SHORT -> AsmType.INT_TYPE
+            else -> to
+        }
+        when (source.sort to target.sort) {
+            AsmType.INT to AsmType.LONG -> mv.visitInsn(Opcodes.I2L)
+            AsmType.INT to AsmType.FLOAT -> mv.visitInsn(Opcodes.I2F)
+            AsmType.INT to AsmType.DOUBLE -> mv.visitInsn(Opcodes.I2D)
+            AsmType.LONG to AsmType.INT -> mv.visitInsn(Opcodes.L2I)
+            AsmType.LONG to AsmType.FLOAT -> mv.visitInsn(Opcodes.L2F)
+            AsmType.LONG to AsmType.DOUBLE -> mv.visitInsn(Opcodes.L2D)
+            AsmType.FLOAT to AsmType.INT -> mv.visitInsn(Opcodes.F2I)
+            AsmType.FLOAT to AsmType.LONG -> mv.visitInsn(Opcodes.F2L)
+            AsmType.FLOAT to AsmType.DOUBLE -> mv.visitInsn(Opcodes.F2D)
+            AsmType.DOUBLE to AsmType.INT -> mv.visitInsn(Opcodes.D2I)
+            AsmType.DOUBLE to AsmType.LONG -> mv.visitInsn(Opcodes.D2L)
+            AsmType.DOUBLE to AsmType.FLOAT -> mv.visitInsn(Opcodes.D2F)
+            else -> {}
+        }
+        when (to.sort) {
+            AsmType.BYTE -> mv.visitInsn(Opcodes.I2B)
+            AsmType.CHAR -> mv.visitInsn(Opcodes.I2C)
+            AsmType.SHORT -> mv.visitInsn(Opcodes.I2S)
+            else -> {}
+        }
+    }
+
+    private fun pop(type: AsmType) = when (type.size) {
+        0 -> {}
+        1 -> mv.visitInsn(Opcodes.POP)
+        else -> mv.visitInsn(Opcodes.POP2)
+    }
+
+    private fun newArray(component: Type) {
+        val asmComponent = component.asm
+        when (asmComponent.sort) {
+            AsmType.OBJECT, AsmType.ARRAY -> mv.visitTypeInsn(Opcodes.ANEWARRAY, asmComponent.internalName)
+            else -> mv.visitIntInsn(Opcodes.NEWARRAY, asmComponent.newArrayCode)
+        }
+    }
+
+    private fun invoke(opcode: Int, method: Method) {
+        mv.visitMethodInsn(opcode, method.klass.fullName, method.name, method.asmDesc, method.klass.isInterface)
+    }
+
+    private fun invokeVirtual(method: Method) = when {
+        method.klass.isInterface -> invoke(Opcodes.INVOKEINTERFACE, method)
+        else -> invoke(Opcodes.INVOKEVIRTUAL, method)
+    }
+
+    private fun invokeReflectionUtils(name: String, returnType: AsmType, vararg argTypes: AsmType) {
+        mv.visitMethodInsn(
+            Opcodes.INVOKESTATIC, reflectionUtils, name, AsmType.getMethodDescriptor(returnType, *argTypes), false
+        )
+    }
+
+    private fun classForName() {
+        mv.visitMethodInsn(
+            Opcodes.INVOKESTATIC, CLASS.internalName, "forName",
+            AsmType.getMethodDescriptor(CLASS, STRING), false
+        )
+    }
+
+    /**
+     * Pushes the class object the same way `ExecutorAS2JavaPrinter` does it,
+     * i.e. by name through the class loader of the test
+     */
+    private fun pushClass(type: Type) {
+        when (type) {
+            is ClassType -> {
+                mv.visitLdcInsn(type.klass.canonicalDesc)
+                classForName()
+            }
+
+            is ArrayType -> {
+                pushClass(type.component)
+                pushInt(0)
+                mv.visitMethodInsn(
+                    Opcodes.INVOKESTATIC, ARRAY.internalName, "newInstance",
+                    AsmType.getMethodDescriptor(OBJECT, CLASS, AsmType.INT_TYPE), false
+                )
+                mv.visitMethodInsn(
+                    Opcodes.INVOKEVIRTUAL, OBJECT.internalName, "getClass",
+                    AsmType.getMethodDescriptor(CLASS), false
+                )
+            }
+
+            else -> pushClassLiteral(type)
+        }
+    }
+
+    private fun pushClassLiteral(type: Type) {
+        val asmType = type.asm
+        when (asmType.sort) {
+            AsmType.OBJECT, AsmType.ARRAY -> mv.visitLdcInsn(asmType)
+            else -> mv.visitFieldInsn(Opcodes.GETSTATIC, asmType.wrapper.internalName, "TYPE", CLASS.descriptor)
+        }
+    }
+
+    private fun pushInt(value: Int) = when (value) {
+        in -1..5 -> mv.visitInsn(Opcodes.ICONST_0 + value)
+        in Byte.MIN_VALUE..Byte.MAX_VALUE -> mv.visitIntInsn(Opcodes.BIPUSH, value)
+        in Short.MIN_VALUE..Short.MAX_VALUE -> mv.visitIntInsn(Opcodes.SIPUSH, value)
+        else -> mv.visitLdcInsn(value)
+    }
+
+    private companion object {
+        val OBJECT: AsmType = AsmType.getType(Any::class.java)
+        val OBJECT_ARRAY: AsmType = AsmType.getType(Array<Any>::class.java)
+        val STRING: AsmType = AsmType.getType(String::class.java)
+        val CLASS: AsmType = AsmType.getType(Class::class.java)
+        val CLASS_ARRAY: AsmType = AsmType.getType(Array<Class<*>>::class.java)
+        val NUMBER: AsmType = AsmType.getType(Number::class.java)
+        val THROWABLE: AsmType = AsmType.getType(Throwable::class.java)
+        val ARRAY: AsmType = AsmType.getType(java.lang.reflect.Array::class.java)
+
+        val AsmType.wrapper: AsmType
+            get() = AsmType.getObjectType(
+                when (sort) {
+                    AsmType.BOOLEAN -> "java/lang/Boolean"
+                    AsmType.BYTE -> "java/lang/Byte"
+                    AsmType.CHAR -> "java/lang/Character"
+                    AsmType.SHORT -> "java/lang/Short"
+                    AsmType.INT -> "java/lang/Integer"
+                    AsmType.LONG -> "java/lang/Long"
+                    AsmType.FLOAT -> "java/lang/Float"
+                    AsmType.DOUBLE -> "java/lang/Double"
+                    else -> "java/lang/Void"
+                }
+            )
+
+        val AsmType.newArrayCode: Int
+            get() = when (sort) {
+                AsmType.BOOLEAN -> Opcodes.T_BOOLEAN
+                AsmType.BYTE -> Opcodes.T_BYTE
+                AsmType.CHAR -> Opcodes.T_CHAR
+                AsmType.SHORT -> Opcodes.T_SHORT
+                AsmType.INT -> Opcodes.T_INT
+                AsmType.LONG -> Opcodes.T_LONG
+                AsmType.FLOAT -> Opcodes.T_FLOAT
+                else -> Opcodes.T_DOUBLE
+            }
+    }
+}
@@ -44,6 +44,7 @@ import org.vorpal.research.kex.state.transformer.collectVariables
 import org.vorpal.research.kex.state.transformer.domain.tryAbstractDomainSolve
 import org.vorpal.research.kex.state.transformer.toTypeMap
 import org.vorpal.research.kex.state.transformer.transform
+import org.vorpal.research.kfg.ClassManager
 import org.vorpal.research.kfg.ir.Method
 import org.vorpal.research.kthelper.logging.debug
 import org.vorpal.research.kthelper.logging.log
@@ -56,18 +57,49 @@ class AsyncChecker(
     private val isSlicingEnabled = kexConfig.getBooleanValue("smt", "slicing", false)
     private val logQuery = kexConfig.getBooleanValue("smt", "logQuery", false)
     private val useADSolver = kexConfig.getBooleanValue("smt", "useADSolver", false)
-    private val psa = PredicateStateAnalysis(ctx.cm)
+    private val psa = sharedAnalysis(ctx.cm)
 
     lateinit var state: PredicateState
         private set
     lateinit var query: PredicateState
         private set
 
+    companion object {
+        private val analyses = hashMapOf<ClassManager, PredicateStateAnalysis>()
+
+        /**
+         * Predicate state analysis is shared by all the checkers, so the states of the inlined methods
+         * are built only once
+         */
+        fun sharedAnalysis(cm: ClassManager): PredicateStateAnalysis = synchronized(analyses) {
+            analyses.getOrPut(cm) { PredicateStateAnalysis(cm) }
+        }
+
+        /**
+         * Drops the shared analyses, the prepared states and the cached query results, should be called
+         * when the analysis is finished, otherwise they keep the class managers and all the states alive
+         */
+        fun clear() {
+            synchronized(analyses) { analyses.clear() }
+            PreparedStateCache.clear()
+            SMTQueryCache.clear()
+        }
+    }
+
     fun prepareState(
         method: Method,
         state: PredicateState,
         typeMap: TypeInfoMap,
         enableInlining: Boolean
+    ): PredicateState = PreparedStateCache.getOrPrepare(method, state, typeMap, enableInlining) {
+        runPipeline(method, state, typeMap, enableInlining)
+    }
+
+    private fun runPipeline(
+        method: Method,
+        state: PredicateState,
+        typeMap: TypeInfoMap,
+        enableInlining: Boolean
     ): PredicateState = transform(state) {
         +BasicFilter()
         +KexRtAdapter(ctx.cm)
@@ -172,8 +204,10 @@ class AsyncChecker(
             }
         }
 
-        val result = AsyncSMTProxySolver(ctx).use {
-            it.isPathPossibleAsync(state, query)
+        val result = SMTQueryCache.getOrCompute(state, query) {
+            AsyncSolverPool.withSolver(ctx) {
+                it.isPathPossibleAsync(state, query)
+            }
         }
         log.debug("Acquired {}", result)
         return result
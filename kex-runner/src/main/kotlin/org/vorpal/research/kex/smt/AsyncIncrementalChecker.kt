@@ -1,7 +1,6 @@
 package org.vorpal.research.kex.smt
 
 import org.vorpal.research.kex.ExecutionContext
-import org.vorpal.research.kex.asm.state.PredicateStateAnalysis
 import org.vorpal.research.kex.config.kexConfig
 import org.vorpal.research.kex.ktype.KexType
 import org.vorpal.research.kex.state.IncrementalPredicateState
@@ -35,12 +34,17 @@ import org.vorpal.research.kfg.ir.Method
 import org.vorpal.research.kthelper.logging.debug
 import org.vorpal.research.kthelper.logging.log
 
+/**
+ * @param session solver that is kept alive between the checks, it is not closed by the checker.
+ * If the session is a [PersistentIncrementalSMTSolver], the state of the previous check stays asserted in it
+ */
 class AsyncIncrementalChecker(
     val method: Method,
     val ctx: ExecutionContext,
+    private val session: AbstractAsyncIncrementalSMTSolver? = null
 ) {
     private val logQuery = kexConfig.getBooleanValue("smt", "logQuery", false)
-    private val psa = PredicateStateAnalysis(ctx.cm)
+    private val psa = AsyncChecker.sharedAnalysis(ctx.cm)
 
     lateinit var state: PredicateState
         private set
@@ -134,8 +138,13 @@ class AsyncIncrementalChecker(
             log.debug("Query size: {}", query.size)
         }
 
-        val results = AsyncIncrementalSMTProxySolver(ctx).use {
-            it.isSatisfiableAsync(state, queries)
+        val results = when (session) {
+            null -> AsyncIncrementalSMTProxySolver(ctx).use {
+                it.isSatisfiableAsync(state, queries)
+            }
+
+            is PersistentIncrementalSMTSolver -> session.isSatisfiablePersistentAsync(state, queries)
+            else -> session.isSatisfiableAsync(state, queries)
         }
         log.debug("Acquired {}", results)
         return results
@@ -0,0 +1,87 @@
+package org.vorpal.research.kex.smt
+
+import org.vorpal.research.kex.ExecutionContext
+import org.vorpal.research.kex.config.kexConfig
+import org.vorpal.research.kthelper.assert.unreachable
+import org.vorpal.research.kthelper.logging.log
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedQueue
+
+/**
+ * Pool of reusable solver sessions. Each query exclusively borrows a session for the whole check,
+ * so sessions are not bound to threads: coroutine may be resumed on another thread after each suspension.
+ * Only [ReusableSMTSolver] instances are returned to the pool, other solvers are closed after the query
+ */
+object AsyncSolverPool {
+    private val engine = kexConfig.getStringValue("smt", "engine")
+        ?: unreachable { log.error("No SMT engine specified") }
+    private val configuredPoolSize = kexConfig.getIntValue("smt", "solverPoolSize", 4)
+
+    // idle KSMT sessions with reused native solvers hold their runners, so at least one runner
+    // should stay free for the sessions that are not in the pool
+    private val ksmtPoolSize = run {
+        val reuseNativeSolver = kexConfig.getBooleanValue("ksmt", "reuseNativeSolver", false)
+        val runners = kexConfig.getIntValue("ksmt", "runners", 4)
+        when {
+            reuseNativeSolver && configuredPoolSize >= runners -> {
+                val reducedSize = maxOf(0, runners - 1)
+                log.warn(
+                    "[ksmt] reuseNativeSolver requires more runners than [smt] solverPoolSize, " +
+                            "$runners runners for $configuredPoolSize sessions, pool size is reduced to $reducedSize"
+                )
+                reducedSize
+            }
+
+            else -> configuredPoolSize
+        }
+    }
+
+    private fun poolSize(engine: String) = when (engine) {
+        "ksmt" -> ksmtPoolSize
+        else -> configuredPoolSize
+    }
+
+    private class SessionKey(val engine: String, val ctx: ExecutionContext) {
+        override fun hashCode(): Int = 31 * engine.hashCode() + System.identityHashCode(ctx)
+        override fun equals(other: Any?): Boolean =
+            other is SessionKey && engine == other.engine && ctx === other.ctx
+    }
+
+    private val sessions = ConcurrentHashMap<SessionKey, ConcurrentLinkedQueue<AbstractAsyncSMTSolver>>()
+
+    suspend fun <T> withSolver(
+        ctx: ExecutionContext,
+        engine: String = this.engine,
+        body: suspend (AbstractAsyncSMTSolver) -> T
+    ): T {
+        val idle = sessions.getOrPut(SessionKey(engine, ctx)) { ConcurrentLinkedQueue() }
+        val solver = idle.poll() ?: AsyncSMTProxySolver.getSolver(ctx, engine)
+        var isReusable = false
+        try {
+            return body(solver).also {
+                isReusable = solver is ReusableSMTSolver
+            }
+        } finally {
+            when {
+                isReusable && idle.size < poolSize(engine) -> {
+                    (solver as ReusableSMTSolver).reset()
+                    idle.offer(solver)
+                }
+
+                else -> solver.close()
+            }
+        }
+    }
+
+    /**
+     * Closes all the idle sessions, it should be called after the analysis is finished
+     */
+    fun clear() {
+        for (idle in sessions.values) {
+            while (true) {
+                idle.poll()?.close() ?: break
+            }
+        }
+        sessions.clear()
+    }
+}
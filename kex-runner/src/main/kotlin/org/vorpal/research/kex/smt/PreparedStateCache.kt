@@ -0,0 +1,88 @@
+package org.vorpal.research.kex.smt
+
+import org.vorpal.research.kex.config.kexConfig
+import org.vorpal.research.kex.state.PredicateState
+import org.vorpal.research.kex.state.transformer.TypeInfoMap
+import org.vorpal.research.kfg.ir.Method
+import org.vorpal.research.kthelper.collection.LRUCache
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Cache of the results of the [AsyncChecker.prepareState] transformer pipeline.
+ *
+ * Transformers of the pipeline carry their state from one predicate to another
+ * (inlining indices, unification, constant propagation), so the transformation of a state suffix
+ * depends on its prefix. Because of that the whole input state is used as a key, together with
+ * all the other inputs of the pipeline.
+ *
+ * Reusing the result for a shared prefix is not possible: slicing, optimization and constant propagation
+ * look at the whole state, and the inliners number the inlined calls across it, so the prepared prefix
+ * is not a prefix of the prepared state. Concolic queries differ in their negated suffix, so exact matches
+ * are rare there, and the cache is disabled by default (`preparedStateCacheSize` is zero); it pays off
+ * only when the same states are checked repeatedly. The hits and misses of the cache are reported in the log
+ * at the end of the analysis
+ */
+object PreparedStateCache {
+    private val cacheSize = kexConfig.getIntValue("smt", "preparedStateCacheSize", 0)
+    val isEnabled get() = cacheSize > 0
+
+    private val lock = Any()
+    private var cache = LRUCache<PipelineKey, PredicateState>(maxOf(cacheSize, 1).toUInt())
+    private val hitCounter = AtomicLong(0)
+    private val missCounter = AtomicLong(0)
+
+    val hits: Long get() = hitCounter.get()
+    val misses: Long get() = missCounter.get()
+
+    private class PipelineKey(
+        val method: Method,
+        val state: PredicateState,
+        val typeMap: TypeInfoMap,
+        val enableInlining: Boolean
+    ) {
+        private val hash = run {
+            var result = method.hashCode()
+            result = 31 * result + state.hashCode()
+            result = 31 * result + typeMap.inner.hashCode()
+            31 * result + enableInlining.hashCode()
+        }
+
+        override fun hashCode(): Int = hash
+        override fun equals(other: Any?): Boolean {
+            if (this === other) return true
+            if (other !is PipelineKey) return false
+            return hash == other.hash
+                    && enableInlining == other.enableInlining
+                    && method == other.method
+                    && state == other.state
+                    && typeMap.inner == other.typeMap.inner
+        }
+    }
+
+    fun getOrPrepare(
+        method: Method,
+        state: PredicateState,
+        typeMap: TypeInfoMap,
+        enableInlining: Boolean,
+        prepare: () -> PredicateState
+    ): PredicateState {
+        if (!isEnabled) return prepare()
+
+        val key = PipelineKey(method, state, typeMap, enableInlining)
+        synchronized(lock) { cache[key] }?.let {
+            hitCounter.incrementAndGet()
+            return it
+        }
+        missCounter.incrementAndGet()
+
+        val result = prepare()
+        synchronized(lock) { cache[key] = result }
+        return result
+    }
+
+    fun clear() {
+        synchronized(lock) { cache = LRUCache(maxOf(cacheSize, 1).toUInt()) }
+        hitCounter.set(0)
+        missCounter.set(0)
+    }
+}
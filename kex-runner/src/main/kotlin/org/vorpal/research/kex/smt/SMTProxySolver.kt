@@ -120,6 +120,12 @@ class AsyncIncrementalSMTProxySolver(
             val constructor = solverClass.getConstructor(ExecutionContext::class.java)
             return constructor.newInstance(ctx) as AbstractAsyncIncrementalSMTSolver
         }
+
+        /**
+         * Unlike the proxy, returns the solver of the default engine itself,
+         * so the caller can use the additional interfaces the solver implements
+         */
+        fun getSolver(ctx: ExecutionContext): AbstractAsyncIncrementalSMTSolver = getSolver(ctx, engine)
     }
 
     constructor(ctx: ExecutionContext, engine: String) : this(ctx, getSolver(ctx, engine))
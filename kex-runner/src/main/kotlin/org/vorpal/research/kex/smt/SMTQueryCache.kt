@@ -0,0 +1,129 @@
+package org.vorpal.research.kex.smt
+
+import org.vorpal.research.kex.config.kexConfig
+import org.vorpal.research.kex.state.PredicateState
+import org.vorpal.research.kex.state.term.Term
+import org.vorpal.research.kex.state.term.ValueTerm
+import org.vorpal.research.kex.state.term.term
+import org.vorpal.research.kex.state.transformer.TermCollector
+import org.vorpal.research.kex.state.transformer.TermRemapper
+import org.vorpal.research.kthelper.collection.LRUCache
+import org.vorpal.research.kthelper.logging.debug
+import org.vorpal.research.kthelper.logging.log
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Cache of the solver results for the prepared queries.
+ *
+ * Queries are stored in the canonical form: all the value terms are renamed in the order of their
+ * first occurrence, so alpha-equivalent queries (e.g. the same method inlined with different suffixes)
+ * share the cache entry. SAT models are stored in terms of the canonical names and are renamed back
+ * to the names of the requested query.
+ *
+ * Canonicalization is a full pass over the query, and the cached states are kept whole, so the queries
+ * with more than `queryCacheMaxStateSize` predicates bypass the cache
+ */
+object SMTQueryCache {
+    private val cacheSize = kexConfig.getIntValue("smt", "queryCacheSize", 1000)
+    private val maxStateSize = kexConfig.getIntValue("smt", "queryCacheMaxStateSize", 1000)
+    val isEnabled get() = cacheSize > 0
+
+    private val lock = Any()
+    private var cache = LRUCache<QueryKey, Result>(maxOf(cacheSize, 1).toUInt())
+    private val hitCounter = AtomicLong(0)
+    private val missCounter = AtomicLong(0)
+
+    val hits: Long get() = hitCounter.get()
+    val misses: Long get() = missCounter.get()
+    val hitRate: Double
+        get() {
+            val hits = hits
+            val total = hits + misses
+            return if (total == 0L) 0.0 else hits.toDouble() / total
+        }
+
+    private class QueryKey(val state: PredicateState, val query: PredicateState) {
+        private val hash = 31 * state.hashCode() + query.hashCode()
+
+        override fun hashCode(): Int = hash
+        override fun equals(other: Any?): Boolean {
+            if (this === other) return true
+            if (other !is QueryKey) return false
+            return hash == other.hash && state == other.state && query == other.query
+        }
+    }
+
+    private class CanonicalQuery(val key: QueryKey, val renaming: Map<Term, Term>)
+
+    private fun canonicalize(state: PredicateState, query: PredicateState): CanonicalQuery {
+        val collector = TermCollector { it is ValueTerm }
+        collector.apply(state)
+        collector.apply(query)
+        val renaming = collector.terms.withIndex().associate { (index, term) ->
+            term to term { value(term.type, "%c$index") }
+        }
+        val remapper = TermRemapper(renaming)
+        return CanonicalQuery(QueryKey(remapper.apply(state), remapper.apply(query)), renaming)
+    }
+
+    suspend fun getOrCompute(
+        state: PredicateState,
+        query: PredicateState,
+        solve: suspend () -> Result
+    ): Result {
+        if (!isEnabled || state.size + query.size > maxStateSize) return solve()
+
+        val canonical = canonicalize(state, query)
+        val cached = synchronized(lock) { cache[canonical.key] }
+        if (cached != null) {
+            hitCounter.incrementAndGet()
+            log.debug { "Query cache hit, hit rate ${"%.2f".format(hitRate)}" }
+            return cached.rename(canonical.renaming.entries.associate { it.value to it.key })
+        }
+        missCounter.incrementAndGet()
+
+        val result = solve()
+        synchronized(lock) {
+            cache[canonical.key] = result.rename(canonical.renaming)
+        }
+        return result
+    }
+
+    fun clear() {
+        synchronized(lock) { cache = LRUCache(maxOf(cacheSize, 1).toUInt()) }
+        hitCounter.set(0)
+        missCounter.set(0)
+    }
+
+    private fun Result.rename(renaming: Map<Term, Term>): Result = when (this) {
+        is Result.SatResult -> Result.SatResult(model.rename(renaming))
+        is Result.UnsatResult -> when {
+            core.isEmpty() -> this
+            else -> {
+                val remapper = TermRemapper(renaming)
+                Result.UnsatResult(message, core.map { remapper.transform(it) })
+            }
+        }
+
+        else -> this
+    }
+
+    private fun SMTModel.rename(renaming: Map<Term, Term>): SMTModel {
+        val remapper = TermRemapper(renaming)
+        fun Term.renamed() = remapper.transform(this)
+        fun Map<Term, Term>.renamed() = entries.associate { (key, value) -> key.renamed() to value.renamed() }
+        fun MemoryShape.renamed() = MemoryShape(initialMemory.renamed(), finalMemory.renamed())
+
+        return SMTModel(
+            assignments.renamed(),
+            memories.mapValues { it.value.renamed() },
+            properties.mapValues { (_, shapes) -> shapes.mapValues { it.value.renamed() } },
+            arrays.mapValues { (_, shapes) ->
+                shapes.entries.associate { (key, value) -> key.renamed() to value.renamed() }
+            },
+            strings.mapValues { it.value.renamed() },
+            typeMap.mapKeys { it.key.renamed() },
+            hasStrings
+        )
+    }
+}
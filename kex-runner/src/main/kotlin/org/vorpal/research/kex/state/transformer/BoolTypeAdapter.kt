@@ -19,7 +19,7 @@ import org.vorpal.research.kfg.type.TypeFactory
 import org.vorpal.research.kthelper.assert.unreachable
 import org.vorpal.research.kthelper.logging.log
 
-class BoolTypeAdapter(val types: TypeFactory) : Transformer<BoolTypeAdapter>, IncrementalTransformer {
+class BoolTypeAdapter(val types: TypeFactory) : LocalTransformer<BoolTypeAdapter> {
 
     override fun apply(state: IncrementalPredicateState): IncrementalPredicateState {
         return IncrementalPredicateState(
@@ -3,8 +3,32 @@ package org.vorpal.research.kex.state.transformer
 import org.vorpal.research.kex.state.IncrementalPredicateState
 import org.vorpal.research.kex.state.PredicateState
 
+/**
+ * consecutive local transformers are collected into a single group that is applied in one pass
+ */
+private class LocalTransformerGroup {
+    private val stages = mutableListOf<LocalTransformer<*>>()
+
+    private val fused: Transformer<*> by lazy {
+        when (stages.size) {
+            1 -> stages.first()
+            else -> FusedTransformer(stages.toList())
+        }
+    }
+
+    operator fun plusAssign(transformer: LocalTransformer<*>) {
+        stages += transformer
+    }
+
+    fun apply(state: PredicateState): PredicateState = fused.apply(state)
+
+    fun apply(state: IncrementalPredicateState): IncrementalPredicateState =
+        (fused as IncrementalTransformer).apply(state)
+}
+
 class Transformation : Transformer<Transformation> {
     private val transformers = mutableListOf<(PredicateState) -> PredicateState>()
+    private var localGroup: LocalTransformerGroup? = null
 
     override fun apply(ps: PredicateState): PredicateState {
         var state = ps
@@ -15,10 +39,20 @@ class Transformation : Transformer<Transformation> {
     }
 
     operator fun Transformer<*>.unaryPlus() {
+        if (this is LocalTransformer<*>) {
+            val group = localGroup ?: LocalTransformerGroup().also { group ->
+                localGroup = group
+                transformers += { state -> group.apply(state) }
+            }
+            group += this
+            return
+        }
+        localGroup = null
         transformers += { state -> this.apply(state) }
     }
 
     operator fun ((PredicateState) -> PredicateState).unaryPlus() {
+        localGroup = null
         transformers += this
     }
 }
@@ -30,19 +64,29 @@ fun transform(state: PredicateState, body: Transformation.() -> Unit): Predicate
 }
 
 class IncrementalTransformation : IncrementalTransformer {
-    private val transformers = mutableListOf<IncrementalTransformer>()
+    private val transformers = mutableListOf<(IncrementalPredicateState) -> IncrementalPredicateState>()
+    private var localGroup: LocalTransformerGroup? = null
 
     @Suppress("PARAMETER_NAME_CHANGED_ON_OVERRIDE")
     override fun apply(ps: IncrementalPredicateState): IncrementalPredicateState {
         var state = ps
         for (transformer in transformers) {
-            state = transformer.apply(state)
+            state = transformer.invoke(state)
         }
         return state
     }
 
     operator fun IncrementalTransformer.unaryPlus() {
-        transformers += this
+        if (this is LocalTransformer<*>) {
+            val group = localGroup ?: LocalTransformerGroup().also { group ->
+                localGroup = group
+                transformers += { state -> group.apply(state) }
+            }
+            group += this
+            return
+        }
+        localGroup = null
+        transformers += { state -> this.apply(state) }
     }
 }
 
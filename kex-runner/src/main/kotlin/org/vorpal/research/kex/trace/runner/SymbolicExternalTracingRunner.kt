@@ -1,6 +1,8 @@
 package org.vorpal.research.kex.trace.runner
 
 import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
 import kotlinx.serialization.ExperimentalSerializationApi
 import kotlinx.serialization.InternalSerializationApi
 import org.vorpal.research.kex.ExecutionContext
@@ -12,6 +14,7 @@ import org.vorpal.research.kex.trace.symbolic.protocol.ExecutionCompletedResult
 import org.vorpal.research.kex.trace.symbolic.protocol.ExecutionResult
 import org.vorpal.research.kex.trace.symbolic.protocol.ExecutionTimedOutResult
 import org.vorpal.research.kex.trace.symbolic.protocol.TestExecutionRequest
+import org.vorpal.research.kex.trace.symbolic.protocol.executorProtocol
 import org.vorpal.research.kex.util.getJavaPath
 import org.vorpal.research.kex.util.getJvmModuleParams
 import org.vorpal.research.kex.util.getPathSeparator
@@ -23,6 +26,8 @@ import org.vorpal.research.kthelper.logging.log
 import org.vorpal.research.kthelper.nullFile
 import org.vorpal.research.kthelper.terminateOrKill
 import java.nio.file.Paths
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicReferenceArray
 import kotlin.concurrent.thread
 import kotlin.time.Duration.Companion.milliseconds
 
@@ -31,6 +36,11 @@ import kotlin.time.Duration.Companion.milliseconds
 internal object ExecutorMasterController : AutoCloseable {
     private lateinit var process: Process
     private lateinit var controllerSocket: ControllerProtocolHandler
+    private val numberOfConnections = kexConfig.getIntValue("executor", "numberOfClientConnections", 4)
+        .coerceAtLeast(1)
+    private val connections = AtomicReferenceArray<Client2MasterConnection?>(numberOfConnections)
+    private val connectionsLock = Mutex()
+    private val nextConnection = AtomicInteger()
 
     init {
         Runtime.getRuntime().addShutdownHook(thread(start = false) {
@@ -40,7 +50,8 @@ internal object ExecutorMasterController : AutoCloseable {
     }
 
     fun start(ctx: ExecutionContext) {
-        controllerSocket = ControllerProtocolSocketHandler(ctx)
+        val protocol = executorProtocol
+        controllerSocket = ControllerProtocolSocketHandler(ctx, protocol)
         val outputDir = kexConfig.outputDirectory
         val executorPath = kexConfig.getPathValue("executor", "executorPath") {
             kexConfig.kexHome.resolve("kex-executor/target/kex-executor-0.0.11-jar-with-dependencies.jar")
@@ -75,7 +86,8 @@ internal object ExecutorMasterController : AutoCloseable {
             "--port", "${controllerSocket.controllerPort}",
             "--kfgClassPath", kfgClassPath.joinToString(getPathSeparator()),
             "--workerClassPath", workerClassPath.joinToString(getPathSeparator()),
-            "--numOfWorkers", "$numberOfWorkers"
+            "--numOfWorkers", "$numberOfWorkers",
+            "--protocol", protocol.name.lowercase()
         ) {
             redirectOutput(nullFile())
             redirectError(nullFile())
@@ -86,11 +98,27 @@ internal object ExecutorMasterController : AutoCloseable {
         }
     }
 
+    /**
+     * Returns one of the pooled long-lived connections to the master, connections
+     * are selected in a round-robin manner and are reopened if they were closed
+     */
     suspend fun getClientConnection(): Client2MasterConnection? {
-        return controllerSocket.getClient2MasterConnection()
+        val index = Math.floorMod(nextConnection.getAndIncrement(), numberOfConnections)
+        connections[index]?.takeIf { it.isActive }?.let { return it }
+        return connectionsLock.withLock {
+            connections[index]?.takeIf { it.isActive } ?: run {
+                connections[index]?.close()
+                controllerSocket.getClient2MasterConnection().also {
+                    connections[index] = it
+                }
+            }
+        }
     }
 
     override fun close() {
+        for (index in 0 until connections.length()) {
+            connections.getAndSet(index, null)?.close()
+        }
         log.debug("Terminating executor controller process")
         process.terminateOrKill(attempts = 10U, waitTime = 500.milliseconds)
         log.debug("Executor controller terminated: ${process.isAlive}")
@@ -101,7 +129,12 @@ internal object ExecutorMasterController : AutoCloseable {
 class SymbolicExternalTracingRunner(val ctx: ExecutionContext) {
     @ExperimentalSerializationApi
     @InternalSerializationApi
-    suspend fun run(klass: String, setup: String, test: String): ExecutionResult {
+    suspend fun run(
+        klass: String,
+        setup: String,
+        test: String,
+        classes: Map<String, ByteArray> = emptyMap()
+    ): ExecutionResult {
         log.debug("Executing test $klass")
 
         val connection = ExecutorMasterController.getClientConnection()
@@ -109,19 +142,13 @@ class SymbolicExternalTracingRunner(val ctx: ExecutionContext) {
             log.debug("Test $klass executed with result connection timeout")
             return ExecutionTimedOutResult("Connection timeout")
         }
-        connection.use {
-            if (!it.send(TestExecutionRequest(klass, test, setup))) {
-                log.debug("Test $klass executed with result connection timeout")
-                return ExecutionTimedOutResult("Connection timeout")
-            }
-            val result = it.receive()
-            when (result) {
-                null -> log.debug("Connection timeout")
-                is ExecutionCompletedResult -> log.debug("Execution result: {}", result.symbolicState)
-                else -> log.debug("Execution result: {}", result)
-            }
-            //log.debug("Test {} executed with result {}", klass, result)
-            return result ?: ExecutionTimedOutResult("Connection timeout")
+        val result = connection.execute(TestExecutionRequest(klass, test, setup, classes))
+        when (result) {
+            null -> log.debug("Connection timeout")
+            is ExecutionCompletedResult -> log.debug("Execution result: {}", result.symbolicState)
+            else -> log.debug("Execution result: {}", result)
         }
+        //log.debug("Test {} executed with result {}", klass, result)
+        return result ?: ExecutionTimedOutResult("Connection timeout")
     }
 }
@@ -0,0 +1,164 @@
+package org.vorpal.research.kex.util
+
+import kotlin.random.Random
+
+/**
+ * Collection of weighted elements that supports sampling an element with the probability
+ * proportional to its weight.
+ *
+ * Elements are stored in slots, weights of the slots are kept in a Fenwick tree, so insertion, removal,
+ * weight update and sampling take O(log n). Elements are iterated and sampled in the order of their slots,
+ * so the result of sampling depends only on the sequence of the operations and the state of [Random]
+ */
+class WeightedSampler<T : Any> : Iterable<T> {
+    private var elements = arrayOfNulls<Any>(INITIAL_CAPACITY)
+    private var weights = LongArray(INITIAL_CAPACITY)
+    private var tree = LongArray(INITIAL_CAPACITY + 1)
+    private val slots = hashMapOf<T, Int>()
+    private val freeSlots = ArrayDeque<Int>()
+    private var usedSlots = 0
+
+    var totalWeight = 0L
+        private set
+
+    val size get() = slots.size
+
+    companion object {
+        private const val INITIAL_CAPACITY = 64
+    }
+
+    fun isEmpty() = slots.isEmpty()
+
+    operator fun contains(element: T) = element in slots
+
+    fun weight(element: T): Long = slots[element]?.let { weights[it] } ?: 0L
+
+    /**
+     * adds an [element] with the given [weight] or updates the weight of the existing element
+     */
+    fun add(element: T, weight: Long) {
+        require(weight >= 0L) { "Negative weight $weight of $element" }
+        val existing = slots[element]
+        if (existing != null) {
+            setWeight(existing, weight)
+            return
+        }
+
+        val slot = when {
+            freeSlots.isNotEmpty() -> freeSlots.removeFirst()
+            else -> {
+                if (usedSlots == elements.size) grow()
+                usedSlots++
+            }
+        }
+        elements[slot] = element
+        slots[element] = slot
+        setWeight(slot, weight)
+    }
+
+    fun remove(element: T): Boolean {
+        val slot = slots.remove(element) ?: return false
+        setWeight(slot, 0L)
+        elements[slot] = null
+        freeSlots.addLast(slot)
+        return true
+    }
+
+    fun removeAll(predicate: (T) -> Boolean): Boolean {
+        val removed = filter(predicate)
+        removed.forEach { remove(it) }
+        return removed.isNotEmpty()
+    }
+
+    /**
+     * recomputes the weights of all the elements, the tree is rebuilt in O(n)
+     */
+    fun updateAll(weight: (T) -> Long) {
+        totalWeight = 0L
+        for (slot in 0 until usedSlots) {
+            @Suppress("UNCHECKED_CAST")
+            val element = elements[slot] as? T
+            weights[slot] = when (element) {
+                null -> 0L
+                else -> weight(element).also { require(it >= 0L) { "Negative weight $it of $element" } }
+            }
+            totalWeight += weights[slot]
+        }
+        rebuild()
+    }
+
+    /**
+     * @return element with the probability proportional to its weight,
+     * or the first element in the slot order if all the weights are zero
+     */
+    fun sample(random: Random): T {
+        check(slots.isNotEmpty()) { "Sampling from an empty collection" }
+        if (totalWeight == 0L) return first()
+
+        var remaining = random.nextLong(totalWeight)
+        var index = 0
+        var step = Integer.highestOneBit(tree.size - 1)
+        while (step > 0) {
+            val next = index + step
+            if (next < tree.size && tree[next] <= remaining) {
+                index = next
+                remaining -= tree[next]
+            }
+            step = step shr 1
+        }
+        @Suppress("UNCHECKED_CAST")
+        return elements[index] as T
+    }
+
+    fun clear() {
+        elements.fill(null, 0, usedSlots)
+        weights.fill(0L)
+        tree.fill(0L)
+        slots.clear()
+        freeSlots.clear()
+        usedSlots = 0
+        totalWeight = 0L
+    }
+
+    override fun iterator(): Iterator<T> = iterator {
+        for (slot in 0 until usedSlots) {
+            @Suppress("UNCHECKED_CAST")
+            val element = elements[slot] as? T ?: continue
+            yield(element)
+        }
+    }
+
+    private fun setWeight(slot: Int, weight: Long) {
+        require(weight >= 0L) { "Negative weight $weight" }
+        val delta = weight - weights[slot]
+        if (delta == 0L) return
+
+        weights[slot] = weight
+        totalWeight += delta
+        var index = slot + 1
+        while (index < tree.size) {
+            tree[index] += delta
+            index += index and -index
+        }
+    }
+
+    private fun grow() {
+        val capacity = elements.size * 2
+        elements = elements.copyOf(capacity)
+        weights = weights.copyOf(capacity)
+        tree = LongArray(capacity + 1)
+        rebuild()
+    }
+
+    private fun rebuild() {
+        tree.fill(0L)
+        for (slot in weights.indices) {
+            val index = slot + 1
+            tree[index] += weights[slot]
+            val parent = index + (index and -index)
+            if (parent < tree.size) {
+                tree[parent] += tree[index]
+            }
+        }
+    }
+}
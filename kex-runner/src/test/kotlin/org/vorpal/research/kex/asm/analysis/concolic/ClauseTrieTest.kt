@@ -0,0 +1,99 @@
+package org.vorpal.research.kex.asm.analysis.concolic
+
+import kotlinx.collections.immutable.persistentMapOf
+import kotlinx.serialization.ExperimentalSerializationApi
+import kotlinx.serialization.InternalSerializationApi
+import org.vorpal.research.kex.KexRunnerTest
+import org.vorpal.research.kex.ktype.KexInt
+import org.vorpal.research.kex.state.predicate.path
+import org.vorpal.research.kex.state.predicate.state
+import org.vorpal.research.kex.state.term.term
+import org.vorpal.research.kex.trace.symbolic.Clause
+import org.vorpal.research.kex.trace.symbolic.PathClause
+import org.vorpal.research.kex.trace.symbolic.PathClauseType
+import org.vorpal.research.kex.trace.symbolic.StateClause
+import org.vorpal.research.kfg.ir.value.EmptyUsageContext
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertNotEquals
+import kotlin.test.assertNotSame
+import kotlin.test.assertNull
+import kotlin.test.assertSame
+
+@ExperimentalSerializationApi
+@InternalSerializationApi
+class ClauseTrieTest : KexRunnerTest("clause-trie") {
+    private val instruction = cm.instruction.getUnreachable(EmptyUsageContext)
+
+    private fun stateClause(index: Int): Clause = StateClause(
+        instruction, state { term { value(KexInt, "x$index") } equality index }
+    )
+
+    private fun pathClause(index: Int): Clause = PathClause(
+        PathClauseType.CONDITION_CHECK, instruction, path { term { value(KexInt, "x$index") } equality index }
+    )
+
+    @Test
+    fun insertTest() {
+        val trie = ClauseTrie()
+        assertEquals(1, trie.size)
+        assertNull(trie.root.parent)
+        assertFailsWith<NoSuchElementException> { trie.root.clause }
+
+        val clauses = listOf(stateClause(0), pathClause(1), stateClause(2))
+        val node = trie.insert(clauses)
+        assertEquals(4, trie.size)
+        assertEquals(3, node.size)
+        assertEquals(clauses[2], node.clause)
+        assertEquals(clauses[1], node.parent!!.clause)
+        assertSame(trie.root, node.parent!!.parent!!.parent)
+        assertSame(node, trie[node.id])
+
+        assertSame(trie.root, trie.insert(emptyList()))
+    }
+
+    @Test
+    fun shareTest() {
+        val trie = ClauseTrie()
+        val first = trie.insert(listOf(stateClause(0), pathClause(1), stateClause(2)))
+        val second = trie.insert(listOf(stateClause(0), pathClause(1), pathClause(3)))
+        assertEquals(5, trie.size)
+        assertNotSame(first, second)
+        assertSame(first.parent, second.parent)
+
+        assertSame(first, trie.insert(listOf(stateClause(0), pathClause(1), stateClause(2))))
+        assertSame(first, trie.child(first.parent!!, stateClause(2)))
+        assertEquals(5, trie.size)
+
+        val other = trie.insert(listOf(pathClause(1)))
+        assertNotSame(first.parent, other)
+        assertEquals(6, trie.size)
+    }
+
+    @Test
+    fun rebuildTest() {
+        val trie = ClauseTrie()
+        val clauses = listOf(stateClause(0), pathClause(1), stateClause(2), pathClause(3))
+        val node = trie.insert(clauses)
+
+        assertEquals(clauses, trie.clauses(node).toList())
+        assertEquals(clauses.filterIsInstance<PathClause>(), trie.path(node).toList())
+        assertEquals(emptyList<Clause>(), trie.clauses(trie.root).toList())
+
+        val values = ClauseTrie.TraceValues(
+            persistentMapOf(term { value(KexInt, "x0") } to KexInt),
+            persistentMapOf(),
+            persistentMapOf()
+        )
+        val state = trie.State(node, values)
+        val symbolicState = state.toSymbolicState()
+        assertEquals(clauses, symbolicState.clauses.toList())
+        assertEquals(clauses.filterIsInstance<PathClause>(), symbolicState.path.toList())
+        assertSame(values.concreteTypes, symbolicState.concreteTypes)
+        assertEquals(clauses.last(), state.lastClause)
+
+        assertEquals(state, trie.State(trie.insert(clauses), ClauseTrie.TraceValues(symbolicState)))
+        assertNotEquals(state, trie.State(node.parent!!, values))
+    }
+}
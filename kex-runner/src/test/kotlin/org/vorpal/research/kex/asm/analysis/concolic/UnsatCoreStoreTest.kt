@@ -0,0 +1,78 @@
+package org.vorpal.research.kex.asm.analysis.concolic
+
+import kotlinx.collections.immutable.persistentListOf
+import kotlinx.serialization.ExperimentalSerializationApi
+import kotlinx.serialization.InternalSerializationApi
+import org.vorpal.research.kex.KexRunnerTest
+import org.vorpal.research.kex.ktype.KexClass
+import org.vorpal.research.kex.ktype.KexInt
+import org.vorpal.research.kex.ktype.KexLong
+import org.vorpal.research.kex.state.predicate.Predicate
+import org.vorpal.research.kex.state.predicate.path
+import org.vorpal.research.kex.state.predicate.state
+import org.vorpal.research.kex.state.term.term
+import org.vorpal.research.kex.trace.symbolic.PathClause
+import org.vorpal.research.kex.trace.symbolic.PathClauseType
+import org.vorpal.research.kex.trace.symbolic.PersistentClauseList
+import org.vorpal.research.kex.trace.symbolic.PersistentPathCondition
+import org.vorpal.research.kex.trace.symbolic.StateClause
+import org.vorpal.research.kex.trace.symbolic.SymbolicState
+import org.vorpal.research.kex.trace.symbolic.persistentSymbolicState
+import org.vorpal.research.kfg.ir.value.EmptyUsageContext
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+@ExperimentalSerializationApi
+@InternalSerializationApi
+class UnsatCoreStoreTest : KexRunnerTest("unsat-core-store") {
+    private val instruction = cm.instruction.getUnreachable(EmptyUsageContext)
+
+    private fun symbolicState(clauses: List<Predicate>, path: List<Predicate>): SymbolicState = persistentSymbolicState(
+        state = PersistentClauseList(persistentListOf(*clauses.map { StateClause(instruction, it) }.toTypedArray())),
+        path = PersistentPathCondition(persistentListOf(*path.map {
+            PathClause(PathClauseType.CONDITION_CHECK, instruction, it)
+        }.toTypedArray()))
+    )
+
+    @Test
+    fun primitiveCoreTest() {
+        val arg = term { arg(KexInt, 0) }
+        val x = term { value(KexInt, "x") }
+        val definition = state { x equality (arg + const(1)) }
+        val condition = path { (x gt const(5)) equality true }
+        val other = path { (arg lt const(100)) equality true }
+
+        val store = UnsatCoreStore()
+        store.addCore(symbolicState(listOf(definition), listOf(other, condition)), listOf(condition))
+        assertEquals(1, store.size)
+
+        assertTrue(store.isSubsumed(symbolicState(listOf(definition), listOf(condition))))
+        assertFalse(store.isSubsumed(symbolicState(listOf(definition), listOf(other))))
+        assertFalse(store.isSubsumed(symbolicState(emptyList(), listOf(condition))))
+    }
+
+    @Test
+    fun referenceCoreTest() {
+        val obj = term { value(KexClass("org/vorpal/research/kex/Test"), "obj") }
+        val condition = path { (obj eq null) equality true }
+
+        val store = UnsatCoreStore()
+        store.addCore(symbolicState(emptyList(), listOf(condition)), listOf(condition))
+        assertEquals(0, store.size)
+        assertFalse(store.isSubsumed(symbolicState(emptyList(), listOf(condition))))
+    }
+
+    @Test
+    fun castCoreTest() {
+        val arg = term { arg(KexInt, 0) }
+        val y = term { value(KexLong, "y") }
+        val definition = state { y equality (arg `as` KexLong) }
+        val condition = path { (y gt const(0L)) equality true }
+
+        val store = UnsatCoreStore()
+        store.addCore(symbolicState(listOf(definition), listOf(condition)), listOf(condition))
+        assertEquals(0, store.size)
+    }
+}
@@ -0,0 +1,99 @@
+package org.vorpal.research.kex.asm.analysis.concolic.cgs
+
+import org.vorpal.research.kthelper.graph.PredecessorGraph
+import kotlin.random.Random
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class IncrementalDominatorsTest {
+    private class Node(val index: Int) : PredecessorGraph.PredecessorVertex<Node> {
+        override val predecessors = mutableSetOf<Node>()
+        override val successors = mutableSetOf<Node>()
+
+        override fun toString() = "$index"
+    }
+
+    /**
+     * iterative data-flow computation of the dominator sets of all the vertices reachable from [root]
+     */
+    private fun dominatorsFromScratch(root: Node, nodes: List<Node>): Map<Node, Set<Node>> {
+        val dominators = nodes.associateWith { nodes.toMutableSet() }.toMutableMap()
+        dominators[root] = mutableSetOf(root)
+        var changed = true
+        while (changed) {
+            changed = false
+            for (node in nodes) {
+                if (node == root) continue
+                val newDominators = node.predecessors
+                    .map { dominators.getValue(it) }
+                    .reduce { acc, set -> acc.intersect(set).toMutableSet() }
+                    .toMutableSet()
+                newDominators += node
+                if (newDominators != dominators[node]) {
+                    dominators[node] = newDominators
+                    changed = true
+                }
+            }
+        }
+        return dominators
+    }
+
+    private fun checkRandomGrowth(seed: Int, steps: Int) {
+        val random = Random(seed)
+        val root = Node(0)
+        val nodes = mutableListOf(root)
+        val dominators = IncrementalDominators(root)
+
+        repeat(steps) { step ->
+            val from = nodes.random(random)
+            val to = when {
+                random.nextInt(3) == 0 -> Node(nodes.size).also { nodes += it }
+                else -> nodes.random(random)
+            }
+            from.successors += to
+            to.predecessors += from
+            dominators.addEdge(from, to)
+
+            val expected = dominatorsFromScratch(root, nodes)
+            for (vertex in nodes) {
+                for (dominator in nodes) {
+                    assertEquals(
+                        dominator != vertex && dominator in expected.getValue(vertex),
+                        dominators.strictlyDominates(dominator, vertex),
+                        "Seed $seed, step $step: wrong dominance of $dominator over $vertex"
+                    )
+                }
+            }
+        }
+    }
+
+    @Test
+    fun randomGrowthTest() {
+        for (seed in 0 until 50) {
+            checkRandomGrowth(seed, steps = 60)
+        }
+    }
+
+    @Test
+    fun treeGrowthTest() {
+        val root = Node(0)
+        val first = Node(1)
+        val second = Node(2)
+        val join = Node(3)
+        val dominators = IncrementalDominators(root)
+        for ((from, to) in listOf(root to first, first to join, root to second)) {
+            from.successors += to
+            to.predecessors += from
+            dominators.addEdge(from, to)
+        }
+        assertTrue(dominators.strictlyDominates(first, join))
+
+        second.successors += join
+        join.predecessors += second
+        dominators.addEdge(second, join)
+        assertFalse(dominators.strictlyDominates(first, join))
+        assertTrue(dominators.strictlyDominates(root, join))
+    }
+}
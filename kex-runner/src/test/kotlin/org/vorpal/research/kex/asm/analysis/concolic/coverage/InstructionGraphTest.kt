@@ -0,0 +1,176 @@
+package org.vorpal.research.kex.asm.analysis.concolic.coverage
+
+import kotlinx.collections.immutable.PersistentList
+import kotlinx.collections.immutable.persistentListOf
+import kotlinx.serialization.ExperimentalSerializationApi
+import kotlinx.serialization.InternalSerializationApi
+import org.vorpal.research.kex.KexRunnerTest
+import org.vorpal.research.kfg.ir.Method
+import org.vorpal.research.kfg.ir.value.instruction.ArrayLoadInst
+import org.vorpal.research.kfg.ir.value.instruction.ArrayStoreInst
+import org.vorpal.research.kfg.ir.value.instruction.BranchInst
+import org.vorpal.research.kfg.ir.value.instruction.CallInst
+import org.vorpal.research.kfg.ir.value.instruction.FieldLoadInst
+import org.vorpal.research.kfg.ir.value.instruction.FieldStoreInst
+import org.vorpal.research.kfg.ir.value.instruction.Instruction
+import org.vorpal.research.kfg.ir.value.instruction.ReturnInst
+import org.vorpal.research.kthelper.collection.queueOf
+import java.util.PriorityQueue
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+@ExperimentalSerializationApi
+@InternalSerializationApi
+class InstructionGraphTest : KexRunnerTest("instruction-graph") {
+    private val klass = cm["${`package`.concretePackage}/concolic/DistanceTests"]
+    private val helper = klass.allMethods.first { it.name == "helper" }
+    private val first = klass.allMethods.first { it.name == "first" }
+    private val second = klass.allMethods.first { it.name == "second" }
+
+    private val Instruction.stepValue
+        get() = when (this) {
+            is CallInst -> 2
+            is FieldLoadInst, is FieldStoreInst -> 1
+            is ArrayLoadInst, is ArrayStoreInst -> 1
+            is BranchInst -> 1
+            else -> 0
+        }
+
+    private fun InstructionGraph.allVertices(): Set<InstructionGraph.Vertex> {
+        val result = mutableSetOf<InstructionGraph.Vertex>()
+        val queue = ArrayDeque(listOf(first, second).map { getVertex(it.body.entry.first()) })
+        while (queue.isNotEmpty()) {
+            val vertex = queue.removeFirst()
+            if (!result.add(vertex)) continue
+            queue.addAll(vertex.downEdges)
+        }
+        return result
+    }
+
+    /**
+     * forward search from the [start] through the covered vertices to the nearest uncovered target instruction
+     */
+    private fun bruteForceDistance(start: InstructionGraph.Vertex, targets: Set<Method>): Int {
+        val distances = mutableMapOf(start to 0)
+        val queue = PriorityQueue<Pair<InstructionGraph.Vertex, Int>>(compareBy { it.second })
+        queue += start to 0
+        while (queue.isNotEmpty()) {
+            val (vertex, distance) = queue.poll()
+            if (distance > distances.getValue(vertex)) continue
+            if (!vertex.covered) {
+                if (vertex.instruction.parent.method in targets) return distance
+                continue
+            }
+            for (next in vertex.downEdges) {
+                val newDistance = distance + vertex.instruction.stepValue
+                if (newDistance < distances.getOrDefault(next, Int.MAX_VALUE)) {
+                    distances[next] = newDistance
+                    queue += next to newDistance
+                }
+            }
+        }
+        return Int.MAX_VALUE
+    }
+
+    /**
+     * forward search that follows the call stack, returns lead only to the caller on top of the stack
+     */
+    private fun contextSensitiveDistance(
+        start: InstructionGraph.Vertex,
+        targets: Set<Method>,
+        initialStackTrace: PersistentList<Method>
+    ): Int {
+        val distances = mutableMapOf(start to 0)
+        val queue = queueOf(start to initialStackTrace)
+        var minDistance = Int.MAX_VALUE
+        while (queue.isNotEmpty()) {
+            val (vertex, stackTrace) = queue.poll()
+            val distance = distances.getValue(vertex)
+            if (!vertex.covered) {
+                if (vertex.instruction.parent.method in targets) minDistance = minOf(minDistance, distance)
+                continue
+            }
+            val edges = when (vertex.instruction) {
+                is ReturnInst -> {
+                    val callerStack = stackTrace.removeAt(stackTrace.lastIndex)
+                    if (callerStack.isEmpty()) continue
+                    vertex.downEdges
+                        .filter { it.instruction.parent.method == callerStack.last() }
+                        .map { it to callerStack }
+                }
+
+                else -> vertex.downEdges.map {
+                    val method = it.instruction.parent.method
+                    it to if (method != vertex.instruction.parent.method) stackTrace.add(method) else stackTrace
+                }
+            }
+            for ((next, nextStackTrace) in edges) {
+                val newDistance = distance + vertex.instruction.stepValue
+                if (newDistance < distances.getOrDefault(next, Int.MAX_VALUE)) {
+                    distances[next] = newDistance
+                    queue += next to nextStackTrace
+                }
+            }
+        }
+        return minDistance
+    }
+
+    private fun InstructionGraph.checkDistances(targets: Set<Method>) {
+        for (vertex in allVertices()) {
+            assertEquals(
+                bruteForceDistance(vertex, targets),
+                distanceToTargets(vertex.instruction),
+                "Wrong distance of $vertex"
+            )
+        }
+    }
+
+    private fun InstructionGraph.cover(method: Method) {
+        for (block in method.body) {
+            addTrace(block.instructions.toList())
+        }
+    }
+
+    @Test
+    fun distancesTest() {
+        val targets = setOf(first, second)
+        val graph = InstructionGraph(targets)
+        graph.checkDistances(targets)
+
+        graph.cover(helper)
+        graph.checkDistances(targets)
+
+        graph.cover(first)
+        graph.checkDistances(targets)
+
+        graph.addTrace(second.body.entry.instructions.take(2))
+        graph.checkDistances(targets)
+
+        graph.cover(second)
+        graph.checkDistances(targets)
+        assertTrue(graph.allVertices().all { graph.distanceToTargets(it.instruction) == Int.MAX_VALUE })
+    }
+
+    @Test
+    fun lowerBoundTest() {
+        val targets = setOf(second)
+        val graph = InstructionGraph(targets)
+        graph.cover(helper)
+        graph.cover(first)
+        graph.checkDistances(targets)
+
+        // returns of the helper lead to both of its callers, so the index finds the uncovered
+        // instructions of `second` from `first`, which are not reachable with the actual call stack
+        val start = graph.getVertex(first.body.entry.first())
+        val indexDistance = graph.distanceToTargets(start.instruction)
+        val actualDistance = contextSensitiveDistance(start, targets, persistentListOf(first))
+        assertTrue(indexDistance < Int.MAX_VALUE, "Target is not reachable through the return of the helper")
+        assertEquals(Int.MAX_VALUE, actualDistance)
+
+        for (vertex in graph.allVertices().filter { it.instruction.parent.method == first }) {
+            val distance = graph.distanceToTargets(vertex.instruction)
+            assertTrue(distance <= contextSensitiveDistance(vertex, targets, persistentListOf(first)))
+        }
+    }
+}
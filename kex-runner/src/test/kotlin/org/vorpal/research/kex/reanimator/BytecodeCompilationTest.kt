@@ -0,0 +1,114 @@
+package org.vorpal.research.kex.reanimator
+
+import kotlinx.coroutines.runBlocking
+import kotlinx.serialization.ExperimentalSerializationApi
+import kotlinx.serialization.InternalSerializationApi
+import org.vorpal.research.kex.KexRunnerTest
+import org.vorpal.research.kex.compile.CompilerHelper
+import org.vorpal.research.kex.config.kexConfig
+import org.vorpal.research.kex.parameters.asDescriptors
+import org.vorpal.research.kex.reanimator.codegen.ExecutorTestCasePrinter
+import org.vorpal.research.kex.reanimator.codegen.javagen.EqualityUtilsPrinter
+import org.vorpal.research.kex.reanimator.codegen.javagen.EqualityUtilsPrinter.Companion.EQUALITY_UTILS_CLASS
+import org.vorpal.research.kex.trace.runner.generateParameters
+import org.vorpal.research.kex.util.asmString
+import org.vorpal.research.kex.util.compiledCodeDirectory
+import org.vorpal.research.kex.util.testcaseDirectory
+import org.vorpal.research.kfg.ir.Class
+import java.lang.reflect.InvocationTargetException
+import java.net.URLClassLoader
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+/**
+ * Checks that the tests compiled directly to bytecode behave the same way
+ * as the tests printed as Java source and compiled with javac
+ */
+@ExperimentalSerializationApi
+@InternalSerializationApi
+class BytecodeCompilationTest : KexRunnerTest("bytecode-compilation") {
+    private var testIndex = 0
+
+    private class BytesClassLoader(
+        parent: ClassLoader,
+        private val classes: Map<String, ByteArray>
+    ) : ClassLoader(parent) {
+        override fun loadClass(name: String, resolve: Boolean): java.lang.Class<*> {
+            val bytes = classes[name] ?: return super.loadClass(name, resolve)
+            return synchronized(getClassLoadingLock(name)) {
+                findLoadedClass(name) ?: defineClass(name, bytes, 0, bytes.size)
+            }
+        }
+    }
+
+    private class Execution(val fields: Map<String, Any?>, val exception: java.lang.Class<*>?)
+
+    private fun execute(loader: ClassLoader, klassName: String): Execution {
+        val klass = loader.loadClass(klassName)
+        val instance = klass.getConstructor().newInstance()
+        klass.getMethod(ExecutorTestCasePrinter.SETUP_METHOD).invoke(instance)
+        val fields = klass.fields.associate { it.name to it.get(instance) }
+        val exception = try {
+            klass.getMethod(ExecutorTestCasePrinter.TEST_METHOD).invoke(instance)
+            null
+        } catch (e: InvocationTargetException) {
+            e.targetException.javaClass
+        }
+        return Execution(fields, exception)
+    }
+
+    private fun compareCompilations(klass: Class): Int {
+        val compilerHelper = CompilerHelper(analysisContext)
+        val packageName = klass.pkg.concreteName.replace("/", ".")
+        EqualityUtilsPrinter.equalityUtils(packageName)
+        compilerHelper.compileFile(
+            kexConfig.testcaseDirectory.resolve(packageName.asmString).resolve("$EQUALITY_UTILS_CLASS.java")
+        )
+
+        var compared = 0
+        for (method in klass.allMethods) {
+            if (method.isAbstract || method.isStaticInitializer) continue
+            val parameters = analysisContext.random.generateParameters(analysisContext.loader, method) ?: continue
+
+            val generator = UnsafeGenerator(analysisContext, method, "BytecodeTest${testIndex++}")
+            generator.generate(parameters.asDescriptors)
+            val bytecode = generator.emitBytecode() ?: continue
+            compilerHelper.compileHelpers()
+            val javac = runBlocking { compilerHelper.compileSource(generator.emitSource()) }
+
+            val parent = URLClassLoader(
+                arrayOf(kexConfig.compiledCodeDirectory.toUri().toURL()),
+                analysisContext.loader
+            )
+            val fromBytecode = execute(BytesClassLoader(parent, bytecode), generator.testKlassName)
+            val fromJavac = execute(BytesClassLoader(parent, javac), generator.testKlassName)
+
+            assertEquals(fromJavac.fields.keys, fromBytecode.fields.keys, "Different fields of test for $method")
+            val recursiveEquals = parent.loadClass("$packageName.$EQUALITY_UTILS_CLASS")
+                .getDeclaredMethod("recursiveEquals", Any::class.java, Any::class.java)
+                .also { it.isAccessible = true }
+            for ((name, value) in fromJavac.fields) {
+                assertTrue(
+                    recursiveEquals.invoke(null, value, fromBytecode.fields[name]) as Boolean,
+                    "Different values of $name in test for $method"
+                )
+            }
+            assertEquals(fromJavac.exception, fromBytecode.exception, "Different results of test for $method")
+            ++compared
+        }
+        return compared
+    }
+
+    @Test
+    fun testBasicGeneration() {
+        val compared = compareCompilations(cm["${`package`.concretePackage}/generation/BasicGenerationTests"])
+        assertTrue(compared > 0, "No tests were compiled to bytecode")
+    }
+
+    @Test
+    fun testObjectGeneration() {
+        val compared = compareCompilations(cm["${`package`.concretePackage}/generation/ObjectGenerationTests"])
+        assertTrue(compared > 0, "No tests were compiled to bytecode")
+    }
+}
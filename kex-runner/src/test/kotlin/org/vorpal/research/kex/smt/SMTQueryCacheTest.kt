@@ -0,0 +1,65 @@
+package org.vorpal.research.kex.smt
+
+import kotlinx.coroutines.runBlocking
+import kotlinx.serialization.ExperimentalSerializationApi
+import kotlinx.serialization.InternalSerializationApi
+import org.vorpal.research.kex.KexRunnerTest
+import org.vorpal.research.kex.ktype.KexBool
+import org.vorpal.research.kex.ktype.KexInt
+import org.vorpal.research.kex.state.PredicateState
+import org.vorpal.research.kex.state.basic
+import org.vorpal.research.kex.state.emptyState
+import org.vorpal.research.kex.state.term.term
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertIs
+
+@ExperimentalSerializationApi
+@InternalSerializationApi
+class SMTQueryCacheTest : KexRunnerTest("smt-query-cache") {
+    private var solverCalls = 0
+
+    private fun check(state: PredicateState): Result = runBlocking {
+        SMTQueryCache.getOrCompute(state, emptyState()) {
+            ++solverCalls
+            Result.UnsatResult()
+        }
+    }
+
+    private fun positiveCheck(value: String, condition: String, bound: Int): PredicateState {
+        val valueTerm = term { value(KexInt, value) }
+        val conditionTerm = term { value(KexBool, condition) }
+        return basic {
+            state { conditionTerm equality (valueTerm gt bound) }
+            path { conditionTerm equality true }
+        }
+    }
+
+    @Test
+    fun alphaEquivalenceTest() {
+        SMTQueryCache.clear()
+        solverCalls = 0
+
+        assertIs<Result.UnsatResult>(check(positiveCheck("x", "cond", 0)))
+        assertEquals(1, solverCalls)
+
+        assertIs<Result.UnsatResult>(check(positiveCheck("x.inlined0", "cond.inlined0", 0)))
+        assertEquals(1, solverCalls, "Alpha-equivalent state was not found in the cache")
+        assertEquals(1, SMTQueryCache.hits)
+
+        check(positiveCheck("x", "cond", 1))
+        assertEquals(2, solverCalls, "Different state was found in the cache")
+
+        val negated = term { value(KexBool, "cond") }.let { condition ->
+            basic {
+                state { condition equality (term { value(KexInt, "x") } gt 0) }
+                path { condition equality false }
+            }
+        }
+        check(negated)
+        assertEquals(3, solverCalls, "State with the different path was found in the cache")
+        assertEquals(1, SMTQueryCache.hits)
+        assertEquals(3, SMTQueryCache.misses)
+        SMTQueryCache.clear()
+    }
+}
@@ -0,0 +1,105 @@
+package org.vorpal.research.kex.state.transformer
+
+import kotlinx.collections.immutable.persistentListOf
+import kotlinx.serialization.ExperimentalSerializationApi
+import kotlinx.serialization.InternalSerializationApi
+import org.vorpal.research.kex.KexRunnerTest
+import org.vorpal.research.kex.ktype.KexBool
+import org.vorpal.research.kex.ktype.KexClass
+import org.vorpal.research.kex.ktype.KexInt
+import org.vorpal.research.kex.ktype.kexType
+import org.vorpal.research.kex.state.IncrementalPredicateState
+import org.vorpal.research.kex.state.PredicateQuery
+import org.vorpal.research.kex.state.PredicateState
+import org.vorpal.research.kex.state.basic
+import org.vorpal.research.kex.state.predicate.state
+import org.vorpal.research.kex.state.term.term
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertNotEquals
+
+/**
+ * Checks that the fused pass of the local transformers gives the same results
+ * as the sequential application of the same transformers
+ */
+@ExperimentalSerializationApi
+@InternalSerializationApi
+class FusedTransformerTest : KexRunnerTest("fused-transformer") {
+    private val x = term { value(KexInt, "x") }
+    private val y = term { value(KexInt, "y") }
+    private val flag = term { value(KexBool, "flag") }
+    private val condition = term { value(KexBool, "condition") }
+    private val obj = term { value(KexClass("java/lang/Object"), "obj") }
+
+    private val stages: List<LocalTransformer<*>>
+        get() = listOf(ConstantPropagator, BoolTypeAdapter(cm.type), ClassAdapter(cm))
+
+    private val states: List<PredicateState>
+        get() {
+            val getClass = cm.objectClass.getMethod("getClass", cm.classClass.asType)
+            val klass = term { value(getClass.returnType.kexType, "klass") }
+            val constants = basic {
+                state { x equality (const(2) + const(3)) }
+                state { condition equality (term { const(3) gt const(2) } and flag) }
+                state { y equality (x mul (const(4) - const(1))) }
+                path { condition equality true }
+            }
+            val mixed = basic {
+                state { y equality (flag and x) }
+                state { flag equality const(1) }
+                state { condition equality (flag gt x) }
+                path { const(1) inequality const(1) }
+            }
+            val calls = basic {
+                state { klass.call(obj.call(getClass)) }
+                path { klass inequality null }
+            }
+            return listOf(
+                constants,
+                mixed,
+                calls,
+                basic {
+                    this += constants
+                    this += listOf(mixed, calls)
+                    path { flag equality (const(7) eq const(7)) }
+                }
+            )
+        }
+
+    private fun sequential(state: PredicateState): PredicateState =
+        stages.fold(state) { current, transformer -> transformer.apply(current) }
+
+    @Test
+    fun fusedTransformerTest() {
+        for (state in states) {
+            val expected = sequential(state)
+            assertEquals(expected, FusedTransformer(stages).apply(state), "Different results for $state")
+            assertEquals(expected, transform(state) {
+                +ConstantPropagator
+                +BoolTypeAdapter(cm.type)
+                +ClassAdapter(cm)
+            })
+        }
+        val calls = states[2]
+        assertNotEquals(calls, sequential(calls), "Class adapter did not change the state")
+    }
+
+    @Test
+    fun incrementalFusedTransformerTest() {
+        val (constants, mixed, calls) = states
+        val incremental = IncrementalPredicateState(
+            constants,
+            listOf(
+                PredicateQuery(mixed, persistentListOf(state { condition equality (const(1) gt const(0)) })),
+                PredicateQuery(calls)
+            )
+        )
+        val expected = stages.fold(incremental) { current, transformer -> transformer.apply(current) }
+        assertEquals(expected, FusedTransformer(stages).apply(incremental))
+        assertEquals(expected, transformIncremental(incremental) {
+            +ConstantPropagator
+            +BoolTypeAdapter(cm.type)
+            +ClassAdapter(cm)
+        })
+    }
+}
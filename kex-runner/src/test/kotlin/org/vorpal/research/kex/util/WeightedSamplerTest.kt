@@ -0,0 +1,105 @@
+package org.vorpal.research.kex.util
+
+import kotlin.math.abs
+import kotlin.random.Random
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class WeightedSamplerTest {
+    /**
+     * random that always returns the given value of the sampled prefix sum
+     */
+    private class FixedRandom(var value: Long) : Random() {
+        override fun nextBits(bitCount: Int): Int = 0
+        override fun nextLong(until: Long): Long = value
+    }
+
+    /**
+     * checks that every point of the weight range is mapped to the element, whose prefix sum interval contains it
+     */
+    private fun <T : Any> WeightedSampler<T>.checkPrefixSums(expected: List<Pair<T, Long>>) {
+        assertEquals(expected.map { it.first }, toList())
+        assertEquals(expected.sumOf { it.second }, totalWeight)
+
+        val random = FixedRandom(0L)
+        var start = 0L
+        for ((element, weight) in expected) {
+            assertEquals(weight, weight(element))
+            for (point in start until start + weight) {
+                random.value = point
+                assertEquals(element, sample(random), "Wrong element for prefix sum $point")
+            }
+            start += weight
+        }
+    }
+
+    @Test
+    fun prefixSumsTest() {
+        val sampler = WeightedSampler<String>()
+        val expected = (0 until 100).map { "e$it" to (it % 7).toLong() }.toMutableList()
+        for ((element, weight) in expected) {
+            sampler.add(element, weight)
+        }
+        sampler.checkPrefixSums(expected)
+
+        sampler.add("e3", 10L)
+        expected[3] = "e3" to 10L
+        sampler.add("e70", 0L)
+        expected[70] = "e70" to 0L
+        sampler.checkPrefixSums(expected)
+
+        assertTrue(sampler.remove("e5"))
+        assertTrue(sampler.remove("e90"))
+        assertFalse(sampler.remove("e90"))
+        assertFalse("e5" in sampler)
+        expected.removeAt(90)
+        expected.removeAt(5)
+        sampler.checkPrefixSums(expected)
+
+        // freed slots are reused in the order of removal
+        sampler.add("new5", 4L)
+        sampler.add("new90", 3L)
+        expected.add(5, "new5" to 4L)
+        expected.add(90, "new90" to 3L)
+        sampler.checkPrefixSums(expected)
+
+        sampler.updateAll { it.length.toLong() }
+        sampler.checkPrefixSums(expected.map { (element, _) -> element to element.length.toLong() })
+
+        sampler.clear()
+        assertTrue(sampler.isEmpty())
+        assertEquals(0L, sampler.totalWeight)
+        sampler.add("single", 2L)
+        sampler.checkPrefixSums(listOf("single" to 2L))
+    }
+
+    @Test
+    fun samplingDistributionTest() {
+        val sampler = WeightedSampler<Int>()
+        val weights = mapOf(1 to 1L, 2 to 2L, 3 to 3L, 4 to 4L, 5 to 0L)
+        for ((element, weight) in weights) {
+            sampler.add(element, weight)
+        }
+
+        val random = Random(42)
+        val samples = 100_000
+        val counts = mutableMapOf<Int, Int>()
+        repeat(samples) {
+            counts.merge(sampler.sample(random), 1, Int::plus)
+        }
+
+        assertFalse(5 in counts, "Element with zero weight was sampled")
+        for ((element, weight) in weights) {
+            val expected = weight.toDouble() / sampler.totalWeight
+            val actual = counts.getOrDefault(element, 0).toDouble() / samples
+            assertTrue(abs(expected - actual) < 0.01, "Frequency of $element is $actual instead of $expected")
+        }
+
+        val repeated = Random(42)
+        val first = List(100) { sampler.sample(repeated) }
+        val again = Random(42)
+        assertEquals(first, List(100) { sampler.sample(again) })
+    }
+}
@@ -0,0 +1,21 @@
+package org.vorpal.research.kex.test.concolic;
+
+@SuppressWarnings("ALL")
+public class DistanceTests {
+    static int helper(int x) {
+        return x + 1;
+    }
+
+    public static int first(int x) {
+        int y = helper(x);
+        if (y > 10) {
+            return y;
+        }
+        return 0;
+    }
+
+    public static int second(int x) {
+        int y = helper(x);
+        return y * 2;
+    }
+}